@@ -105,6 +105,7 @@ import javax.tools.ToolProvider;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.*;
@@ -125,6 +126,8 @@ public class BuildManager implements ApplicationComponent{
 
   private static final Logger LOG = Logger.getInstance("#com.intellij.compiler.server.BuildManager");
   private static final String COMPILER_PROCESS_JDK_PROPERTY = "compiler.process.jdk";
+  private static final String BUILD_DAEMON_REGISTRY_KEY = "compiler.process.daemon";
+  private static final long DAEMON_SHUTDOWN_TIMEOUT = 10000L;
   public static final String SYSTEM_ROOT = "compile-server";
   public static final String TEMP_DIR_NAME = "_temp_";
   private static final int MAKE_TRIGGER_DELAY = 300 /*300 ms*/;
@@ -156,6 +159,8 @@ public class BuildManager implements ApplicationComponent{
   private final BuildProcessClasspathManager myClasspathManager = new BuildProcessClasspathManager();
   private final SequentialTaskExecutor myRequestsProcessor = new SequentialTaskExecutor(PooledThreadExecutor.INSTANCE);
   private final Map<String, ProjectData> myProjectDataMap = Collections.synchronizedMap(new HashMap<String, ProjectData>());
+  private final Map<String, OSProcessHandler> myBuildDaemons = Collections.synchronizedMap(new HashMap<String, OSProcessHandler>());
+  private final Map<String, OSProcessHandler> myStoppingDaemons = Collections.synchronizedMap(new HashMap<String, OSProcessHandler>());
 
   private final BuildManagerPeriodicTask myAutoMakeTask = new BuildManagerPeriodicTask() {
     @Override
@@ -379,6 +384,8 @@ public class BuildManager implements ApplicationComponent{
         data.dropChanges();
       }
     }
+    // project configuration or compiler settings have changed, the daemon will be started with up-to-date parameters
+    stopBuildDaemon(projectPath);
     scheduleAutoMake();
   }
 
@@ -664,9 +671,11 @@ public class BuildManager implements ApplicationComponent{
                     return;
                   }
                   myBuildsInProgress.put(projectPath, future);
-                  final OSProcessHandler processHandler = launchBuildProcess(project, myListenPort, sessionId);
+                  final boolean useDaemon = Registry.is(BUILD_DAEMON_REGISTRY_KEY);
+                  final OSProcessHandler processHandler = useDaemon ? startDaemonSession(project, projectPath, sessionId)
+                                                                    : launchBuildProcess(project, myListenPort, sessionId, false);
                   final StringBuilder stdErrOutput = new StringBuilder();
-                  processHandler.addProcessListener(new ProcessAdapter() {
+                  final ProcessAdapter outputListener = new ProcessAdapter() {
                     @Override
                     public void onTextAvailable(ProcessEvent event, Key outputType) {
                       // re-translate builder's output to idea.log
@@ -678,9 +687,23 @@ public class BuildManager implements ApplicationComponent{
                         }
                       }
                     }
-                  });
-                  processHandler.startNotify();
-                  final boolean terminated = processHandler.waitFor();
+                  };
+                  processHandler.addProcessListener(outputListener);
+                  if (!processHandler.isStartNotified()) {
+                    processHandler.startNotify();
+                  }
+                  final boolean terminated;
+                  if (useDaemon) {
+                    // the daemon outlives the session, the session is over when the daemon closes the connection
+                    //noinspection StatementWithEmptyBody
+                    while (!future.waitFor(500L, TimeUnit.MILLISECONDS) && !processHandler.isProcessTerminated()) {
+                    }
+                    processHandler.removeProcessListener(outputListener);
+                    terminated = processHandler.isProcessTerminated() && processHandler.waitFor();
+                  }
+                  else {
+                    terminated = processHandler.waitFor();
+                  }
                   if (terminated) {
                     final int exitValue = processHandler.getProcess().exitValue();
                     if (exitValue != 0) {
@@ -695,7 +718,7 @@ public class BuildManager implements ApplicationComponent{
                       handler.handleFailure(sessionId, CmdlineProtoUtil.createFailure(msg.toString(), null));
                     }
                   }
-                  else {
+                  else if (!useDaemon) {
                     handler.handleFailure(sessionId, CmdlineProtoUtil.createFailure("Disconnected from build process", null));
                   }
                 }
@@ -754,7 +777,57 @@ public class BuildManager implements ApplicationComponent{
     return "com.intellij.compiler.server.BuildManager";
   }
 
-  private OSProcessHandler launchBuildProcess(Project project, final int port, final UUID sessionId) throws ExecutionException {
+  /**
+   * Passes the session to the build daemon running for the project; launches a new daemon if there is no live one.
+   */
+  private OSProcessHandler startDaemonSession(Project project, String projectPath, UUID sessionId) throws ExecutionException {
+    final OSProcessHandler daemon = myBuildDaemons.get(projectPath);
+    if (daemon != null && !daemon.isProcessTerminating() && !daemon.isProcessTerminated()) {
+      final OutputStream input = daemon.getProcessInput();
+      if (input != null) {
+        try {
+          input.write((sessionId.toString() + "\n").getBytes());
+          input.flush();
+          return daemon;
+        }
+        catch (IOException e) {
+          LOG.info("Cannot pass build session to the build daemon, starting a new one", e);
+        }
+      }
+      daemon.destroyProcess();
+    }
+    final OSProcessHandler stopping = myStoppingDaemons.remove(projectPath);
+    if (stopping != null && !stopping.waitFor(DAEMON_SHUTDOWN_TIMEOUT)) {
+      // ensure the storages are not used by two processes
+      stopping.destroyProcess();
+      stopping.waitFor();
+    }
+    final OSProcessHandler processHandler = launchBuildProcess(project, myListenPort, sessionId, true);
+    myBuildDaemons.put(projectPath, processHandler);
+    return processHandler;
+  }
+
+  /**
+   * Closes the input of the build daemon running for the project, the daemon exits as soon as the current build session is finished
+   */
+  private void stopBuildDaemon(String projectPath) {
+    final OSProcessHandler daemon = myBuildDaemons.remove(projectPath);
+    if (daemon != null) {
+      myStoppingDaemons.put(projectPath, daemon);
+      final OutputStream input = daemon.getProcessInput();
+      try {
+        if (input != null) {
+          input.close();
+        }
+      }
+      catch (IOException e) {
+        LOG.info(e);
+        daemon.destroyProcess();
+      }
+    }
+  }
+
+  private OSProcessHandler launchBuildProcess(Project project, final int port, final UUID sessionId, boolean daemonMode) throws ExecutionException {
     final String compilerPath;
     final String vmExecutablePath;
     JavaSdkVersion sdkVersion = null;
@@ -861,6 +934,9 @@ public class BuildManager implements ApplicationComponent{
     }
     cmdLine.addParameter("-D"+ GlobalOptions.COMPILE_PARALLEL_OPTION +"=" + Boolean.toString(config.PARALLEL_COMPILATION));
     cmdLine.addParameter("-D"+ GlobalOptions.REBUILD_ON_DEPENDENCY_CHANGE_OPTION + "=" + Boolean.toString(config.REBUILD_ON_DEPENDENCY_CHANGE));
+    if (daemonMode) {
+      cmdLine.addParameter("-D" + GlobalOptions.DAEMON_MODE_OPTION + "=true");
+    }
 
     if (Boolean.TRUE.equals(Boolean.valueOf(System.getProperty("java.net.preferIPv4Stack", "false")))) {
       cmdLine.addParameter("-Djava.net.preferIPv4Stack=true");
@@ -995,6 +1071,9 @@ public class BuildManager implements ApplicationComponent{
   }
 
   public void stopListening() {
+    for (String projectPath : new ArrayList<String>(myBuildDaemons.keySet())) {
+      stopBuildDaemon(projectPath);
+    }
     myChannelRegistrar.close();
   }
 
@@ -1131,6 +1210,7 @@ public class BuildManager implements ApplicationComponent{
     @Override
     public void projectClosed(Project project) {
       myProjectDataMap.remove(getProjectPath(project));
+      stopBuildDaemon(getProjectPath(project));
       final MessageBusConnection conn = myConnections.remove(project);
       if (conn != null) {
         conn.disconnect();
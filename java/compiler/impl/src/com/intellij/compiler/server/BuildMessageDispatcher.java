@@ -104,8 +104,11 @@ class BuildMessageDispatcher extends SimpleChannelInboundHandler<CmdlineRemotePr
 
     final BuilderMessageHandler handler = sessionData != null? sessionData.handler : null;
     if (handler == null) {
-      // todo
       LOG.info("No message handler registered for session " + sessionId);
+      if (!myCanceledSessions.contains(sessionId)) {
+        // the session is not expected anymore: let the process finish it, so that a build daemon can proceed to the next session
+        context.channel().writeAndFlush(CmdlineProtoUtil.toMessage(sessionId, CmdlineProtoUtil.createCancelCommand()));
+      }
       return;
     }
 
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.server;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.UsefulTestCase;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.protobuf.ProtobufDecoder;
+import io.netty.handler.codec.protobuf.ProtobufEncoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
+import io.netty.handler.codec.protobuf.ProtobufVarint32LengthFieldPrepender;
+import org.jetbrains.jps.api.CmdlineProtoUtil;
+import org.jetbrains.jps.api.CmdlineRemoteProto;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.cmdline.BuildMain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.jetbrains.jps.api.CmdlineRemoteProto.Message.BuilderMessage.BuildEvent;
+
+/**
+ * Runs build sessions in a real build process started in daemon mode, the IDE side is represented by {@link BuildMessageDispatcher}.
+ */
+public class BuildDaemonTest extends UsefulTestCase {
+  private static final long TIMEOUT = 60000L;
+
+  private File myDir;
+  private String myProjectPath;
+  private NioEventLoopGroup myEventLoopGroup;
+  private int myPort;
+  private final BuildMessageDispatcher myDispatcher = new BuildMessageDispatcher();
+  private Process myDaemon;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("build-daemon", null);
+    myProjectPath = FileUtil.toSystemIndependentName(new File(myDir, "project.ipr").getPath());
+    FileUtil.writeToFile(new File(myProjectPath), "<project version=\"4\"/>");
+    myEventLoopGroup = new NioEventLoopGroup(1);
+    final Channel serverChannel = new ServerBootstrap().group(myEventLoopGroup).channel(NioServerSocketChannel.class)
+      .childHandler(new ChannelInitializer() {
+        @Override
+        protected void initChannel(Channel channel) throws Exception {
+          channel.pipeline().addLast(new ProtobufVarint32FrameDecoder(),
+                                     new ProtobufDecoder(CmdlineRemoteProto.Message.getDefaultInstance()),
+                                     new ProtobufVarint32LengthFieldPrepender(),
+                                     new ProtobufEncoder(),
+                                     myDispatcher);
+        }
+      }).bind(new InetSocketAddress("127.0.0.1", 0)).syncUninterruptibly().channel();
+    myPort = ((InetSocketAddress)serverChannel.localAddress()).getPort();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      if (myDaemon != null) {
+        myDaemon.destroy();
+      }
+      myEventLoopGroup.shutdownGracefully();
+      FileUtil.delete(myDir);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSessionsAreRunByTheSameDaemon() throws Exception {
+    MyHandler first = startDaemon();
+    first.assertCompleted();
+
+    MyHandler second = passSession(UUID.randomUUID());
+    second.assertCompleted();
+    assertTrue(isAlive());
+    assertTrue(FileUtil.loadFile(new File(myDir, "log/build.log")).contains("project state reused from the previous session"));
+
+    stopDaemon();
+  }
+
+  public void testUnexpectedSessionIsSkipped() throws Exception {
+    startDaemon().assertCompleted();
+
+    // e.g. the session was canceled by the IDE before the daemon read its id
+    UUID unexpected = UUID.randomUUID();
+    writeSessionId(unexpected);
+    MyHandler next = passSession(UUID.randomUUID());
+    next.assertCompleted();
+    assertTrue(isAlive());
+
+    stopDaemon();
+  }
+
+  public void testCanceledSessionIsSkipped() throws Exception {
+    startDaemon().assertCompleted();
+
+    UUID canceled = UUID.randomUUID();
+    MyHandler handler = register(canceled);
+    myDispatcher.cancelSession(canceled);
+    writeSessionId(canceled);
+    handler.waitForTermination();
+
+    passSession(UUID.randomUUID()).assertCompleted();
+    stopDaemon();
+  }
+
+  private MyHandler startDaemon() throws IOException {
+    UUID sessionId = UUID.randomUUID();
+    MyHandler handler = register(sessionId);
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder builder = new ProcessBuilder(Arrays.asList(
+      java, "-Djava.awt.headless=true", "-D" + PathManager.PROPERTY_HOME_PATH + "=" + PathManager.getHomePath(),
+      "-D" + GlobalOptions.DAEMON_MODE_OPTION + "=true",
+      "-D" + GlobalOptions.LOG_DIR_OPTION + "=" + FileUtil.toSystemIndependentName(new File(myDir, "log").getPath()),
+      "-classpath", System.getProperty("java.class.path"),
+      BuildMain.class.getName(), "127.0.0.1", Integer.toString(myPort), sessionId.toString(),
+      FileUtil.toSystemIndependentName(new File(myDir, "system").getPath())
+    ));
+    builder.redirectErrorStream(true);
+    myDaemon = builder.start();
+    drain(myDaemon.getInputStream());
+    return handler;
+  }
+
+  private MyHandler passSession(UUID sessionId) throws IOException {
+    MyHandler handler = register(sessionId);
+    writeSessionId(sessionId);
+    return handler;
+  }
+
+  private void writeSessionId(UUID sessionId) throws IOException {
+    OutputStream input = myDaemon.getOutputStream();
+    input.write((sessionId.toString() + "\n").getBytes());
+    input.flush();
+  }
+
+  private void stopDaemon() throws Exception {
+    myDaemon.getOutputStream().close();
+    long deadline = System.currentTimeMillis() + TIMEOUT;
+    while (isAlive()) {
+      assertTrue("The daemon hasn't stopped", System.currentTimeMillis() < deadline);
+      Thread.sleep(100);
+    }
+    assertEquals(0, myDaemon.exitValue());
+    myDaemon = null;
+  }
+
+  private boolean isAlive() {
+    try {
+      myDaemon.exitValue();
+      return false;
+    }
+    catch (IllegalThreadStateException e) {
+      return true;
+    }
+  }
+
+  private MyHandler register(UUID sessionId) {
+    MyHandler handler = new MyHandler();
+    CmdlineRemoteProto.Message.ControllerMessage.GlobalSettings globals =
+      CmdlineRemoteProto.Message.ControllerMessage.GlobalSettings.newBuilder()
+        .setGlobalOptionsPath(FileUtil.toSystemIndependentName(new File(myDir, "options").getPath())).build();
+    myDispatcher.registerBuildMessageHandler(sessionId, handler, CmdlineProtoUtil.createBuildRequest(
+      myProjectPath, CmdlineProtoUtil.createAllModulesScopes(false), Collections.<String>emptyList(),
+      Collections.<String, String>emptyMap(), globals, null));
+    return handler;
+  }
+
+  private static void drain(final InputStream output) {
+    Thread thread = new Thread("Build daemon output") {
+      @Override
+      public void run() {
+        byte[] buffer = new byte[4096];
+        try {
+          //noinspection StatementWithEmptyBody
+          while (output.read(buffer) >= 0) {
+          }
+        }
+        catch (IOException ignored) {
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static class MyHandler implements BuilderMessageHandler {
+    private final Semaphore myTerminated = new Semaphore(0);
+    private volatile boolean myCompleted;
+    private volatile String myFailure;
+
+    @Override
+    public void buildStarted(UUID sessionId) {
+    }
+
+    @Override
+    public void handleBuildMessage(Channel channel, UUID sessionId, CmdlineRemoteProto.Message.BuilderMessage msg) {
+      if (msg.hasBuildEvent() && msg.getBuildEvent().getEventType() == BuildEvent.Type.BUILD_COMPLETED &&
+          msg.getBuildEvent().getCompletionStatus() != BuildEvent.Status.CANCELED) {
+        myCompleted = true;
+      }
+    }
+
+    @Override
+    public void handleFailure(UUID sessionId, CmdlineRemoteProto.Message.Failure failure) {
+      myFailure = failure.getDescription();
+    }
+
+    @Override
+    public void sessionTerminated(UUID sessionId) {
+      myTerminated.release();
+    }
+
+    private void waitForTermination() throws InterruptedException {
+      assertTrue("The build session hasn't finished", myTerminated.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    private void assertCompleted() throws InterruptedException {
+      waitForTermination();
+      assertNull(myFailure);
+      assertTrue(myCompleted);
+    }
+  }
+}
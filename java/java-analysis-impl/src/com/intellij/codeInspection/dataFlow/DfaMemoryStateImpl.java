@@ -47,14 +47,21 @@ import java.util.*;
 public class DfaMemoryStateImpl implements DfaMemoryState {
   private final DfaValueFactory myFactory;
 
-  private final List<EqClass> myEqClasses;
+  private List<EqClass> myEqClasses;
   private final Stack<DfaValue> myStack;
-  private final TLongHashSet myDistinctClasses;
-  private final Map<DfaVariableValue,DfaVariableState> myVariableStates;
+  private TLongHashSet myDistinctClasses;
+  private Map<DfaVariableValue,DfaVariableState> myVariableStates;
   private final Map<DfaVariableValue,DfaVariableState> myDefaultVariableStates; 
-  private final Set<DfaVariableValue> myUnknownVariables;
+  private Set<DfaVariableValue> myUnknownVariables;
   private boolean myEphemeral;
 
+  // Copies share the collections above with the state they were created from;
+  // a state copies a shared collection only when it is about to modify it (see the mutable*() methods)
+  private boolean myEqClassesShared;
+  private boolean myDistinctClassesShared;
+  private boolean myVariableStatesShared;
+  private boolean myUnknownVariablesShared;
+
   public DfaMemoryStateImpl(final DfaValueFactory factory) {
     myFactory = factory;
     myDefaultVariableStates = ContainerUtil.newTroveMap();
@@ -71,11 +78,14 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     myDefaultVariableStates = toCopy.myDefaultVariableStates; // shared between all states
     
     myStack = new Stack<DfaValue>(toCopy.myStack);
-    myDistinctClasses = new TLongHashSet(toCopy.myDistinctClasses.toArray());
-    myUnknownVariables = new THashSet<DfaVariableValue>(toCopy.myUnknownVariables);
-
-    myEqClasses = ContainerUtil.newArrayList(toCopy.myEqClasses);
-    myVariableStates = new THashMap<DfaVariableValue, DfaVariableState>(toCopy.myVariableStates);
+    myDistinctClasses = toCopy.myDistinctClasses;
+    myUnknownVariables = toCopy.myUnknownVariables;
+    myEqClasses = toCopy.myEqClasses;
+    myVariableStates = toCopy.myVariableStates;
+    myEqClassesShared = toCopy.myEqClassesShared = true;
+    myDistinctClassesShared = toCopy.myDistinctClassesShared = true;
+    myVariableStatesShared = toCopy.myVariableStatesShared = true;
+    myUnknownVariablesShared = toCopy.myUnknownVariablesShared = true;
     
     myCachedDistinctClassPairs = toCopy.myCachedDistinctClassPairs;
     myCachedNonTrivialEqClasses = toCopy.myCachedNonTrivialEqClasses;
@@ -85,6 +95,38 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     return myFactory;
   }
 
+  private List<EqClass> mutableEqClasses() {
+    if (myEqClassesShared) {
+      myEqClasses = ContainerUtil.newArrayList(myEqClasses);
+      myEqClassesShared = false;
+    }
+    return myEqClasses;
+  }
+
+  private TLongHashSet mutableDistinctClasses() {
+    if (myDistinctClassesShared) {
+      myDistinctClasses = new TLongHashSet(myDistinctClasses.toArray());
+      myDistinctClassesShared = false;
+    }
+    return myDistinctClasses;
+  }
+
+  private Map<DfaVariableValue, DfaVariableState> mutableVariableStates() {
+    if (myVariableStatesShared) {
+      myVariableStates = new THashMap<DfaVariableValue, DfaVariableState>(myVariableStates);
+      myVariableStatesShared = false;
+    }
+    return myVariableStates;
+  }
+
+  private Set<DfaVariableValue> mutableUnknownVariables() {
+    if (myUnknownVariablesShared) {
+      myUnknownVariables = new THashSet<DfaVariableValue>(myUnknownVariables);
+      myUnknownVariablesShared = false;
+    }
+    return myUnknownVariables;
+  }
+
   @Override
   public DfaMemoryStateImpl createCopy() {
     return new DfaMemoryStateImpl(this);
@@ -260,7 +302,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     }
     EqClass aClass = new EqClass(myFactory);
     aClass.add(dfaValue.getID());
-    myEqClasses.add(aClass);
+    mutableEqClasses().add(aClass);
 
     return myEqClasses.size() - 1;
   }
@@ -400,7 +442,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
       }
     }
 
-    myEqClasses.set(c1Index, c1 = new EqClass(c1));
+    mutableEqClasses().set(c1Index, c1 = new EqClass(c1));
     for (int i = 0; i < c2.size(); i++) {
       int c = c2.get(i);
       c1.add(c);
@@ -408,10 +450,10 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
 
     for (int i = 0; i < c2Pairs.size(); i++) {
       long c = c2Pairs.get(i);
-      myDistinctClasses.remove(c);
-      myDistinctClasses.add(createPair(c1Index, low(c) == c2Index ? high(c) : low(c)));
+      mutableDistinctClasses().remove(c);
+      mutableDistinctClasses().add(createPair(c1Index, low(c) == c2Index ? high(c) : low(c)));
     }
-    myEqClasses.set(c2Index, null);
+    mutableEqClasses().set(c2Index, null);
 
     return true;
   }
@@ -440,7 +482,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   }
 
   private void makeClassesDistinct(int c1Index, int c2Index) {
-    myDistinctClasses.add(createPair(c1Index, c2Index));
+    mutableDistinctClasses().add(createPair(c1Index, c2Index));
   }
 
   @Override
@@ -720,7 +762,7 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         EqClass c1 = myEqClasses.get(low(encodedPair));
         EqClass c2 = myEqClasses.get(high(encodedPair));
         if (c1.findConstant(false) != null && c2.findConstant(false) != null) {
-          myDistinctClasses.remove(encodedPair);
+          mutableDistinctClasses().remove(encodedPair);
         }
       }
       myCachedDistinctClassPairs = null;
@@ -768,9 +810,11 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   void setVariableState(DfaVariableValue dfaVar, DfaVariableState state) {
     assert !myUnknownVariables.contains(dfaVar);
     if (state.equals(myDefaultVariableStates.get(dfaVar))) {
-      myVariableStates.remove(dfaVar);
-    } else {
-      myVariableStates.put(dfaVar, state);
+      if (myVariableStates.containsKey(dfaVar)) {
+        mutableVariableStates().remove(dfaVar);
+      }
+    } else if (!state.equals(myVariableStates.get(dfaVar))) {
+      mutableVariableStates().put(dfaVar, state);
     }
   }
   
@@ -797,8 +841,11 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     return state;
   }
 
+  /**
+   * @return a read-only view: the map may be shared with copies of this state
+   */
   protected Map<DfaVariableValue, DfaVariableState> getVariableStates() {
-    return myVariableStates;
+    return Collections.unmodifiableMap(myVariableStates);
   }
 
   protected DfaVariableState createVariableState(final DfaVariableValue var) {
@@ -807,7 +854,9 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
 
   @Override
   public void flushFields(DfaVariableValue[] fields) {
-    for (EqClass aClass : myEqClasses) {
+    // doFlush may replace a shared list with its copy, so the list is re-read on each iteration
+    for (int i = 0; i < myEqClasses.size(); i++) {
+      EqClass aClass = myEqClasses.get(i);
       if (aClass != null) {
         for (DfaVariableValue value : aClass.getVariables()) {
           if (value.isFlushableByCalls()) {
@@ -831,8 +880,16 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
   public void flushVariable(@NotNull DfaVariableValue variable) {
     doFlush(variable, false);
     flushDependencies(variable);
-    myUnknownVariables.remove(variable);
-    myUnknownVariables.removeAll(myFactory.getVarFactory().getAllQualifiedBy(variable));
+    removeUnknownVariable(variable);
+    for (DfaVariableValue dependent : myFactory.getVarFactory().getAllQualifiedBy(variable)) {
+      removeUnknownVariable(dependent);
+    }
+  }
+
+  private void removeUnknownVariable(DfaVariableValue variable) {
+    if (myUnknownVariables.contains(variable)) {
+      mutableUnknownVariables().remove(variable);
+    }
   }
 
   public void flushDependencies(DfaVariableValue variable) {
@@ -841,8 +898,11 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
     }
   }
 
+  /**
+   * @return a read-only view: the set may be shared with copies of this state
+   */
   Set<DfaVariableValue> getUnknownVariables() {
-    return myUnknownVariables;
+    return Collections.unmodifiableSet(myUnknownVariables);
   }
 
   void doFlush(DfaVariableValue varPlain, boolean markUnknown) {
@@ -864,18 +924,18 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         int cl = varClass.get(i);
         DfaValue value = myFactory.getValue(cl);
         if (mine(idPlain, value) || idNegated >= 0 && mine(idNegated, value)) {
-          myEqClasses.set(varClassIndex, varClass = new EqClass(varClass));
+          mutableEqClasses().set(varClassIndex, varClass = new EqClass(varClass));
           varClass.remove(i);
           break;
         }
       }
 
       if (varClass.isEmpty()) {
-        myEqClasses.set(varClassIndex, null);
+        mutableEqClasses().set(varClassIndex, null);
         long[] pairs = myDistinctClasses.toArray();
         for (long pair : pairs) {
           if (low(pair) == varClassIndex || high(pair) == varClassIndex) {
-            myDistinctClasses.remove(pair);
+            mutableDistinctClasses().remove(pair);
           }
         }
       }
@@ -883,18 +943,20 @@ public class DfaMemoryStateImpl implements DfaMemoryState {
         for (long pair : myDistinctClasses.toArray()) {
           if (low(pair) == varClassIndex && myEqClasses.get(high(pair)).containsConstantsOnly() ||
               high(pair) == varClassIndex && myEqClasses.get(low(pair)).containsConstantsOnly()) {
-            myDistinctClasses.remove(pair);
+            mutableDistinctClasses().remove(pair);
           }
         }
       }
     }
 
-    myVariableStates.remove(varPlain);
-    if (varNegated != null) {
-      myVariableStates.remove(varNegated);
+    if (myVariableStates.containsKey(varPlain)) {
+      mutableVariableStates().remove(varPlain);
+    }
+    if (varNegated != null && myVariableStates.containsKey(varNegated)) {
+      mutableVariableStates().remove(varNegated);
     }
-    if (markUnknown) {
-      myUnknownVariables.add(varPlain);
+    if (markUnknown && !myUnknownVariables.contains(varPlain)) {
+      mutableUnknownVariables().add(varPlain);
     }
     myCachedNonTrivialEqClasses = null;
     myCachedDistinctClassPairs = null;
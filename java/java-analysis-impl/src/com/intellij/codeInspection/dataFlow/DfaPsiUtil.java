@@ -18,6 +18,8 @@ package com.intellij.codeInspection.dataFlow;
 import com.intellij.codeInsight.NullableNotNullManager;
 import com.intellij.codeInspection.dataFlow.instructions.Instruction;
 import com.intellij.codeInspection.dataFlow.instructions.ReturnInstruction;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.RecursionManager;
 import com.intellij.openapi.util.Ref;
 import com.intellij.psi.*;
 import com.intellij.psi.search.LocalSearchScope;
@@ -27,6 +29,7 @@ import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
 import com.intellij.util.NullableFunction;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.MultiMap;
@@ -93,6 +96,89 @@ public class DfaPsiUtil {
     return Nullness.UNKNOWN;
   }
 
+  /**
+   * Infers that a method never returns null if each of its return statements returns a new object, a non-null literal,
+   * a string concatenation, a class literal, <code>this</code>, or the result of a method known to return not-null values.
+   * Only methods which can't be overridden are inferred; for calls, only methods from the same file are inferred further,
+   * so that the result, cached until the method's file or the java structure changes, doesn't depend on other files' code blocks.
+   */
+  @NotNull
+  public static Nullness inferMethodNullity(@NotNull final PsiMethod method) {
+    if (method instanceof PsiCompiledElement || method.getBody() == null || PsiUtil.canBeOverriden(method)) {
+      return Nullness.UNKNOWN;
+    }
+    PsiType returnType = method.getReturnType();
+    if (!(returnType instanceof PsiClassType) && !(returnType instanceof PsiArrayType)) {
+      return Nullness.UNKNOWN;
+    }
+    return CachedValuesManager.getCachedValue(method, new CachedValueProvider<Nullness>() {
+      @Nullable
+      @Override
+      public Result<Nullness> compute() {
+        Nullness nullness = RecursionManager.doPreventingRecursion(method, true, new Computable<Nullness>() {
+          @Override
+          public Nullness compute() {
+            return allReturnedValuesNotNull(method) ? Nullness.NOT_NULL : Nullness.UNKNOWN;
+          }
+        });
+        return Result.create(nullness == null ? Nullness.UNKNOWN : nullness, method, PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+      }
+    });
+  }
+
+  private static boolean allReturnedValuesNotNull(@NotNull final PsiMethod method) {
+    final List<PsiReturnStatement> returns = new ArrayList<PsiReturnStatement>();
+    method.accept(new JavaRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitClass(PsiClass aClass) {
+        if (aClass == method.getContainingClass()) super.visitClass(aClass);
+      }
+
+      @Override
+      public void visitLambdaExpression(PsiLambdaExpression expression) {
+      }
+
+      @Override
+      public void visitReturnStatement(PsiReturnStatement statement) {
+        returns.add(statement);
+      }
+    });
+    if (returns.isEmpty()) return false;
+    for (PsiReturnStatement statement : returns) {
+      if (!isNotNullExpression(statement.getReturnValue(), method)) return false;
+    }
+    return true;
+  }
+
+  private static boolean isNotNullExpression(@Nullable PsiExpression expression, @NotNull PsiMethod context) {
+    expression = PsiUtil.skipParenthesizedExprDown(expression);
+    if (expression instanceof PsiNewExpression || expression instanceof PsiThisExpression ||
+        expression instanceof PsiClassObjectAccessExpression) {
+      return true;
+    }
+    if (expression instanceof PsiLiteralExpression) {
+      return ((PsiLiteralExpression)expression).getValue() != null;
+    }
+    if (expression instanceof PsiPolyadicExpression) {
+      PsiType type = expression.getType();
+      return type != null && type.equalsToText(CommonClassNames.JAVA_LANG_STRING);
+    }
+    if (expression instanceof PsiConditionalExpression) {
+      PsiConditionalExpression conditional = (PsiConditionalExpression)expression;
+      return isNotNullExpression(conditional.getThenExpression(), context) && isNotNullExpression(conditional.getElseExpression(), context);
+    }
+    if (expression instanceof PsiMethodCallExpression) {
+      PsiMethod method = ((PsiMethodCallExpression)expression).resolveMethod();
+      if (method == null) return false;
+      Nullness nullness = getElementNullability(method.getReturnType(), method);
+      if (nullness == Nullness.UNKNOWN && method.getContainingFile() == context.getContainingFile()) {
+        nullness = inferMethodNullity(method);
+      }
+      return nullness == Nullness.NOT_NULL;
+    }
+    return false;
+  }
+
   public static boolean isInitializedNotNull(PsiField field) {
     PsiClass containingClass = field.getContainingClass();
     if (containingClass == null) return false;
@@ -59,7 +59,11 @@ public class StandardInstructionVisitor extends InstructionVisitor {
         return Nullness.NOT_NULL;
       }
 
-      return callExpression != null ? DfaPsiUtil.getElementNullability(key.getResultType(), callExpression.resolveMethod()) : null;
+      if (callExpression == null) return null;
+
+      PsiMethod method = callExpression.resolveMethod();
+      Nullness nullness = DfaPsiUtil.getElementNullability(key.getResultType(), method);
+      return nullness == Nullness.UNKNOWN && method != null ? DfaPsiUtil.inferMethodNullity(method) : nullness;
     }
   };
 
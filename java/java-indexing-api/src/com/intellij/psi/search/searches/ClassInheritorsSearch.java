@@ -22,6 +22,7 @@ import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.psi.*;
@@ -38,6 +39,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -49,6 +52,10 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
 
   public static final ClassInheritorsSearch INSTANCE = new ClassInheritorsSearch();
 
+  private static final Key<CachedInheritors> CACHED_INHERITORS = Key.create("CACHED_INHERITORS");
+  private static final Key<CachedInheritors> CACHED_INHERITORS_WITH_ANONYMOUS = Key.create("CACHED_INHERITORS_WITH_ANONYMOUS");
+  private static final Key<CachedInheritors> CACHED_CHECKED_INHERITORS_WITH_ANONYMOUS = Key.create("CACHED_CHECKED_INHERITORS_WITH_ANONYMOUS");
+
   static {
     INSTANCE.registerExecutor(new QueryExecutor<PsiClass, SearchParameters>() {
       @Override
@@ -204,6 +211,17 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
       });
     }
 
+    final Key<CachedInheritors> cacheKey = getCacheKey(parameters);
+    final long modificationCount = cacheKey == null ? -1 : getModificationCount(baseClass);
+    if (cacheKey != null) {
+      List<PsiClass> cached = getCachedInheritors(baseClass, cacheKey, modificationCount);
+      if (cached != null) {
+        return processCachedInheritors(consumer, cached, searchScope, parameters);
+      }
+    }
+    // the inheritors accepted by the inheritance check, in the order they are found, to be cached if the search completes
+    final List<PsiClass> found = cacheKey == null ? null : new ArrayList<PsiClass>();
+
     final Ref<PsiClass> currentBase = Ref.create(null);
     final Stack<Pair<Reference<PsiClass>, String>> stack = new Stack<Pair<Reference<PsiClass>, String>>();
     // there are two sets for memory optimization: it's cheaper to hold FQN than PsiClass
@@ -227,6 +245,9 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
                 return;
               }
             }
+            if (found != null) {
+              found.add(candidate);
+            }
 
             if (PsiSearchScopeUtil.isInScope(searchScope, candidate)) {
               if (candidate instanceof PsiAnonymousClass) {
@@ -277,6 +298,69 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
       currentBase.set(psiClass);
       if (!DirectClassInheritorsSearch.search(psiClass, projectScope, parameters.isIncludeAnonymous(), false).forEach(processor)) return false;
     }
+    if (cacheKey != null && getModificationCount(baseClass) == modificationCount) {
+      baseClass.putUserData(cacheKey, new CachedInheritors(found, modificationCount));
+    }
+    return true;
+  }
+
+  /**
+   * The transitive closure only depends on the search parameters identified by the key, the scope and the name condition
+   * just filter the classes reported to the consumer; searches with a custom inheritance checker aren't cached.
+   */
+  @Nullable
+  private static Key<CachedInheritors> getCacheKey(@NotNull SearchParameters parameters) {
+    if (!parameters.isCheckDeep() || parameters.myInheritanceChecker != InheritanceChecker.DEFAULT) return null;
+    if (!parameters.isIncludeAnonymous()) return CACHED_INHERITORS;
+    return parameters.isCheckInheritance() ? CACHED_CHECKED_INHERITORS_WITH_ANONYMOUS : CACHED_INHERITORS_WITH_ANONYMOUS;
+  }
+
+  private static long getModificationCount(@NotNull final PsiClass baseClass) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<Long>() {
+      @Override
+      public Long compute() {
+        // changes of anonymous and local classes are counted as java structure changes too
+        return baseClass.getManager().getModificationTracker().getJavaStructureModificationCount();
+      }
+    }).longValue();
+  }
+
+  @Nullable
+  private static List<PsiClass> getCachedInheritors(@NotNull final PsiClass baseClass,
+                                                    @NotNull final Key<CachedInheritors> key,
+                                                    final long modificationCount) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<List<PsiClass>>() {
+      @Override
+      public List<PsiClass> compute() {
+        CachedInheritors cached = baseClass.getUserData(key);
+        if (cached == null || cached.myModificationCount != modificationCount) return null;
+        List<PsiClass> inheritors = cached.myInheritors.get();
+        if (inheritors == null) return null;
+        for (PsiClass inheritor : inheritors) {
+          if (!inheritor.isValid()) return null;
+        }
+        return inheritors;
+      }
+    });
+  }
+
+  private static boolean processCachedInheritors(@NotNull final Processor<PsiClass> consumer,
+                                                 @NotNull List<PsiClass> inheritors,
+                                                 @NotNull final SearchScope searchScope,
+                                                 @NotNull final SearchParameters parameters) {
+    for (final PsiClass candidate : inheritors) {
+      ProgressIndicatorProvider.checkCanceled();
+      boolean result = ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+        @Override
+        public Boolean compute() {
+          if (!PsiSearchScopeUtil.isInScope(searchScope, candidate)) return true;
+          if (candidate instanceof PsiAnonymousClass) return consumer.process(candidate);
+          final String name = candidate.getName();
+          return name == null || !parameters.getNameCondition().value(name) || consumer.process(candidate);
+        }
+      }).booleanValue();
+      if (!result) return false;
+    }
     return true;
   }
 
@@ -289,6 +373,19 @@ public class ClassInheritorsSearch extends ExtensibleQueryFactory<PsiClass, Clas
     };
   }
 
+  /**
+   * Inheritors of a class found by a completed search, valid while the java structure modification count is the same.
+   */
+  private static class CachedInheritors {
+    private final Reference<List<PsiClass>> myInheritors;
+    private final long myModificationCount;
+
+    private CachedInheritors(@NotNull List<PsiClass> inheritors, long modificationCount) {
+      myInheritors = new SoftReference<List<PsiClass>>(inheritors);
+      myModificationCount = modificationCount;
+    }
+  }
+
   private static boolean isFinal(@NotNull final PsiClass baseClass) {
     return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
       @Override
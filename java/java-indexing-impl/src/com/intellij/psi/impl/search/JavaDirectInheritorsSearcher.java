@@ -17,8 +17,10 @@ package com.intellij.psi.impl.search;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProgressIndicatorProvider;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
@@ -31,12 +33,15 @@ import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.searches.AllClassesSearch;
 import com.intellij.psi.search.searches.DirectClassInheritorsSearch;
 import com.intellij.psi.util.PsiUtil;
+import com.intellij.reference.SoftReference;
 import com.intellij.util.Processor;
 import com.intellij.util.QueryExecutor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.Reference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -46,6 +51,9 @@ import java.util.Map;
  * @author max
  */
 public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, DirectClassInheritorsSearch.SearchParameters> {
+  private static final Key<CachedInheritors> CACHED_INHERITORS = Key.create("CACHED_DIRECT_INHERITORS");
+  private static final Key<CachedInheritors> CACHED_CHECKED_INHERITORS = Key.create("CACHED_CHECKED_DIRECT_INHERITORS");
+
   @Override
   public boolean execute(@NotNull final DirectClassInheritorsSearch.SearchParameters p, @NotNull final Processor<PsiClass> consumer) {
     final PsiClass aClass = p.getClassToProcess();
@@ -101,37 +109,16 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
       return true;
     }
 
-    Collection<PsiReferenceList> candidates = ApplicationManager.getApplication().runReadAction(new Computable<Collection<PsiReferenceList>>() {
-      @Override
-      public Collection<PsiReferenceList> compute() {
-        return JavaSuperClassNameOccurenceIndex.getInstance().get(searchKey, psiManager.getProject(), scope);
+    final Key<CachedInheritors> cacheKey = p.isCheckInheritance() ? CACHED_CHECKED_INHERITORS : CACHED_INHERITORS;
+    final long modificationCount = getJavaStructureModificationCount(psiManager);
+    List<PsiClass> inheritors = getCachedInheritors(aClass, cacheKey, modificationCount);
+    if (inheritors == null) {
+      inheritors = findNamedInheritors(p, aClass, searchKey, scope);
+      if (getJavaStructureModificationCount(psiManager) == modificationCount) {
+        aClass.putUserData(cacheKey, new CachedInheritors(inheritors, modificationCount));
       }
-    });
-
-    Map<String, List<PsiClass>> classes = new HashMap<String, List<PsiClass>>();
-
-    for (PsiReferenceList referenceList : candidates) {
-      ProgressIndicatorProvider.checkCanceled();
-      final PsiClass candidate = (PsiClass)referenceList.getParent();
-      if (!checkInheritance(p, aClass, candidate)) continue;
-
-      String fqn = ApplicationManager.getApplication().runReadAction(new Computable<String>() {
-        @Override
-        public String compute() {
-          return candidate.getQualifiedName();
-        }
-      });
-      List<PsiClass> list = classes.get(fqn);
-      if (list == null) {
-        list = new ArrayList<PsiClass>();
-        classes.put(fqn, list);
-      }
-      list.add(candidate);
-    }
-
-    for (List<PsiClass> sameNamedClasses : classes.values()) {
-      if (!processSameNamedClasses(consumer, aClass, sameNamedClasses)) return false;
     }
+    if (!ContainerUtil.process(inheritors, consumer)) return false;
 
     if (p.includeAnonymous()) {
       Collection<PsiAnonymousClass> anonymousCandidates = ApplicationManager.getApplication().runReadAction(new Computable<Collection<PsiAnonymousClass>>() {
@@ -176,6 +163,75 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
     return true;
   }
 
+  @NotNull
+  private static List<PsiClass> findNamedInheritors(@NotNull DirectClassInheritorsSearch.SearchParameters p,
+                                                    @NotNull PsiClass aClass,
+                                                    @NotNull final String searchKey,
+                                                    @NotNull final GlobalSearchScope scope) {
+    final Project project = aClass.getProject();
+    Collection<PsiReferenceList> candidates = ApplicationManager.getApplication().runReadAction(new Computable<Collection<PsiReferenceList>>() {
+      @Override
+      public Collection<PsiReferenceList> compute() {
+        return JavaSuperClassNameOccurenceIndex.getInstance().get(searchKey, project, scope);
+      }
+    });
+
+    Map<String, List<PsiClass>> classes = new HashMap<String, List<PsiClass>>();
+
+    for (PsiReferenceList referenceList : candidates) {
+      ProgressIndicatorProvider.checkCanceled();
+      final PsiClass candidate = (PsiClass)referenceList.getParent();
+      if (!checkInheritance(p, aClass, candidate)) continue;
+
+      String fqn = ApplicationManager.getApplication().runReadAction(new Computable<String>() {
+        @Override
+        public String compute() {
+          return candidate.getQualifiedName();
+        }
+      });
+      List<PsiClass> list = classes.get(fqn);
+      if (list == null) {
+        list = new ArrayList<PsiClass>();
+        classes.put(fqn, list);
+      }
+      list.add(candidate);
+    }
+
+    List<PsiClass> result = new ArrayList<PsiClass>();
+    for (List<PsiClass> sameNamedClasses : classes.values()) {
+      collectSameNamedClasses(aClass, sameNamedClasses, result);
+    }
+    return result;
+  }
+
+  private static long getJavaStructureModificationCount(@NotNull final PsiManager psiManager) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<Long>() {
+      @Override
+      public Long compute() {
+        return psiManager.getModificationTracker().getJavaStructureModificationCount();
+      }
+    }).longValue();
+  }
+
+  @Nullable
+  private static List<PsiClass> getCachedInheritors(@NotNull final PsiClass aClass,
+                                                    @NotNull final Key<CachedInheritors> key,
+                                                    final long modificationCount) {
+    return ApplicationManager.getApplication().runReadAction(new Computable<List<PsiClass>>() {
+      @Override
+      public List<PsiClass> compute() {
+        CachedInheritors cached = aClass.getUserData(key);
+        if (cached == null || cached.myModificationCount != modificationCount) return null;
+        List<PsiClass> inheritors = cached.myInheritors.get();
+        if (inheritors == null) return null;
+        for (PsiClass inheritor : inheritors) {
+          if (!inheritor.isValid()) return null;
+        }
+        return inheritors;
+      }
+    });
+  }
+
   private static boolean checkInheritance(final DirectClassInheritorsSearch.SearchParameters p, final PsiClass aClass, final PsiClass candidate) {
     return ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
       @Override
@@ -185,21 +241,33 @@ public class JavaDirectInheritorsSearcher implements QueryExecutor<PsiClass, Dir
     });
   }
 
-  private static boolean processSameNamedClasses(Processor<PsiClass> consumer, PsiClass aClass, List<PsiClass> sameNamedClasses) {
+  private static void collectSameNamedClasses(PsiClass aClass, List<PsiClass> sameNamedClasses, List<PsiClass> result) {
     // if there is a class from the same jar, prefer it
-    boolean sameJarClassFound = false;
-
     VirtualFile jarFile = PsiUtil.getJarFile(aClass);
     if (jarFile != null) {
+      boolean sameJarClassFound = false;
       for (PsiClass sameNamedClass : sameNamedClasses) {
-        boolean fromSameJar = Comparing.equal(PsiUtil.getJarFile(sameNamedClass), jarFile);
-        if (fromSameJar) {
+        if (Comparing.equal(PsiUtil.getJarFile(sameNamedClass), jarFile)) {
           sameJarClassFound = true;
-          if (!consumer.process(sameNamedClass)) return false;
+          result.add(sameNamedClass);
         }
       }
+      if (sameJarClassFound) return;
     }
+    result.addAll(sameNamedClasses);
+  }
 
-    return sameJarClassFound || ContainerUtil.process(sameNamedClasses, consumer);
+  /**
+   * Direct inheritors of a class which have names, valid while the java structure modification count is the same,
+   * so that deep inheritor searches don't resolve the same candidates again.
+   */
+  private static class CachedInheritors {
+    private final Reference<List<PsiClass>> myInheritors;
+    private final long myModificationCount;
+
+    private CachedInheritors(@NotNull List<PsiClass> inheritors, long modificationCount) {
+      myInheritors = new SoftReference<List<PsiClass>>(inheritors);
+      myModificationCount = modificationCount;
+    }
   }
 }
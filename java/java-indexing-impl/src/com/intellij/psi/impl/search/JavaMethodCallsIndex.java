@@ -0,0 +1,289 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.search;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.lang.java.JavaParserDefinition;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntProcedure;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Maps names of methods called in a Java file to the numbers of arguments they are called with there.
+ * The value is a bit mask: bit <code>k</code> means a call with <code>k</code> arguments, and {@link #ANY_ARGUMENTS}
+ * means that the name occurs in a way which can't be checked by the number of arguments
+ * (a method reference, an import, a comment, a call with a complicated argument list, etc.).
+ * Method usages search uses the index to skip files which only call other overloads of the method.
+ */
+public class JavaMethodCallsIndex extends FileBasedIndexExtension<String, Integer> {
+  public static final ID<String, Integer> INDEX_ID = ID.create("java.method.calls");
+
+  private static final int ANY_ARGUMENTS = 1 << 31;
+  private static final int MAX_ARGUMENTS = 30;
+
+  /**
+   * Returns the files in the scope which call methods with the given name,
+   * but none of them with a number of arguments suitable for any of the given methods.
+   */
+  @NotNull
+  public static Set<VirtualFile> getFilesWithIncompatibleCalls(@NotNull String name,
+                                                               @NotNull PsiMethod[] methods,
+                                                               @NotNull GlobalSearchScope scope) {
+    int compatible = ANY_ARGUMENTS;
+    for (PsiMethod method : methods) {
+      compatible |= getArgumentCountMask(method);
+    }
+    final int compatibleMask = compatible;
+    final Set<VirtualFile> result = new THashSet<VirtualFile>();
+    try {
+      FileBasedIndex.getInstance().processValues(INDEX_ID, name, null, new FileBasedIndex.ValueProcessor<Integer>() {
+        @Override
+        public boolean process(VirtualFile file, Integer value) {
+          if ((value & compatibleMask) == 0) {
+            result.add(file);
+          }
+          return true;
+        }
+      }, scope);
+    }
+    catch (IndexNotReadyException e) {
+      return Collections.emptySet();
+    }
+    return result;
+  }
+
+  /**
+   * Excludes files which can't contain references to the given methods from the scope.
+   */
+  @NotNull
+  public static GlobalSearchScope excludeFilesWithIncompatibleCalls(@NotNull Project project,
+                                                                    @NotNull String name,
+                                                                    @NotNull PsiMethod[] methods,
+                                                                    @NotNull GlobalSearchScope scope) {
+    Set<VirtualFile> files = getFilesWithIncompatibleCalls(name, methods, scope);
+    if (files.isEmpty()) return scope;
+    return scope.intersectWith(GlobalSearchScope.notScope(GlobalSearchScope.filesScope(project, files)));
+  }
+
+  private static int getArgumentCountMask(@NotNull PsiMethod method) {
+    int count = method.getParameterList().getParametersCount();
+    if (method.isVarArgs()) {
+      int mask = 0;
+      for (int i = count - 1; i <= MAX_ARGUMENTS; i++) {
+        mask |= 1 << i;
+      }
+      return mask;
+    }
+    return count <= MAX_ARGUMENTS ? 1 << count : 0;
+  }
+
+  @NotNull
+  @Override
+  public ID<String, Integer> getName() {
+    return INDEX_ID;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, Integer, FileContent> getIndexer() {
+    return new DataIndexer<String, Integer, FileContent>() {
+      @Override
+      @NotNull
+      public Map<String, Integer> map(FileContent inputData) {
+        return indexCalls(inputData.getContentAsText());
+      }
+    };
+  }
+
+  @NotNull
+  static Map<String, Integer> indexCalls(@NotNull CharSequence text) {
+    TokenList tokens = new TokenList();
+    final Set<String> otherOccurrences = new THashSet<String>();
+    Lexer lexer = JavaParserDefinition.createLexer(LanguageLevel.HIGHEST);
+    lexer.start(text);
+    for (IElementType type = lexer.getTokenType(); type != null; lexer.advance(), type = lexer.getTokenType()) {
+      if (ElementType.JAVA_WHITESPACE_BIT_SET.contains(type)) continue;
+      if (ElementType.JAVA_COMMENT_BIT_SET.contains(type) ||
+          type == JavaTokenType.STRING_LITERAL || type == JavaTokenType.CHARACTER_LITERAL) {
+        collectWords(text, lexer.getTokenStart(), lexer.getTokenEnd(), otherOccurrences);
+      }
+      if (!ElementType.JAVA_COMMENT_BIT_SET.contains(type)) {
+        tokens.add(type, lexer.getTokenStart(), lexer.getTokenEnd());
+      }
+    }
+
+    final TObjectIntHashMap<String> masks = new TObjectIntHashMap<String>();
+    for (int i = 0; i < tokens.size(); i++) {
+      if (tokens.getType(i) != JavaTokenType.IDENTIFIER) continue;
+      String name = text.subSequence(tokens.getStart(i), tokens.getEnd(i)).toString();
+      if (i + 1 < tokens.size() && tokens.getType(i + 1) == JavaTokenType.LPARENTH) {
+        int count = countArguments(tokens, i + 1);
+        int bit = count >= 0 && count <= MAX_ARGUMENTS ? 1 << count : ANY_ARGUMENTS;
+        masks.put(name, masks.get(name) | bit);
+      }
+      else {
+        otherOccurrences.add(name);
+      }
+    }
+
+    final Map<String, Integer> result = new HashMap<String, Integer>(masks.size());
+    masks.forEachEntry(new TObjectIntProcedure<String>() {
+      @Override
+      public boolean execute(String name, int mask) {
+        result.put(name, otherOccurrences.contains(name) ? mask | ANY_ARGUMENTS : mask);
+        return true;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return the number of arguments in the list starting with the parenthesis at the given index,
+   *         or -1 if the list is unbalanced or may contain type arguments, so that commas can't be counted reliably
+   */
+  private static int countArguments(@NotNull TokenList tokens, int lparenth) {
+    int depth = 0;
+    int commas = 0;
+    boolean empty = true;
+    for (int i = lparenth + 1; i < tokens.size(); i++) {
+      IElementType type = tokens.getType(i);
+      if (type == JavaTokenType.LPARENTH || type == JavaTokenType.LBRACKET || type == JavaTokenType.LBRACE) {
+        depth++;
+      }
+      else if (type == JavaTokenType.RPARENTH || type == JavaTokenType.RBRACKET || type == JavaTokenType.RBRACE) {
+        if (depth == 0) {
+          return type == JavaTokenType.RPARENTH ? (empty ? 0 : commas + 1) : -1;
+        }
+        depth--;
+      }
+      else if (depth == 0) {
+        if (type == JavaTokenType.COMMA) {
+          commas++;
+        }
+        else if (type == JavaTokenType.LT || type == JavaTokenType.SEMICOLON) {
+          return -1;
+        }
+      }
+      empty = false;
+    }
+    return -1;
+  }
+
+  private static void collectWords(@NotNull CharSequence text, int start, int end, @NotNull Set<String> words) {
+    int i = start;
+    while (i < end) {
+      if (!Character.isJavaIdentifierStart(text.charAt(i))) {
+        i++;
+        continue;
+      }
+      int wordStart = i;
+      while (i < end && Character.isJavaIdentifierPart(text.charAt(i))) i++;
+      words.add(text.subSequence(wordStart, i).toString());
+    }
+  }
+
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return new EnumeratorStringDescriptor();
+  }
+
+  @Override
+  public DataExternalizer<Integer> getValueExternalizer() {
+    return new DataExternalizer<Integer>() {
+      @Override
+      public void save(DataOutput out, Integer value) throws IOException {
+        DataInputOutputUtil.writeINT(out, value);
+      }
+
+      @Override
+      public Integer read(DataInput in) throws IOException {
+        return DataInputOutputUtil.readINT(in);
+      }
+    };
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return 0;
+  }
+
+  /**
+   * Significant tokens of a file, kept in plain arrays so that argument lists can be scanned ahead of the current token.
+   */
+  private static class TokenList {
+    private IElementType[] myTypes = new IElementType[256];
+    private int[] myOffsets = new int[512];
+    private int mySize;
+
+    void add(IElementType type, int start, int end) {
+      if (mySize == myTypes.length) {
+        myTypes = Arrays.copyOf(myTypes, mySize * 2);
+        myOffsets = Arrays.copyOf(myOffsets, mySize * 4);
+      }
+      myTypes[mySize] = type;
+      myOffsets[2 * mySize] = start;
+      myOffsets[2 * mySize + 1] = end;
+      mySize++;
+    }
+
+    int size() {
+      return mySize;
+    }
+
+    IElementType getType(int i) {
+      return myTypes[i];
+    }
+
+    int getStart(int i) {
+      return myOffsets[2 * i];
+    }
+
+    int getEnd(int i) {
+      return myOffsets[2 * i + 1];
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.intellij.openapi.application.QueryExecutorBase;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.SearchRequestCollector;
 import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.UsageSearchContext;
@@ -96,9 +97,14 @@ public class MethodUsagesSearcher extends QueryExecutorBase<PsiReference, Method
         }
 
         SearchScope restrictedByAccessScope = searchScope.intersectWith(accessScope);
+        SearchScope wordSearchScope = restrictedByAccessScope;
+        if (restrictedByAccessScope instanceof GlobalSearchScope) {
+          wordSearchScope = JavaMethodCallsIndex.excludeFilesWithIncompatibleCalls(aClass.getProject(), methodName[0], methods,
+                                                                                   (GlobalSearchScope)restrictedByAccessScope);
+        }
 
         short searchContext = UsageSearchContext.IN_CODE | UsageSearchContext.IN_COMMENTS | UsageSearchContext.IN_FOREIGN_LANGUAGES;
-        collector.searchWord(methodName[0], restrictedByAccessScope, searchContext, true, method,
+        collector.searchWord(methodName[0], wordSearchScope, searchContext, true, method,
                              getTextOccurrenceProcessor(methods, aClass, strictSignatureSearch));
 
         SimpleAccessorReferenceSearcher.addPropertyAccessUsages(method, restrictedByAccessScope, collector);
@@ -37,10 +37,13 @@ import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ControlFlowFactory {
   // psiElements hold weakly, controlFlows softly
   private final ConcurrentMap<PsiElement, Reference<CopyOnWriteArrayList<ControlFlowContext>>> cachedFlows = new ConcurrentWeakHashMap<PsiElement, Reference<CopyOnWriteArrayList<ControlFlowContext>>>();
+  private final AtomicLong myCacheHits = new AtomicLong();
+  private final AtomicLong myCacheMisses = new AtomicLong();
 
   private static final NotNullLazyKey<ControlFlowFactory, Project> INSTANCE_KEY = ServiceManager.createLazyKey(ControlFlowFactory.class);
 
@@ -62,18 +65,38 @@ public class ControlFlowFactory {
     cachedFlows.clear();
   }
 
-  public void registerSubRange(final PsiElement codeFragment, final ControlFlowSubRange flow, final boolean evaluateConstantIfConfition,
-                               final ControlFlowPolicy policy) {
-    registerControlFlow(codeFragment, flow, evaluateConstantIfConfition, policy);
+  /**
+   * @return the number of control flow requests served from the cache since the project was opened
+   */
+  public long getCacheHits() {
+    return myCacheHits.get();
+  }
+
+  /**
+   * @return the number of control flows built because no suitable one was cached
+   */
+  public long getCacheMisses() {
+    return myCacheMisses.get();
+  }
+
+  public void registerSubRange(final PsiElement codeFragment, final ControlFlowSubRange flow, final boolean enableShortCircuit,
+                               final boolean evaluateConstantIfConfition, final ControlFlowPolicy policy) {
+    registerControlFlow(codeFragment, flow, enableShortCircuit, evaluateConstantIfConfition, policy);
   }
 
   private static class ControlFlowContext {
     private final ControlFlowPolicy policy;
+    private final boolean enableShortCircuit;
     private final boolean evaluateConstantIfCondition;
     private final long modificationCount;
     private final ControlFlow controlFlow;
 
-    private ControlFlowContext(boolean evaluateConstantIfCondition, @NotNull ControlFlowPolicy policy, long modificationCount, @NotNull ControlFlow controlFlow) {
+    private ControlFlowContext(boolean enableShortCircuit,
+                               boolean evaluateConstantIfCondition,
+                               @NotNull ControlFlowPolicy policy,
+                               long modificationCount,
+                               @NotNull ControlFlow controlFlow) {
+      this.enableShortCircuit = enableShortCircuit;
       this.evaluateConstantIfCondition = evaluateConstantIfCondition;
       this.policy = policy;
       this.modificationCount = modificationCount;
@@ -91,14 +114,19 @@ public class ControlFlowFactory {
 
     public int hashCode() {
       int result = policy.hashCode();
+      result = 31 * result + (enableShortCircuit ? 1 : 0);
       result = 31 * result + (evaluateConstantIfCondition ? 1 : 0);
       result = 31 * result + (int)(modificationCount ^ (modificationCount >>> 32));
       return result;
     }
 
-    public boolean isFor(@NotNull ControlFlowPolicy policy, final boolean evaluateConstantIfCondition, long modificationCount) {
+    public boolean isFor(@NotNull ControlFlowPolicy policy,
+                         final boolean enableShortCircuit,
+                         final boolean evaluateConstantIfCondition,
+                         long modificationCount) {
       if (modificationCount != this.modificationCount) return false;
       if (!policy.equals(this.policy)) return false;
+      if (enableShortCircuit != this.enableShortCircuit) return false;
 
       // optimization: when no constant condition were computed, both control flows are the same
       if (!controlFlow.isConstantConditionOccurred()) return true;
@@ -107,7 +135,7 @@ public class ControlFlowFactory {
     }
 
     private boolean isFor(@NotNull ControlFlowContext that) {
-      return isFor(that.policy, that.evaluateConstantIfCondition, that.modificationCount);
+      return isFor(that.policy, that.enableShortCircuit, that.evaluateConstantIfCondition, that.modificationCount);
     }
   }
 
@@ -129,28 +157,34 @@ public class ControlFlowFactory {
     final long modificationCount = element.getManager().getModificationTracker().getModificationCount();
     CopyOnWriteArrayList<ControlFlowContext> cached = getOrCreateCachedFlowsForElement(element);
     for (ControlFlowContext context : cached) {
-      if (context.isFor(policy, evaluateConstantIfCondition,modificationCount)) return context.controlFlow;
+      if (context.isFor(policy, enableShortCircuit, evaluateConstantIfCondition, modificationCount)) {
+        myCacheHits.incrementAndGet();
+        return context.controlFlow;
+      }
     }
+    myCacheMisses.incrementAndGet();
     ControlFlow controlFlow = new ControlFlowAnalyzer(element, policy, enableShortCircuit, evaluateConstantIfCondition).buildControlFlow();
-    ControlFlowContext context = createContext(evaluateConstantIfCondition, policy, controlFlow, modificationCount);
+    ControlFlowContext context = createContext(enableShortCircuit, evaluateConstantIfCondition, policy, controlFlow, modificationCount);
     cached.addIfAbsent(context);
     return controlFlow;
   }
 
   @NotNull
-  private static ControlFlowContext createContext(final boolean evaluateConstantIfCondition,
+  private static ControlFlowContext createContext(final boolean enableShortCircuit,
+                                                  final boolean evaluateConstantIfCondition,
                                                   @NotNull ControlFlowPolicy policy,
                                                   @NotNull ControlFlow controlFlow,
                                                   final long modificationCount) {
-    return new ControlFlowContext(evaluateConstantIfCondition, policy, modificationCount,controlFlow);
+    return new ControlFlowContext(enableShortCircuit, evaluateConstantIfCondition, policy, modificationCount, controlFlow);
   }
 
   private void registerControlFlow(@NotNull PsiElement element,
                                    @NotNull ControlFlow flow,
+                                   boolean enableShortCircuit,
                                    boolean evaluateConstantIfCondition,
                                    @NotNull ControlFlowPolicy policy) {
     final long modificationCount = element.getManager().getModificationTracker().getModificationCount();
-    ControlFlowContext controlFlowContext = createContext(evaluateConstantIfCondition, policy, flow, modificationCount);
+    ControlFlowContext controlFlowContext = createContext(enableShortCircuit, evaluateConstantIfCondition, policy, flow, modificationCount);
 
     CopyOnWriteArrayList<ControlFlowContext> cached = getOrCreateCachedFlowsForElement(element);
     cached.addIfAbsent(controlFlowContext);
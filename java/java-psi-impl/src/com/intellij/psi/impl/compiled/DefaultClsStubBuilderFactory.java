@@ -43,7 +43,7 @@ public class DefaultClsStubBuilderFactory extends ClsStubBuilderFactory {
       final StubBuildingVisitor<VirtualFile> classVisitor =
         new StubBuildingVisitor<VirtualFile>(vFile, VirtualFileInnerClassStrategy.INSTANCE, file, 0, null);
       try {
-        reader.accept(classVisitor, ClassReader.SKIP_FRAMES);
+        StubBuildingVisitor.accept(reader, classVisitor);
       }
       catch (OutOfOrderInnerClassException e) {
         return null;
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.compiled;
+
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.asm4.ClassReader;
+import org.jetbrains.asm4.MethodVisitor;
+
+/**
+ * Locates LocalVariableTable attributes of methods in class file bytes without decoding method bodies,
+ * so that stubs, which need only parameter names from the code, can be built by a reader with {@link ClassReader#SKIP_CODE}.
+ * Constant pool strings are read through the same {@link ClassReader}, which caches them for the stub building pass.
+ */
+class LocalVariableTableReader {
+  @NonNls private static final String CODE = "Code";
+  @NonNls private static final String LOCAL_VARIABLE_TABLE = "LocalVariableTable";
+
+  private final ClassReader myReader;
+  private final char[] myBuffer;
+  // method name + descriptor -> offset of the local variable table in the class file
+  private final TObjectIntHashMap<String> myTables = new TObjectIntHashMap<String>();
+
+  LocalVariableTableReader(@NotNull ClassReader reader) {
+    myReader = reader;
+    myBuffer = new char[reader.getMaxStringLength()];
+
+    // skip access flags, this and super class, interfaces
+    int u = reader.header + 6;
+    u += 2 + 2 * reader.readUnsignedShort(u);
+
+    int fieldCount = reader.readUnsignedShort(u);
+    u += 2;
+    for (int i = 0; i < fieldCount; i++) {
+      u = skipAttributes(u + 6);
+    }
+
+    int methodCount = reader.readUnsignedShort(u);
+    u += 2;
+    for (int i = 0; i < methodCount; i++) {
+      String key = reader.readUTF8(u + 2, myBuffer) + reader.readUTF8(u + 4, myBuffer);
+      int attributeCount = reader.readUnsignedShort(u + 6);
+      u += 8;
+      for (int j = 0; j < attributeCount; j++) {
+        if (CODE.equals(reader.readUTF8(u, myBuffer))) {
+          int table = findLocalVariableTable(u + 6);
+          if (table != 0) {
+            myTables.put(key, table);
+          }
+        }
+        u += 6 + reader.readInt(u + 2);
+      }
+    }
+  }
+
+  /**
+   * Passes the entries of the local variable table of the method to the visitor, in the order
+   * {@link ClassReader} would visit them; labels and generic signatures are not reported.
+   */
+  void visitLocalVariables(@NotNull String name, @NotNull String desc, @NotNull MethodVisitor visitor) {
+    int table = myTables.get(name + desc);
+    if (table == 0) return;
+
+    int u = table + 2;
+    for (int i = myReader.readUnsignedShort(table); i > 0; i--) {
+      String varName = myReader.readUTF8(u + 4, myBuffer);
+      String varDesc = myReader.readUTF8(u + 6, myBuffer);
+      visitor.visitLocalVariable(varName, varDesc, null, null, null, myReader.readUnsignedShort(u + 8));
+      u += 10;
+    }
+  }
+
+  /**
+   * @param u offset of the Code attribute contents
+   * @return offset of its last LocalVariableTable attribute (as ClassReader uses the last one), or 0
+   */
+  private int findLocalVariableTable(int u) {
+    // skip max stack, max locals, code and exception table
+    u += 8 + myReader.readInt(u + 4);
+    u += 2 + 8 * myReader.readUnsignedShort(u);
+
+    int table = 0;
+    int attributeCount = myReader.readUnsignedShort(u);
+    u += 2;
+    for (int i = 0; i < attributeCount; i++) {
+      if (LOCAL_VARIABLE_TABLE.equals(myReader.readUTF8(u, myBuffer))) {
+        table = u + 6;
+      }
+      u += 6 + myReader.readInt(u + 2);
+    }
+    return table;
+  }
+
+  private int skipAttributes(int u) {
+    int count = myReader.readUnsignedShort(u);
+    u += 2;
+    for (int i = 0; i < count; i++) {
+      u += 6 + myReader.readInt(u + 2);
+    }
+    return u;
+  }
+}
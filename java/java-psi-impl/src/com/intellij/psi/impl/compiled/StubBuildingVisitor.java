@@ -66,6 +66,7 @@ public class StubBuildingVisitor<T> extends ClassVisitor {
   private final String myShortName;
   private PsiClassStub myResult;
   private PsiModifierListStub myModList;
+  private LocalVariableTableReader myLocalVariables;
 
   public StubBuildingVisitor(T classSource, InnerClassSourceStrategy<T> innersStrategy, StubElement parent, int access, String shortName) {
     super(Opcodes.ASM4);
@@ -80,6 +81,15 @@ public class StubBuildingVisitor<T> extends ClassVisitor {
     return myResult;
   }
 
+  /**
+   * Builds stubs for the class read by the reader without decoding method bodies:
+   * parameter names are taken from local variable tables located directly in the class file bytes.
+   */
+  public static <T> void accept(@NotNull ClassReader reader, @NotNull StubBuildingVisitor<T> visitor) {
+    visitor.myLocalVariables = new LocalVariableTableReader(reader);
+    reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+  }
+
   @Override
   public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
     String fqn = getClassName(name);
@@ -316,7 +326,7 @@ public class StubBuildingVisitor<T> extends ClassVisitor {
     if (reader == null) return;
 
     final StubBuildingVisitor<T> classVisitor = new StubBuildingVisitor<T>(innerSource, myInnersStrategy, myResult, access, innerName);
-    reader.accept(classVisitor, ClassReader.SKIP_FRAMES);
+    accept(reader, classVisitor);
   }
 
   private static boolean isCorrectName(String name) {
@@ -438,7 +448,12 @@ public class StubBuildingVisitor<T> extends ClassVisitor {
 
     final int localVarIgnoreCount = (access & Opcodes.ACC_STATIC) != 0 ? 0 : isConstructor && myResult.isEnum() ? 3 : 1;
     final int paramIgnoreCount = isConstructor && myResult.isEnum() ? 2 : isNonStaticInnerClassConstructor ? 1 : 0;
-    return new AnnotationParamCollectingVisitor(stub, modList, localVarIgnoreCount, paramIgnoreCount, paramCount, paramStubs);
+    final AnnotationParamCollectingVisitor visitor =
+      new AnnotationParamCollectingVisitor(stub, modList, localVarIgnoreCount, paramIgnoreCount, paramCount, paramStubs);
+    if (myLocalVariables != null) {
+      myLocalVariables.visitLocalVariables(name, desc, visitor);
+    }
+    return visitor;
   }
 
   private static String[] buildThrowsList(String[] exceptions, List<String> throwables, boolean parsedViaGenericSignature) {
@@ -0,0 +1,9 @@
+public class A {
+  public int f() {
+    return g();
+  }
+
+  private int g() {
+    return 1;
+  }
+}
@@ -0,0 +1,5 @@
+public class B {
+  void h(A a) {
+    a.f();
+  }
+}
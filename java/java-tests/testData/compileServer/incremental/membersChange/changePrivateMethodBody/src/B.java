@@ -0,0 +1,5 @@
+public class B {
+  int h(A a) {
+    return a.f();
+  }
+}
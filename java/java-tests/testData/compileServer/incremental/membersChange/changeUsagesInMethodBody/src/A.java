@@ -0,0 +1,5 @@
+public class A {
+  public int f() {
+    return C.x();
+  }
+}
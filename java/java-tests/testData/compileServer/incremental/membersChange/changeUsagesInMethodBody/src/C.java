@@ -0,0 +1,9 @@
+public class C {
+  public static int x() {
+    return 1;
+  }
+
+  public static int y() {
+    return 2;
+  }
+}
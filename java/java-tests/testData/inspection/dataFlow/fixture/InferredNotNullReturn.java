@@ -0,0 +1,33 @@
+class InferredNotNullReturn {
+  void test() {
+    String s = create();
+    if (<warning descr="Condition 's == null' is always 'false'">s == null</warning>) {}
+
+    Object o = overridable();
+    if (o == null) {}
+
+    Object n = sometimesNull();
+    if (n == null) {}
+  }
+
+  private String create() {
+    return flag() ? "a" : name();
+  }
+
+  private static String name() {
+    return "n" + InferredNotNullReturn.class.getName();
+  }
+
+  private boolean flag() {
+    return true;
+  }
+
+  private Object sometimesNull() {
+    if (flag()) return null;
+    return this;
+  }
+
+  Object overridable() {
+    return new Object();
+  }
+}
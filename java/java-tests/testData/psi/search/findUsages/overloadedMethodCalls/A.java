@@ -0,0 +1,5 @@
+public class A {
+  public void foo(int i) {}
+  public void foo(int i, int j) {}
+  public void bar(String... s) {}
+}
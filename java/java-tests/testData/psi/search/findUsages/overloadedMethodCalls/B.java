@@ -0,0 +1,6 @@
+class B {
+  void test(A a) {
+    a.foo(1, 2);
+    a.bar();
+  }
+}
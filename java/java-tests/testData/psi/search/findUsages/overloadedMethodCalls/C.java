@@ -0,0 +1,6 @@
+class C {
+  void test(A a) {
+    a.foo(Math.max(1, 2));
+    a.bar("a", "b");
+  }
+}
@@ -91,4 +91,29 @@ public class ControlFlowTest extends LightCodeInsightTestCase {
     ControlFlowUtil.findExitPointsAndStatements(flow, 0, flow.getSize() -1 , exitPoints, ControlFlowUtil.DEFAULT_EXIT_STATEMENTS_CLASSES);
     assertEquals(1, exitPoints.size());
   }
+
+  public void testCachedFlowIsReusedOnlyForSameParameters() throws Exception {
+    configureFromFileText("a.java", "public class Foo {\n" +
+                                    "  public void foo(boolean a, boolean b) {\n" +
+                                    "    if (a && b) {\n" +
+                                    "      return;\n" +
+                                    "    }\n" +
+                                    "  }\n" +
+                                    "}");
+    final PsiCodeBlock body = ((PsiJavaFile)getFile()).getClasses()[0].getMethods()[0].getBody();
+    ControlFlowFactory factory = ControlFlowFactory.getInstance(getProject());
+    ControlFlowPolicy policy = LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance();
+    long hits = factory.getCacheHits();
+    long misses = factory.getCacheMisses();
+
+    ControlFlow flow = factory.getControlFlow(body, policy, true, true);
+    assertSame(flow, factory.getControlFlow(body, policy, true, true));
+    assertEquals(hits + 1, factory.getCacheHits());
+    assertEquals(misses + 1, factory.getCacheMisses());
+
+    ControlFlow noShortCircuit = factory.getControlFlow(body, policy, false, true);
+    assertNotSame(flow, noShortCircuit);
+    assertEquals(misses + 2, factory.getCacheMisses());
+    assertFalse(flow.toString().equals(noShortCircuit.toString()));
+  }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.codeInspection.dataFlow;
+
+import com.intellij.codeInspection.dataFlow.value.DfaValue;
+import com.intellij.codeInspection.dataFlow.value.DfaValueFactory;
+import com.intellij.codeInspection.dataFlow.value.DfaVariableValue;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.JavaTokenType;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies of a memory state share its collections until one of them is modified, so modifying a copy mustn't be visible
+ * in the state it was created from and vice versa.
+ */
+public class DfaMemoryStateCopyTest extends LightCodeInsightFixtureTestCase {
+  private DfaValueFactory myFactory;
+  private DfaVariableValue myObject;
+  private DfaVariableValue myOther;
+  private DfaVariableValue myFlag;
+  private DfaVariableValue myUnknown;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFactory = new DfaValueFactory(false);
+    PsiParameter[] parameters = JavaPsiFacade.getElementFactory(getProject())
+      .createMethodFromText("void foo(Object o, Object p, boolean b, Object u) {}", null).getParameterList().getParameters();
+    myObject = myFactory.getVarFactory().createVariableValue(parameters[0], false);
+    myOther = myFactory.getVarFactory().createVariableValue(parameters[1], false);
+    myFlag = myFactory.getVarFactory().createVariableValue(parameters[2], false);
+    myUnknown = myFactory.getVarFactory().createVariableValue(parameters[3], false);
+  }
+
+  public void testModifyingCopyDoesNotChangeOriginal() {
+    DfaMemoryStateImpl original = createState();
+    Snapshot snapshot = new Snapshot(original);
+
+    DfaMemoryStateImpl copy = original.createCopy();
+    modify(copy);
+
+    snapshot.assertSameAs(original);
+    assertFalse(original.equals(copy));
+  }
+
+  public void testModifyingOriginalDoesNotChangeCopy() {
+    DfaMemoryStateImpl original = createState();
+    DfaMemoryStateImpl copy = original.createCopy();
+    Snapshot snapshot = new Snapshot(copy);
+
+    modify(original);
+
+    snapshot.assertSameAs(copy);
+    assertFalse(copy.equals(original));
+  }
+
+  public void testCopiesOfCopyAreIndependent() {
+    DfaMemoryStateImpl original = createState();
+    DfaMemoryStateImpl copy1 = original.createCopy();
+    DfaMemoryStateImpl copy2 = copy1.createCopy();
+    Snapshot snapshot = new Snapshot(original);
+
+    modify(copy1);
+
+    snapshot.assertSameAs(original);
+    snapshot.assertSameAs(copy2);
+  }
+
+  public void testCollectionViewsAreReadOnly() {
+    DfaMemoryStateImpl state = createState();
+    try {
+      state.getVariableStates().clear();
+      fail("Variable states can be modified");
+    }
+    catch (UnsupportedOperationException ignored) {
+    }
+    try {
+      state.getUnknownVariables().clear();
+      fail("Unknown variables can be modified");
+    }
+    catch (UnsupportedOperationException ignored) {
+    }
+  }
+
+  private DfaMemoryStateImpl createState() {
+    DfaMemoryStateImpl state = new DfaMemoryStateImpl(myFactory);
+    assertTrue(state.applyCondition(relation(myObject, myFactory.getConstFactory().getNull(), JavaTokenType.NE)));
+    assertTrue(state.applyCondition(relation(myObject, myOther, JavaTokenType.EQEQ)));
+    assertTrue(state.applyCondition(relation(myFlag, myFactory.getConstFactory().getTrue(), JavaTokenType.EQEQ)));
+    state.setVariableState(myObject, state.getVariableState(myObject).withNullability(Nullness.NOT_NULL));
+    state.doFlush(myUnknown, true);
+    assertFalse(state.getVariableStates().isEmpty());
+    assertFalse(state.getUnknownVariables().isEmpty());
+    return state;
+  }
+
+  private void modify(DfaMemoryStateImpl state) {
+    state.flushVariable(myOther);
+    state.flushVariable(myUnknown);
+    assertTrue(state.applyCondition(relation(myUnknown, myFactory.getConstFactory().getNull(), JavaTokenType.EQEQ)));
+    state.setVariableState(myFlag, state.getVariableState(myFlag).withNullability(Nullness.NULLABLE));
+    state.push(myObject);
+  }
+
+  private DfaValue relation(DfaValue left, DfaValue right, IElementType relation) {
+    return myFactory.getRelationFactory().createRelation(left, right, relation, false);
+  }
+
+  private static class Snapshot {
+    private final String myText;
+    private final int myHashCode;
+    private final Map<DfaVariableValue, DfaVariableState> myVariableStates;
+    private final Set<DfaVariableValue> myUnknownVariables;
+    private final DfaMemoryStateImpl myCopy;
+
+    private Snapshot(DfaMemoryStateImpl state) {
+      myText = state.toString();
+      myHashCode = state.hashCode();
+      myVariableStates = new HashMap<DfaVariableValue, DfaVariableState>(state.getVariableStates());
+      myUnknownVariables = new HashSet<DfaVariableValue>(state.getUnknownVariables());
+      myCopy = state.createCopy();
+    }
+
+    private void assertSameAs(DfaMemoryStateImpl state) {
+      assertEquals(myText, state.toString());
+      assertEquals(myHashCode, state.hashCode());
+      assertEquals(myVariableStates, state.getVariableStates());
+      assertEquals(myUnknownVariables, state.getUnknownVariables());
+      assertEquals(myCopy, state);
+    }
+  }
+}
@@ -5,16 +5,21 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.util.Factory;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.PsiManagerEx;
+import com.intellij.psi.impl.java.stubs.index.JavaFieldNameIndex;
+import com.intellij.psi.impl.java.stubs.index.JavaMethodNameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.testFramework.IdeaTestCase;
 import com.intellij.testFramework.PlatformTestUtil;
 import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexImpl;
 import com.intellij.util.indexing.MapIndexStorage;
 import com.intellij.util.indexing.StorageException;
 import com.intellij.util.io.*;
@@ -24,12 +29,16 @@ import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Eugene Zhuravlev
  *         Date: Dec 12, 2007
  */
 public class IndexTest extends IdeaTestCase {
+  private static final String FIELD_TEXT = "class Foo { int myValue; }";
+  private static final String METHOD_TEXT = "class Foo { void myValue() {} }";
   
   public void testUpdate() throws StorageException, IOException {
     final File storageFile = FileUtil.createTempFile("indextest", "storage");
@@ -212,5 +221,82 @@ public class IndexTest extends IdeaTestCase {
       }
     });
   }
-  
+
+  public void testStubMovedToAnotherStubIndex() throws IOException {
+    final VirtualFile vFile = createJavaFile("Foo.java", FIELD_TEXT);
+    final GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+    assertSize(1, JavaFieldNameIndex.getInstance().get("myValue", getProject(), scope));
+    assertEmpty(JavaMethodNameIndex.getInstance().get("myValue", getProject(), scope));
+
+    setText(vFile, METHOD_TEXT);
+    assertEmpty(JavaFieldNameIndex.getInstance().get("myValue", getProject(), scope));
+    assertSize(1, JavaMethodNameIndex.getInstance().get("myValue", getProject(), scope));
+
+    setText(vFile, FIELD_TEXT);
+    assertSize(1, JavaFieldNameIndex.getInstance().get("myValue", getProject(), scope));
+    assertEmpty(JavaMethodNameIndex.getInstance().get("myValue", getProject(), scope));
+  }
+
+  public void testConcurrentStubUpdatesOfSameFile() throws Exception {
+    final VirtualFile vFile = createJavaFile("Foo.java", METHOD_TEXT);
+    final FileBasedIndexImpl index = (FileBasedIndexImpl)FileBasedIndex.getInstance();
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < 4; i++) {
+      final boolean fieldFirst = i % 2 == 0;
+      futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 50; j++) {
+            final String text = (j % 2 == 0) == fieldFirst ? FIELD_TEXT : METHOD_TEXT;
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+              @Override
+              public void run() {
+                index.indexFileContent(getProject(), createContent(vFile, text));
+              }
+            });
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(60, TimeUnit.SECONDS);
+    }
+
+    // the last update wins, and the stub indices must agree with it whatever the order of the concurrent ones was
+    index.indexFileContent(getProject(), createContent(vFile, METHOD_TEXT));
+    final GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+    assertEmpty(JavaFieldNameIndex.getInstance().get("myValue", getProject(), scope));
+    assertSize(1, JavaMethodNameIndex.getInstance().get("myValue", getProject(), scope));
+  }
+
+  private VirtualFile createJavaFile(String name, String text) throws IOException {
+    VirtualFile dir = getVirtualFile(createTempDirectory());
+    PsiTestUtil.addSourceContentToRoots(myModule, dir);
+    VirtualFile vFile = createChildData(dir, name);
+    setText(vFile, text);
+    return vFile;
+  }
+
+  private static void setText(final VirtualFile vFile, final String text) {
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          VfsUtil.saveText(vFile, text);
+        }
+        catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  private static com.intellij.ide.caches.FileContent createContent(VirtualFile vFile, final String text) {
+    return new com.intellij.ide.caches.FileContent(vFile) {
+      @Override
+      public byte[] getBytes() {
+        return text.getBytes(CharsetToolkit.UTF8_CHARSET);
+      }
+    };
+  }
 }
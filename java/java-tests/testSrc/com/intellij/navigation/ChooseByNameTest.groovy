@@ -2,15 +2,19 @@ package com.intellij.navigation
 import com.intellij.ide.util.gotoByName.ChooseByNameBase
 import com.intellij.ide.util.gotoByName.ChooseByNameModel
 import com.intellij.ide.util.gotoByName.ChooseByNamePopup
+import com.intellij.ide.util.gotoByName.DefaultChooseByNameItemProvider
 import com.intellij.ide.util.gotoByName.GotoClassModel2
 import com.intellij.ide.util.gotoByName.GotoFileModel
 import com.intellij.ide.util.gotoByName.GotoSymbolModel2
 import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.application.ModalityState
+import com.intellij.openapi.progress.util.ProgressIndicatorBase
 import com.intellij.openapi.util.Disposer
 import com.intellij.psi.PsiElement
 import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase
 import com.intellij.util.Consumer
+import com.intellij.util.Processor
 import com.intellij.util.concurrency.Semaphore
 /**
  * @author peter
@@ -176,6 +180,20 @@ class Intf {
     assert getPopupElements(new GotoClassModel2(project), 'Bar:[2,3]') == [c]
   }
 
+  public void "test contributors based model filters names by pattern"() {
+    def match = myFixture.addClass("class FooBarBaz {}")
+    myFixture.addClass("class BazBarFoo {}")
+    myFixture.addClass("class Unrelated {}")
+
+    def popup = createPopup(new GotoClassModel2(project))
+    def elements = []
+    ApplicationManager.application.runReadAction({
+      new DefaultChooseByNameItemProvider(null).filterElements(popup, "fbb", false, new ProgressIndicatorBase(),
+                                                               { elements << it; true } as Processor<Object>)
+    } as Runnable)
+    assert elements == [match]
+  }
+
   private List<Object> getPopupElements(ChooseByNameModel model, String text) {
     return getPopupElements(createPopup(model), text)
   }
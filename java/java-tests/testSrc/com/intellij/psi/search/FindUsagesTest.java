@@ -103,6 +103,23 @@ public class FindUsagesTest extends PsiTestCase{
     assertEquals(1, ReferencesSearch.search(usedMethod).findAll().size());
   }
 
+  public void testOverloadedMethodCalls() throws Throwable {
+    PsiClass aClass = myJavaFacade.findClass("A", GlobalSearchScope.allScope(myProject));
+    PsiMethod[] foos = aClass.findMethodsByName("foo", false);
+    assertEquals(1, foos[0].getParameterList().getParametersCount());
+    assertSameElements(getReferringFileNames(foos[0]), "C.java", "D.java");
+    assertSameElements(getReferringFileNames(foos[1]), "B.java");
+    assertSameElements(getReferringFileNames(aClass.findMethodsByName("bar", false)[0]), "B.java", "C.java");
+  }
+
+  private List<String> getReferringFileNames(PsiMethod method) {
+    List<String> names = new ArrayList<String>();
+    for (PsiReference reference : MethodReferencesSearch.search(method, GlobalSearchScope.projectScope(myProject), true).findAll()) {
+      names.add(reference.getElement().getContainingFile().getName());
+    }
+    return names;
+  }
+
   private static void addReference(PsiReference ref, ArrayList<PsiFile> filesList, IntArrayList startsList, IntArrayList endsList) {
     PsiElement element = ref.getElement();
     filesList.add(element.getContainingFile());
@@ -53,6 +53,15 @@ public class InheritorsTest extends PsiTestCase{
     doTest("x.Test", "", true, "x.Goo", "x.Zoo");
   }
 
+  public void testCachedInheritors() throws Exception {
+    doTest("Base", null, true, "Derived");
+    doTest("Base", null, true, "Derived");
+
+    createFile("Derived2.java", "public class Derived2 extends Derived {}");
+    doTest("Base", null, true, "Derived", "Derived2");
+    doTest("Derived", null, false, "Derived2");
+  }
+
   private void doTest(String className, String packageScopeName, final boolean deep, String... inheritorNames) throws Exception {
     final PsiClass aClass = myJavaFacade.findClass(className);
     assertNotNull(aClass);
@@ -27,4 +27,6 @@ public interface GlobalOptions {
   String COMPILE_PARALLEL_MAX_THREADS_OPTION = "compile.parallel.max.threads";
   String REBUILD_ON_DEPENDENCY_CHANGE_OPTION = "rebuild.on.dependency.change";
   String LOG_DIR_OPTION = "log.dir";
+  String DAEMON_MODE_OPTION = "build.daemon.mode";
+  String BUILD_STATISTICS_REPORT_OPTION = "build.statistics.report";
 }
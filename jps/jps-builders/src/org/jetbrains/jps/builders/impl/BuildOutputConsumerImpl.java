@@ -20,6 +20,7 @@ import gnu.trove.THashSet;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.BuildTarget;
 import org.jetbrains.jps.builders.storage.SourceToOutputMapping;
+import org.jetbrains.jps.incremental.BuildStatistics;
 import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.messages.FileGeneratedEvent;
 
@@ -37,6 +38,7 @@ public class BuildOutputConsumerImpl implements BuildOutputConsumer {
   private FileGeneratedEvent myFileGeneratedEvent;
   private Collection<File> myOutputs;
   private THashSet<String> myRegisteredSources = new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY);
+  private long myOutputBytes;
 
   public BuildOutputConsumerImpl(BuildTarget<?> target, CompileContext context) {
     myTarget = target;
@@ -47,6 +49,12 @@ public class BuildOutputConsumerImpl implements BuildOutputConsumer {
 
   @Override
   public void registerOutputFile(final File outputFile, Collection<String> sourcePaths) throws IOException {
+    registerOutputFile(outputFile, sourcePaths, outputFile.length());
+  }
+
+  public void registerOutputFile(final File outputFile, Collection<String> sourcePaths, long outputLength) throws IOException {
+    myOutputBytes += outputLength;
+    BuildStatistics.outputWritten(myContext, myTarget, outputLength);
     final String outputFilePath = FileUtil.toSystemIndependentName(outputFile.getPath());
     for (File outputRoot : myOutputs) {
       String outputRootPath = FileUtil.toSystemIndependentName(outputRoot.getPath());
@@ -67,6 +75,10 @@ public class BuildOutputConsumerImpl implements BuildOutputConsumer {
     }
   }
 
+  public long getOutputBytes() {
+    return myOutputBytes;
+  }
+
   public void fireFileGeneratedEvent() {
     if (!myFileGeneratedEvent.getPaths().isEmpty()) {
       myContext.processMessage(myFileGeneratedEvent);
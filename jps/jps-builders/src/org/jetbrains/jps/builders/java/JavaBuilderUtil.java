@@ -93,10 +93,13 @@ public class JavaBuilderUtil {
           affectedBeforeDif.addAll(allAffectedFiles);
 
           final ModulesBasedFileFilter moduleBasedFilter = new ModulesBasedFileFilter(context, chunk);
+          final long analysisStart = System.currentTimeMillis();
           final boolean incremental = globalMappings.differentiateOnIncrementalMake(
             delta, removedPaths, filesToCompile, allCompiledFiles, allAffectedFiles, moduleBasedFilter,
             CONSTANT_SEARCH_SERVICE.get(context)
           );
+          BuildStatistics.dependenciesAnalyzed(context, chunk.getName(), System.currentTimeMillis() - analysisStart,
+                                               successfullyCompiled.size());
 
           if (LOG.isDebugEnabled()) {
             LOG.debug("Differentiate Results:");
@@ -118,6 +121,9 @@ public class JavaBuilderUtil {
 
             final String infoMessage = "Dependency analysis found " + newlyAffectedFiles.size() + " affected files";
             LOG.info(infoMessage);
+            if (delta.getAbiUnchangedClassesCount() > 0) {
+              LOG.info("Classes with unchanged ABI: " + delta.getAbiUnchangedClassesCount() + ", dependent classes not analyzed: " + delta.getSkippedDependentsCount());
+            }
             context.processMessage(new ProgressMessage(infoMessage));
 
             if (!newlyAffectedFiles.isEmpty()) {
@@ -45,6 +45,7 @@ public class ClassRepr extends Proto {
   private final int myOuterClassName;
   private final boolean myIsLocal;
   private final boolean myIsAnonymous;
+  private final long myAbiFingerprint;
 
   public Set<MethodRepr> getMethods() {
     return myMethods;
@@ -82,6 +83,10 @@ public class ClassRepr extends Proto {
     return myUsages.add(usage);
   }
 
+  public long getAbiFingerprint() {
+    return myAbiFingerprint;
+  }
+
   public boolean isInterface() {
     return (access & Opcodes.ACC_INTERFACE) != 0;
   }
@@ -99,6 +104,11 @@ public class ClassRepr extends Proto {
 
     public abstract boolean extendsAdded();
 
+    /**
+     * @return false if the declarations visible to other classes are the same, i.e. only method bodies have been changed
+     */
+    public abstract boolean abiChanged();
+
     public boolean no() {
       return base() == NONE &&
              interfaces().unchanged() &&
@@ -133,6 +143,11 @@ public class ClassRepr extends Proto {
         return "java/lang/Object".equals(pastSuperName);
       }
 
+      @Override
+      public boolean abiChanged() {
+        return myAbiFingerprint != pastClass.myAbiFingerprint;
+      }
+
       @Override
       public boolean packageLocalOn() {
         return diff.packageLocalOn();
@@ -232,7 +247,8 @@ public class ClassRepr extends Proto {
                    final int outerClassName,
                    final boolean localClassFlag,
                    final boolean anonymousClassFlag,
-                   final Set<UsageRepr.Usage> usages) {
+                   final Set<UsageRepr.Usage> usages,
+                   final long abiFingerprint) {
     super(a, sig, n);
     this.myContext = context;
     myFileName = fn;
@@ -246,6 +262,7 @@ public class ClassRepr extends Proto {
     this.myIsLocal = localClassFlag;
     this.myIsAnonymous = anonymousClassFlag;
     this.myUsages = usages;
+    this.myAbiFingerprint = abiFingerprint;
   }
 
   public ClassRepr(final DependencyContext context, final DataInput in) {
@@ -268,6 +285,7 @@ public class ClassRepr extends Proto {
       myIsLocal = (flags & LOCAL_MASK) != 0;
       myIsAnonymous = (flags & ANONYMOUS_MASK) != 0;
       myUsages =(Set<UsageRepr.Usage>)RW.read(UsageRepr.externalizer(context), new THashSet<UsageRepr.Usage>(), in);
+      myAbiFingerprint = in.readLong();
     }
     catch (IOException e) {
       throw new RuntimeException(e);
@@ -292,6 +310,7 @@ public class ClassRepr extends Proto {
       DataInputOutputUtil.writeINT(out, (myIsLocal ? LOCAL_MASK:0) | (myIsAnonymous ? ANONYMOUS_MASK : 0));
 
       RW.save(myUsages, UsageRepr.externalizer(myContext), out);
+      out.writeLong(myAbiFingerprint);
     }
     catch (IOException e) {
       throw new RuntimeException(e);
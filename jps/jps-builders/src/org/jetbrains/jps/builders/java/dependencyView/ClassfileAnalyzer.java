@@ -16,6 +16,7 @@
 package org.jetbrains.jps.builders.java.dependencyView;
 
 import com.intellij.openapi.util.Pair;
+import com.intellij.util.ArrayUtil;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TIntHashSet;
@@ -309,6 +310,7 @@ class ClassfileAnalyzer {
     private final Set<UsageRepr.Usage> myUsages = new THashSet<UsageRepr.Usage>();
     private final Set<ElemType> myTargets = EnumSet.noneOf(ElemType.class);
     private RetentionPolicy myRetentionPolicy = null;
+    private long myAbiFingerprint = 0L;
 
     final Map<TypeRepr.ClassType, TIntHashSet> myAnnotationArguments = new THashMap<TypeRepr.ClassType, TIntHashSet>();
     final Map<TypeRepr.ClassType, Set<ElemType>> myAnnotationTargets = new THashMap<TypeRepr.ClassType, Set<ElemType>>();
@@ -322,13 +324,26 @@ class ClassfileAnalyzer {
       return (access & Opcodes.ACC_PRIVATE) == 0;
     }
 
+    // declarations may be visited in any order, so item hashes are combined commutatively
+    private void addAbiItem(final String item) {
+      myAbiFingerprint += mix(hash(item));
+    }
+
+    private long getAbiFingerprint() {
+      long fingerprint = myAbiFingerprint;
+      fingerprint += mix(hash("retention " + myRetentionPolicy));
+      fingerprint += mix(hash("targets " + myTargets));
+      fingerprint += mix(hash("outer " + myOuterClassName.get() + " " + myLocalClassFlag.get() + " " + myAnonymousClassFlag.get()));
+      return fingerprint;
+    }
+
     public Pair<ClassRepr, Set<UsageRepr.Usage>> getResult() {
       final ClassRepr repr =
         myTakeIntoAccount ? new ClassRepr(
           myContext, myAccess, myFileName, myName, myContext.get(mySignature), myContext.get(mySuperClass), myInterfaces,
           myFields,
           myMethods, myTargets, myRetentionPolicy, myContext
-          .get(myOuterClassName.get()), myLocalClassFlag.get(), myAnonymousClassFlag.get(), myUsages) : null;
+          .get(myOuterClassName.get()), myLocalClassFlag.get(), myAnonymousClassFlag.get(), myUsages, getAbiFingerprint()) : null;
 
       if (repr != null) {
         repr.updateClassUsages(myContext, myUsages);
@@ -349,6 +364,8 @@ class ClassfileAnalyzer {
 
       myClassNameHolder.set(n);
 
+      addAbiItem("class " + (a & ~Opcodes.ACC_SUPER) + " " + n + " " + sig + " " + s);
+
       if (mySuperClass != null) {
         final int superclassName = myContext.get(mySuperClass);
         myUsages.add(UsageRepr.createClassUsage(myContext, superclassName));
@@ -360,6 +377,7 @@ class ClassfileAnalyzer {
           final int interfaceName = myContext.get(it);
           myUsages.add(UsageRepr.createClassUsage(myContext, interfaceName));
           //myUsages.add(UsageRepr.createClassExtendsUsage(myContext, interfaceName));
+          addAbiItem("implements " + it);
         }
       }
 
@@ -387,6 +405,8 @@ class ClassfileAnalyzer {
         return new AnnotationRetentionPolicyCrawler();
       }
 
+      addAbiItem("annotation " + desc + " " + visible);
+
       return new AnnotationCrawler(
         (TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(desc)),
         (myAccess & Opcodes.ACC_ANNOTATION) > 0 ? ElemType.ANNOTATION_TYPE : ElemType.TYPE
@@ -398,17 +418,19 @@ class ClassfileAnalyzer {
     }
 
     @Override
-    public FieldVisitor visitField(int access, String n, String desc, String signature, Object value) {
+    public FieldVisitor visitField(int access, final String n, String desc, String signature, Object value) {
       processSignature(signature);
 
       if ((access & Opcodes.ACC_SYNTHETIC) == 0) {
         myFields.add(new FieldRepr(myContext, access, myContext.get(n), myContext.get(desc), myContext.get(signature), value));
+        addAbiItem("field " + access + " " + n + " " + desc + " " + signature + " " + value);
       }
 
       return new FieldVisitor(Opcodes.ASM4) {
         @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-          return new AnnotationCrawler((TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(desc)), ElemType.FIELD);
+        public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+          addAbiItem("field annotation " + n + " " + annotationDesc + " " + visible);
+          return new AnnotationCrawler((TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(annotationDesc)), ElemType.FIELD);
         }
       };
     }
@@ -424,13 +446,17 @@ class ClassfileAnalyzer {
         public void visitEnd() {
           if ((access & Opcodes.ACC_SYNTHETIC) == 0 || (access & Opcodes.ACC_BRIDGE) > 0) {
             myMethods.add(new MethodRepr(myContext, access, myContext.get(n), myContext.get(signature), desc, exceptions, defaultValue.get()));
+            final String[] sortedExceptions = exceptions != null ? exceptions.clone() : ArrayUtil.EMPTY_STRING_ARRAY;
+            Arrays.sort(sortedExceptions);
+            addAbiItem("method " + access + " " + n + desc + " " + signature + " " + Arrays.toString(sortedExceptions) + " " + defaultValue.get());
           }
         }
 
         @Override
-        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+          addAbiItem("method annotation " + n + desc + " " + annotationDesc + " " + visible);
           return new AnnotationCrawler(
-            (TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(desc)), "<init>".equals(n) ? ElemType.CONSTRUCTOR : ElemType.METHOD
+            (TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(annotationDesc)), "<init>".equals(n) ? ElemType.CONSTRUCTOR : ElemType.METHOD
           );
         }
 
@@ -444,8 +470,9 @@ class ClassfileAnalyzer {
         }
 
         @Override
-        public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
-          return new AnnotationCrawler((TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(desc)), ElemType.PARAMETER);
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDesc, boolean visible) {
+          addAbiItem("parameter annotation " + n + desc + " " + parameter + " " + annotationDesc + " " + visible);
+          return new AnnotationCrawler((TypeRepr.ClassType)TypeRepr.getType(myContext, myContext.get(annotationDesc)), ElemType.PARAMETER);
         }
 
         @Override
@@ -579,6 +606,26 @@ class ClassfileAnalyzer {
     }
   }
 
+  // 64-bit FNV-1a
+  private static long hash(final String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+
+  // spreads bits so that the sum of item hashes does not cancel out on similar items
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
   public Pair<ClassRepr, Set<UsageRepr.Usage>> analyze(final int fileName, final ClassReader cr) {
     final ClassCrawler visitor = new ClassCrawler(fileName);
 
@@ -61,6 +61,8 @@ public class Mappings {
   private final boolean myDeltaIsTransient;
   private boolean myIsDifferentiated = false;
   private boolean myIsRebuild = false;
+  private int myAbiUnchangedClassesCount = 0;
+  private int mySkippedDependentsCount = 0;
 
   private final TIntHashSet myChangedClasses;
   private final THashSet<File> myChangedFiles;
@@ -1595,6 +1597,16 @@ public class Mappings {
             continue;
           }
 
+          if (!diff.abiChanged() && !changedClass.isAnnotation()) {
+            debug("ABI fingerprint is unchanged, skipping analysis of dependent classes");
+            myDelta.myAbiUnchangedClassesCount++;
+            final TIntHashSet depClasses = myClassToClassDependency.get(changedClass.name);
+            if (depClasses != null) {
+              myDelta.mySkippedDependentsCount += depClasses.size();
+            }
+            continue;
+          }
+
           myPresent.appendDependents(changedClass, state.myDependants);
 
           if (superClassChanged || interfacesChanged || signatureChanged) {
@@ -2304,6 +2316,20 @@ public class Mappings {
     return myIsRebuild;
   }
 
+  /**
+   * @return number of changed classes whose ABI fingerprint remained the same, so that their dependents were not analyzed
+   */
+  public int getAbiUnchangedClassesCount() {
+    return myAbiUnchangedClassesCount;
+  }
+
+  /**
+   * @return total number of dependent classes that were not analyzed because of unchanged ABI fingerprints
+   */
+  public int getSkippedDependentsCount() {
+    return mySkippedDependentsCount;
+  }
+
   private void addDeletedClass(final ClassRepr cr) {
     assert (myDeletedClasses != null);
 
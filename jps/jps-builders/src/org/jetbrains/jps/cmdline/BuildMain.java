@@ -41,6 +41,7 @@ import org.jetbrains.jps.service.SharedThreadPool;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
 /**
  * @author Eugene Zhuravlev
@@ -63,7 +64,14 @@ public class BuildMain {
   private static final int SESSION_ID_ARG = PORT_ARG + 1;
   private static final int SYSTEM_DIR_ARG = SESSION_ID_ARG + 1;
 
+  /**
+   * In daemon mode the process isn't terminated when a build session is finished: it keeps the state of the project in memory
+   * and reads ids of subsequent build sessions from the standard input. The process exits when the input is closed.
+   */
+  static final boolean DAEMON_MODE = Boolean.parseBoolean(System.getProperty(GlobalOptions.DAEMON_MODE_OPTION, "false"));
+
   private static NioEventLoopGroup ourEventLoopGroup;
+  private static final Semaphore ourSessionPermit = new Semaphore(1);
 
   public static void main(String[] args){
     System.out.println("Build process started. Classpath: " + System.getProperty("java.class.path"));
@@ -75,6 +83,14 @@ public class BuildMain {
     Utils.setSystemRoot(systemDir);
 
     ourEventLoopGroup = new NioEventLoopGroup(1, SharedThreadPool.getInstance());
+    ourSessionPermit.acquireUninterruptibly();
+    connect(host, port, sessionId);
+    if (DAEMON_MODE) {
+      runDaemon(host, port);
+    }
+  }
+
+  private static void connect(String host, int port, final UUID sessionId) {
     final Bootstrap bootstrap = new Bootstrap().group(ourEventLoopGroup).channel(NioSocketChannel.class).handler(new ChannelInitializer() {
       @Override
       protected void initChannel(Channel channel) throws Exception {
@@ -103,6 +119,38 @@ public class BuildMain {
     }
   }
 
+  private static void runDaemon(String host, int port) {
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+    try {
+      while (true) {
+        final String line = reader.readLine();
+        if (line == null) {
+          break;
+        }
+        if (StringUtil.isEmptyOrSpaces(line)) {
+          continue;
+        }
+        final UUID sessionId = UUID.fromString(line.trim());
+        // sessions are run one by one, the next one is started after the previous one has released the project state
+        ourSessionPermit.acquireUninterruptibly();
+        connect(host, port, sessionId);
+      }
+    }
+    catch (IOException e) {
+      LOG.info(e);
+    }
+    ourSessionPermit.acquireUninterruptibly();
+    ProjectDescriptorCache.getInstance().drop();
+    LOG.info("Build daemon stopped");
+    //noinspection finally
+    try {
+      ourEventLoopGroup.shutdownGracefully();
+    }
+    finally {
+      System.exit(0);
+    }
+  }
+
   private static class MyMessageHandler extends SimpleChannelInboundHandler<CmdlineRemoteProto.Message> {
     private final UUID mySessionId;
     private volatile BuildSession mySession;
@@ -134,7 +182,12 @@ public class BuildMain {
                   }
                   finally {
                     channel.close();
-                    System.exit(0);
+                    if (DAEMON_MODE) {
+                      ourSessionPermit.release();
+                    }
+                    else {
+                      System.exit(0);
+                    }
                   }
                 }
               });
@@ -185,18 +238,30 @@ public class BuildMain {
         super.channelInactive(context);
       }
       finally {
-        new Thread("Shutdown thread") {
-          @Override
-          public void run() {
-            //noinspection finally
-            try {
-              ourEventLoopGroup.shutdownGracefully();
-            }
-            finally {
-              System.exit(0);
-            }
+        if (DAEMON_MODE) {
+          final BuildSession session = mySession;
+          if (session != null) {
+            // the permit is released by the session itself when it is finished
+            session.cancel();
+          }
+          else {
+            ourSessionPermit.release();
           }
-        }.start();
+        }
+        else {
+          new Thread("Shutdown thread") {
+            @Override
+            public void run() {
+              //noinspection finally
+              try {
+                ourEventLoopGroup.shutdownGracefully();
+              }
+              finally {
+                System.exit(0);
+              }
+            }
+          }.start();
+        }
       }
     }
   }
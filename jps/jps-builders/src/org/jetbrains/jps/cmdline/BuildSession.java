@@ -62,6 +62,7 @@ final class BuildSession implements Runnable, CanceledStatus {
   private final Channel myChannel;
   private volatile boolean myCanceled = false;
   private final String myProjectPath;
+  private final String myGlobalOptionsPath;
   @Nullable
   private CmdlineRemoteProto.Message.ControllerMessage.FSEvent myInitialFSDelta;
   // state
@@ -84,7 +85,7 @@ final class BuildSession implements Runnable, CanceledStatus {
 
     final CmdlineRemoteProto.Message.ControllerMessage.GlobalSettings globals = params.getGlobalSettings();
     myProjectPath = FileUtil.toCanonicalPath(params.getProjectId());
-    String globalOptionsPath = FileUtil.toCanonicalPath(globals.getGlobalOptionsPath());
+    myGlobalOptionsPath = FileUtil.toCanonicalPath(globals.getGlobalOptionsPath());
     myBuildType = convertCompileType(params.getBuildType());
     myScopes = params.getScopeList();
     List<String> filePaths = params.getFilePathList();
@@ -93,7 +94,7 @@ final class BuildSession implements Runnable, CanceledStatus {
       builderParams.put(pair.getKey(), pair.getValue());
     }
     myInitialFSDelta = delta;
-    JpsModelLoaderImpl loader = new JpsModelLoaderImpl(myProjectPath, globalOptionsPath, null);
+    JpsModelLoaderImpl loader = new JpsModelLoaderImpl(myProjectPath, myGlobalOptionsPath, null);
     myForceModelLoading = Boolean.parseBoolean(builderParams.get(BuildParametersKeys.FORCE_MODEL_LOADING));
     myBuildRunner = new BuildRunner(loader, filePaths, builderParams);
   }
@@ -171,6 +172,7 @@ final class BuildSession implements Runnable, CanceledStatus {
   }
 
   private void runBuild(final MessageHandler msgHandler, CanceledStatus cs) throws Throwable{
+    final long sessionStart = System.currentTimeMillis();
     final File dataStorageRoot = Utils.getDataStorageRoot(myProjectPath);
     if (dataStorageRoot == null) {
       msgHandler.processMessage(new CompilerMessage("build", BuildMessage.Kind.ERROR, "Cannot determine build data storage root for project " + myProjectPath));
@@ -193,28 +195,54 @@ final class BuildSession implements Runnable, CanceledStatus {
       }
     }
 
-    final BuildFSState fsState = new BuildFSState(false);
+    final ProjectDescriptorCache descriptorCache = BuildMain.DAEMON_MODE ? ProjectDescriptorCache.getInstance() : null;
+    final ProjectDescriptor cachedDescriptor =
+      descriptorCache != null ? descriptorCache.acquire(myProjectPath, myGlobalOptionsPath, dataStorageRoot) : null;
+    BuildFSState fsState = cachedDescriptor != null ? cachedDescriptor.fsState : new BuildFSState(false);
+    boolean completed = false;
+    long configurationStamp = 0L;
     try {
-      final ProjectDescriptor pd = myBuildRunner.load(msgHandler, dataStorageRoot, fsState);
-      TimingLog.LOG.debug("Project descriptor loaded");
-      myProjectDescriptor = pd;
-      if (fsStateStream != null) {
-        try {
+      final ProjectDescriptor pd;
+      if (cachedDescriptor != null) {
+        pd = cachedDescriptor;
+        myProjectDescriptor = pd;
+        if (fsStateStream != null) {
+          // the state saved on disk by the previous session is up-to-date, so is the in-memory state
+          fsStateStream.close();
+          applyFSEvent(pd, myInitialFSDelta, false);
+          TimingLog.LOG.debug("FS Delta applied to the in-memory state");
+        }
+        else {
+          fsState.clearAll();
+        }
+      }
+      else {
+        pd = myBuildRunner.load(msgHandler, dataStorageRoot, fsState);
+        TimingLog.LOG.debug("Project descriptor loaded");
+        myProjectDescriptor = pd;
+        if (fsStateStream != null) {
           try {
-            fsState.load(fsStateStream, pd.getModel(), pd.getBuildRootIndex());
-            applyFSEvent(pd, myInitialFSDelta, false);
-            TimingLog.LOG.debug("FS Delta loaded");
+            try {
+              fsState.load(fsStateStream, pd.getModel(), pd.getBuildRootIndex());
+              applyFSEvent(pd, myInitialFSDelta, false);
+              TimingLog.LOG.debug("FS Delta loaded");
+            }
+            finally {
+              fsStateStream.close();
+            }
           }
-          finally {
-            fsStateStream.close();
+          catch (Throwable e) {
+            LOG.error(e);
+            fsState.clearAll();
           }
         }
-        catch (Throwable e) {
-          LOG.error(e);
-          fsState.clearAll();
+        if (descriptorCache != null) {
+          configurationStamp = ProjectDescriptorCache.computeConfigurationStamp(myProjectPath, myGlobalOptionsPath, pd);
         }
       }
       myLastEventOrdinal = myInitialFSDelta != null? myInitialFSDelta.getOrdinal() : 0L;
+      LOG.info("Build session started in " + (System.currentTimeMillis() - sessionStart) + " ms" +
+               (cachedDescriptor != null ? " (project state reused from the previous session)" : ""));
 
       // free memory
       myInitialFSDelta = null;
@@ -223,12 +251,29 @@ final class BuildSession implements Runnable, CanceledStatus {
 
       myBuildRunner.runBuild(pd, cs, myConstantSearch, msgHandler, myBuildType, myScopes, false);
       TimingLog.LOG.debug("Build finished");
+      completed = true;
     }
     finally {
+      if (descriptorCache != null) {
+        updateDescriptorCache(descriptorCache, dataStorageRoot, completed, cachedDescriptor != null, configurationStamp);
+      }
       saveData(fsState, dataStorageRoot);
     }
   }
 
+  private void updateDescriptorCache(ProjectDescriptorCache cache, File dataStorageRoot, boolean buildCompleted,
+                                     boolean descriptorReused, long configurationStamp) {
+    final ProjectDescriptor pd = myProjectDescriptor;
+    if (pd == null || !buildCompleted) {
+      cache.drop();
+      return;
+    }
+    pd.getTargetsState().save();
+    if (!descriptorReused) {
+      cache.put(myProjectPath, myGlobalOptionsPath, dataStorageRoot, pd, configurationStamp);
+    }
+  }
+
   private static boolean scopeContainsModulesOnlyForIncrementalMake(List<TargetTypeBuildScope> scopes) {
     TargetTypeRegistry typeRegistry = null;
     for (TargetTypeBuildScope scope : scopes) {
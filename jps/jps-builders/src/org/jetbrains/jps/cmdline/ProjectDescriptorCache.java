@@ -0,0 +1,142 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.cmdline;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.model.module.JpsModule;
+import org.jetbrains.jps.model.serialization.JpsGlobalLoader;
+import org.jetbrains.jps.model.serialization.JpsModelSerializationDataService;
+import org.jetbrains.jps.model.serialization.PathMacroUtil;
+
+import java.io.File;
+
+/**
+ * Keeps the project descriptor of the last build session alive in a build daemon process, so that the next session for the same
+ * project reuses the loaded model, opened storages and in-memory fs state instead of loading them again.
+ * The descriptor is dropped as soon as any of the project configuration files is changed.
+ */
+final class ProjectDescriptorCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.cmdline.ProjectDescriptorCache");
+  private static final String WORKSPACE_FILE_NAME = "workspace.xml";
+  private static final ProjectDescriptorCache ourInstance = new ProjectDescriptorCache();
+
+  private ProjectDescriptor myDescriptor;
+  private String myProjectPath;
+  private String myGlobalOptionsPath;
+  private File myDataStorageRoot;
+  private long myConfigurationStamp;
+
+  private ProjectDescriptorCache() {
+  }
+
+  static ProjectDescriptorCache getInstance() {
+    return ourInstance;
+  }
+
+  /**
+   * @return the cached descriptor with incremented usage counter or null if there is no up-to-date descriptor for the project
+   */
+  @Nullable
+  synchronized ProjectDescriptor acquire(@NotNull String projectPath, @NotNull String globalOptionsPath, @NotNull File dataStorageRoot) {
+    final ProjectDescriptor pd = myDescriptor;
+    if (pd == null) {
+      return null;
+    }
+    if (!projectPath.equals(myProjectPath) || !globalOptionsPath.equals(myGlobalOptionsPath) ||
+        !FileUtil.filesEqual(dataStorageRoot, myDataStorageRoot) || !dataStorageRoot.exists()) {
+      LOG.info("Cached project descriptor dropped: build session for another project or data storage root requested");
+      drop();
+      return null;
+    }
+    if (computeConfigurationStamp(projectPath, globalOptionsPath, pd) != myConfigurationStamp) {
+      LOG.info("Cached project descriptor dropped: project configuration has changed");
+      drop();
+      return null;
+    }
+    pd.incUsageCounter();
+    return pd;
+  }
+
+  synchronized void put(@NotNull String projectPath, @NotNull String globalOptionsPath, @NotNull File dataStorageRoot,
+                        @NotNull ProjectDescriptor pd, long configurationStamp) {
+    if (myDescriptor != pd) {
+      drop();
+      pd.incUsageCounter();
+      myDescriptor = pd;
+    }
+    myProjectPath = projectPath;
+    myGlobalOptionsPath = globalOptionsPath;
+    myDataStorageRoot = dataStorageRoot;
+    myConfigurationStamp = configurationStamp;
+  }
+
+  synchronized void drop() {
+    final ProjectDescriptor pd = myDescriptor;
+    myDescriptor = null;
+    myProjectPath = null;
+    myGlobalOptionsPath = null;
+    myDataStorageRoot = null;
+    if (pd != null) {
+      pd.release();
+    }
+  }
+
+  /**
+   * Combines timestamps and lengths of files the model of the project and global settings are loaded from. Workspace file is ignored
+   * because it is saved by the IDE very often and doesn't affect the build.
+   */
+  static long computeConfigurationStamp(@NotNull String projectPath, @NotNull String globalOptionsPath, @NotNull ProjectDescriptor pd) {
+    long stamp = 0L;
+    final File projectFile = new File(projectPath);
+    if (projectFile.isFile()) {
+      stamp = updateStamp(stamp, projectFile);
+    }
+    else {
+      final File dotIdea = new File(projectFile, PathMacroUtil.DIRECTORY_STORE_NAME);
+      stamp = updateStampRecursively(stamp, dotIdea.isDirectory() ? dotIdea : projectFile);
+    }
+    for (JpsModule module : pd.getProject().getModules()) {
+      final File baseDir = JpsModelSerializationDataService.getBaseDirectory(module);
+      if (baseDir != null) {
+        stamp = updateStamp(stamp, new File(baseDir, module.getName() + ".iml"));
+      }
+    }
+    for (String fileName : JpsGlobalLoader.getConfigFileNames()) {
+      stamp = updateStamp(stamp, new File(globalOptionsPath, fileName));
+    }
+    return stamp;
+  }
+
+  private static long updateStampRecursively(long stamp, File file) {
+    final File[] children = file.listFiles();
+    if (children == null) {
+      return WORKSPACE_FILE_NAME.equals(file.getName()) ? stamp : updateStamp(stamp, file);
+    }
+    for (File child : children) {
+      stamp = updateStampRecursively(stamp, child);
+    }
+    return stamp;
+  }
+
+  private static long updateStamp(long stamp, File file) {
+    stamp = 31 * stamp + FileUtil.pathHashCode(file.getPath());
+    stamp = 31 * stamp + file.lastModified();
+    return 31 * stamp + file.length();
+  }
+}
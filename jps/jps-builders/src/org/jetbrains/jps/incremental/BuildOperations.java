@@ -97,12 +97,29 @@ public class BuildOperations {
       };
       //noinspection unchecked
       BuildOutputConsumerImpl outputConsumer = new BuildOutputConsumerImpl(target, context);
+      final int dirtyFilesCount = countDirtyFiles(holder);
+      final long start = System.currentTimeMillis();
       ((TargetBuilder<R, T>)builder).build(target, holder, outputConsumer, context);
+      BuildStatistics.builderFinished(context, builder.getPresentableName(), System.currentTimeMillis() - start, dirtyFilesCount,
+                                      outputConsumer.getOutputBytes());
       outputConsumer.fireFileGeneratedEvent();
       context.checkCanceled();
     }
   }
 
+  private static <R extends BuildRootDescriptor, T extends BuildTarget<R>>
+  int countDirtyFiles(DirtyFilesHolder<R, T> holder) throws IOException {
+    final int[] count = {0};
+    holder.processDirtyFiles(new FileProcessor<R, T>() {
+      @Override
+      public boolean apply(T target, File file, R root) throws IOException {
+        count[0]++;
+        return true;
+      }
+    });
+    return count[0];
+  }
+
   public static void markTargetsUpToDate(CompileContext context, BuildTargetChunk chunk) throws IOException {
     final ProjectDescriptor pd = context.getProjectDescriptor();
     final BuildFSState fsState = pd.fsState;
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.builders.BuildTarget;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects timings and amount of work done by targets and builders during a single build.
+ * The report is sent to the IDE as a {@link org.jetbrains.jps.incremental.messages.CustomBuilderMessage} with {@link #BUILDER_ID} id
+ * and saved to the data storage root (or to the file specified by {@link GlobalOptions#BUILD_STATISTICS_REPORT_OPTION} property).
+ * Each line of the report consists of tab-separated columns: kind, name, invocations, time (ms), files processed, bytes written;
+ * for targets the number of produced output files is reported as files processed, for builders the number of dirty files they could
+ * compile (files of a target for target builders, files with compilable extensions for module-level builders).
+ */
+public final class BuildStatistics {
+  public static final String BUILDER_ID = "build.statistics";
+  public static final String REPORT_MESSAGE_TYPE = "report";
+  public static final String REPORT_FILE_NAME = "build-statistics.tsv";
+  private static final GlobalContextKey<BuildStatistics> KEY = GlobalContextKey.create("_build_statistics_");
+
+  private static final String TARGET_KIND = "target";
+  private static final String BUILDER_KIND = "builder";
+  private static final String STORAGE_KIND = "storage";
+  private static final String DEPENDENCY_ANALYSIS_KIND = "dependencies";
+
+  private final Map<String, Entry> myEntries = new LinkedHashMap<String, Entry>();
+  private final long myStartTime = System.currentTimeMillis();
+
+  static BuildStatistics install(CompileContext context) {
+    final BuildStatistics statistics = new BuildStatistics();
+    KEY.set(context, statistics);
+    return statistics;
+  }
+
+  @Nullable
+  public static BuildStatistics getInstance(@Nullable CompileContext context) {
+    return context != null ? KEY.get(context) : null;
+  }
+
+  /**
+   * Targets included into a circular dependency are built together, so each of them gets the time spent on the whole chunk
+   */
+  public static void targetBuilt(CompileContext context, BuildTarget<?> target, long elapsed) {
+    final BuildStatistics statistics = getInstance(context);
+    if (statistics != null) {
+      statistics.add(TARGET_KIND, target.getPresentableName(), 1, elapsed, 0, 0L);
+    }
+  }
+
+  public static void outputWritten(CompileContext context, BuildTarget<?> target, long bytes) {
+    final BuildStatistics statistics = getInstance(context);
+    if (statistics != null) {
+      statistics.add(TARGET_KIND, target.getPresentableName(), 0, 0L, 1, bytes);
+    }
+  }
+
+  public static void builderFinished(CompileContext context, String builderName, long elapsed, int files, long bytes) {
+    final BuildStatistics statistics = getInstance(context);
+    if (statistics != null) {
+      statistics.add(BUILDER_KIND, builderName, 1, elapsed, files, bytes);
+    }
+  }
+
+  public static void storageFlushed(CompileContext context, long elapsed) {
+    final BuildStatistics statistics = getInstance(context);
+    if (statistics != null) {
+      statistics.add(STORAGE_KIND, "flush", 1, elapsed, 0, 0L);
+    }
+  }
+
+  public static void dependenciesAnalyzed(CompileContext context, String chunkName, long elapsed, int files) {
+    final BuildStatistics statistics = getInstance(context);
+    if (statistics != null) {
+      statistics.add(DEPENDENCY_ANALYSIS_KIND, chunkName, 1, elapsed, files, 0L);
+    }
+  }
+
+  private synchronized void add(String kind, String name, int invocations, long elapsed, int files, long bytes) {
+    final String key = kind + "\t" + name;
+    Entry entry = myEntries.get(key);
+    if (entry == null) {
+      entry = new Entry(kind, name);
+      myEntries.put(key, entry);
+    }
+    entry.invocations += invocations;
+    entry.time += elapsed;
+    entry.files += files;
+    entry.bytes += bytes;
+  }
+
+  @NotNull
+  public synchronized String createReport() {
+    final List<Entry> entries = new ArrayList<Entry>(myEntries.values());
+    final Entry total = new Entry("total", "build");
+    total.invocations = 1;
+    total.time = System.currentTimeMillis() - myStartTime;
+    entries.add(total);
+
+    final StringBuilder builder = new StringBuilder();
+    for (Entry entry : entries) {
+      builder.append(entry.kind).append('\t').append(entry.name.replace('\t', ' ')).append('\t').append(entry.invocations).append('\t')
+        .append(entry.time).append('\t').append(entry.files).append('\t').append(entry.bytes).append('\n');
+    }
+    return builder.toString();
+  }
+
+  static void saveReport(@NotNull File dataStorageRoot, @NotNull String report) throws IOException {
+    final String customPath = System.getProperty(GlobalOptions.BUILD_STATISTICS_REPORT_OPTION);
+    final File reportFile = customPath != null ? new File(customPath) : new File(dataStorageRoot, REPORT_FILE_NAME);
+    FileUtil.writeToFile(reportFile, report);
+  }
+
+  private static class Entry {
+    final String kind;
+    final String name;
+    int invocations;
+    long time;
+    int files;
+    long bytes;
+
+    Entry(String kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+  }
+}
@@ -75,17 +75,30 @@ class ChunkBuildOutputConsumerImpl implements ModuleLevelBuilder.OutputConsumer
       }
       classes.add(compiled);
     }
-    registerOutputFile(target, compiled.getOutputFile(), Collections.<String>singleton(compiled.getSourceFile().getPath()));
+    getTargetConsumer(target).registerOutputFile(compiled.getOutputFile(), Collections.<String>singleton(compiled.getSourceFile().getPath()),
+                                                 compiled.getContent().getLength());
   }
 
   @Override
   public void registerOutputFile(BuildTarget<?> target, File outputFile, Collection<String> sourcePaths) throws IOException {
+    getTargetConsumer(target).registerOutputFile(outputFile, sourcePaths);
+  }
+
+  private BuildOutputConsumerImpl getTargetConsumer(BuildTarget<?> target) {
     BuildOutputConsumerImpl consumer = myTarget2Consumer.get(target);
     if (consumer == null) {
       consumer = new BuildOutputConsumerImpl(target, myContext);
       myTarget2Consumer.put(target, consumer);
     }
-    consumer.registerOutputFile(outputFile, sourcePaths);
+    return consumer;
+  }
+
+  public long getOutputBytes() {
+    long bytes = 0;
+    for (BuildOutputConsumerImpl consumer : myTarget2Consumer.values()) {
+      bytes += consumer.getOutputBytes();
+    }
+    return bytes;
   }
 
   public void fireFileGeneratedEvents() {
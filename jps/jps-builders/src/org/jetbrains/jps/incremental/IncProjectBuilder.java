@@ -20,6 +20,7 @@ import com.intellij.openapi.util.LowMemoryWatcher;
 import com.intellij.openapi.util.UserDataHolder;
 import com.intellij.openapi.util.UserDataHolderBase;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.SmartList;
 import com.intellij.util.concurrency.BoundedTaskExecutor;
@@ -30,6 +31,7 @@ import com.intellij.util.io.MappingFailedException;
 import com.intellij.util.io.PersistentEnumerator;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.ModuleChunk;
@@ -47,6 +49,7 @@ import org.jetbrains.jps.builders.logging.ProjectBuilderLogger;
 import org.jetbrains.jps.builders.storage.SourceToOutputMapping;
 import org.jetbrains.jps.cmdline.BuildRunner;
 import org.jetbrains.jps.cmdline.ProjectDescriptor;
+import org.jetbrains.jps.incremental.artifacts.ArtifactBuildTarget;
 import org.jetbrains.jps.incremental.fs.BuildFSState;
 import org.jetbrains.jps.incremental.java.ExternalJavacDescriptor;
 import org.jetbrains.jps.incremental.messages.*;
@@ -225,6 +228,7 @@ public class IncProjectBuilder {
     finally {
       memWatcher.stop();
       flushContext(context);
+      reportStatistics(context);
       // wait for async tasks
       final CanceledStatus status = context == null? CanceledStatus.NULL : context.getCancelStatus();
       synchronized (myAsyncTasks) {
@@ -294,9 +298,11 @@ public class IncProjectBuilder {
 
   private static void flushContext(CompileContext context) {
     if (context != null) {
+      final long start = System.currentTimeMillis();
       final ProjectDescriptor pd = context.getProjectDescriptor();
       pd.timestamps.getStorage().force();
       pd.dataManager.flush(false);
+      BuildStatistics.storageFlushed(context, System.currentTimeMillis() - start);
     }
     final ExternalJavacDescriptor descriptor = ExternalJavacDescriptor.KEY.get(context);
     if (descriptor != null) {
@@ -312,8 +318,27 @@ public class IncProjectBuilder {
     }
   }
 
+  private void reportStatistics(@Nullable CompileContext context) {
+    final BuildStatistics statistics = BuildStatistics.getInstance(context);
+    if (statistics == null) {
+      return;
+    }
+    final String report = statistics.createReport();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Build statistics:\n" + report);
+    }
+    myMessageDispatcher.processMessage(new CustomBuilderMessage(BuildStatistics.BUILDER_ID, BuildStatistics.REPORT_MESSAGE_TYPE, report));
+    try {
+      BuildStatistics.saveReport(myProjectDescriptor.dataManager.getDataPaths().getDataStorageRoot(), report);
+    }
+    catch (IOException e) {
+      LOG.info("Failed to save build statistics report", e);
+    }
+  }
+
   private void runBuild(final CompileContextImpl context, boolean forceCleanCaches) throws ProjectBuildException {
     context.setDone(0.0f);
+    BuildStatistics.install(context);
 
     LOG.info("Building project; isRebuild:" +
              context.isProjectRebuild() +
@@ -810,9 +835,40 @@ public class IncProjectBuilder {
     return true;
   }
 
+  private static TObjectIntHashMap<String> countDirtyFilesByExtension(DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget> dirtyFilesHolder)
+    throws IOException {
+    final TObjectIntHashMap<String> counts = new TObjectIntHashMap<String>();
+    dirtyFilesHolder.processDirtyFiles(new FileProcessor<JavaSourceRootDescriptor, ModuleBuildTarget>() {
+      @Override
+      public boolean apply(ModuleBuildTarget target, File file, JavaSourceRootDescriptor root) throws IOException {
+        final String extension = FileUtilRt.getExtension(file.getName());
+        if (!counts.increment(extension)) {
+          counts.put(extension, 1);
+        }
+        return true;
+      }
+    });
+    return counts;
+  }
+
+  /**
+   * Only files with extensions the builder declares as compilable are charged to it, builders which don't declare them get 0
+   */
+  private static int countBuilderFiles(TObjectIntHashMap<String> dirtyFilesByExtension, ModuleLevelBuilder builder) {
+    final List<String> extensions = builder.getCompilableFileExtensions();
+    int count = 0;
+    if (extensions != null) {
+      for (String extension : extensions) {
+        count += dirtyFilesByExtension.get(extension);
+      }
+    }
+    return count;
+  }
+
   private static <T extends BuildRootDescriptor>
   void cleanOldOutputs(final CompileContext context, final BuildTarget<T> target) throws ProjectBuildException, IOException {
-    if (!context.getScope().isBuildForced(target)) {
+    // the artifact builder cleans the outputs itself, after it has saved the archives whose entries may be reused
+    if (!context.getScope().isBuildForced(target) && !(target instanceof ArtifactBuildTarget)) {
       BuildOperations.cleanOutputsCorrespondingToChangedFiles(context, new DirtyFilesHolderBase<T, BuildTarget<T>>(context) {
         public void processDirtyFiles(@NotNull FileProcessor<T, BuildTarget<T>> processor) throws IOException {
           context.getProjectDescriptor().fsState.processFilesToRecompile(context, target, processor);
@@ -830,6 +886,7 @@ public class IncProjectBuilder {
 
   private void buildTargetsChunk(CompileContext context, final BuildTargetChunk chunk) throws ProjectBuildException {
     boolean doneSomething;
+    final long start = System.currentTimeMillis();
     try {
       sendBuildingTargetMessages(chunk.getTargets(), BuildingTargetProgressMessage.Event.STARTED);
       Utils.ERRORS_DETECTED_KEY.set(context, Boolean.FALSE);
@@ -888,6 +945,10 @@ public class IncProjectBuilder {
         Utils.REMOVED_SOURCES_KEY.set(context, null);
       }
       sendBuildingTargetMessages(chunk.getTargets(), BuildingTargetProgressMessage.Event.FINISHED);
+      final long elapsed = System.currentTimeMillis() - start;
+      for (BuildTarget<?> target : chunk.getTargets()) {
+        BuildStatistics.targetBuilt(context, target, elapsed);
+      }
     }
   }
 
@@ -1070,6 +1131,8 @@ public class IncProjectBuilder {
           }
         }
 
+        final TObjectIntHashMap<String> dirtyFilesByExtension = countDirtyFilesByExtension(dirtyFilesHolder);
+
         BUILDER_CATEGORY_LOOP:
         for (BuilderCategory category : BuilderCategory.values()) {
           final List<ModuleLevelBuilder> builders = myBuilderRegistry.getBuilders(category);
@@ -1083,7 +1146,12 @@ public class IncProjectBuilder {
 
           for (ModuleLevelBuilder builder : builders) {
             processDeletedPaths(context, chunk.getTargets());
+            final long builderStart = System.currentTimeMillis();
+            final long bytesBefore = outputConsumer.getOutputBytes();
             final ModuleLevelBuilder.ExitCode buildResult = builder.build(context, chunk, dirtyFilesHolder, outputConsumer);
+            BuildStatistics.builderFinished(context, builder.getPresentableName(), System.currentTimeMillis() - builderStart,
+                                            countBuilderFiles(dirtyFilesByExtension, builder),
+                                            outputConsumer.getOutputBytes() - bytesBefore);
 
             doneSomething |= (buildResult != ModuleLevelBuilder.ExitCode.NOTHING_DONE);
 
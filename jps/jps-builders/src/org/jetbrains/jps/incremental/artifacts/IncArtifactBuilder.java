@@ -19,6 +19,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.MultiMap;
+import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
@@ -129,56 +130,118 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
         }
       });
 
-      BuildOperations.cleanOutputsCorrespondingToChangedFiles(context, holder);
-      for (String outputPath : changedOutputPaths) {
-        outSrcMapping.remove(outputPath);
+      final Map<String, File> previousArchives = preservePreviousArchives(filesToDelete.keySet(), target, context);
+      try {
+        buildArtifact(target, context, outputConsumer, srcOutMapping, outSrcMapping, filesToProcess, filesToDelete, changedOutputPaths,
+                      holder, previousArchives);
       }
-      if (filesToDelete.isEmpty() && filesToProcess.isEmpty()) {
-        return;
+      finally {
+        for (File file : previousArchives.values()) {
+          FileUtil.delete(file);
+        }
       }
+    }
+    catch (IOException e) {
+      throw new ProjectBuildException(e);
+    }
+  }
 
-      deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping);
-      context.checkCanceled();
+  private static void buildArtifact(ArtifactBuildTarget target,
+                                    CompileContext context,
+                                    BuildOutputConsumer outputConsumer,
+                                    SourceToOutputMapping srcOutMapping,
+                                    ArtifactOutputToSourceMapping outSrcMapping,
+                                    TIntObjectHashMap<Set<String>> filesToProcess,
+                                    MultiMap<String, String> filesToDelete,
+                                    Set<String> changedOutputPaths,
+                                    DirtyFilesHolder<ArtifactRootDescriptor, ArtifactBuildTarget> holder,
+                                    Map<String, File> previousArchives) throws IOException, ProjectBuildException {
+    final ProjectDescriptor pd = context.getProjectDescriptor();
+    final JpsArtifact artifact = target.getArtifact();
+    BuildOperations.cleanOutputsCorrespondingToChangedFiles(context, holder);
+    for (String outputPath : changedOutputPaths) {
+      outSrcMapping.remove(outputPath);
+    }
+    if (filesToDelete.isEmpty() && filesToProcess.isEmpty()) {
+      return;
+    }
 
-      context.processMessage(new ProgressMessage("Building artifact '" + artifact.getName() + "': copying files..."));
-      final Set<JarInfo> changedJars = new THashSet<JarInfo>();
-      for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
-        context.checkCanceled();
-        final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
-        if (sourcePaths == null) continue;
+    deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping);
+    context.checkCanceled();
 
-        for (String sourcePath : sourcePaths) {
-          if (!descriptor.getFilter().shouldBeCopied(sourcePath, pd)) {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("File " + sourcePath + " will be skipped because it isn't accepted by filter");
-            }
-            continue;
-          }
-          DestinationInfo destination = descriptor.getDestinationInfo();
-          if (destination instanceof ExplodedDestinationInfo) {
-            descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
-                                    outputConsumer, outSrcMapping);
+    context.processMessage(new ProgressMessage("Building artifact '" + artifact.getName() + "': copying files..."));
+    final Set<JarInfo> changedJars = new THashSet<JarInfo>();
+    for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
+      context.checkCanceled();
+      final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
+      if (sourcePaths == null) continue;
+
+      for (String sourcePath : sourcePaths) {
+        if (!descriptor.getFilter().shouldBeCopied(sourcePath, pd)) {
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("File " + sourcePath + " will be skipped because it isn't accepted by filter");
           }
-          else {
-            List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
-            if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
-              outSrcMapping.update(destination.getOutputFilePath(),
-                                   Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
-              changedJars.add(((JarDestinationInfo)destination).getJarInfo());
-            }
+          continue;
+        }
+        DestinationInfo destination = descriptor.getDestinationInfo();
+        if (destination instanceof ExplodedDestinationInfo) {
+          descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
+                                  outputConsumer, outSrcMapping);
+        }
+        else {
+          List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
+          if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
+            outSrcMapping.update(destination.getOutputFilePath(),
+                                 Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
+            changedJars.add(((JarDestinationInfo)destination).getJarInfo());
           }
         }
       }
-      context.checkCanceled();
+    }
+    context.checkCanceled();
+
+    JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping, previousArchives);
+    builder.buildJars();
+    runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.FINISHING_BUILD);
+    runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.POST_PROCESSING);
+  }
 
-      JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping);
-      builder.buildJars();
-      runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.FINISHING_BUILD);
-      runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.POST_PROCESSING);
+  /**
+   * Copies archives which are going to be rebuilt out of the artifact output before they are deleted,
+   * so that {@link JarsBuilder} may reuse their unchanged entries.
+   * @return output path of an archive -> its temporary copy
+   */
+  private static Map<String, File> preservePreviousArchives(Collection<String> outdatedPaths, ArtifactBuildTarget target,
+                                                            CompileContext context) {
+    final Set<String> archivePaths = new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY);
+    for (ArtifactRootDescriptor descriptor : context.getProjectDescriptor().getBuildRootIndex().getTargetRoots(target, context)) {
+      final DestinationInfo destination = descriptor.getDestinationInfo();
+      if (destination instanceof JarDestinationInfo) {
+        archivePaths.add(FileUtil.toSystemIndependentName(destination.getOutputFilePath()));
+      }
     }
-    catch (IOException e) {
-      throw new ProjectBuildException(e);
+
+    final Map<String, File> previousArchives = new THashMap<String, File>(FileUtil.PATH_HASHING_STRATEGY);
+    for (String outputPath : outdatedPaths) {
+      final String path = FileUtil.toSystemIndependentName(outputPath);
+      if (!archivePaths.contains(path) || previousArchives.containsKey(path)) continue;
+
+      final File archive = new File(FileUtil.toSystemDependentName(path));
+      if (!archive.isFile()) continue;
+      File copy = null;
+      try {
+        copy = FileUtil.createTempFile("previousArchive", "tmp");
+        FileUtil.copy(archive, copy);
+        previousArchives.put(path, copy);
+      }
+      catch (IOException e) {
+        LOG.debug(e);
+        if (copy != null) {
+          FileUtil.delete(copy);
+        }
+      }
     }
+    return previousArchives;
   }
 
   private static void runArtifactTasks(CompileContext context, JpsArtifact artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase phase)
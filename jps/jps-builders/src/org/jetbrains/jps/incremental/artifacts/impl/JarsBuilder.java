@@ -19,6 +19,7 @@ package org.jetbrains.jps.incremental.artifacts.impl;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 import com.intellij.openapi.util.io.FileSystemUtil;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
@@ -26,7 +27,8 @@ import com.intellij.util.ArrayUtil;
 import com.intellij.util.graph.CachingSemiGraph;
 import com.intellij.util.graph.DFSTBuilder;
 import com.intellij.util.graph.GraphGenerator;
-import com.intellij.util.io.ZipUtil;
+import com.intellij.util.io.zip.JBZipEntry;
+import com.intellij.util.io.zip.JBZipFile;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -45,10 +47,9 @@ import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import java.io.*;
 import java.util.*;
 import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * @author nik
@@ -60,11 +61,21 @@ public class JarsBuilder {
   private Map<JarInfo, File> myBuiltJars;
   private final BuildOutputConsumer myOutputConsumer;
   private final ArtifactOutputToSourceMapping myOutSrcMapping;
+  private final Map<String, File> myPreviousArchives;
 
   public JarsBuilder(Set<JarInfo> jarsToBuild, CompileContext context, BuildOutputConsumer outputConsumer,
                      ArtifactOutputToSourceMapping outSrcMapping) {
+    this(jarsToBuild, context, outputConsumer, outSrcMapping, Collections.<String, File>emptyMap());
+  }
+
+  /**
+   * @param previousArchives output path -> copy of the archive built by the previous make, unchanged entries are reused from it
+   */
+  public JarsBuilder(Set<JarInfo> jarsToBuild, CompileContext context, BuildOutputConsumer outputConsumer,
+                     ArtifactOutputToSourceMapping outSrcMapping, Map<String, File> previousArchives) {
     myOutputConsumer = outputConsumer;
     myOutSrcMapping = outSrcMapping;
+    myPreviousArchives = previousArchives;
     DependentJarsEvaluator evaluator = new DependentJarsEvaluator();
     for (JarInfo jarInfo : jarsToBuild) {
       evaluator.addJarWithDependencies(jarInfo);
@@ -149,12 +160,12 @@ public class JarsBuilder {
     final String targetJarPath = jar.getDestination().getOutputFilePath();
     List<String> packedFilePaths = new ArrayList<String>();
     Manifest manifest = loadManifest(jar, packedFilePaths);
-    final JarOutputStream jarOutputStream = createJarOutputStream(jarFile, manifest);
+    final JarWriter jarWriter = new JarWriter(jarFile, getPreviousJarFile(jar));
 
     final THashSet<String> writtenPaths = new THashSet<String>();
     try {
       if (manifest != null) {
-        writtenPaths.add(JarFile.MANIFEST_NAME);
+        jarWriter.writeManifest(manifest, writtenPaths);
       }
 
       for (Pair<String, Object> pair : jar.getContent()) {
@@ -163,21 +174,21 @@ public class JarsBuilder {
           final ArtifactRootDescriptor descriptor = (ArtifactRootDescriptor)pair.getSecond();
           final int rootIndex = descriptor.getRootIndex();
           if (descriptor instanceof FileBasedArtifactRootDescriptor) {
-            addFileToJar(jarOutputStream, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, rootIndex);
           }
           else {
             final String filePath = FileUtil.toSystemIndependentName(descriptor.getRootFile().getAbsolutePath());
             packedFilePaths.add(filePath);
             myOutSrcMapping.appendData(targetJarPath, rootIndex, filePath);
-            extractFileAndAddToJar(jarOutputStream, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
+            extractFileAndAddToJar(jarWriter, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
           }
         }
         else {
           JarInfo nestedJar = (JarInfo)pair.getSecond();
           File nestedJarFile = myBuiltJars.get(nestedJar);
           if (nestedJarFile != null) {
-            addFileToJar(jarOutputStream, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, -1);
           }
           else {
@@ -195,13 +206,17 @@ public class JarsBuilder {
       if (logger.isEnabled()) {
         logger.logCompiledPaths(packedFilePaths, IncArtifactBuilder.BUILDER_NAME, "Packing files:");
       }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug(jar.getPresentableDestination() + ": " + jarWriter.myReusedEntriesCount + " entries reused from the previous archive, " +
+                  jarWriter.myPackedEntriesCount + " entries packed");
+      }
       myOutputConsumer.registerOutputFile(new File(targetJarPath), packedFilePaths);
 
     }
     finally {
       if (writtenPaths.isEmpty()) {
         try {
-          jarOutputStream.close();
+          jarWriter.close();
         }
         catch (IOException ignored) {
         }
@@ -209,17 +224,24 @@ public class JarsBuilder {
         myBuiltJars.remove(jar);
       }
       else {
-        jarOutputStream.close();
+        jarWriter.close();
       }
     }
   }
 
-  private static JarOutputStream createJarOutputStream(File jarFile, @Nullable Manifest manifest) throws IOException {
-    final BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(jarFile));
-    if (manifest != null) {
-      return new JarOutputStream(outputStream, manifest);
+  /**
+   * @return the archive built by the previous make if it is going to be replaced by the archive being built
+   */
+  @Nullable
+  private File getPreviousJarFile(JarInfo jar) {
+    final DestinationInfo destination = jar.getDestination();
+    if (destination instanceof ExplodedDestinationInfo) {
+      final File file = myPreviousArchives.get(FileUtil.toSystemIndependentName(destination.getOutputPath()));
+      if (file != null && file.isFile() && file.length() > 0) {
+        return file;
+      }
     }
-    return new JarOutputStream(outputStream);
+    return null;
   }
 
   @Nullable
@@ -278,48 +300,40 @@ public class JarsBuilder {
     }
   }
 
-  private static void extractFileAndAddToJar(final JarOutputStream jarOutputStream, final JarBasedArtifactRootDescriptor root,
+  private static void extractFileAndAddToJar(final JarWriter jarWriter, final JarBasedArtifactRootDescriptor root,
                                              final String relativeOutputPath, final Set<String> writtenPaths)
     throws IOException {
     final long timestamp = FileSystemUtil.lastModified(root.getRootFile());
     root.processEntries(new JarBasedArtifactRootDescriptor.EntryProcessor() {
       @Override
       public void process(@Nullable InputStream inputStream, @NotNull String relativePath, ZipEntry entry) throws IOException {
-        String pathInJar = addParentDirectories(jarOutputStream, writtenPaths, JpsArtifactPathUtil
+        String pathInJar = addParentDirectories(jarWriter, writtenPaths, JpsArtifactPathUtil
           .appendToPath(relativeOutputPath, relativePath));
 
         if (inputStream == null) {
-          addDirectoryEntry(jarOutputStream, pathInJar + "/", writtenPaths);
+          addDirectoryEntry(jarWriter, pathInJar + "/", writtenPaths);
         }
         else if (writtenPaths.add(pathInJar)) {
-          ZipEntry newEntry = new ZipEntry(pathInJar);
-          newEntry.setTime(timestamp);
-          if (entry.getMethod() == ZipEntry.STORED) {
-            newEntry.setMethod(ZipEntry.STORED);
-            newEntry.setSize(entry.getSize());
-            newEntry.setCrc(entry.getCrc());
-          }
-          jarOutputStream.putNextEntry(newEntry);
-          FileUtil.copy(inputStream, jarOutputStream);
-          jarOutputStream.closeEntry();
+          final int method = entry.getMethod() == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+          jarWriter.addEntry(pathInJar, inputStream, timestamp, method);
         }
       }
     });
 
   }
 
-  private void addFileToJar(final @NotNull JarOutputStream jarOutputStream, final @NotNull File jarFile, @NotNull File file,
+  private void addFileToJar(final @NotNull JarWriter jarWriter, final @NotNull File jarFile, @NotNull File file,
                             SourceFileFilter filter, @NotNull String relativePath, String targetJarPath,
                             final @NotNull Set<String> writtenPaths, List<String> packedFilePaths, final int rootIndex) throws IOException {
     if (!file.exists() || FileUtil.isAncestor(file, jarFile, false)) {
       return;
     }
 
-    relativePath = addParentDirectories(jarOutputStream, writtenPaths, relativePath);
-    addFileOrDirRecursively(jarOutputStream, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
+    relativePath = addParentDirectories(jarWriter, writtenPaths, relativePath);
+    addFileOrDirRecursively(jarWriter, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
   }
 
-  private void addFileOrDirRecursively(@NotNull ZipOutputStream jarOutputStream,
+  private void addFileOrDirRecursively(@NotNull JarWriter jarWriter,
                                        @NotNull File file,
                                        SourceFileFilter filter,
                                        @NotNull String relativePath,
@@ -335,19 +349,19 @@ public class JarsBuilder {
     if (file.isDirectory()) {
       final String directoryPath = relativePath.length() == 0 ? "" : relativePath + "/";
       if (!directoryPath.isEmpty()) {
-        addDirectoryEntry(jarOutputStream, directoryPath, writtenItemRelativePaths);
+        addDirectoryEntry(jarWriter, directoryPath, writtenItemRelativePaths);
       }
       final File[] children = file.listFiles();
       if (children != null) {
         for (File child : children) {
-          addFileOrDirRecursively(jarOutputStream, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
+          addFileOrDirRecursively(jarWriter, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
                                   packedFilePaths, rootIndex);
         }
       }
       return;
     }
 
-    final boolean added = ZipUtil.addFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths, null);
+    final boolean added = jarWriter.addFile(file, relativePath, writtenItemRelativePaths);
     if (rootIndex != -1) {
       myOutSrcMapping.appendData(targetJarPath, rootIndex, filePath);
       if (added) {
@@ -357,7 +371,7 @@ public class JarsBuilder {
   }
 
 
-  private static String addParentDirectories(JarOutputStream jarOutputStream, Set<String> writtenPaths, String relativePath) throws IOException {
+  private static String addParentDirectories(JarWriter jarWriter, Set<String> writtenPaths, String relativePath) throws IOException {
     while (StringUtil.startsWithChar(relativePath, '/')) {
       relativePath = relativePath.substring(1);
     }
@@ -365,22 +379,119 @@ public class JarsBuilder {
     while (i != -1) {
       String prefix = relativePath.substring(0, i+1);
       if (prefix.length() > 1) {
-        addDirectoryEntry(jarOutputStream, prefix, writtenPaths);
+        addDirectoryEntry(jarWriter, prefix, writtenPaths);
       }
       i = relativePath.indexOf('/', i + 1);
     }
     return relativePath;
   }
 
-  private static void addDirectoryEntry(final ZipOutputStream output, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
+  private static void addDirectoryEntry(final JarWriter output, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
     if (!writtenPaths.add(relativePath)) return;
 
-    ZipEntry e = new ZipEntry(relativePath);
-    e.setMethod(ZipEntry.STORED);
-    e.setSize(0);
-    e.setCrc(0);
-    output.putNextEntry(e);
-    output.closeEntry();
+    output.addEntry(relativePath, ArrayUtil.EMPTY_BYTE_ARRAY, System.currentTimeMillis(), ZipEntry.STORED);
+  }
+
+  /**
+   * Writes the archive using {@link JBZipFile}. Files which have the same size and CRC as the corresponding entries of the
+   * archive built by the previous make are copied from that archive in compressed form, so they aren't compressed again.
+   */
+  private static class JarWriter {
+    private final JBZipFile myArchive;
+    @Nullable private final JBZipFile myPreviousArchive;
+    private int myReusedEntriesCount;
+    private int myPackedEntriesCount;
+
+    private JarWriter(@NotNull File jarFile, @Nullable File previousJarFile) throws IOException {
+      myArchive = new JBZipFile(jarFile);
+      myPreviousArchive = previousJarFile != null ? openPreviousArchive(previousJarFile) : null;
+    }
+
+    @Nullable
+    private static JBZipFile openPreviousArchive(@NotNull File file) {
+      try {
+        return new JBZipFile(file);
+      }
+      catch (IOException e) {
+        LOG.debug("Cannot reuse entries of " + file.getPath() + ": " + e.getMessage());
+        return null;
+      }
+    }
+
+    public void writeManifest(@NotNull Manifest manifest, @NotNull Set<String> writtenPaths) throws IOException {
+      final BufferExposingByteArrayOutputStream content = new BufferExposingByteArrayOutputStream();
+      manifest.write(content);
+      writtenPaths.add(JarFile.MANIFEST_NAME);
+      addEntry(JarFile.MANIFEST_NAME, content.toByteArray(), System.currentTimeMillis(), ZipEntry.DEFLATED);
+    }
+
+    public boolean addFile(@NotNull File file, @NotNull String relativePath, @NotNull Set<String> writtenPaths) throws IOException {
+      relativePath = StringUtil.trimStart(relativePath, "/");
+      if (!writtenPaths.add(relativePath)) return false;
+
+      final long timestamp = file.lastModified();
+      final long length = file.length();
+      if (myPreviousArchive != null) {
+        final JBZipEntry previous = myPreviousArchive.getEntry(relativePath);
+        // the timestamp isn't enough: DOS time has 2 seconds resolution, and the path may now be mapped to another file
+        if (previous != null && previous.getSize() == length && previous.getCrc() == computeCrc(file)) {
+          final JBZipEntry entry = myArchive.getOrCreateEntry(relativePath);
+          entry.setTime(timestamp);
+          entry.copyCompressedDataFrom(previous);
+          myReusedEntriesCount++;
+          return true;
+        }
+      }
+      final InputStream input = new FileInputStream(file);
+      try {
+        addEntry(relativePath, input, timestamp, length == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED);
+      }
+      finally {
+        input.close();
+      }
+      return true;
+    }
+
+    private static long computeCrc(@NotNull File file) throws IOException {
+      final CRC32 crc = new CRC32();
+      final InputStream input = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) > 0) {
+          crc.update(buffer, 0, read);
+        }
+      }
+      finally {
+        input.close();
+      }
+      return crc.getValue();
+    }
+
+    public void addEntry(@NotNull String relativePath, @NotNull byte[] content, long timestamp, int method) throws IOException {
+      final JBZipEntry entry = myArchive.getOrCreateEntry(relativePath);
+      entry.setMethod(method);
+      entry.setData(content, timestamp);
+      myPackedEntriesCount++;
+    }
+
+    public void addEntry(@NotNull String relativePath, @NotNull InputStream content, long timestamp, int method) throws IOException {
+      final JBZipEntry entry = myArchive.getOrCreateEntry(relativePath);
+      entry.setMethod(method);
+      entry.setData(content, timestamp);
+      myPackedEntriesCount++;
+    }
+
+    public void close() throws IOException {
+      try {
+        myArchive.close();
+      }
+      finally {
+        if (myPreviousArchive != null) {
+          myPreviousArchive.close();
+        }
+      }
+    }
   }
 
   private class JarsGraph implements GraphGenerator.SemiGraph<JarInfo> {
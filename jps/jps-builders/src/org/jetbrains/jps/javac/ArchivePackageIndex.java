@@ -0,0 +1,161 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.javac;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Process-wide cache of package directories contained in classpath archives.
+ * Lives as long as the javac server (or the build process) and survives between compilations,
+ * so that file managers may skip opening archives which cannot contain the requested package.
+ * Entries are keyed by archive path and validated against archive length and timestamp.
+ *
+ * WARNING: used by file managers loaded via reflection, keep in the same package
+ */
+final class ArchivePackageIndex {
+  private static final int MAX_CACHED_DIRECTORIES = Integer.parseInt(System.getProperty("javac.archive.index.max.entries", "500000"));
+  private static final ArchivePackageIndex ourInstance = new ArchivePackageIndex();
+
+  private final LinkedHashMap<File, ArchiveData> myCache = new LinkedHashMap<File, ArchiveData>(16, 0.75f, true);
+  private int myCachedDirectoriesCount = 0;
+  private long myHits = 0L;
+  private long myMisses = 0L;
+  private long myInvalidations = 0L;
+  private long myEvictions = 0L;
+
+  private ArchivePackageIndex() {
+  }
+
+  static ArchivePackageIndex getInstance() {
+    return ourInstance;
+  }
+
+  /**
+   * @return set of '/'-separated directories containing at least one file entry, "" stands for the archive root;
+   * null if the archive cannot be read
+   */
+  synchronized Set<String> getDirectories(File archive) {
+    final long length = archive.length();
+    final long timestamp = archive.lastModified();
+    ArchiveData data = myCache.get(archive);
+    if (data != null) {
+      if (data.myLength == length && data.myTimestamp == timestamp) {
+        myHits++;
+        return data.myDirectories;
+      }
+      myInvalidations++;
+      remove(archive);
+    }
+    myMisses++;
+    final Set<String> dirs = readDirectories(archive);
+    if (dirs == null) {
+      return null;
+    }
+    myCache.put(archive, new ArchiveData(length, timestamp, dirs));
+    myCachedDirectoriesCount += dirs.size();
+    ensureCapacity();
+    return dirs;
+  }
+
+  static boolean mayContain(Set<String> dirs, String relativeDirectory, boolean recurse) {
+    if (dirs.contains(relativeDirectory)) {
+      return true;
+    }
+    if (recurse) {
+      if (relativeDirectory.isEmpty()) {
+        return !dirs.isEmpty();
+      }
+      final String prefix = relativeDirectory + "/";
+      for (String dir : dirs) {
+        if (dir.startsWith(prefix)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  synchronized void clear() {
+    myCache.clear();
+    myCachedDirectoriesCount = 0;
+  }
+
+  synchronized String getStatistics() {
+    final long requests = myHits + myMisses;
+    final long hitRate = requests > 0 ? myHits * 100 / requests : 0;
+    return "Archive package index: " + myCache.size() + " archives, " + myCachedDirectoriesCount + " directories; " +
+           "hits: " + myHits + ", misses: " + myMisses + " (hit rate " + hitRate + "%), " +
+           "invalidations: " + myInvalidations + ", evictions: " + myEvictions;
+  }
+
+  private void remove(File archive) {
+    final ArchiveData removed = myCache.remove(archive);
+    if (removed != null) {
+      myCachedDirectoriesCount -= removed.myDirectories.size();
+    }
+  }
+
+  private void ensureCapacity() {
+    // the most recently added archive is always kept
+    final Iterator<Map.Entry<File, ArchiveData>> it = myCache.entrySet().iterator();
+    while (myCachedDirectoriesCount > MAX_CACHED_DIRECTORIES && myCache.size() > 1) {
+      final ArchiveData data = it.next().getValue();
+      it.remove();
+      myCachedDirectoriesCount -= data.myDirectories.size();
+      myEvictions++;
+    }
+  }
+
+  private static Set<String> readDirectories(File archive) {
+    final Set<String> dirs = new HashSet<String>();
+    try {
+      final ZipFile zip = new ZipFile(archive);
+      try {
+        for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+          final ZipEntry entry = entries.nextElement();
+          if (!entry.isDirectory()) {
+            final String name = entry.getName();
+            final int slash = name.lastIndexOf('/');
+            dirs.add(slash > 0 ? name.substring(0, slash) : "");
+          }
+        }
+      }
+      finally {
+        zip.close();
+      }
+    }
+    catch (IOException e) {
+      return null;
+    }
+    return dirs;
+  }
+
+  private static final class ArchiveData {
+    final long myLength;
+    final long myTimestamp;
+    final Set<String> myDirectories;
+
+    private ArchiveData(long length, long timestamp, Set<String> directories) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myDirectories = directories;
+    }
+  }
+}
@@ -45,6 +45,7 @@ public class JavacServer {
   public static final String SERVER_SUCCESS_START_MESSAGE = "Javac server started successfully. Listening on port: ";
   public static final String SERVER_ERROR_START_MESSAGE = "Error starting Javac Server: ";
   public static final String USE_ECLIPSE_COMPILER_PROPERTY = "use.eclipse.compiler";
+  public static final String REPORT_CACHE_STATISTICS_PROPERTY = "javac.report.cache.statistics";
 
   private ChannelRegistrar myChannelRegistrar;
 
@@ -145,6 +146,9 @@ public class JavacServer {
 
     try {
       final boolean rc = JavacMain.compile(options, files, classpath, platformCp, sourcePath, outs, diagnostic, outputSink, canceledStatus, System.getProperty(USE_ECLIPSE_COMPILER_PROPERTY) != null);
+      if (Boolean.getBoolean(REPORT_CACHE_STATISTICS_PROPERTY)) {
+        diagnostic.report(new PlainMessageDiagnostic(Diagnostic.Kind.OTHER, ArchivePackageIndex.getInstance().getStatistics()));
+      }
       return JavacProtoUtil.toMessage(sessionId, JavacProtoUtil.createBuildCompletedResponse(rc));
     }
     catch (Throwable e) {
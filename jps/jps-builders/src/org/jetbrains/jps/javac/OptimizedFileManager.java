@@ -45,6 +45,7 @@ class OptimizedFileManager extends DefaultFileManager {
   private final Map<File, Archive> myArchives;
   private final Map<File, Boolean> myIsFile = new HashMap<File, Boolean>();
   private final Map<File, File[]> myDirectoryCache = new HashMap<File, File[]>();
+  private final Map<File, Set<String>> myArchiveDirectories = new HashMap<File, Set<String>>();
   public static final File[] NULL_FILE_ARRAY = new File[0];
 
   private static final boolean ourUseContentCache = Boolean.valueOf(System.getProperty("javac.use.content.cache", "false"));
@@ -113,7 +114,9 @@ class OptimizedFileManager extends DefaultFileManager {
         isFile = isFile(root);
       }
       if (isFile) {
-        collectFromArchive(root, archive, relativePath, kinds, recurse, results);
+        if (archiveMayContain(root, packageName.replace('.', '/'), recurse)) {
+          collectFromArchive(root, archive, relativePath, kinds, recurse, results);
+        }
       }
       else {
         final File directory = relativePath.length() != 0 ? new File(root, relativePath) : root;
@@ -146,6 +149,16 @@ class OptimizedFileManager extends DefaultFileManager {
     return cachedIsFile.booleanValue();
   }
 
+  private boolean archiveMayContain(File root, String relativeDirectory, boolean recurse) {
+    Set<String> dirs = myArchiveDirectories.get(root);
+    if (dirs == null && !myArchiveDirectories.containsKey(root)) {
+      dirs = ArchivePackageIndex.getInstance().getDirectories(root);
+      myArchiveDirectories.put(root, dirs);
+    }
+    // unreadable archives are passed to javac so that the error is reported as usual
+    return dirs == null || ArchivePackageIndex.mayContain(dirs, relativeDirectory, recurse);
+  }
+
   private void collectFromArchive(File root, Archive archive, String relativePath, Set<JavaFileObject.Kind> kinds, boolean recurse, ListBuffer<JavaFileObject> result) {
     if (archive == null) {
       try {
@@ -256,6 +269,10 @@ class OptimizedFileManager extends DefaultFileManager {
         isFile = isFile(root);
       }
       if (isFile) {
+        final int slash = name.lastIndexOf('/');
+        if (!archiveMayContain(root, slash > 0 ? name.substring(0, slash) : "", false)) {
+          continue;
+        }
         if (archive == null) {
           try {
             archive = openArchive(root);
@@ -542,6 +559,7 @@ class OptimizedFileManager extends DefaultFileManager {
         myContentCache.clear();
       }
       myDirectoryCache.clear();
+      myArchiveDirectories.clear();
       myByteBufferCache.clear();
       myIsFile.clear();
       if (!ourPathCacheClearProblem) {
@@ -45,6 +45,7 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
   private final Map<File, Archive> myArchives;
   private final Map<File, Boolean> myIsFile = new HashMap<File, Boolean>();
   private final Map<File, File[]> myDirectoryCache = new HashMap<File, File[]>();
+  private final Map<File, Set<String>> myArchiveDirectories = new HashMap<File, Set<String>>();
   public static final File[] NULL_FILE_ARRAY = new File[0];
 
   private static final String _OS_NAME = System.getProperty("os.name").toLowerCase(Locale.US);
@@ -99,6 +100,9 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
       }
       
       if (isFile) {
+        if (!archiveMayContain(root, subdirectory.getPath(), recurse)) {
+          continue;
+        }
         // Not a directory; either a file or non-existant, create the archive
         try {
           if (archive == null) {
@@ -214,6 +218,22 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
     return cachedIsFile.booleanValue();
   }
 
+  private boolean archiveMayContain(File root, String relativeDirectory, boolean recurse) {
+    Set<String> dirs = myArchiveDirectories.get(root);
+    if (dirs == null && !myArchiveDirectories.containsKey(root)) {
+      dirs = ArchivePackageIndex.getInstance().getDirectories(root);
+      myArchiveDirectories.put(root, dirs);
+    }
+    if (dirs == null) {
+      // unreadable archives are passed to javac so that the error is reported as usual
+      return true;
+    }
+    if (relativeDirectory.endsWith("/")) {
+      relativeDirectory = relativeDirectory.substring(0, relativeDirectory.length() - 1);
+    }
+    return ArchivePackageIndex.mayContain(dirs, relativeDirectory, recurse);
+  }
+
   private static boolean contains(RelativePath.RelativeDirectory subdirectory, RelativePath.RelativeDirectory other) {
     final String subdirPath = subdirectory.getPath();
     final String otherPath = other.getPath();
@@ -419,6 +439,7 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
     finally {
       // archives are cleared in super.close()
       myDirectoryCache.clear();
+      myArchiveDirectories.clear();
       myIsFile.clear();
     }
   }
@@ -112,6 +112,18 @@ public class MemberChangeTest extends IncrementalTestCase {
     doTest();
   }
 
+  public void testChangeMethodReturnType() {
+    doTest();
+  }
+
+  public void testChangePrivateMethodBody() {
+    doTest();
+  }
+
+  public void testChangeUsagesInMethodBody() {
+    doTest();
+  }
+
   public void testDeleteConstructor() {
     doTest();
   }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.cmdline;
+
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.builders.logging.BuildLoggingManager;
+import org.jetbrains.jps.model.serialization.JpsGlobalLoader;
+
+import java.io.File;
+
+public class ProjectDescriptorCacheTest extends JpsBuildTestCase {
+  private String myProjectPath;
+  private String myOptionsPath;
+  private String myOptionsFile;
+  private ProjectDescriptor myDescriptor;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myProjectPath = createFile("project.ipr", "<project/>");
+    myOptionsFile = createFile("options/" + JpsGlobalLoader.getConfigFileNames().iterator().next(), "<application/>");
+    myOptionsPath = new File(myOptionsFile).getParent();
+    myDescriptor = createProjectDescriptor(BuildLoggingManager.DEFAULT);
+    long stamp = ProjectDescriptorCache.computeConfigurationStamp(myProjectPath, myOptionsPath, myDescriptor);
+    ProjectDescriptorCache.getInstance().put(myProjectPath, myOptionsPath, myDataStorageRoot, myDescriptor, stamp);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    ProjectDescriptorCache.getInstance().drop();
+    myDescriptor.release();
+    super.tearDown();
+  }
+
+  public void testReuseDescriptorForSameProject() {
+    assertAcquired();
+    assertAcquired();
+  }
+
+  public void testDropOnProjectFileChange() {
+    assertAcquired();
+    change(myProjectPath, "<project version=\"4\"/>");
+    assertNull(acquire(myProjectPath, myOptionsPath));
+    assertNull(acquire(myProjectPath, myOptionsPath));
+  }
+
+  public void testDropOnGlobalOptionsChange() {
+    change(myOptionsFile, "<application version=\"4\"/>");
+    assertNull(acquire(myProjectPath, myOptionsPath));
+  }
+
+  public void testDropForAnotherProject() {
+    String anotherProject = createFile("another.ipr", "<project/>");
+    assertNull(acquire(anotherProject, myOptionsPath));
+    assertNull(acquire(myProjectPath, myOptionsPath));
+  }
+
+  private void assertAcquired() {
+    ProjectDescriptor pd = acquire(myProjectPath, myOptionsPath);
+    assertSame(myDescriptor, pd);
+    pd.release();
+  }
+
+  private ProjectDescriptor acquire(String projectPath, String optionsPath) {
+    return ProjectDescriptorCache.getInstance().acquire(projectPath, optionsPath, myDataStorageRoot);
+  }
+}
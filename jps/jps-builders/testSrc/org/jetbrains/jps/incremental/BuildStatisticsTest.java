@@ -0,0 +1,120 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.PathUtil;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.builders.BuildResult;
+import org.jetbrains.jps.builders.CompileScopeTestBuilder;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.incremental.java.JavaBuilder;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.incremental.messages.CustomBuilderMessage;
+import org.jetbrains.jps.incremental.resources.ResourcesBuilder;
+import org.jetbrains.jps.model.java.JpsJavaExtensionService;
+
+import java.io.File;
+import java.io.IOException;
+
+public class BuildStatisticsTest extends JpsBuildTestCase {
+  public void testReportTargetAndBuilder() throws IOException {
+    String file = createFile("src/A.java", "class A {}");
+    addModule("m", PathUtil.getParentPath(file));
+    String report = buildAndGetReport(CompileScopeTestBuilder.rebuild().all());
+
+    String[] target = findLine(report, "target", "Module 'm' production");
+    assertEquals("1", target[2]);
+    assertEquals("1", target[4]);
+    long classSize = new File(getAbsolutePath("out/production/m/A.class")).length();
+    assertEquals(String.valueOf(classSize), target[5]);
+
+    String[] java = findLine(report, "builder", JavaBuilder.BUILDER_NAME);
+    //invoked for both production and tests chunks
+    assertEquals("2", java[2]);
+    assertEquals("1", java[4]);
+    assertEquals(String.valueOf(classSize), java[5]);
+
+    findLine(report, "storage", "flush");
+    findLine(report, "total", "build");
+    assertEquals(report, FileUtil.loadFile(new File(myDataStorageRoot, BuildStatistics.REPORT_FILE_NAME)));
+  }
+
+  public void testFilesCountedPerBuilder() throws IOException {
+    JpsJavaExtensionService.getInstance().getOrCreateCompilerConfiguration(myProject).addResourcePattern("*.xml");
+    String file = createFile("src/A.java", "class A {}");
+    createFile("src/a.xml", "<a/>");
+    createFile("src/b.xml", "<b/>");
+    addModule("m", PathUtil.getParentPath(file));
+    String report = buildAndGetReport(CompileScopeTestBuilder.rebuild().all());
+
+    assertEquals("1", findLine(report, "builder", JavaBuilder.BUILDER_NAME)[4]);
+    assertEquals("2", findLine(report, "builder", ResourcesBuilder.BUILDER_NAME)[4]);
+  }
+
+  public void testNothingWrittenWhenUpToDate() throws IOException {
+    String file = createFile("src/A.java", "class A {}");
+    addModule("m", PathUtil.getParentPath(file));
+    rebuildAll();
+    String report = buildAndGetReport(CompileScopeTestBuilder.make().all());
+
+    String[] java = findLine(report, "builder", JavaBuilder.BUILDER_NAME);
+    assertEquals("0", java[4]);
+    assertEquals("0", java[5]);
+  }
+
+  public void testCustomReportPath() throws IOException {
+    String file = createFile("src/A.java", "class A {}");
+    addModule("m", PathUtil.getParentPath(file));
+    File reportFile = new File(getOrCreateProjectDir(), "stats/report.tsv");
+    System.setProperty(GlobalOptions.BUILD_STATISTICS_REPORT_OPTION, reportFile.getAbsolutePath());
+    try {
+      String report = buildAndGetReport(CompileScopeTestBuilder.rebuild().all());
+      assertEquals(report, FileUtil.loadFile(reportFile));
+    }
+    finally {
+      System.clearProperty(GlobalOptions.BUILD_STATISTICS_REPORT_OPTION);
+    }
+  }
+
+  private String buildAndGetReport(CompileScopeTestBuilder scope) {
+    BuildResult result = doBuild(scope);
+    result.assertSuccessful();
+    String report = null;
+    for (BuildMessage message : result.getMessages(BuildMessage.Kind.INFO)) {
+      if (message instanceof CustomBuilderMessage && BuildStatistics.BUILDER_ID.equals(((CustomBuilderMessage)message).getBuilderId())) {
+        assertNull("Statistics reported twice", report);
+        assertEquals(BuildStatistics.REPORT_MESSAGE_TYPE, ((CustomBuilderMessage)message).getMessageType());
+        report = ((CustomBuilderMessage)message).getMessageText();
+      }
+    }
+    assertNotNull("Statistics weren't reported", report);
+    return report;
+  }
+
+  private static String[] findLine(String report, String kind, String name) {
+    for (String line : StringUtil.splitByLines(report)) {
+      String[] columns = line.split("\t");
+      assertEquals(line, 6, columns.length);
+      if (columns[0].equals(kind) && columns[1].equals(name)) {
+        return columns;
+      }
+    }
+    fail("'" + kind + " " + name + "' not found in report:\n" + report);
+    return null;
+  }
+}
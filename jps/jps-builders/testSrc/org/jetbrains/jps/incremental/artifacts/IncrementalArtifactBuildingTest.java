@@ -78,6 +78,38 @@ public class IncrementalArtifactBuildingTest extends ArtifactBuilderTestCase {
     buildAllAndAssertUpToDate();
   }
 
+  public void testPackChangedFileOfSameSizeAndDosTime() {
+    String file1 = createFile("dir/a.txt", "aaa");
+    createFile("dir/b.txt", "bbb");
+    final JpsArtifact a = addArtifact(archive("a.jar").parentDirCopy(file1));
+    //timestamps in archives have 2 seconds resolution
+    final long timestamp = (System.currentTimeMillis() - 60000) / 2000 * 2000;
+    assertTrue(new File(file1).setLastModified(timestamp));
+    buildAll();
+    assertOutput(a, fs().archive("a.jar").file("a.txt", "aaa").file("b.txt", "bbb"));
+
+    change(file1, "xxx");
+    assertTrue(new File(file1).setLastModified(timestamp + 1000));
+    buildAll();
+    assertOutput(a, fs().archive("a.jar").file("a.txt", "xxx").file("b.txt", "bbb"));
+    buildAllAndAssertUpToDate();
+  }
+
+  public void testPackAnotherFileOfSameSizeToSamePath() {
+    String file1 = createFile("d1/a.txt", "aaa");
+    String file2 = createFile("d2/a.txt", "xxx");
+    final long timestamp = new File(file1).lastModified();
+    assertTrue(new File(file2).setLastModified(timestamp));
+    final JpsArtifact a = addArtifact(archive("a.jar").parentDirCopy(file1));
+    buildAll();
+    assertOutput(a, fs().archive("a.jar").file("a.txt", "aaa"));
+
+    a.setRootElement(archive("a.jar").parentDirCopy(file2).buildElement());
+    buildAll();
+    assertOutput(a, fs().archive("a.jar").file("a.txt", "xxx"));
+    buildAllAndAssertUpToDate();
+  }
+
   public void testRemoveDeletedFileFromArchive() {
     String file1 = createFile("dir/a.txt");
     createFile("dir/b.txt");
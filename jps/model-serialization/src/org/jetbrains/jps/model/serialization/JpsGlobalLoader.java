@@ -32,7 +32,9 @@ import org.jetbrains.jps.model.serialization.library.JpsSdkTableSerializer;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author nik
@@ -59,6 +61,28 @@ public class JpsGlobalLoader extends JpsLoaderBase {
     new JpsGlobalLoader(global, pathVariables).load(optionsDir);
   }
 
+  /**
+   * @return names of files in the options directory global settings are loaded from
+   */
+  public static Set<String> getConfigFileNames() {
+    final Set<String> names = new LinkedHashSet<String>();
+    names.add(new PathVariablesSerializer().getConfigFileName());
+    for (JpsGlobalExtensionSerializer serializer : SERIALIZERS) {
+      names.add(getConfigFileName(serializer));
+    }
+    for (JpsModelSerializerExtension extension : JpsModelSerializerExtension.getExtensions()) {
+      for (JpsGlobalExtensionSerializer serializer : extension.getGlobalExtensionSerializers()) {
+        names.add(getConfigFileName(serializer));
+      }
+    }
+    return names;
+  }
+
+  private static String getConfigFileName(JpsGlobalExtensionSerializer serializer) {
+    final String fileName = serializer.getConfigFileName();
+    return fileName != null ? fileName : "other.xml";
+  }
+
   /**
    * @deprecated use {@link JpsModelSerializationDataService#getPathVariableValue(org.jetbrains.jps.model.JpsGlobal, String)} instead
    */
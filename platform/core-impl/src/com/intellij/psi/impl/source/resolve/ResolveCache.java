@@ -26,18 +26,33 @@ import com.intellij.psi.*;
 import com.intellij.psi.impl.AnyPsiChangeListener;
 import com.intellij.psi.impl.PsiManagerImpl;
 import com.intellij.reference.SoftReference;
+import com.intellij.util.SystemProperties;
 import com.intellij.util.containers.ConcurrentWeakHashMap;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Caches resolve results of references.
+ * A PSI change clears the affected maps: physical changes clear all of them, non-physical ones only the maps for non-physical
+ * references. Results remember the generation of changes they were computed in, so that a result computed concurrently
+ * with a change isn't cached after the change. Each map is cleared once its size exceeds the bound given by
+ * the "idea.resolve.cache.max.size" property. Hits and misses are counted only if the "idea.resolve.cache.count.hits" property is set,
+ * so that lookups don't contend on the counters.
+ */
 public class ResolveCache {
   private static final Logger LOG = Logger.getInstance("#com.intellij.psi.impl.source.resolve.ResolveCache");
-  private final ConcurrentMap[] myMaps = new ConcurrentMap[2*2*2]; //boolean physical, boolean incompleteCode, boolean isPoly
+  static final int MAX_SIZE = SystemProperties.getIntProperty("idea.resolve.cache.max.size", 100000);
+  private static final boolean COUNT_HITS = Boolean.getBoolean("idea.resolve.cache.count.hits");
+
+  private final Cache[] myCaches = new Cache[2*2*2]; //boolean physical, boolean incompleteCode, boolean isPoly
+  private final AtomicInteger myPhysicalGeneration = new AtomicInteger();
+  private final AtomicInteger myNonPhysicalGeneration = new AtomicInteger();
   private final RecursionGuard myGuard = RecursionManager.createGuard("resolveCache");
 
   public static ResolveCache getInstance(Project project) {
@@ -58,8 +73,8 @@ public class ResolveCache {
   }
 
   public ResolveCache(@NotNull MessageBus messageBus) {
-    for (int i = 0; i < myMaps.length; i++) {
-      myMaps[i] = createWeakMap();
+    for (int i = 0; i < myCaches.length; i++) {
+      myCaches[i] = new Cache();
     }
     messageBus.connect().subscribe(PsiManagerImpl.ANY_PSI_CHANGE_TOPIC, new AnyPsiChangeListener() {
       @Override
@@ -73,13 +88,23 @@ public class ResolveCache {
     });
   }
 
-  private static <K,V> ConcurrentWeakHashMap<K, V> createWeakMap() {
-    return new ConcurrentWeakHashMap<K,V>(100, 0.75f, Runtime.getRuntime().availableProcessors(), ContainerUtil.<K>canonicalStrategy());
-  }
-
   public void clearCache(boolean isPhysical) {
+    if (isPhysical) {
+      myPhysicalGeneration.incrementAndGet();
+    }
+    myNonPhysicalGeneration.incrementAndGet();
     int startIndex = isPhysical ? 0 : 1;
-    for (int i=startIndex;i<2;i++)for (int j=0;j<2;j++)for (int k=0;k<2;k++) myMaps[i*4+j*2+k].clear();
+    for (int i=startIndex;i<2;i++)for (int j=0;j<2;j++)for (int k=0;k<2;k++) myCaches[i*4+j*2+k].clear();
+  }
+
+  /**
+   * @return the size and the hit, miss, invalidation and eviction counts of the cache for references of the given kind;
+   * hits and misses are 0 unless counting them is enabled
+   */
+  @NotNull
+  public Statistics getStatistics(boolean physical, boolean incompleteCode, boolean isPoly) {
+    Cache cache = getCache(physical, incompleteCode, isPoly);
+    return new Statistics(cache.size(), cache.myHits.get(), cache.myMisses.get(), cache.myInvalidations.get(), cache.myEvictions.get());
   }
 
   @Nullable
@@ -92,9 +117,9 @@ public class ResolveCache {
     ProgressIndicatorProvider.checkCanceled();
     ApplicationManager.getApplication().assertReadAccessAllowed();
 
-    ConcurrentMap<TRef, Getter<TResult>> map = getMap(isPhysical, incompleteCode, isPoly);
-    Getter<TResult> reference = map.get(ref);
-    TResult result = reference == null ? null : reference.get();
+    Cache cache = getCache(isPhysical, incompleteCode, isPoly);
+    int generation = getGeneration(isPhysical);
+    TResult result = cache.<TRef, TResult>get(ref, generation);
     if (result != null) {
       return result;
     }
@@ -109,8 +134,8 @@ public class ResolveCache {
     PsiElement element = result instanceof ResolveResult ? ((ResolveResult)result).getElement() : null;
     LOG.assertTrue(element == null || element.isValid(), result);
 
-    if (stamp.mayCacheNow()) {
-      cache(ref, map, result, isPoly);
+    if (stamp.mayCacheNow() && getGeneration(isPhysical) == generation) {
+      cache.put(ref, result, isPoly, generation);
     }
     return result;
   }
@@ -134,9 +159,7 @@ public class ResolveCache {
 
   @Nullable
   public <T extends PsiPolyVariantReference> ResolveResult[] getCachedResults(@NotNull T ref, boolean physical, boolean incompleteCode, boolean isPoly) {
-    Map<T, Getter<ResolveResult[]>> map = getMap(physical, incompleteCode, isPoly);
-    Getter<ResolveResult[]> reference = map.get(ref);
-    return reference == null ? null : reference.get();
+    return getCache(physical, incompleteCode, isPoly).<T, ResolveResult[]>get(ref, getGeneration(physical));
   }
 
   @Nullable
@@ -148,40 +171,168 @@ public class ResolveCache {
     return resolve(ref, resolver, needToPreventRecursion, incompleteCode, false, ref.getElement().isPhysical());
   }
 
-  private <TRef extends PsiReference,TResult> ConcurrentMap<TRef, Getter<TResult>> getMap(boolean physical, boolean incompleteCode, boolean isPoly) {
-    //noinspection unchecked
-    return myMaps[(physical ? 0 : 1)*4 + (incompleteCode ? 0 : 1)*2 + (isPoly ? 0 : 1)];
+  private Cache getCache(boolean physical, boolean incompleteCode, boolean isPoly) {
+    return myCaches[(physical ? 0 : 1)*4 + (incompleteCode ? 0 : 1)*2 + (isPoly ? 0 : 1)];
+  }
+
+  private int getGeneration(boolean physical) {
+    // non-physical results are invalidated by physical changes too, and their generation is advanced by both
+    return physical ? myPhysicalGeneration.get() : myNonPhysicalGeneration.get();
   }
 
-  private static class SoftGetter<T> extends SoftReference<T> implements Getter<T> {
-    public SoftGetter(T referent) {
+  /**
+   * A resolve result cached in some generation.
+   */
+  private interface CachedResult<T> extends Getter<T> {
+    int getGeneration();
+  }
+
+  private static class SoftResult<T> extends SoftReference<T> implements CachedResult<T> {
+    private final int myGeneration;
+
+    public SoftResult(T referent, int generation) {
       super(referent);
+      myGeneration = generation;
+    }
+
+    @Override
+    public int getGeneration() {
+      return myGeneration;
     }
   }
-  private static final Getter<ResolveResult[]> EMPTY_POLY_RESULT = new StaticGetter<ResolveResult[]>(ResolveResult.EMPTY_ARRAY);
-  private static final Getter<Object> NULL_RESULT = new StaticGetter<Object>(null);
-  private static <TRef extends PsiReference, TResult> void cache(@NotNull TRef ref,
-                                                                 @NotNull ConcurrentMap<TRef, Getter<TResult>> map,
-                                                                 TResult result,
-                                                                 boolean isPoly) {
-    // optimization: less contention
-    Getter<TResult> cached = map.get(ref);
-    if (cached != null && cached.get() == result) {
-      return;
+
+  /**
+   * Holds null results and empty arrays, there is no use in soft references to them.
+   */
+  private static class StaticResult<T> extends StaticGetter<T> implements CachedResult<T> {
+    private final int myGeneration;
+
+    public StaticResult(T value, int generation) {
+      super(value);
+      myGeneration = generation;
     }
-    if (result == null) {
-      // no use in creating SoftReference to null
-      //noinspection unchecked
-      cached = (Getter<TResult>)NULL_RESULT;
+
+    @Override
+    public int getGeneration() {
+      return myGeneration;
     }
-    else if (isPoly && ((Object[])result).length == 0) {
-      // no use in creating SoftReference to empty array
+  }
+
+  private static class Cache {
+    private final ConcurrentMap<PsiReference, CachedResult> myMap =
+      new ConcurrentWeakHashMap<PsiReference, CachedResult>(100, 0.75f, Runtime.getRuntime().availableProcessors(),
+                                                           ContainerUtil.<PsiReference>canonicalStrategy());
+    // approximate: entries removed with their collected references aren't subtracted, so the map is recounted before eviction
+    private final AtomicInteger mySize = new AtomicInteger();
+    private final AtomicLong myHits = new AtomicLong();
+    private final AtomicLong myMisses = new AtomicLong();
+    private final AtomicLong myInvalidations = new AtomicLong();
+    private final AtomicLong myEvictions = new AtomicLong();
+
+    @Nullable
+    private <TRef extends PsiReference, TResult> TResult get(@NotNull TRef ref, int generation) {
       //noinspection unchecked
-      cached = result.getClass() == ResolveResult[].class ? (Getter<TResult>)EMPTY_POLY_RESULT : new StaticGetter<TResult>(result);
+      CachedResult<TResult> cached = myMap.get(ref);
+      if (cached != null && cached.getGeneration() != generation) {
+        // put after the map was cleared by a change, concurrently with it
+        if (cached.getGeneration() < generation && myMap.remove(ref, cached)) {
+          mySize.decrementAndGet();
+        }
+        cached = null;
+      }
+      TResult result = cached == null ? null : cached.get();
+      if (COUNT_HITS) {
+        (result == null ? myMisses : myHits).incrementAndGet();
+      }
+      return result;
+    }
+
+    private <TRef extends PsiReference, TResult> void put(@NotNull TRef ref, TResult result, boolean isPoly, int generation) {
+      // optimization: less contention
+      CachedResult cached = myMap.get(ref);
+      if (cached != null && cached.getGeneration() == generation && cached.get() == result) {
+        return;
+      }
+      if (result == null || isPoly && ((Object[])result).length == 0) {
+        cached = new StaticResult<TResult>(result, generation);
+      }
+      else {
+        cached = new SoftResult<TResult>(result, generation);
+      }
+      if (myMap.put(ref, cached) == null && mySize.incrementAndGet() > MAX_SIZE) {
+        evictIfNeeded();
+      }
+    }
+
+    private synchronized void evictIfNeeded() {
+      if (mySize.get() <= MAX_SIZE) return;
+      // counting is linear in the map size, so the map is also cleared when it is more than half full,
+      // otherwise it would be recounted on almost every put
+      int size = myMap.size();
+      if (size > MAX_SIZE / 2) {
+        myEvictions.addAndGet(size);
+        myMap.clear();
+        size = 0;
+      }
+      mySize.set(size);
+    }
+
+    private void clear() {
+      myInvalidations.incrementAndGet();
+      myMap.clear();
+      mySize.set(0);
+    }
+
+    // linear in the map size
+    private int size() {
+      return myMap.size();
+    }
+  }
+
+  public static class Statistics {
+    private final int mySize;
+    private final long myHits;
+    private final long myMisses;
+    private final long myInvalidations;
+    private final long myEvictions;
+
+    private Statistics(int size, long hits, long misses, long invalidations, long evictions) {
+      mySize = size;
+      myHits = hits;
+      myMisses = misses;
+      myInvalidations = invalidations;
+      myEvictions = evictions;
+    }
+
+    public int getSize() {
+      return mySize;
+    }
+
+    public long getHits() {
+      return myHits;
+    }
+
+    public long getMisses() {
+      return myMisses;
+    }
+
+    /**
+     * @return the number of PSI changes which invalidated the cached results
+     */
+    public long getInvalidations() {
+      return myInvalidations;
     }
-    else {
-      cached = new SoftGetter<TResult>(result);
+
+    /**
+     * @return the number of entries dropped because the size bound was exceeded
+     */
+    public long getEvictions() {
+      return myEvictions;
+    }
+
+    @Override
+    public String toString() {
+      return "size: " + mySize + ", hits: " + myHits + ", misses: " + myMisses + ", invalidations: " + myInvalidations + ", evictions: " + myEvictions;
     }
-    map.put(ref, cached);
   }
 }
@@ -302,47 +302,86 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
       throws StorageException {
 
       checkNameStorage();
-      final Map<StubIndexKey, Map<Object, StubIdList>> newStubTree;
-      try {
-        newStubTree = getStubTree(newData);
-      }
-      catch (SerializerNotFoundException e) {
-        throw new StorageException(e);
-      }
+      final Map<StubIndexKey, Map<Object, StubIdList>> newStubTree = getStubTreeOrFail(newData);
 
       final StubIndexImpl stubIndex = getStubIndex();
-      final Collection<StubIndexKey> allStubIndices = stubIndex.getAllStubIndexKeys();
+
+      // read the old stub tree without blocking queries, so that only the stub indices which have keys
+      // in the old or the new tree are write-locked for the update, and queries to the other ones can proceed
+      Map<Integer, SerializedStubTree> oldData;
+      getReadLock().lock();
       try {
-        // first write-lock affected stub indices to avoid deadlocks
-        for (StubIndexKey key : allStubIndices) {
-          stubIndex.getWriteLock(key).lock();
-        }
+        oldData = readOldData(inputId);
+      }
+      finally {
+        getReadLock().unlock();
+      }
+      Map<StubIndexKey, Map<Object, StubIdList>> oldStubTree = getStubTreeOrFail(oldData);
+      Collection<StubIndexKey> lockedIndices = getIndicesToLock(stubIndex, getAffectedIndices(oldStubTree, newStubTree));
 
+      while (true) {
+        final Collection<StubIndexKey> locked = lockedIndices;
         try {
-          getWriteLock().lock();
+          // first write-lock affected stub indices to avoid deadlocks
+          for (StubIndexKey key : locked) {
+            stubIndex.getWriteLock(key).lock();
+          }
 
-          final Map<Integer, SerializedStubTree> oldData = readOldData(inputId);
-          final Map<StubIndexKey, Map<Object, StubIdList>> oldStubTree;
           try {
-            oldStubTree = getStubTree(oldData);
+            getWriteLock().lock();
+
+            final Map<Integer, SerializedStubTree> currentOldData = readOldData(inputId);
+            if (!currentOldData.equals(oldData)) {
+              // the file has been re-indexed concurrently
+              oldData = currentOldData;
+              oldStubTree = getStubTreeOrFail(oldData);
+              final Collection<StubIndexKey> affectedIndices = getAffectedIndices(oldStubTree, newStubTree);
+              if (!locked.containsAll(affectedIndices)) {
+                lockedIndices = getIndicesToLock(stubIndex, affectedIndices);
+                continue;
+              }
+            }
+
+            super.updateWithMap(inputId, newData, oldKeysGetter);
+
+            updateStubIndices(getAffectedIndices(oldStubTree, newStubTree), inputId, oldStubTree, newStubTree);
+            return;
           }
-          catch (SerializerNotFoundException e) {
-            throw new StorageException(e);
+          finally {
+            getWriteLock().unlock();
           }
-
-          super.updateWithMap(inputId, newData, oldKeysGetter);
-
-          updateStubIndices(getAffectedIndices(oldStubTree, newStubTree), inputId, oldStubTree, newStubTree);
         }
         finally {
-          getWriteLock().unlock();
+          for (StubIndexKey key : locked) {
+            stubIndex.getWriteLock(key).unlock();
+          }
         }
       }
-      finally {
-        for (StubIndexKey key : allStubIndices) {
-          stubIndex.getWriteLock(key).unlock();
+    }
+
+    /**
+     * @return the given stub indices in the order all stub indices are locked in
+     */
+    @NotNull
+    private Collection<StubIndexKey> getIndicesToLock(@NotNull StubIndexImpl stubIndex, @NotNull Collection<StubIndexKey> indices) {
+      final List<StubIndexKey> result = new ArrayList<StubIndexKey>(indices.size());
+      for (StubIndexKey key : stubIndex.getAllStubIndexKeys()) {
+        if (indices.contains(key)) {
+          result.add(key);
         }
       }
+      return result;
+    }
+
+    @NotNull
+    private Map<StubIndexKey, Map<Object, StubIdList>> getStubTreeOrFail(@NotNull Map<Integer, SerializedStubTree> data)
+      throws StorageException {
+      try {
+        return getStubTree(data);
+      }
+      catch (SerializerNotFoundException e) {
+        throw new StorageException(e);
+      }
     }
 
     private StubIndexImpl getStubIndex() {
@@ -387,7 +426,7 @@ public class StubUpdatingIndex extends CustomImplementationFileBasedIndexExtensi
       return stubTree;
     }
 
-    /*MUST be called under the WriteLock*/
+    /*MUST be called under the ReadLock or the WriteLock; the latter guarantees the data are not changed before the update*/
     @NotNull
     private Map<Integer, SerializedStubTree> readOldData(final int key) throws StorageException {
       final Map<Integer, SerializedStubTree> result = new HashMap<Integer, SerializedStubTree>();
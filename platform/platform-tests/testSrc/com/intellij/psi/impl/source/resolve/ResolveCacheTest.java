@@ -0,0 +1,171 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl.source.resolve;
+
+import com.intellij.mock.MockApplication;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReferenceBase;
+import com.intellij.psi.impl.FakePsiElement;
+import com.intellij.testFramework.UsefulTestCase;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.messages.MessageBusFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResolveCacheTest extends UsefulTestCase {
+  private ResolveCache myCache;
+  private int myResolveCount;
+
+  private final ResolveCache.AbstractResolver<MyReference, PsiElement> myResolver =
+    new ResolveCache.AbstractResolver<MyReference, PsiElement>() {
+      @Override
+      public PsiElement resolve(@NotNull MyReference ref, boolean incompleteCode) {
+        myResolveCount++;
+        return ref.myTarget;
+      }
+    };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ApplicationManager.setApplication(new MockApplication(getTestRootDisposable()), getTestRootDisposable());
+    myCache = new ResolveCache(MessageBusFactory.newMessageBus(this));
+  }
+
+  public void testResultIsCached() {
+    MyReference ref = new MyReference(true);
+    assertSame(ref.myTarget, resolve(ref));
+    assertSame(ref.myTarget, resolve(ref));
+    assertEquals(1, myResolveCount);
+    assertEquals(1, getStatistics(true).getSize());
+  }
+
+  public void testPhysicalChangeInvalidatesAllResults() {
+    MyReference physical = new MyReference(true);
+    MyReference nonPhysical = new MyReference(false);
+    resolve(physical);
+    resolve(nonPhysical);
+
+    myCache.clearCache(true);
+    assertEquals(0, getStatistics(true).getSize());
+    assertEquals(0, getStatistics(false).getSize());
+    assertEquals(1, getStatistics(true).getInvalidations());
+    assertEquals(1, getStatistics(false).getInvalidations());
+
+    resolve(physical);
+    resolve(nonPhysical);
+    assertEquals(4, myResolveCount);
+  }
+
+  public void testNonPhysicalChangeKeepsPhysicalResults() {
+    MyReference physical = new MyReference(true);
+    MyReference nonPhysical = new MyReference(false);
+    resolve(physical);
+    resolve(nonPhysical);
+
+    myCache.clearCache(false);
+    assertEquals(1, getStatistics(true).getSize());
+    assertEquals(0, getStatistics(false).getSize());
+    assertEquals(0, getStatistics(true).getInvalidations());
+    assertEquals(1, getStatistics(false).getInvalidations());
+
+    resolve(physical);
+    assertEquals(2, myResolveCount);
+    resolve(nonPhysical);
+    assertEquals(3, myResolveCount);
+  }
+
+  public void testResultComputedDuringChangeIsNotCached() {
+    final MyReference ref = new MyReference(false);
+    myCache.resolveWithCaching(ref, new ResolveCache.AbstractResolver<MyReference, PsiElement>() {
+      @Override
+      public PsiElement resolve(@NotNull MyReference ref, boolean incompleteCode) {
+        myCache.clearCache(true);
+        return ref.myTarget;
+      }
+    }, false, false);
+    assertEquals(0, getStatistics(false).getSize());
+
+    resolve(ref);
+    assertEquals(1, myResolveCount);
+  }
+
+  public void testSizeIsBounded() {
+    List<MyReference> refs = new ArrayList<MyReference>();
+    for (int i = 0; i <= ResolveCache.MAX_SIZE; i++) {
+      MyReference ref = new MyReference(true);
+      refs.add(ref);
+      resolve(ref);
+    }
+    ResolveCache.Statistics statistics = getStatistics(true);
+    assertTrue(statistics.toString(), statistics.getSize() <= ResolveCache.MAX_SIZE);
+    assertEquals(statistics.toString(), refs.size(), statistics.getEvictions() + statistics.getSize());
+  }
+
+  private PsiElement resolve(MyReference ref) {
+    return myCache.resolveWithCaching(ref, myResolver, false, false);
+  }
+
+  private ResolveCache.Statistics getStatistics(boolean physical) {
+    return myCache.getStatistics(physical, false, false);
+  }
+
+  private static class MyElement extends FakePsiElement {
+    private final boolean myPhysical;
+
+    private MyElement(boolean physical) {
+      myPhysical = physical;
+    }
+
+    @Override
+    public PsiElement getParent() {
+      return null;
+    }
+
+    @Override
+    public boolean isPhysical() {
+      return myPhysical;
+    }
+
+    @Override
+    public boolean isValid() {
+      return true;
+    }
+  }
+
+  private static class MyReference extends PsiReferenceBase<PsiElement> {
+    private final PsiElement myTarget = new MyElement(true);
+
+    private MyReference(boolean physical) {
+      super(new MyElement(physical), TextRange.EMPTY_RANGE);
+    }
+
+    @Override
+    public PsiElement resolve() {
+      return myTarget;
+    }
+
+    @NotNull
+    @Override
+    public Object[] getVariants() {
+      return ArrayUtil.EMPTY_OBJECT_ARRAY;
+    }
+  }
+}
@@ -332,6 +332,15 @@ public class NameUtilMatchingTest extends UsefulTestCase {
     return NameUtil.buildMatcher(pattern, NameUtil.MatchingCaseSensitivity.FIRST_LETTER);
   }
 
+  public void testDegreeFromPrecomputedFragments() {
+    MinusculeMatcher matcher = caseInsensitiveMatcher("*ap")
+    for (name in ["applyPatch", "MapBuilder", "Snap", "Foo"]) {
+      def fragments = matcher.matchingFragments(name)
+      assertEquals(name, matcher.matchingDegree(name), matcher.matchingDegree(name, fragments))
+      assertEquals(name, matcher.isStartMatch(name), MinusculeMatcher.isStartMatch(fragments))
+    }
+  }
+
   public void testSpaceInCompletionPrefix() throws Exception {
     assertTrue(caseInsensitiveMatcher("create ").matches("create module"));
   }
@@ -342,10 +351,14 @@ public class NameUtilMatchingTest extends UsefulTestCase {
   }
 
   private static void assertMatches(@NonNls String pattern, @NonNls String name) {
-    assertTrue(pattern + " doesn't match " + name + "!!!", caseInsensitiveMatcher(pattern).matches(name));
+    MinusculeMatcher matcher = caseInsensitiveMatcher(pattern)
+    assertTrue(pattern + " doesn't match " + name + "!!!", matcher.matches(name));
+    assertNotNull(pattern + " has no fragments in " + name, matcher.matchingFragments(name))
   }
   private static void assertDoesntMatch(@NonNls String pattern, @NonNls String name) {
-    assertFalse(pattern + " matches " + name + "!!!", caseInsensitiveMatcher(pattern).matches(name));
+    MinusculeMatcher matcher = caseInsensitiveMatcher(pattern)
+    assertFalse(pattern + " matches " + name + "!!!", matcher.matches(name));
+    assertNull(pattern + " has fragments in " + name, matcher.matchingFragments(name))
   }
 
   public void testUpperCaseMatchesLowerCase() {
@@ -32,6 +32,7 @@ import org.jetbrains.annotations.*;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
@@ -469,7 +470,7 @@ public class FileUtil extends FileUtilRt {
     try {
       final FileInputStream fis = new FileInputStream(fromFile);
       try {
-        copy(fis, fos);
+        copy(fis.getChannel(), fos.getChannel());
       }
       finally {
         fis.close();
@@ -494,6 +495,21 @@ public class FileUtil extends FileUtilRt {
     }
   }
 
+  /**
+   * Transfers the whole content of {@code from} to {@code to} letting the OS avoid copying the data through user-space buffers where possible.
+   */
+  private static void copy(@NotNull FileChannel from, @NotNull FileChannel to) throws IOException {
+    final long size = from.size();
+    long position = 0;
+    while (position < size) {
+      final long transferred = from.transferTo(position, size - position, to);
+      if (transferred <= 0) {
+        break; // the source has been truncated meanwhile
+      }
+      position += transferred;
+    }
+  }
+
   private static FileOutputStream openOutputStream(@NotNull final File file) throws IOException {
     try {
       return new FileOutputStream(file);
@@ -128,7 +128,8 @@ public class MinusculeMatcher implements Matcher {
     return false;
   }
 
-  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length) {
+  private static FList<TextRange> prependRange(@NotNull FList<TextRange> ranges, int from, int length, MatchingState matchingState) {
+    if (!matchingState.myFragmentsNeeded) return ranges;
     TextRange head = ranges.getHead();
     if (head != null && head.getStartOffset() == from + length) {
       return ranges.getTail().prepend(new TextRange(from, head.getEndOffset()));
@@ -136,8 +137,20 @@ public class MinusculeMatcher implements Matcher {
     return ranges.prepend(TextRange.from(from, length));
   }
 
+  private static FList<TextRange> singleRange(int from, int length, MatchingState matchingState) {
+    FList<TextRange> empty = FList.emptyList();
+    return matchingState.myFragmentsNeeded ? empty.prepend(TextRange.from(from, length)) : empty;
+  }
+
   public int matchingDegree(@NotNull String name) {
-    FList<TextRange> iterable = matchingFragments(name);
+    return matchingDegree(name, matchingFragments(name));
+  }
+
+  /**
+   * @param fragments the result of {@link #matchingFragments(String)} for the name, to avoid matching it again
+   */
+  public int matchingDegree(@NotNull String name, @Nullable FList<TextRange> fragments) {
+    FList<TextRange> iterable = fragments;
     if (iterable == null) return Integer.MIN_VALUE;
     if (iterable.isEmpty()) return 0;
 
@@ -194,7 +207,13 @@ public class MinusculeMatcher implements Matcher {
   }
 
   public boolean isStartMatch(@NotNull String name) {
-    Iterable<TextRange> fragments = matchingFragments(name);
+    return isStartMatch(matchingFragments(name));
+  }
+
+  /**
+   * @param fragments the result of {@link #matchingFragments(String)} for a name
+   */
+  public static boolean isStartMatch(@Nullable Iterable<TextRange> fragments) {
     if (fragments != null) {
       Iterator<TextRange> iterator = fragments.iterator();
       if (!iterator.hasNext() || iterator.next().getStartOffset() == 0) {
@@ -206,16 +225,25 @@ public class MinusculeMatcher implements Matcher {
 
   @Override
   public boolean matches(@NotNull String name) {
-    // optimisation: name too short for this pattern
-    if (!myHasWildCards && name.length() < myPattern.length) return false;
-
-    return matchingFragments(name) != null;
+    return match(name, false) != null;
   }
 
   @Nullable
   public FList<TextRange> matchingFragments(@NotNull String name) {
+    return match(name, true);
+  }
+
+  /**
+   * @param fragmentsNeeded if false, no ranges are allocated, and an empty list is returned for a matching name
+   */
+  @Nullable
+  private FList<TextRange> match(@NotNull String name, boolean fragmentsNeeded) {
+    // optimisation: name too short for this pattern
+    if (!myHasWildCards && name.length() < myPattern.length) return null;
+    if (!containsPatternCharsInOrder(name)) return null;
+
     MatchingState state = myMatchingState.get();
-    state.initializeState(name);
+    state.initializeState(name, fragmentsNeeded);
     try {
       return matchWildcards(name, 0, 0, state);
     }
@@ -224,6 +252,22 @@ public class MinusculeMatcher implements Matcher {
     }
   }
 
+  /**
+   * Quick check which rejects most names without setting up the matching state:
+   * non-wildcard pattern characters are matched by name characters equal to them ignoring case, in the same order.
+   */
+  private boolean containsPatternCharsInOrder(@NotNull String name) {
+    int nameIndex = 0;
+    for (int k = 0; k < myPattern.length; k++) {
+      if (isWildcard(k)) continue;
+      while (true) {
+        if (nameIndex >= name.length()) return false;
+        if (charEquals(myPattern[k], k, name.charAt(nameIndex++), true)) break;
+      }
+    }
+    return true;
+  }
+
   /**
    * After a wildcard (* or space), search for the first non-wildcard pattern character in the name starting from nameIndex
    * and try to {@link #matchFragment(String, int, int, com.intellij.psi.codeStyle.MinusculeMatcher.MatchingState)} for it.
@@ -253,7 +297,7 @@ public class MinusculeMatcher implements Matcher {
       if (space && nameIndex != name.length() && (patternIndex < 2 || !NameUtil.isWordStart(myPattern[patternIndex - 2]))) {
         int spaceIndex = name.indexOf(' ', nameIndex);
         if (spaceIndex >= 0) {
-          return FList.<TextRange>emptyList().prepend(TextRange.from(spaceIndex, 1));
+          return singleRange(spaceIndex, 1, matchingState);
         }
         return null;
       }
@@ -361,7 +405,7 @@ public class MinusculeMatcher implements Matcher {
           int nextWordStart = indexOfWordStart(name, patternIndex + i, nameIndex + i);
           FList<TextRange> ranges = matchWildcards(name, patternIndex + i, nextWordStart, matchingState);
           if (ranges != null) {
-            return prependRange(ranges, nameIndex, i);
+            return prependRange(ranges, nameIndex, i, matchingState);
           }
           // at least three consecutive uppercase letters shouldn't match lowercase
           if (i > 1 && isUpperCase[patternIndex + i - 1] && isUpperCase[patternIndex + i - 2]) {
@@ -379,7 +423,7 @@ public class MinusculeMatcher implements Matcher {
     // we've found the longest fragment matching pattern and name
 
     if (patternIndex + i >= myPattern.length) {
-      return FList.<TextRange>emptyList().prepend(TextRange.from(nameIndex, i));
+      return singleRange(nameIndex, i, matchingState);
     }
 
     // try to match the remainder of pattern with the remainder of name
@@ -389,7 +433,7 @@ public class MinusculeMatcher implements Matcher {
                                 matchWildcards(name, patternIndex + i, nameIndex + i, matchingState) :
                                 matchSkippingWords(name, patternIndex + i, nameIndex + i, false, matchingState);
       if (ranges != null) {
-        return prependRange(ranges, nameIndex, i);
+        return prependRange(ranges, nameIndex, i, matchingState);
       }
       i--;
     }
@@ -477,11 +521,13 @@ public class MinusculeMatcher implements Matcher {
     private boolean myBusy;
     private int myNameLength;
     private boolean isAsciiName;
+    private boolean myFragmentsNeeded;
     private final BitSet myTable = new BitSet();
 
-    void initializeState(String name) {
+    void initializeState(String name, boolean fragmentsNeeded) {
       assert !myBusy;
       myBusy = true;
+      myFragmentsNeeded = fragmentsNeeded;
       myNameLength = name.length();
       isAsciiName = IOUtil.isAscii(name);
       myTable.clear();
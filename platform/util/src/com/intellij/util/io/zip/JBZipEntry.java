@@ -369,6 +369,10 @@ public class JBZipEntry implements Cloneable {
     myFile.eraseEntry(this);
   }
 
+  InputStream getCompressedInputStream() throws IOException {
+    return new BoundedInputStream(calcDataOffset(), getCompressedSize());
+  }
+
   private InputStream getInputStream() throws IOException {
     long start = calcDataOffset();
 
@@ -450,6 +454,25 @@ public class JBZipEntry implements Cloneable {
     setData(bytes, time);
   }
 
+  /**
+   * Writes the content read from {@code stream} as the data of this entry, the stream isn't closed.
+   */
+  public void setData(@NotNull InputStream stream, long timestamp) throws IOException {
+    time = timestamp;
+    JBZipOutputStream output = myFile.getOutputStream();
+    output.putNextEntryContent(this, stream);
+  }
+
+  /**
+   * Writes the compressed content of {@code source} (possibly from another archive) as the data of this entry
+   * without decompressing and compressing it again. The time of this entry is preserved if it was set.
+   */
+  public void copyCompressedDataFrom(@NotNull JBZipEntry source) throws IOException {
+    if (source.size == -1) throw new IOException("no data");
+    JBZipOutputStream stream = myFile.getOutputStream();
+    stream.putNextEntryCompressedData(this, source);
+  }
+
   public byte[] getData() throws IOException {
     if (size == -1) throw new IOException("no data");
 
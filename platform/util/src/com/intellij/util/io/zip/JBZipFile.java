@@ -420,6 +420,11 @@ public class JBZipFile {
                                           /* compressed size                 */ + WORD
                                           /* uncompressed size               */ + WORD;
 
+  /**
+   * Number of bytes in local file header up to the &quot;crc-32&quot; entry.
+   */
+  static final long LFH_OFFSET_FOR_CRC = LFH_OFFSET_FOR_FILENAME_LENGTH - 3 * WORD;
+
 
   /**
    * Retrieve a String from the given bytes using the encoding set
@@ -23,6 +23,8 @@ package com.intellij.util.io.zip;
 import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
@@ -401,6 +403,7 @@ class JBZipOutputStream {
     final byte[] outputBytes;
     final int outputBytesLength;
     if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
       def.setLevel(level);
       final BufferExposingByteArrayOutputStream compressedBytesStream = new BufferExposingByteArrayOutputStream();
       final DeflaterOutputStream stream = new DeflaterOutputStream(compressedBytesStream, def);
@@ -422,4 +425,94 @@ class JBZipOutputStream {
     writeLocalFileHeader(entry);
     writeOut(outputBytes, 0, outputBytesLength);
   }
+
+  /**
+   * Writes the content read from {@code input} without buffering it in memory: the local file header is written
+   * with zero sizes and CRC first and is updated when the data has been written.
+   */
+  void putNextEntryContent(JBZipEntry entry, InputStream input) throws IOException {
+    if (entry.getMethod() == -1) {
+      entry.setMethod(method);
+    }
+
+    if (entry.getTime() == -1) {
+      entry.setTime(System.currentTimeMillis());
+    }
+
+    entry.setSize(0);
+    entry.setCrc(0);
+    entry.setCompressedSize(0);
+    writeLocalFileHeader(entry);
+    final long dataOffset = written;
+
+    crc.reset();
+    long size = 0;
+    final byte[] buffer = new byte[8192];
+    if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
+      def.setLevel(level);
+      final DeflaterOutputStream stream = new DeflaterOutputStream(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          writeOut(new byte[]{(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          writeOut(b, off, len);
+        }
+      }, def, buffer.length);
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+        stream.write(buffer, 0, read);
+        size += read;
+      }
+      stream.finish();
+    }
+    else {
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+        writeOut(buffer, 0, read);
+        size += read;
+      }
+    }
+
+    entry.setSize(size);
+    entry.setCrc(crc.getValue());
+    entry.setCompressedSize(written - dataOffset);
+
+    flushBuffer();
+    raf.seek(entry.getHeaderOffset() + JBZipFile.LFH_OFFSET_FOR_CRC);
+    raf.write(ZipLong.getBytes(entry.getCrc()));
+    raf.write(ZipLong.getBytes(entry.getCompressedSize()));
+    raf.write(ZipLong.getBytes(entry.getSize()));
+    raf.seek(written);
+  }
+
+  void putNextEntryCompressedData(JBZipEntry entry, JBZipEntry source) throws IOException {
+    entry.setSize(source.getSize());
+    entry.setCrc(source.getCrc());
+    entry.setMethod(source.getMethod());
+    entry.setCompressedSize(source.getCompressedSize());
+
+    if (entry.getTime() == -1) {
+      entry.setTime(source.getTime());
+    }
+
+    writeLocalFileHeader(entry);
+
+    final InputStream input = source.getCompressedInputStream();
+    try {
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer, 0, buffer.length)) > 0) {
+        writeOut(buffer, 0, read);
+      }
+    }
+    finally {
+      input.close();
+    }
+  }
 }
@@ -108,6 +108,64 @@ public class UpdateableZipTest extends TestCase {
     utilZip.close();
   }
   
+  public void testWriteEntriesFromStreams() throws Exception {
+    File targetFile = FileUtil.createTempFile("target", ".zip");
+    try {
+      JBZipFile target = new JBZipFile(targetFile);
+      try {
+        for (int i = 0; i < 3; i++) {
+          JBZipEntry entry = target.getOrCreateEntry("/entry" + i);
+          entry.setMethod(i == 2 ? ZipEntry.STORED : ZipEntry.DEFLATED);
+          entry.setData(new ByteArrayInputStream(("content " + i).getBytes()), 0);
+        }
+        target.getOrCreateEntry("/bytes").setData("bytes".getBytes());
+      }
+      finally {
+        target.close();
+      }
+
+      ZipFile utilZip = new ZipFile(targetFile);
+      for (int i = 0; i < 3; i++) {
+        ZipEntry entry = utilZip.getEntry("/entry" + i);
+        assertNotNull(entry);
+        assertEquals("content " + i, FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(entry))));
+      }
+      assertEquals("bytes", FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(utilZip.getEntry("/bytes")))));
+      utilZip.close();
+    }
+    finally {
+      FileUtil.delete(targetFile);
+    }
+  }
+
+  public void testCopyCompressedEntry() throws Exception {
+    File targetFile = FileUtil.createTempFile("target", ".zip");
+    try {
+      JBZipFile source = new JBZipFile(zipFile);
+      JBZipFile target = new JBZipFile(targetFile);
+      try {
+        JBZipEntry sourceEntry = source.getEntry("/second");
+        JBZipEntry copiedEntry = target.getOrCreateEntry("/copied");
+        copiedEntry.copyCompressedDataFrom(sourceEntry);
+        assertEquals(sourceEntry.getCrc(), copiedEntry.getCrc());
+        assertEquals(sourceEntry.getCompressedSize(), copiedEntry.getCompressedSize());
+      }
+      finally {
+        target.close();
+        source.close();
+      }
+
+      ZipFile utilZip = new ZipFile(targetFile);
+      ZipEntry copied = utilZip.getEntry("/copied");
+      assertNotNull(copied);
+      assertEquals("second", FileUtil.loadTextAndClose(new InputStreamReader(utilZip.getInputStream(copied))));
+      utilZip.close();
+    }
+    finally {
+      FileUtil.delete(targetFile);
+    }
+  }
+
   /*
   public void testAppendToIdeaJar() throws Exception {
     //ProfilingUtil.startCPUProfiling();
@@ -77,6 +77,7 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
   private final UpdateRequestsQueue myUpdater;
 
   private static final AtomicReference<ScheduledExecutorService> ourUpdateAlarm = new AtomicReference<ScheduledExecutorService>();
+  private static final int MAX_UPDATES_SUPERSEDED_IN_A_ROW = 2;
   static {
     ourUpdateAlarm.set(createChangeListExecutor());
   }
@@ -91,6 +92,9 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
 
   private ChangeListWorker myWorker;
   private VcsException myUpdateException = null;
+  // accessed only from the update thread
+  private int myUpdatesSupersededInARow;
+  private int mySupersededUpdatesCount;
   private Factory<JComponent> myAdditionalInfo;
 
   private final EventDispatcher<ChangeListListener> myListeners = EventDispatcher.create(ChangeListListener.class);
@@ -474,11 +478,28 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
       dataHolder.notifyStart();
       myChangesViewManager.scheduleRefresh();
 
-      myUpdateChangesProgressIndicator = createProgressIndicator();
+      final boolean mayBeSuperseded = myUpdatesSupersededInARow < MAX_UPDATES_SUPERSEDED_IN_A_ROW;
+      myUpdateChangesProgressIndicator = createProgressIndicator(mayBeSuperseded);
 
-      iterateScopes(dataHolder, scopes, wasEverythingDirty);
+      try {
+        iterateScopes(dataHolder, scopes, wasEverythingDirty);
+      }
+      catch (ProcessCanceledException e) {
+        if (!isSuperseded(mayBeSuperseded)) throw e;
+      }
 
-      final boolean takeChanges = (myUpdateException == null);
+      // results of the update superseded by the pending one are dropped: everything will be refreshed anyway
+      final boolean superseded = isSuperseded(mayBeSuperseded);
+      if (superseded) {
+        myUpdatesSupersededInARow++;
+        mySupersededUpdatesCount++;
+        myUpdater.updateSuperseded();
+        LOG.debug("refresh procedure is superseded by the pending refresh of everything, cancelled updates: " + mySupersededUpdatesCount);
+      }
+      else {
+        myUpdatesSupersededInARow = 0;
+      }
+      final boolean takeChanges = (myUpdateException == null) && !superseded;
       if (takeChanges) {
         // update IDEA-level ignored files
         updateIgnoredFiles(dataHolder.getComposite());
@@ -517,7 +538,7 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
 
       for (VcsDirtyScope scope : scopes) {
         AbstractVcs vcs = scope.getVcs();
-        if (vcs != null && vcs.isTrackingUnchangedContent()) {
+        if (vcs != null && vcs.isTrackingUnchangedContent() && !superseded) {
           scope.iterateExistingInsideScope(new Processor<VirtualFile>() {
             @Override
             public boolean process(VirtualFile file) {
@@ -612,19 +633,29 @@ public class ChangeListManagerImpl extends ChangeListManagerEx implements Projec
     }
   }
 
-  private EmptyProgressIndicator createProgressIndicator() {
+  /**
+   * The update may be cancelled if everything is marked dirty while it is running,
+   * unless several updates in a row have already been cancelled this way, so that changes are refreshed at least sometimes.
+   */
+  private EmptyProgressIndicator createProgressIndicator(final boolean mayBeSuperseded) {
     return new EmptyProgressIndicator() {
       @Override
       public boolean isCanceled() {
-        return myUpdater.isStopped();
+        return myUpdater.isStopped() || isSuperseded(mayBeSuperseded);
       }
       @Override
       public void checkCanceled() {
         checkIfDisposed();
+        if (isSuperseded(mayBeSuperseded)) throw new ProcessCanceledException();
       }
     };
   }
 
+  private boolean isSuperseded(boolean mayBeSuperseded) {
+    return mayBeSuperseded && myDirtyScopeManager instanceof VcsDirtyScopeManagerImpl &&
+           ((VcsDirtyScopeManagerImpl)myDirtyScopeManager).isEverythingDirty();
+  }
+
   private class DataHolder {
     private final boolean myWasEverythingDirty;
     final FileHolderComposite myComposite;
@@ -40,11 +40,18 @@ import java.util.concurrent.atomic.AtomicReference;
  * ChangeListManager updates scheduler.
  * Tries to zip several update requests into one (if starts and see several requests in the queue)
  * own inner synchronization
+ * <p/>
+ * Requests are debounced: the update starts when no new requests came for some time, which grows with the duration of the previous update
+ * (so that expensive updates are not repeated during bursts of requests, e.g. on branch switch), but not later than
+ * {@link #MAX_DELAY} after the first request.
  */
 @SomeQueue
 public class UpdateRequestsQueue {
   private final Logger LOG = Logger.getInstance("#com.intellij.openapi.vcs.changes.UpdateRequestsQueue");
   private static final String ourHeavyLatchOptimization = "vcs.local.changes.track.heavy.latch";
+  private static final int MIN_DELAY = 300;
+  private static final int MAX_QUIET_DELAY = 2000;
+  static final int MAX_DELAY = 5000;
   private final Project myProject;
   private final AtomicReference<ScheduledExecutorService> myExecutor;
   private final Runnable myDelegate;
@@ -63,6 +70,15 @@ public class UpdateRequestsQueue {
   private final boolean myTrackHeavyLatch;
   private final Getter<Boolean> myIsStoppedGetter;
 
+  // guarded by myLock
+  private long myFirstRequestTime;
+  private long myLastRequestTime;
+  private long myLastUpdateDuration;
+  private int myRequestsCount;
+  private int myRequestsSinceUpdate;
+  private int myUpdatesCount;
+  private boolean myUpdateSuperseded;
+
   public UpdateRequestsQueue(final Project project, final AtomicReference<ScheduledExecutorService> executor, final Runnable delegate) {
     myProject = project;
     myExecutor = executor;
@@ -102,16 +118,63 @@ public class UpdateRequestsQueue {
       if (! myStarted && ApplicationManager.getApplication().isUnitTestMode()) return;
 
       if (! myStopped) {
+        long now = System.currentTimeMillis();
+        myLastRequestTime = now;
+        myRequestsCount++;
+        myRequestsSinceUpdate++;
         if (! myRequestSubmitted) {
-          final MyRunnable runnable = new MyRunnable();
-          myRequestSubmitted = true;
-          myExecutor.get().schedule(runnable, 300, TimeUnit.MILLISECONDS);
-          LOG.debug("Scheduled for project: " + myProject.getName() + ", runnable: " + runnable.hashCode());
+          myFirstRequestTime = now;
+          submit(getDelay());
         }
       }
     }
   }
 
+  // guarded by myLock
+  private void submit(long delay) {
+    final MyRunnable runnable = new MyRunnable();
+    myRequestSubmitted = true;
+    myExecutor.get().schedule(runnable, delay, TimeUnit.MILLISECONDS);
+    LOG.debug("Scheduled for project: " + myProject.getName() + ", runnable: " + runnable.hashCode() + ", delay: " + delay);
+  }
+
+  // guarded by myLock
+  private long getDelay() {
+    return Math.max(MIN_DELAY, Math.min(MAX_QUIET_DELAY, myLastUpdateDuration / 2));
+  }
+
+  /**
+   * Returns the time in ms to wait for more requests before starting the update, or 0 if the update should start now.
+   */
+  // guarded by myLock
+  private long getRemainingDelay() {
+    long now = System.currentTimeMillis();
+    long sinceLastRequest = now - myLastRequestTime;
+    long sinceFirstRequest = now - myFirstRequestTime;
+    long delay = getDelay();
+    if (sinceLastRequest >= delay || sinceFirstRequest >= MAX_DELAY) {
+      return 0;
+    }
+    return Math.min(delay - sinceLastRequest, MAX_DELAY - sinceFirstRequest);
+  }
+
+  /**
+   * Called by the delegate if the running update has dropped its results because a newer update is pending:
+   * {@link #invokeAfterUpdate} callbacks are then kept until that update completes.
+   */
+  public void updateSuperseded() {
+    synchronized (myLock) {
+      myUpdateSuperseded = true;
+    }
+  }
+
+  public String getStatistics() {
+    synchronized (myLock) {
+      return "update requests: " + myRequestsCount + ", updates executed: " + myUpdatesCount + ", last update took " +
+             myLastUpdateDuration + " ms";
+    }
+  }
+
   public void pause() {
     synchronized (myLock) {
       myStopped = true;
@@ -252,17 +315,41 @@ public class UpdateRequestsQueue {
             return;
           }
 
+          long remainingDelay = getRemainingDelay();
+          if (remainingDelay > 0) {
+            LOG.debug("MyRunnable: more requests came, postpone, project: " + myProject.getName() + ", runnable: " + hashCode());
+            submit(remainingDelay);
+            return;
+          }
+
           copy.addAll(myWaitingUpdateCompletionQueue);
           myRequestSubmitted = false;
+          LOG.debug("MyRunnable: " + myRequestsSinceUpdate + " requests coalesced into one update, project: " + myProject.getName());
+          myRequestsSinceUpdate = 0;
+          myUpdateSuperseded = false;
         }
 
         LOG.debug("MyRunnable: INVOKE, project: " + myProject.getName() + ", runnable: " + hashCode());
+        long start = System.currentTimeMillis();
         myDelegate.run();
-        LOG.debug("MyRunnable: invokeD, project: " + myProject.getName() + ", runnable: " + hashCode());
+        synchronized (myLock) {
+          myLastUpdateDuration = System.currentTimeMillis() - start;
+          myUpdatesCount++;
+        }
+        LOG.debug("MyRunnable: invokeD, project: " + myProject.getName() + ", runnable: " + hashCode() + ", " + getStatistics());
       } finally {
         synchronized (myLock) {
           myRequestRunning = false;
           LOG.debug("MyRunnable: delete executed, project: " + myProject.getName() + ", runnable: " + hashCode());
+          if (myUpdateSuperseded) {
+            myUpdateSuperseded = false;
+            LOG.debug("MyRunnable: update superseded, callbacks wait for the next one, project: " + myProject.getName());
+            copy.clear();
+            if (! myRequestSubmitted && ! myStopped) {
+              myFirstRequestTime = myLastRequestTime = System.currentTimeMillis();
+              submit(getDelay());
+            }
+          }
           if (! copy.isEmpty()) {
             myWaitingUpdateCompletionQueue.removeAll(copy);
           }
@@ -21,6 +21,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vcs.*;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
@@ -43,6 +44,8 @@ import java.util.*;
  * @author yole
  */
 public class VcsDirtyScopeImpl extends VcsModifiableDirtyScope {
+  private static final String MAX_DIRTY_PATHS_PER_ROOT_REGISTRY_KEY = "vcs.dirty.scope.max.paths.per.root";
+
   private final Map<VirtualFile, THashSet<FilePath>> myDirtyFiles = new HashMap<VirtualFile, THashSet<FilePath>>();
   private final Map<VirtualFile, THashSet<FilePath>> myDirtyDirectoriesRecursively = new HashMap<VirtualFile, THashSet<FilePath>>();
   private final Set<VirtualFile> myAffectedContentRoots = new THashSet<VirtualFile>();
@@ -253,6 +256,11 @@ public class VcsDirtyScopeImpl extends VcsModifiableDirtyScope {
               }
           });
           set.retainAll(newCollection);
+          if (set.size() > Registry.intValue(MAX_DIRTY_PATHS_PER_ROOT_REGISTRY_KEY)) {
+            // checking the whole root at once is cheaper than checking that many paths one by one
+            set.clear();
+            set.add(new FileOrDir(new FilePathImpl(entry.getKey()), true));
+          }
         }
 
         myAffectedContentRoots.addAll(perRoot.keySet());
@@ -268,14 +276,19 @@ public class VcsDirtyScopeImpl extends VcsModifiableDirtyScope {
               curFiles.add(fileOrDir.myPath);
             }
           }
-          // no clear is necessary since no root can disappear
-          // also, we replace contents, so here's no merging
+          // we replace contents, so here's no merging; paths which were merged into a recursively dirty directory are removed
           if (! curDirs.isEmpty()) {
             myDirtyDirectoriesRecursively.put(root, curDirs);
           }
+          else {
+            myDirtyDirectoriesRecursively.remove(root);
+          }
           if (! curFiles.isEmpty()) {
             myDirtyFiles.put(root, curFiles);
           }
+          else {
+            myDirtyFiles.remove(root);
+          }
         }
       }
     });
@@ -119,6 +119,19 @@ public class VcsDirtyScopeManagerImpl extends VcsDirtyScopeManager implements Pr
     }
   }
 
+  /**
+   * Returns true if everything has been marked dirty since the scopes were retrieved last time.
+   */
+  boolean isEverythingDirty() {
+    final Ref<Boolean> result = new Ref<Boolean>(false);
+    myLife.doIfAlive(new Runnable() {
+      public void run() {
+        result.set(myDirtBuilder.isEverythingDirty());
+      }
+    });
+    return result.get();
+  }
+
   public void projectClosed() {
     killSelf();
   }
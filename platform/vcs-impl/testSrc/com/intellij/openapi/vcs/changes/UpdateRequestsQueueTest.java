@@ -0,0 +1,166 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vcs.changes;
+
+import com.intellij.testFramework.PlatformTestCase;
+import com.intellij.util.concurrency.Semaphore;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class UpdateRequestsQueueTest extends PlatformTestCase {
+  private ScheduledExecutorService myExecutor;
+  private UpdateRequestsQueue myQueue;
+  // incremented before each request, so that an update seeing the last value has processed all requests
+  private final AtomicInteger myRequestedVersion = new AtomicInteger();
+  private final AtomicInteger myUpdatedVersion = new AtomicInteger();
+  private final AtomicInteger myUpdatesCount = new AtomicInteger();
+  private final AtomicInteger mySupersededUpdatesLeft = new AtomicInteger();
+  private volatile Semaphore myUpdateBlocker;
+  private volatile Semaphore myUpdateStarted;
+
+  @SuppressWarnings("JUnitTestCaseWithNonTrivialConstructors")
+  public UpdateRequestsQueueTest() {
+    PlatformTestCase.initPlatformLangPrefix();
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myExecutor = Executors.newSingleThreadScheduledExecutor();
+    myQueue = new UpdateRequestsQueue(myProject, new AtomicReference<ScheduledExecutorService>(myExecutor), new Runnable() {
+      @Override
+      public void run() {
+        int version = myRequestedVersion.get();
+        Semaphore started = myUpdateStarted;
+        if (started != null) {
+          started.up();
+        }
+        Semaphore blocker = myUpdateBlocker;
+        if (blocker != null) {
+          blocker.waitFor();
+        }
+        myUpdatesCount.incrementAndGet();
+        if (mySupersededUpdatesLeft.get() > 0) {
+          // like ChangeListManagerImpl when everything is marked dirty during the update: the results are dropped
+          mySupersededUpdatesLeft.decrementAndGet();
+          request();
+          myQueue.updateSuperseded();
+          return;
+        }
+        myUpdatedVersion.set(version);
+      }
+    });
+    myQueue.initialized();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    myQueue.stop();
+    myExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void testBurstOfRequestsIsCoalesced() {
+    for (int i = 0; i < 10; i++) {
+      request();
+      sleep(20);
+    }
+    myQueue.waitUntilRefreshed();
+    assertEquals(1, myUpdatesCount.get());
+    assertEquals(myRequestedVersion.get(), myUpdatedVersion.get());
+  }
+
+  public void testRequestDuringUpdateCausesAnotherUpdate() {
+    myUpdateStarted = new Semaphore();
+    myUpdateStarted.down();
+    myUpdateBlocker = new Semaphore();
+    myUpdateBlocker.down();
+    request();
+    assertTrue("Update didn't start", myUpdateStarted.waitFor(10000));
+    myUpdateStarted = null;
+
+    request();
+    request();
+    myUpdateBlocker.up();
+    myQueue.waitUntilRefreshed();
+    assertEquals(2, myUpdatesCount.get());
+    assertEquals(myRequestedVersion.get(), myUpdatedVersion.get());
+  }
+
+  public void testUpdateIsNotPostponedForeverByNewRequests() {
+    long start = System.currentTimeMillis();
+    while (myUpdatesCount.get() == 0) {
+      assertTrue("Update postponed for too long", System.currentTimeMillis() - start < UpdateRequestsQueue.MAX_DELAY + 1000);
+      request();
+      sleep(50);
+    }
+    myQueue.waitUntilRefreshed();
+    assertTrue(myUpdatedVersion.get() > 0);
+  }
+
+  public void testAfterUpdateCallbackSeesFinalState() {
+    final AtomicInteger versionInCallback = new AtomicInteger(-1);
+    final Semaphore callbackCalled = new Semaphore();
+    callbackCalled.down();
+    request();
+    request();
+    myQueue.invokeAfterUpdate(new Runnable() {
+      @Override
+      public void run() {
+        versionInCallback.set(myUpdatedVersion.get());
+        callbackCalled.up();
+      }
+    }, InvokeAfterUpdateMode.SILENT_CALLBACK_POOLED, null, null, null);
+    assertTrue("Callback wasn't called", callbackCalled.waitFor(10000));
+    assertEquals(1, myUpdatesCount.get());
+    assertEquals(myRequestedVersion.get(), versionInCallback.get());
+  }
+
+  public void testCallbackIsNotCalledAfterSupersededUpdate() {
+    final AtomicInteger versionInCallback = new AtomicInteger(-1);
+    final Semaphore callbackCalled = new Semaphore();
+    callbackCalled.down();
+    mySupersededUpdatesLeft.set(1);
+    request();
+    myQueue.invokeAfterUpdate(new Runnable() {
+      @Override
+      public void run() {
+        versionInCallback.set(myUpdatedVersion.get());
+        callbackCalled.up();
+      }
+    }, InvokeAfterUpdateMode.SILENT_CALLBACK_POOLED, null, null, null);
+    assertTrue("Callback wasn't called", callbackCalled.waitFor(10000));
+    assertEquals(2, myUpdatesCount.get());
+    assertEquals(myRequestedVersion.get(), versionInCallback.get());
+  }
+
+  private void request() {
+    myRequestedVersion.incrementAndGet();
+    myQueue.schedule();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
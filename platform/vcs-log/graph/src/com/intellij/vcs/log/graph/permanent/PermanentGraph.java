@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.graph.permanent;
+
+import com.intellij.vcs.log.GraphCommit;
+import gnu.trove.TIntIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * <p>Immutable commit graph stored in int arrays: node <i>i</i> is the commit in the <i>i</i>-th row of the log.</p>
+ * <p>Edges of each node are stored in the compressed sparse row form: down edges of node <i>i</i> are
+ *    {@code myDownEdges[myDownOffsets[i]..myDownOffsets[i + 1])}, in the order of commit parents; up edges are stored the same way.</p>
+ * <p>A down edge to a parent which is not in the log is stored as {@code -1 - parentCommitIndex},
+ *    so it can be distinguished from an edge to a node without any extra memory.</p>
+ */
+public final class PermanentGraph {
+
+  @NotNull private final int[] myCommitIndices;
+  @NotNull private final int[] myDownOffsets;
+  @NotNull private final int[] myDownEdges;
+  @NotNull private final int[] myUpOffsets;
+  @NotNull private final int[] myUpEdges;
+
+  private PermanentGraph(@NotNull int[] commitIndices, @NotNull int[] downOffsets, @NotNull int[] downEdges,
+                         @NotNull int[] upOffsets, @NotNull int[] upEdges) {
+    myCommitIndices = commitIndices;
+    myDownOffsets = downOffsets;
+    myDownEdges = downEdges;
+    myUpOffsets = upOffsets;
+    myUpEdges = upEdges;
+  }
+
+  @NotNull
+  public static PermanentGraph build(@NotNull List<? extends GraphCommit> commits) {
+    int nodesCount = commits.size();
+    int[] commitIndices = new int[nodesCount];
+    TIntIntHashMap nodeByCommit = new TIntIntHashMap(nodesCount);
+    int edgesCount = 0;
+    for (int node = 0; node < nodesCount; node++) {
+      GraphCommit commit = commits.get(node);
+      commitIndices[node] = commit.getIndex();
+      nodeByCommit.put(commit.getIndex(), node);
+      edgesCount += commit.getParentIndices().length;
+    }
+
+    int[] downOffsets = new int[nodesCount + 1];
+    int[] downEdges = new int[edgesCount];
+    int[] upCounts = new int[nodesCount + 1];
+    int edge = 0;
+    for (int node = 0; node < nodesCount; node++) {
+      downOffsets[node] = edge;
+      for (int parent : commits.get(node).getParentIndices()) {
+        if (nodeByCommit.containsKey(parent)) {
+          int parentNode = nodeByCommit.get(parent);
+          downEdges[edge] = parentNode;
+          upCounts[parentNode + 1]++;
+        }
+        else {
+          downEdges[edge] = -1 - parent;
+        }
+        edge++;
+      }
+    }
+    downOffsets[nodesCount] = edge;
+
+    // prefix sums of up edges counts give offsets; then the up edges are filled in the order of child nodes
+    int[] upOffsets = upCounts;
+    for (int node = 0; node < nodesCount; node++) {
+      upOffsets[node + 1] += upOffsets[node];
+    }
+    int[] upEdges = new int[upOffsets[nodesCount]];
+    int[] filled = new int[nodesCount];
+    for (int node = 0; node < nodesCount; node++) {
+      for (int i = downOffsets[node]; i < downOffsets[node + 1]; i++) {
+        int parentNode = downEdges[i];
+        if (parentNode >= 0) {
+          upEdges[upOffsets[parentNode] + filled[parentNode]++] = node;
+        }
+      }
+    }
+    return new PermanentGraph(commitIndices, downOffsets, downEdges, upOffsets, upEdges);
+  }
+
+  public int nodesCount() {
+    return myCommitIndices.length;
+  }
+
+  public int getCommitIndex(int node) {
+    return myCommitIndices[node];
+  }
+
+  public int getDownEdgesCount(int node) {
+    return myDownOffsets[node + 1] - myDownOffsets[node];
+  }
+
+  /**
+   * Returns the node of the i-th parent of the given node, or a negative value if this parent is not in the graph,
+   * see {@link #isNotLoaded(int)} and {@link #getNotLoadedCommitIndex(int)}.
+   */
+  public int getDownNode(int node, int i) {
+    return myDownEdges[myDownOffsets[node] + i];
+  }
+
+  public int getUpEdgesCount(int node) {
+    return myUpOffsets[node + 1] - myUpOffsets[node];
+  }
+
+  public int getUpNode(int node, int i) {
+    return myUpEdges[myUpOffsets[node] + i];
+  }
+
+  public static boolean isNotLoaded(int downNode) {
+    return downNode < 0;
+  }
+
+  public static int getNotLoadedCommitIndex(int downNode) {
+    return -1 - downNode;
+  }
+
+  /**
+   * Approximate number of bytes occupied by the graph arrays.
+   */
+  public long getMemoryFootprint() {
+    return 4L * (myCommitIndices.length + myDownOffsets.length + myDownEdges.length + myUpOffsets.length + myUpEdges.length);
+  }
+}
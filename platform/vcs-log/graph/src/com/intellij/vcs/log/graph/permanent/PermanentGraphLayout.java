@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.graph.permanent;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>Assigns a layout index to each node of a {@link PermanentGraph}: elements of a row are printed in the order of their layout indices.</p>
+ * <p>Nodes are walked depth-first starting from the heads (nodes without up edges) in the row order.
+ *    The first parent of a node gets the layout index of the node, so the first-parent chain is printed as a straight line;
+ *    any other newly reached node gets the next layout index.
+ *    An edge has the greater layout index of its two nodes.</p>
+ */
+public final class PermanentGraphLayout {
+
+  @NotNull private final PermanentGraph myGraph;
+  @NotNull private final int[] myLayoutIndices;
+
+  private PermanentGraphLayout(@NotNull PermanentGraph graph, @NotNull int[] layoutIndices) {
+    myGraph = graph;
+    myLayoutIndices = layoutIndices;
+  }
+
+  @NotNull
+  public static PermanentGraphLayout build(@NotNull PermanentGraph graph) {
+    int nodesCount = graph.nodesCount();
+    int[] layoutIndices = new int[nodesCount]; // 0 means that the node was not reached yet
+    int[] stack = new int[nodesCount];
+    int currentLayoutIndex = 0;
+    for (int head = 0; head < nodesCount; head++) {
+      if (graph.getUpEdgesCount(head) != 0) {
+        continue;
+      }
+      layoutIndices[head] = ++currentLayoutIndex;
+      int stackSize = 0;
+      stack[stackSize++] = head;
+      while (stackSize > 0) {
+        int node = stack[stackSize - 1];
+        int next = -1;
+        for (int i = 0; i < graph.getDownEdgesCount(node); i++) {
+          int downNode = graph.getDownNode(node, i);
+          if (!PermanentGraph.isNotLoaded(downNode) && layoutIndices[downNode] == 0) {
+            layoutIndices[downNode] = i == 0 ? layoutIndices[node] : ++currentLayoutIndex;
+            next = downNode;
+            break;
+          }
+        }
+        if (next == -1) {
+          stackSize--;
+        }
+        else {
+          stack[stackSize++] = next;
+        }
+      }
+    }
+    return new PermanentGraphLayout(graph, layoutIndices);
+  }
+
+  public int getNodeLayoutIndex(int node) {
+    return myLayoutIndices[node];
+  }
+
+  public int getEdgeLayoutIndex(int upNode, int edgeNumber) {
+    int downNode = myGraph.getDownNode(upNode, edgeNumber);
+    if (PermanentGraph.isNotLoaded(downNode)) {
+      return myLayoutIndices[upNode];
+    }
+    return Math.max(myLayoutIndices[upNode], myLayoutIndices[downNode]);
+  }
+}
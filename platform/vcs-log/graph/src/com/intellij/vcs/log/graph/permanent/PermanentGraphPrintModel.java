@@ -0,0 +1,210 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.graph.permanent;
+
+import com.intellij.util.ArrayUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>Computes the elements printed in a row of a {@link PermanentGraph}: the node of the row and the edges passing through the row,
+ *    ordered by their {@link PermanentGraphLayout layout indices}, and the short edges between adjacent rows.</p>
+ * <p>An element is encoded as a long: an edge by its up node and the number of the edge among the down edges of that node,
+ *    the node of a row by the row and {@link #NODE}.</p>
+ * <p>To find the edges passing through a row without walking the whole graph, the edges crossing the first row of each block
+ *    of {@link #BLOCK_SIZE} rows are saved; the remaining edges are found among the down edges of the previous rows of the block.
+ *    Edges to parents which are not in the graph go down to the end of the graph.</p>
+ */
+public final class PermanentGraphPrintModel {
+
+  private static final int BLOCK_SIZE = 64;
+  private static final int NODE = 0xFFFFFFFF;
+
+  @NotNull private final PermanentGraph myGraph;
+  @NotNull private final PermanentGraphLayout myLayout;
+  @NotNull private final int[] myCrossingOffsets;
+  @NotNull private final long[] myCrossingEdges;
+
+  public PermanentGraphPrintModel(@NotNull PermanentGraph graph, @NotNull PermanentGraphLayout layout) {
+    myGraph = graph;
+    myLayout = layout;
+
+    int blocksCount = (graph.nodesCount() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    myCrossingOffsets = new int[blocksCount + 1];
+    for (int up = 0; up < graph.nodesCount(); up++) {
+      for (int i = 0; i < graph.getDownEdgesCount(up); i++) {
+        int down = getDownRow(up, i);
+        for (int block = up / BLOCK_SIZE + 1; block * BLOCK_SIZE < down; block++) {
+          myCrossingOffsets[block + 1]++;
+        }
+      }
+    }
+    for (int block = 0; block < blocksCount; block++) {
+      myCrossingOffsets[block + 1] += myCrossingOffsets[block];
+    }
+    myCrossingEdges = new long[myCrossingOffsets[blocksCount]];
+    int[] filled = new int[blocksCount];
+    for (int up = 0; up < graph.nodesCount(); up++) {
+      for (int i = 0; i < graph.getDownEdgesCount(up); i++) {
+        int down = getDownRow(up, i);
+        for (int block = up / BLOCK_SIZE + 1; block * BLOCK_SIZE < down; block++) {
+          myCrossingEdges[myCrossingOffsets[block] + filled[block]++] = element(up, i);
+        }
+      }
+    }
+  }
+
+  public static long element(int upNode, int edgeNumber) {
+    return ((long)upNode << 32) | (edgeNumber & 0xFFFFFFFFL);
+  }
+
+  public static long nodeElement(int node) {
+    return element(node, NODE);
+  }
+
+  public static int getUpNode(long element) {
+    return (int)(element >>> 32);
+  }
+
+  public static int getEdgeNumber(long element) {
+    return (int)element;
+  }
+
+  public static boolean isNode(long element) {
+    return getEdgeNumber(element) == NODE;
+  }
+
+  /**
+   * Returns the row of the down node of the edge; the row after the last one if the parent is not in the graph.
+   */
+  public int getDownRow(int upNode, int edgeNumber) {
+    int down = myGraph.getDownNode(upNode, edgeNumber);
+    return PermanentGraph.isNotLoaded(down) ? myGraph.nodesCount() : down;
+  }
+
+  /**
+   * Returns the elements printed in the row, in the order of their positions.
+   */
+  @NotNull
+  public long[] getRowElements(int row) {
+    int block = row / BLOCK_SIZE;
+    int blockStart = block * BLOCK_SIZE;
+
+    int count = 1;
+    for (int i = myCrossingOffsets[block]; i < myCrossingOffsets[block + 1]; i++) {
+      long edge = myCrossingEdges[i];
+      if (getDownRow(getUpNode(edge), getEdgeNumber(edge)) > row) {
+        count++;
+      }
+    }
+    for (int up = blockStart; up < row; up++) {
+      for (int i = 0; i < myGraph.getDownEdgesCount(up); i++) {
+        if (getDownRow(up, i) > row) {
+          count++;
+        }
+      }
+    }
+
+    long[] elements = new long[count];
+    int size = 0;
+    elements[size++] = nodeElement(row);
+    for (int i = myCrossingOffsets[block]; i < myCrossingOffsets[block + 1]; i++) {
+      long edge = myCrossingEdges[i];
+      if (getDownRow(getUpNode(edge), getEdgeNumber(edge)) > row) {
+        elements[size++] = edge;
+      }
+    }
+    for (int up = blockStart; up < row; up++) {
+      for (int i = 0; i < myGraph.getDownEdgesCount(up); i++) {
+        if (getDownRow(up, i) > row) {
+          elements[size++] = element(up, i);
+        }
+      }
+    }
+    sort(elements);
+    return elements;
+  }
+
+  /**
+   * Returns the edges between the given row and the next one as pairs of positions: in the row and in the next row.
+   */
+  @NotNull
+  public int[] getDownShortEdges(int row) {
+    if (row + 1 >= myGraph.nodesCount()) {
+      return ArrayUtil.EMPTY_INT_ARRAY;
+    }
+    long[] elements = getRowElements(row);
+    long[] nextElements = getRowElements(row + 1);
+    int count = elements.length - 1 + myGraph.getDownEdgesCount(row);
+    int[] result = new int[2 * count];
+    int size = 0;
+    for (int position = 0; position < elements.length; position++) {
+      long element = elements[position];
+      if (isNode(element)) {
+        for (int i = 0; i < myGraph.getDownEdgesCount(row); i++) {
+          result[size++] = position;
+          result[size++] = indexOf(nextElements, getDownRow(row, i) == row + 1 ? nodeElement(row + 1) : element(row, i));
+        }
+      }
+      else {
+        boolean endsInNextRow = getDownRow(getUpNode(element), getEdgeNumber(element)) == row + 1;
+        result[size++] = position;
+        result[size++] = indexOf(nextElements, endsInNextRow ? nodeElement(row + 1) : element);
+      }
+    }
+    return result;
+  }
+
+  private int getLayoutIndex(long element) {
+    return isNode(element) ? myLayout.getNodeLayoutIndex(getUpNode(element))
+                           : myLayout.getEdgeLayoutIndex(getUpNode(element), getEdgeNumber(element));
+  }
+
+  /**
+   * Orders elements by layout index; the node goes first among the elements with the same index, edges are ordered by their up nodes.
+   * Rows contain just a few elements, so insertion sort is used.
+   */
+  private void sort(@NotNull long[] elements) {
+    for (int i = 1; i < elements.length; i++) {
+      long element = elements[i];
+      int layoutIndex = getLayoutIndex(element);
+      int j = i - 1;
+      while (j >= 0 && compare(elements[j], getLayoutIndex(elements[j]), element, layoutIndex) > 0) {
+        elements[j + 1] = elements[j];
+        j--;
+      }
+      elements[j + 1] = element;
+    }
+  }
+
+  private static int compare(long element1, int layoutIndex1, long element2, int layoutIndex2) {
+    if (layoutIndex1 != layoutIndex2) {
+      return layoutIndex1 < layoutIndex2 ? -1 : 1;
+    }
+    if (isNode(element1) != isNode(element2)) {
+      return isNode(element1) ? -1 : 1;
+    }
+    return element1 < element2 ? -1 : element1 == element2 ? 0 : 1;
+  }
+
+  private static int indexOf(@NotNull long[] elements, long element) {
+    for (int i = 0; i < elements.length; i++) {
+      if (elements[i] == element) {
+        return i;
+      }
+    }
+    throw new IllegalStateException("Element " + getUpNode(element) + ":" + getEdgeNumber(element) + " not found in the next row");
+  }
+}
@@ -0,0 +1,70 @@
+package com.intellij.vcs.log.graph.permanent;
+
+import com.intellij.vcs.log.GraphCommit;
+import com.intellij.vcs.log.VcsRef;
+import com.intellij.vcs.log.graph.GraphTestUtils;
+import com.intellij.vcs.log.graph.mutable.MutableGraph;
+import com.intellij.vcs.log.printmodel.impl.GraphPrintCellModelImpl;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Checks that {@link PermanentGraph} is faster to build and render and takes less memory than {@link MutableGraph}.
+ * Like other performance tests, it is excluded from the default test suite by its name.
+ */
+public class PermanentGraphPerformanceTest {
+  private static final int COMMITS_COUNT = 100000;
+  private static final int RENDERED_ROWS_COUNT = 10000;
+
+  @Test
+  public void compareWithMutableGraph() {
+    List<GraphCommit> commits = PermanentGraphTest.generateLog(COMMITS_COUNT, new Random(239));
+
+    long usedBefore = usedMemory();
+    long start = System.currentTimeMillis();
+    MutableGraph mutableGraph = GraphTestUtils.buildGraph(commits, Collections.<VcsRef>emptyList());
+    long mutableBuildTime = System.currentTimeMillis() - start;
+    long mutableMemory = usedMemory() - usedBefore;
+
+    usedBefore = usedMemory();
+    start = System.currentTimeMillis();
+    PermanentGraph permanentGraph = PermanentGraph.build(commits);
+    PermanentGraphPrintModel printModel = new PermanentGraphPrintModel(permanentGraph, PermanentGraphLayout.build(permanentGraph));
+    long permanentBuildTime = System.currentTimeMillis() - start;
+    long permanentMemory = usedMemory() - usedBefore;
+
+    GraphPrintCellModelImpl printCellModel = new GraphPrintCellModelImpl(mutableGraph);
+    start = System.currentTimeMillis();
+    for (int row = 0; row < RENDERED_ROWS_COUNT; row++) {
+      printCellModel.getGraphPrintCell(row).getDownEdges();
+    }
+    long mutableRenderTime = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    for (int row = 0; row < RENDERED_ROWS_COUNT; row++) {
+      printModel.getDownShortEdges(row);
+    }
+    long permanentRenderTime = System.currentTimeMillis() - start;
+
+    assertEquals(COMMITS_COUNT, permanentGraph.nodesCount());
+    assertTrue("Memory, KB: mutable " + mutableMemory / 1024 + ", permanent " + permanentMemory / 1024,
+               permanentMemory * 2 < mutableMemory);
+    assertTrue("Build time, ms: mutable " + mutableBuildTime + ", permanent " + permanentBuildTime, permanentBuildTime < mutableBuildTime);
+    assertTrue("Rendering of " + RENDERED_ROWS_COUNT + " rows, ms: mutable " + mutableRenderTime + ", permanent " + permanentRenderTime,
+               permanentRenderTime < mutableRenderTime);
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,158 @@
+package com.intellij.vcs.log.graph.permanent;
+
+import com.intellij.vcs.log.GraphCommit;
+import com.intellij.vcs.log.SimpleCommit;
+import com.intellij.vcs.log.parser.SimpleCommitListParser;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+
+public class PermanentGraphTest {
+
+  private static PermanentGraphPrintModel buildPrintModel(List<? extends GraphCommit> commits) {
+    PermanentGraph graph = PermanentGraph.build(commits);
+    return new PermanentGraphPrintModel(graph, PermanentGraphLayout.build(graph));
+  }
+
+  // one line per row: "N<node> <up>:<down row>  |  <up position>-<down position> ..."
+  private static String toStr(List<? extends GraphCommit> commits) {
+    PermanentGraphPrintModel model = buildPrintModel(commits);
+    StringBuilder s = new StringBuilder();
+    for (int row = 0; row < commits.size(); row++) {
+      if (row > 0) {
+        s.append("\n");
+      }
+      long[] elements = model.getRowElements(row);
+      for (int i = 0; i < elements.length; i++) {
+        if (i > 0) {
+          s.append(" ");
+        }
+        s.append(elementToStr(model, elements[i]));
+      }
+      s.append(" |");
+      int[] shortEdges = model.getDownShortEdges(row);
+      for (int i = 0; i < shortEdges.length; i += 2) {
+        s.append(" ").append(shortEdges[i]).append("-").append(shortEdges[i + 1]);
+      }
+    }
+    return s.toString();
+  }
+
+  private static String elementToStr(PermanentGraphPrintModel model, long element) {
+    int up = PermanentGraphPrintModel.getUpNode(element);
+    if (PermanentGraphPrintModel.isNode(element)) {
+      return "N" + up;
+    }
+    return up + ":" + model.getDownRow(up, PermanentGraphPrintModel.getEdgeNumber(element));
+  }
+
+  private static void runTest(String input, String out) {
+    assertEquals(out, toStr(SimpleCommitListParser.parseCommitList(input)));
+  }
+
+  @Test
+  public void linear() {
+    runTest("a0|-a1\n" +
+            "a1|-a2\n" +
+            "a2|-",
+
+            "N0 | 0-0\n" +
+            "N1 | 0-0\n" +
+            "N2 |");
+  }
+
+  @Test
+  public void longEdge() {
+    runTest("a0|-a1 a3\n" +
+            "a1|-a2\n" +
+            "a2|-a3\n" +
+            "a3|-",
+
+            "N0 | 0-0 0-1\n" +
+            "N1 0:3 | 0-0 1-1\n" +
+            "N2 0:3 | 0-0 1-0\n" +
+            "N3 |");
+  }
+
+  @Test
+  public void twoHeads() {
+    runTest("a0|-a2\n" +
+            "a1|-a2\n" +
+            "a2|-",
+
+            "N0 | 0-0\n" +
+            "0:2 N1 | 0-0 1-0\n" +
+            "N2 |");
+  }
+
+  @Test
+  public void notLoadedParent() {
+    runTest("a0|-a1 f0\n" +
+            "a1|-",
+
+            "N0 | 0-0 0-1\n" +
+            "N1 0:2 |");
+  }
+
+  @Test
+  public void graphStructure() {
+    PermanentGraph graph = PermanentGraph.build(SimpleCommitListParser.parseCommitList("a0|-a1 a2\n" +
+                                                                                        "a1|-a2\n" +
+                                                                                        "a2|-f0"));
+    assertEquals(3, graph.nodesCount());
+    assertEquals(0xa1, graph.getCommitIndex(1));
+    assertEquals(2, graph.getDownEdgesCount(0));
+    assertEquals(2, graph.getDownNode(0, 1));
+    assertEquals(2, graph.getUpEdgesCount(2));
+    assertEquals(0, graph.getUpNode(2, 0));
+    assertEquals(1, graph.getUpNode(2, 1));
+    assertEquals(true, PermanentGraph.isNotLoaded(graph.getDownNode(2, 0)));
+    assertEquals(0xf0, PermanentGraph.getNotLoadedCommitIndex(graph.getDownNode(2, 0)));
+  }
+
+  @Test
+  public void rowElementsMatchAllCrossingEdges() {
+    List<GraphCommit> commits = generateLog(1000, new Random(239));
+    PermanentGraph graph = PermanentGraph.build(commits);
+    PermanentGraphPrintModel model = new PermanentGraphPrintModel(graph, PermanentGraphLayout.build(graph));
+    for (int row = 0; row < graph.nodesCount(); row++) {
+      Set<Long> expected = new HashSet<Long>();
+      expected.add(PermanentGraphPrintModel.nodeElement(row));
+      for (int up = 0; up < row; up++) {
+        for (int i = 0; i < graph.getDownEdgesCount(up); i++) {
+          if (model.getDownRow(up, i) > row) {
+            expected.add(PermanentGraphPrintModel.element(up, i));
+          }
+        }
+      }
+      Set<Long> actual = new HashSet<Long>();
+      for (long element : model.getRowElements(row)) {
+        actual.add(element);
+      }
+      assertEquals("row " + row, expected, actual);
+      if (row + 1 < graph.nodesCount()) {
+        assertEquals(2 * (expected.size() - 1 + graph.getDownEdgesCount(row)), model.getDownShortEdges(row).length);
+      }
+    }
+  }
+
+  /**
+   * Generates a log with merges of short-lived branches, some of which are merged far below, and a few parents which are not loaded.
+   */
+  static List<GraphCommit> generateLog(int size, Random random) {
+    List<GraphCommit> commits = new ArrayList<GraphCommit>(size);
+    for (int i = 0; i < size; i++) {
+      int firstParent = i + 1 < size ? i + 1 : size + i;
+      if (random.nextInt(10) == 0) {
+        int secondParent = i + 2 + random.nextInt(random.nextInt(5) == 0 ? 300 : 10);
+        commits.add(new SimpleCommit(i, new int[]{firstParent, secondParent < size ? secondParent : size + secondParent}));
+      }
+      else {
+        commits.add(new SimpleCommit(i, new int[]{firstParent}));
+      }
+    }
+    return commits;
+  }
+}
@@ -16,8 +16,10 @@ import java.util.Map;
  */
 public class CommitDetailsGetter extends DataGetter<VcsFullCommitDetails> {
 
+  static final long CACHE_SIZE = 20 * 1024 * 1024; // bytes
+
   CommitDetailsGetter(VcsLogDataHolder dataHolder, @NotNull Map<VirtualFile, VcsLogProvider> logProviders) {
-    super(dataHolder, logProviders, new VcsCommitCache<VcsFullCommitDetails>());
+    super(dataHolder, logProviders, new VcsCommitCache<VcsFullCommitDetails>(CACHE_SIZE));
   }
 
   @NotNull
@@ -27,4 +29,10 @@ public class CommitDetailsGetter extends DataGetter<VcsFullCommitDetails> {
     return logProvider.readFullDetails(root, hashes);
   }
 
+  @Override
+  public void saveInCache(List<? extends VcsFullCommitDetails> details) {
+    super.saveInCache(details);
+    myDataHolder.indexDetails(details);
+  }
+
 }
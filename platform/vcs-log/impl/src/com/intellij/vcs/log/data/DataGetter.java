@@ -1,6 +1,7 @@
 package com.intellij.vcs.log.data;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -20,6 +21,9 @@ import org.jetbrains.annotations.Nullable;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -28,17 +32,22 @@ import java.util.Map;
  * <ul>
  *   <li>it tries to get it from the cache;</li>
  *   <li>if it fails, it tries to get it from the VCS, and additionally loads several commits around the requested one,
- *       to avoid querying the VCS if user investigates details of nearby commits.</li>
+ *       to avoid querying the VCS if user investigates details of nearby commits;
+ *       most of these commits are taken in the direction in which user scrolls the log.</li>
  *   <li>The loading happens asynchronously: a fake {@link LoadingDetails} object is returned </li>
+ *   <li>Commits requested while the previous loading is in progress are loaded together, with a single VCS call per root.</li>
  * </ul>
  *
  * @author Kirill Likhodedov
  */
 public abstract class DataGetter<T extends VcsShortCommitDetails> implements Disposable {
 
-  private static final int UP_PRELOAD_COUNT = 20;
-  private static final int DOWN_PRELOAD_COUNT = 40;
+  private static final Logger LOG = Logger.getInstance(DataGetter.class);
+
+  private static final int PRELOAD_COUNT = 60;
+  private static final int BACKWARD_PRELOAD_COUNT = 15; // commits preloaded in the direction opposite to scrolling
   private static final int MAX_LOADING_TASKS = 10;
+  private static final int MAX_BATCH_SIZE = 300; // hashes are passed to the VCS in the command line
 
   @NotNull protected final VcsLogDataHolder myDataHolder;
   @NotNull private final Map<VirtualFile, VcsLogProvider> myLogProviders;
@@ -52,6 +61,21 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
 
   @NotNull private final Collection<Runnable> myLoadingFinishedListeners = new ArrayList<Runnable>();
 
+  /**
+   * The row which details were requested last, to find out the direction of scrolling. Accessed only from the EDT.
+   */
+  private int myLastRequestedRow = -1;
+
+  @NotNull private final PendingNodes<Node> myPendingNodes = new PendingNodes<Node>(MAX_BATCH_SIZE);
+
+  /**
+   * The number of requests which didn't find details in the cache and started loading. Accessed only from the EDT.
+   */
+  private long myLoadRequestsCount;
+  private long myLoadedCount;
+  private long myBatchesCount;
+  private long myLoadingTime;
+
   DataGetter(@NotNull VcsLogDataHolder dataHolder, @NotNull Map<VirtualFile, VcsLogProvider> logProviders,
              @NotNull VcsCommitCache<T> cache) {
     myDataHolder = dataHolder;
@@ -62,10 +86,17 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
                                                                  new ThrowableConsumer<TaskDescriptor, VcsException>() {
       @Override
       public void consume(TaskDescriptor task) throws VcsException {
-        preLoadCommitData(task.nodes);
+        List<Node> nodes = myPendingNodes.take();
+        if (nodes.isEmpty()) {
+          return; // already loaded together with the previous task
+        }
+        preLoadCommitData(nodes);
         UIUtil.invokeAndWaitIfNeeded(new Runnable() {
           @Override
           public void run() {
+            if (LOG.isDebugEnabled()) {
+              LOG.debug(getStatistics());
+            }
             for (Runnable loadingFinishedListener : myLoadingFinishedListeners) {
               loadingFinishedListener.run();
             }
@@ -93,6 +124,7 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
 
   @NotNull
   private T loadingDetails(Node node, Hash hash) {
+    myLoadRequestsCount++;
     TaskDescriptor descriptor = runLoadAroundCommitData(node);
     T loadingDetails = (T)new LoadingDetails(hash, descriptor.getTaskNum(), node.getBranch().getRepositoryRoot());
     return loadingDetails;
@@ -148,22 +180,27 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
   @NotNull 
   private TaskDescriptor runLoadAroundCommitData(@NotNull Node node) {
     int rowIndex = node.getRowIndex();
+    boolean scrollingUp = rowIndex < myLastRequestedRow;
+    myLastRequestedRow = rowIndex;
+    int upCount = scrollingUp ? PRELOAD_COUNT - BACKWARD_PRELOAD_COUNT : BACKWARD_PRELOAD_COUNT;
+
     List<Node> nodes = new ArrayList<Node>();
     long taskNumber = myCurrentTaskIndex++;
-    for (int i = rowIndex - UP_PRELOAD_COUNT; i < rowIndex + DOWN_PRELOAD_COUNT; i++) {
+    for (int i = rowIndex - upCount; i < rowIndex - upCount + PRELOAD_COUNT; i++) {
       Node commitNode = getCommitNodeInRow(i);
       if (commitNode != null) {
-        nodes.add(commitNode);
         Hash hash = myDataHolder.getHash(commitNode.getCommitIndex());
 
         // fill the cache with temporary "Loading" values to avoid producing queries for each commit that has not been cached yet,
         // even if it will be loaded within a previous query
         if (!myCache.isKeyCached(hash)) {
           myCache.put(hash, (T)new LoadingDetails(hash, taskNumber, commitNode.getBranch().getRepositoryRoot()));
+          nodes.add(commitNode);
         }
       }
     }
-    TaskDescriptor task = new TaskDescriptor(nodes, taskNumber);
+    myPendingNodes.add(nodes);
+    TaskDescriptor task = new TaskDescriptor(taskNumber);
     myLoader.queue(task);
     return task;
   }
@@ -174,13 +211,79 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
       VirtualFile root = node.getBranch().getRepositoryRoot();
       hashesByRoots.putValue(root, myDataHolder.getHash(node.getCommitIndex()).asString());
     }
+    readAndSaveInCache(hashesByRoots);
+  }
 
+  private void readAndSaveInCache(@NotNull MultiMap<VirtualFile, String> hashesByRoots) throws VcsException {
     for (Map.Entry<VirtualFile, Collection<String>> entry : hashesByRoots.entrySet()) {
+      long start = System.currentTimeMillis();
       List<? extends T> details = readDetails(myLogProviders.get(entry.getKey()), entry.getKey(), new ArrayList<String>(entry.getValue()));
+      recordLoading(details.size(), System.currentTimeMillis() - start);
       saveInCache(details);
     }
   }
 
+  private synchronized void recordLoading(int count, long time) {
+    myLoadedCount += count;
+    myBatchesCount++;
+    myLoadingTime += time;
+  }
+
+  /**
+   * Returns the size of the cache, the number of requests which had to load details,
+   * and the number and the average latency of VCS calls made to load details.
+   * Should be called from the EDT.
+   */
+  @NotNull
+  public String getStatistics() {
+    String cacheStatistics = String.format("cache size %d KB, %d load requests", myCache.getSize() / 1024, myLoadRequestsCount);
+    synchronized (this) {
+      return String.format("%s: %s, %d details loaded in %d calls, average latency %d ms", getClass().getSimpleName(), cacheStatistics,
+                           myLoadedCount, myBatchesCount, myBatchesCount == 0 ? 0 : myLoadingTime / myBatchesCount);
+    }
+  }
+
+  /**
+   * Returns details of the given commits in the same order. Details which are not in the cache are read from the VCS
+   * in the calling thread (all at once, without preloading nearby commits), so this method should not be called from the EDT.
+   */
+  @NotNull
+  public List<T> loadCommitData(@NotNull final List<Node> nodes) throws VcsException {
+    final Map<Hash, T> details = new HashMap<Hash, T>();
+    final MultiMap<VirtualFile, String> notCached = new MultiMap<VirtualFile, String>();
+    UIUtil.invokeAndWaitIfNeeded(new Runnable() {
+      @Override
+      public void run() {
+        for (Node node : nodes) {
+          Hash hash = myDataHolder.getHash(node.getCommitIndex());
+          T cached = getFromCache(hash);
+          if (cached == null || cached instanceof LoadingDetails) {
+            notCached.putValue(node.getBranch().getRepositoryRoot(), hash.asString());
+          }
+          else {
+            details.put(hash, cached);
+          }
+        }
+      }
+    });
+    readAndSaveInCache(notCached);
+
+    final List<T> result = new ArrayList<T>(nodes.size());
+    UIUtil.invokeAndWaitIfNeeded(new Runnable() {
+      @Override
+      public void run() {
+        for (Node node : nodes) {
+          Hash hash = myDataHolder.getHash(node.getCommitIndex());
+          T data = details.containsKey(hash) ? details.get(hash) : getFromCache(hash);
+          if (data != null) {
+            result.add(data);
+          }
+        }
+      }
+    });
+    return result;
+  }
+
   public void saveInCache(final List<? extends T> details) {
     UIUtil.invokeAndWaitIfNeeded(new Runnable() {
       @Override
@@ -204,12 +307,43 @@ public abstract class DataGetter<T extends VcsShortCommitDetails> implements Dis
     myLoadingFinishedListeners.add(runnable);
   }
 
+  /**
+   * Commits which details should be loaded, most recently requested last.
+   * The oldest requests are forgotten if there are too many of them: their "Loading" values will expire,
+   * and the details will be requested again if needed.
+   */
+  static class PendingNodes<N> {
+    private final int myMaxSize;
+    @NotNull private final LinkedHashSet<N> myNodes = new LinkedHashSet<N>();
+
+    PendingNodes(int maxSize) {
+      myMaxSize = maxSize;
+    }
+
+    synchronized void add(@NotNull List<N> nodes) {
+      for (N node : nodes) {
+        myNodes.remove(node);
+        myNodes.add(node);
+      }
+      Iterator<N> iterator = myNodes.iterator();
+      while (myNodes.size() > myMaxSize) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+
+    @NotNull
+    synchronized List<N> take() {
+      List<N> nodes = new ArrayList<N>(myNodes);
+      myNodes.clear();
+      return nodes;
+    }
+  }
+
   private static class TaskDescriptor {
-    private final List<Node> nodes;
     private long myTaskNum;
 
-    private TaskDescriptor(List<Node> nodes, long taskNum) {
-      this.nodes = nodes;
+    private TaskDescriptor(long taskNum) {
       myTaskNum = taskNum;
     }
 
@@ -14,8 +14,10 @@ import java.util.Map;
  */
 public class MiniDetailsGetter extends DataGetter<VcsShortCommitDetails> {
 
+  static final long CACHE_SIZE = 4 * 1024 * 1024; // bytes
+
   MiniDetailsGetter(@NotNull VcsLogDataHolder dataHolder, @NotNull Map<VirtualFile, VcsLogProvider> logProviders) {
-    super(dataHolder, logProviders, new VcsCommitCache<VcsShortCommitDetails>());
+    super(dataHolder, logProviders, new VcsCommitCache<VcsShortCommitDetails>(CACHE_SIZE));
   }
 
   @NotNull
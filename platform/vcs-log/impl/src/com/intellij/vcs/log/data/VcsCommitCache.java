@@ -15,35 +15,64 @@
  */
 package com.intellij.vcs.log.data;
 
-import com.intellij.util.containers.SLRUMap;
 import com.intellij.vcs.log.Hash;
+import com.intellij.vcs.log.VcsFullCommitDetails;
 import com.intellij.vcs.log.VcsShortCommitDetails;
+import com.intellij.vcs.log.impl.VcsFullCommitDetailsImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * <p>The cache of commit details.</p>
  * <p>It is not actually a cache, but rather a limited map, because there is intentionally no way to get the non-cached value if it was not
  *    found in the cache: such functionality is implemented by the {@link DataGetter} which is able to receive
  *    non-cached details more efficiently, in a batch.</p>
+ * <p>The map is limited by the approximate size of the stored details rather than by their number,
+ *    since details of different commits (especially full details with many changes) differ a lot in size.
+ *    Least recently used details are removed first.</p>
  * <p>Any access to the Cache MUST be performed from the EDT thread.</p>
  *
  * @author Kirill Likhodedov
  */
 class VcsCommitCache<T extends VcsShortCommitDetails> {
 
-  private final SLRUMap<Hash, T> myCache = new SLRUMap<Hash, T>(5000, 5000);
+  private static final int ENTRY_SIZE = 300; // the object, hash, parents, users, etc.
+  private static final int CHANGE_SIZE = 250; // the change with paths
+
+  private final long myMaxSize;
+  private final LinkedHashMap<Hash, T> myCache = new LinkedHashMap<Hash, T>(16, 0.75f, true);
+  private long mySize;
+
+  /**
+   * @param maxSize approximate maximum size of the stored details in bytes.
+   */
+  VcsCommitCache(long maxSize) {
+    myMaxSize = maxSize;
+  }
 
   public void put(@NotNull Hash hash, @NotNull T commit) {
     assert EventQueue.isDispatchThread();
-    myCache.put(hash, commit);
+    T previous = myCache.put(hash, commit);
+    if (previous != null) {
+      mySize -= estimateSize(previous);
+    }
+    mySize += estimateSize(commit);
+
+    Iterator<Map.Entry<Hash, T>> iterator = myCache.entrySet().iterator();
+    while (mySize > myMaxSize && myCache.size() > 1) {
+      mySize -= estimateSize(iterator.next().getValue());
+      iterator.remove();
+    }
   }
 
   public boolean isKeyCached(@NotNull Hash hash) {
     assert EventQueue.isDispatchThread();
-    return myCache.get(hash) != null;
+    return myCache.containsKey(hash);
   }
 
   @Nullable
@@ -53,7 +82,26 @@ class VcsCommitCache<T extends VcsShortCommitDetails> {
   }
 
   public void remove(@NotNull Hash hash) {
-    myCache.remove(hash);
+    T previous = myCache.remove(hash);
+    if (previous != null) {
+      mySize -= estimateSize(previous);
+    }
+  }
+
+  public long getSize() {
+    assert EventQueue.isDispatchThread();
+    return mySize;
+  }
+
+  private static int estimateSize(@NotNull VcsShortCommitDetails commit) {
+    int size = ENTRY_SIZE + 2 * commit.getSubject().length();
+    if (commit instanceof VcsFullCommitDetails && !(commit instanceof LoadingDetails)) {
+      size += 2 * ((VcsFullCommitDetails)commit).getFullMessage().length();
+      if (commit instanceof VcsFullCommitDetailsImpl) {
+        size += CHANGE_SIZE * ((VcsFullCommitDetailsImpl)commit).getChangesCount();
+      }
+    }
+    return size;
   }
 
 }
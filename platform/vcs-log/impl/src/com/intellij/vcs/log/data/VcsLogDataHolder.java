@@ -21,14 +21,20 @@ import com.intellij.openapi.diagnostic.Attachment;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.BackgroundTaskQueue;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Comparing;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vcs.VcsException;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.*;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashSet;
 import com.intellij.util.messages.Topic;
@@ -36,7 +42,9 @@ import com.intellij.util.ui.UIUtil;
 import com.intellij.vcs.log.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.ide.PooledThreadExecutor;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
@@ -89,11 +97,19 @@ public class VcsLogDataHolder implements Disposable {
   public static final Topic<Runnable> REFRESH_COMPLETED = Topic.create("Vcs.Log.Completed", Runnable.class);
 
   private static final Logger LOG = Logger.getInstance(VcsLogDataHolder.class);
+  private static final int INDEXING_BATCH_SIZE = 500;
+  private static final String LOADING_THREADS_REGISTRY_KEY = "vcs.log.loading.threads";
+  /**
+   * If some roots are loaded, but others are still loading after this time (in ms), the log of loaded roots is shown to the user.
+   */
+  private static final long PARTIAL_RESULT_DELAY = 1000;
 
   @NotNull private final Project myProject;
   @NotNull private final VcsLogObjectsFactory myFactory;
   @NotNull private final Map<VirtualFile, VcsLogProvider> myLogProviders;
   @NotNull private final BackgroundTaskQueue myDataLoaderQueue;
+  @NotNull private final BackgroundTaskQueue myIndexingQueue;
+  @NotNull private final VcsLogRootsLoader myRootsLoader;
   @NotNull private final MiniDetailsGetter myMiniDetailsGetter;
   @NotNull private final CommitDetailsGetter myDetailsGetter;
   @NotNull private final VcsLogJoiner myLogJoiner;
@@ -144,6 +160,12 @@ public class VcsLogDataHolder implements Disposable {
   private final VcsUserRegistry myUserRegistry;
 
   private final VcsLogHashMap myHashMap;
+  private final Map<VirtualFile, VcsLogStructureStorage> myStructureStorages = ContainerUtil.newHashMap();
+  /**
+   * Roots whose log structure has changed since it was saved: it is rewritten as a whole, so refreshes don't save it, dispose does.
+   */
+  private final Set<VirtualFile> myUnsavedRoots = Collections.synchronizedSet(new HashSet<VirtualFile>());
+  @Nullable private final VcsLogIndex myIndex;
   private final NotNullFunction<Integer, Hash> myHashGetter;
   private final NotNullFunction<Hash, Integer> myIndexGetter;
   private final ContainingBranchesGetter myContainingBranchesGetter;
@@ -153,6 +175,9 @@ public class VcsLogDataHolder implements Disposable {
     myProject = project;
     myLogProviders = logProviders;
     myDataLoaderQueue = new BackgroundTaskQueue(project, "Loading history...");
+    myIndexingQueue = new BackgroundTaskQueue(project, "Indexing history...");
+    myRootsLoader = new VcsLogRootsLoader(new BoundedTaskExecutor(PooledThreadExecutor.INSTANCE, Registry.intValue(LOADING_THREADS_REGISTRY_KEY)),
+                                          PARTIAL_RESULT_DELAY);
     myMiniDetailsGetter = new MiniDetailsGetter(this, logProviders);
     myDetailsGetter = new CommitDetailsGetter(this, logProviders);
     myLogJoiner = new VcsLogJoiner();
@@ -182,6 +207,11 @@ public class VcsLogDataHolder implements Disposable {
       }
     };
     myContainingBranchesGetter = new ContainingBranchesGetter(this);
+    for (VirtualFile root : logProviders.keySet()) {
+      myStructureStorages.put(root, new VcsLogStructureStorage(project, root));
+    }
+    myIndex = VcsLogIndex.open(new File(new File(VcsLogHashMap.LOG_CACHE_APP_DIR, "index"),
+                                        project.getName() + "." + project.getLocationHash()));
   }
 
   @NotNull
@@ -217,16 +247,31 @@ public class VcsLogDataHolder implements Disposable {
       public void consume(ProgressIndicator indicator) throws VcsException {
         resetState();
         readCurrentUser();
+        // if some roots take long to load, the log of other roots is shown first, and is updated when all roots are loaded
+        final Consumer<DataPack> showLog = new Consumer<DataPack>() {
+          private boolean myShown;
+
+          @Override
+          public void consume(DataPack dataPack) {
+            if (myShown) {
+              notifyAboutDataRefresh();
+            }
+            else {
+              myShown = true;
+              onInitialized.consume(VcsLogDataHolder.this);
+            }
+          }
+        };
         loadFromVcs(mySettings.getRecentCommitsCount(), indicator, new Consumer<DataPack>() {
           @Override
           public void consume(DataPack dataPack) {
             myEntireLogLoadWaiter.countDown(); // make sure to release any potential waiters of the previous latch
             myEntireLogLoadWaiter = new CountDownLatch(1);
 
-            onInitialized.consume(VcsLogDataHolder.this);
+            showLog.consume(dataPack);
             loadAllLog(); // after first part is loaded and shown to the user, start loading the whole log in background
           }
-        });
+        }, isMultiRoot() ? showLog : null);
       }
     }, "Loading recent history...");
   }
@@ -270,24 +315,45 @@ public class VcsLogDataHolder implements Disposable {
       @Override
       public void consume(ProgressIndicator indicator) throws VcsException {
         try {
-          Consumer<VcsUser> userRegistry = new Consumer<VcsUser>() {
+          final Consumer<VcsUser> userRegistry = new Consumer<VcsUser>() {
             @Override
             public void consume(VcsUser user) {
               myUserRegistry.addUser(user);
             }
           };
-          Map<VirtualFile, List<? extends TimedVcsCommit>> logs = ContainerUtil.newHashMap();
-          Map<VirtualFile, Collection<VcsRef>> refs = ContainerUtil.newHashMap();
-          for (Map.Entry<VirtualFile, VcsLogProvider> entry : myLogProviders.entrySet()) {
-            VirtualFile root = entry.getKey();
-            VcsLogProvider logProvider = entry.getValue();
-            logs.put(root, compactHashes(logProvider.readAllHashes(root, userRegistry)));
-            refs.put(root, logProvider.readAllRefs(root));
-          }
+          final Map<VirtualFile, List<? extends TimedVcsCommit>> logs = ContainerUtil.newHashMap();
+          final Map<VirtualFile, Collection<VcsRef>> refs = ContainerUtil.newHashMap();
+          myRootsLoader.load(myLogProviders.keySet(), new VcsLogRootsLoader.Task<Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>>>() {
+            @Override
+            public Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>> load(@NotNull final VirtualFile root,
+                                                                                @NotNull ProgressIndicator rootIndicator) throws VcsException {
+              return computeUnderProgress(new ThrowableComputable<Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>>, VcsException>() {
+                @Override
+                public Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>> compute() throws VcsException {
+                  VcsLogProvider logProvider = myLogProviders.get(root);
+                  Collection<VcsRef> rootRefs = logProvider.readAllRefs(root);
+                  List<? extends TimedVcsCommit> log = attachToSavedLog(root, rootRefs);
+                  if (log == null) {
+                    log = compactHashes(logProvider.readAllHashes(root, userRegistry));
+                  }
+                  saveLogStructure(root, log, rootRefs);
+                  myUnsavedRoots.remove(root);
+                  return Pair.<List<? extends TimedVcsCommit>, Collection<VcsRef>>create(log, rootRefs);
+                }
+              }, rootIndicator);
+            }
+          }, indicator, new PairConsumer<VirtualFile, Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>>>() {
+            @Override
+            public void consume(VirtualFile root, Pair<List<? extends TimedVcsCommit>, Collection<VcsRef>> logAndRefs) {
+              logs.put(root, logAndRefs.first);
+              refs.put(root, logAndRefs.second);
+            }
+          }, null);
           DataPack existingDataPack = myLogData.getDataPack();
           // keep existing data pack: we don't want to rebuild the graph,
           // we just make the whole log structure available for our cunning refresh procedure of if user requests the whole graph
           myLogData = new LogData(logs, refs, myLogData.getTopCommits(), existingDataPack, true);
+          indexHistory(logs);
         }
         finally {
           myEntireLogLoadWaiter.countDown();
@@ -296,7 +362,167 @@ public class VcsLogDataHolder implements Disposable {
     }, "Loading log structure...");
   }
 
-  private List<CompactCommit> compactHashes(List<TimedVcsCommit> commits) {
+  /**
+   * Adds details of the given commits to the {@link VcsLogIndex}. Indexing happens in background, in a separate queue,
+   * so that it doesn't delay loading and refreshing the log.
+   */
+  void indexDetails(@NotNull final List<? extends VcsFullCommitDetails> details) {
+    if (myIndex == null || details.isEmpty()) {
+      return;
+    }
+    myIndexingQueue.run(new Task.Backgroundable(myProject, "Indexing commits...") {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          for (VcsFullCommitDetails detail : details) {
+            myIndex.index(putHash(detail.getHash()), detail);
+          }
+          myIndex.flush();
+        }
+        catch (IOException e) {
+          LOG.warn("Couldn't index commit details", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Reads details of the commits of the whole log which are not indexed yet, and indexes them.
+   * Since the index is persistent, this happens once: later only new commits are indexed.
+   */
+  private void indexHistory(@NotNull final Map<VirtualFile, List<? extends TimedVcsCommit>> logs) {
+    if (myIndex == null) {
+      return;
+    }
+    myIndexingQueue.run(new Task.Backgroundable(myProject, "Indexing history...", true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          for (Map.Entry<VirtualFile, List<? extends TimedVcsCommit>> entry : logs.entrySet()) {
+            VirtualFile root = entry.getKey();
+            List<String> batch = ContainerUtil.newArrayList();
+            for (TimedVcsCommit commit : entry.getValue()) {
+              if (!myIndex.isIndexed(putHash(commit.getHash()))) {
+                batch.add(commit.getHash().asString());
+              }
+              if (batch.size() == INDEXING_BATCH_SIZE) {
+                indexBatch(root, batch, indicator);
+                batch.clear();
+              }
+            }
+            indexBatch(root, batch, indicator);
+          }
+        }
+        catch (VcsException e) {
+          LOG.warn("Couldn't read commit details for indexing", e);
+        }
+        catch (IOException e) {
+          LOG.warn("Couldn't index commit details", e);
+        }
+      }
+    });
+  }
+
+  private void indexBatch(@NotNull VirtualFile root, @NotNull List<String> hashes, @NotNull ProgressIndicator indicator)
+    throws VcsException, IOException {
+    if (hashes.isEmpty()) {
+      return;
+    }
+    indicator.checkCanceled();
+    for (VcsFullCommitDetails detail : myLogProviders.get(root).readFullDetails(root, hashes)) {
+      myIndex.index(putHash(detail.getHash()), detail);
+    }
+    myIndex.flush();
+  }
+
+  @Nullable
+  VcsLogIndex getIndex() {
+    return myIndex;
+  }
+
+  /**
+   * Reads the log structure saved in the previous session, and attaches to it the recent commits, which have already been read
+   * from the VCS on initialization.
+   * Returns null if there is no saved structure, or if the recent commits can't be attached to it (e.g. if too many commits
+   * have been made since the structure was saved), so the whole log should be read from the VCS.
+   */
+  @Nullable
+  private List<? extends TimedVcsCommit> attachToSavedLog(@NotNull VirtualFile root, @NotNull Collection<VcsRef> newRefs) {
+    VcsLogStructureStorage.LogStructure structure = myStructureStorages.get(root).load();
+    if (structure == null || !isValid(structure)) {
+      return null;
+    }
+
+    List<CompactCommit> savedLog = new ArrayList<CompactCommit>(structure.hashes.length);
+    for (int i = 0; i < structure.hashes.length; i++) {
+      savedLog.add(new CompactCommit(structure.hashes[i], structure.parents, structure.getParentsStart(i), structure.parentsEnds[i],
+                                     structure.times[i]));
+    }
+    Set<Hash> previousRefsHashes = new HashSet<Hash>();
+    for (int head : structure.refHeads) {
+      previousRefsHashes.add(getHash(head));
+    }
+    for (int i = 0; i < structure.users.length; i += 2) {
+      myUserRegistry.createUser(structure.users[i], structure.users[i + 1]);
+    }
+
+    try {
+      return myLogJoiner.addCommits(savedLog, previousRefsHashes, myLogData.getLog(root), newRefs).getFirst();
+    }
+    catch (IllegalStateException e) {
+      LOG.info("Couldn't attach recent commits to the saved log structure of " + root + ", reading the whole log");
+      return null;
+    }
+  }
+
+  private boolean isValid(@NotNull VcsLogStructureStorage.LogStructure structure) {
+    if (structure.hashes.length == 0) {
+      return false;
+    }
+    try {
+      Hash first = myHashMap.getHash(structure.hashes[0]);
+      Hash last = myHashMap.getHash(structure.hashes[structure.hashes.length - 1]);
+      return first != null && last != null && first.asString().equals(structure.firstHash) && last.asString().equals(structure.lastHash);
+    }
+    catch (Exception e) {
+      LOG.info("Saved log structure doesn't match the hash map", e);
+      return false;
+    }
+  }
+
+  private void saveLogStructure(@NotNull VirtualFile root, @NotNull List<? extends TimedVcsCommit> log, @NotNull Collection<VcsRef> refs) {
+    VcsLogStructureStorage storage = myStructureStorages.get(root);
+    if (log.isEmpty()) {
+      storage.clear();
+      return;
+    }
+    List<CompactCommit> commits = compactHashes(log);
+    int[] refHeads = new int[refs.size()];
+    int i = 0;
+    for (VcsRef ref : refs) {
+      refHeads[i++] = putHash(ref.getCommitHash());
+    }
+    myHashMap.flush();
+    storage.save(commits, refHeads, myUserRegistry.getUsers(), commits.get(0).getHash().asString(),
+                 commits.get(commits.size() - 1).getHash().asString());
+  }
+
+  private void saveChangedLogStructures() {
+    LogData logData = myLogData;
+    if (logData == null) {
+      return;
+    }
+    List<VirtualFile> roots;
+    synchronized (myUnsavedRoots) {
+      roots = new ArrayList<VirtualFile>(myUnsavedRoots);
+      myUnsavedRoots.clear();
+    }
+    for (VirtualFile root : roots) {
+      saveLogStructure(root, logData.getLog(root), logData.getRefs(root));
+    }
+  }
+
+  private List<CompactCommit> compactHashes(List<? extends TimedVcsCommit> commits) {
     return ContainerUtil.map(commits, new Function<TimedVcsCommit, CompactCommit>() {
       @Override
       public CompactCommit fun(final TimedVcsCommit commit) {
@@ -372,18 +598,23 @@ public class VcsLogDataHolder implements Disposable {
     Map<VirtualFile, Collection<VcsRef>> refsByRoot = ContainerUtil.newHashMap();
     int topCommitCount = myLogData.getTopCommitsCount();
 
-    for (Map.Entry<VirtualFile, RecentCommitsInfo> entry : collectInfoFromVcs(false, mySettings.getRecentCommitsCount())) {
+    for (Map.Entry<VirtualFile, RecentCommitsInfo> entry : collectInfoFromVcs(false, mySettings.getRecentCommitsCount(), indicator,
+                                                                              null)) {
       VirtualFile root = entry.getKey();
       RecentCommitsInfo info = entry.getValue();
 
       Collection<VcsRef> oldRefs = myLogData.getRefs(root);
       Pair<List<TimedVcsCommit>, Integer> joinResult = myLogJoiner.addCommits(myLogData.getLog(root), oldRefs,
                                                                               info.firstBlockCommits, info.newRefs);
-      if (!Comparing.haveEqualElements(oldRefs, info.newRefs)) {
+      boolean refsChanged = !Comparing.haveEqualElements(oldRefs, info.newRefs);
+      if (refsChanged) {
         myContainingBranchesGetter.clearCache();
       }
       List<TimedVcsCommit> refreshedLog = joinResult.getFirst();
       int newCommitsCount = joinResult.getSecond();
+      if (refsChanged || newCommitsCount != 0) {
+        myUnsavedRoots.add(root);
+      }
       // the value can significantly increase if user keeps IDEA open for a long time, and frequently receives many new commits,
       // but it is expected: we can work with long logs. A limit can be added in future if this becomes a problem.
       topCommitCount += newCommitsCount;
@@ -414,11 +645,26 @@ public class VcsLogDataHolder implements Disposable {
    * This is not intended to be used for an ordinary refresh, because it assumes that no new commits have arrived, and therefore
    * doesn't change the saved log skeleton.
    */
-  private void loadFromVcs(int commitCount, ProgressIndicator indicator, final Consumer<DataPack> onSuccess) throws VcsException {
+  private void loadFromVcs(int commitCount, final ProgressIndicator indicator, final Consumer<DataPack> onSuccess,
+                           @Nullable final Consumer<DataPack> onPartialResult) throws VcsException {
+    Consumer<Set<Map.Entry<VirtualFile, RecentCommitsInfo>>> partialResultConsumer = null;
+    if (onPartialResult != null) {
+      partialResultConsumer = new Consumer<Set<Map.Entry<VirtualFile, RecentCommitsInfo>>>() {
+        @Override
+        public void consume(Set<Map.Entry<VirtualFile, RecentCommitsInfo>> loadedRoots) {
+          buildFromRecentCommits(loadedRoots, indicator, onPartialResult);
+        }
+      };
+    }
+    buildFromRecentCommits(collectInfoFromVcs(true, commitCount, indicator, partialResultConsumer), indicator, onSuccess);
+  }
+
+  private void buildFromRecentCommits(@NotNull Set<Map.Entry<VirtualFile, RecentCommitsInfo>> infoByRoot,
+                                      @NotNull ProgressIndicator indicator, @NotNull Consumer<DataPack> onSuccess) {
     Map<VirtualFile, List<? extends TimedVcsCommit>> logsToBuild = ContainerUtil.newHashMap();
     Map<VirtualFile, Collection<VcsRef>> refsByRoot = ContainerUtil.newHashMap();
 
-    for (Map.Entry<VirtualFile, RecentCommitsInfo> entry : collectInfoFromVcs(true, commitCount)) {
+    for (Map.Entry<VirtualFile, RecentCommitsInfo> entry : infoByRoot) {
       VirtualFile root = entry.getKey();
       RecentCommitsInfo info = entry.getValue();
 
@@ -448,23 +694,79 @@ public class VcsLogDataHolder implements Disposable {
     handleOnSuccessInEdt(onSuccess, dataPack);
   }
 
-  private Set<Map.Entry<VirtualFile, RecentCommitsInfo>> collectInfoFromVcs(boolean ordered, int commitsCount) throws VcsException {
-    Map<VirtualFile, RecentCommitsInfo> infoByRoot = ContainerUtil.newHashMap();
-    for (Map.Entry<VirtualFile, VcsLogProvider> entry : myLogProviders.entrySet()) {
-      VirtualFile root = entry.getKey();
-      VcsLogProvider logProvider = entry.getValue();
-
-      List<? extends VcsFullCommitDetails> firstBlockDetails = logProvider.readFirstBlock(root, ordered, commitsCount);
-      Collection<VcsRef> newRefs = logProvider.readAllRefs(root);
-      storeTopCommitsDetailsInCache(firstBlockDetails);
-      storeUsers(firstBlockDetails);
-      List<TimedVcsCommit> firstBlockCommits = getCommitsFromDetails(firstBlockDetails);
-
-      infoByRoot.put(root, new RecentCommitsInfo(firstBlockCommits, newRefs));
+  /**
+   * Reads recent commits and refs of all roots in parallel.
+   * If the partial result consumer is given, it receives information about the roots loaded so far,
+   * if some roots are still loading {@link #PARTIAL_RESULT_DELAY} after the first root was loaded.
+   */
+  private Set<Map.Entry<VirtualFile, RecentCommitsInfo>> collectInfoFromVcs(final boolean ordered, final int commitsCount,
+                                                                            @NotNull ProgressIndicator indicator,
+                                                                            @Nullable final Consumer<Set<Map.Entry<VirtualFile, RecentCommitsInfo>>> partialResultConsumer)
+    throws VcsException {
+    final Map<VirtualFile, RecentCommitsInfo> infoByRoot = ContainerUtil.newHashMap();
+    long start = System.currentTimeMillis();
+    Runnable partialResultCallback = null;
+    if (partialResultConsumer != null) {
+      partialResultCallback = new Runnable() {
+        @Override
+        public void run() {
+          partialResultConsumer.consume(new HashMap<VirtualFile, RecentCommitsInfo>(infoByRoot).entrySet());
+        }
+      };
     }
+    myRootsLoader.load(myLogProviders.keySet(), new VcsLogRootsLoader.Task<Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>>>() {
+      @Override
+      public Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>> load(@NotNull final VirtualFile root,
+                                                                                  @NotNull ProgressIndicator rootIndicator) throws VcsException {
+        return computeUnderProgress(new ThrowableComputable<Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>>, VcsException>() {
+          @Override
+          public Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>> compute() throws VcsException {
+            VcsLogProvider logProvider = myLogProviders.get(root);
+            List<? extends VcsFullCommitDetails> firstBlockDetails = logProvider.readFirstBlock(root, ordered, commitsCount);
+            Collection<VcsRef> newRefs = logProvider.readAllRefs(root);
+            return Pair.<List<? extends VcsFullCommitDetails>, Collection<VcsRef>>create(firstBlockDetails, newRefs);
+          }
+        }, rootIndicator);
+      }
+    }, indicator, new PairConsumer<VirtualFile, Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>>>() {
+      @Override
+      public void consume(VirtualFile root, Pair<List<? extends VcsFullCommitDetails>, Collection<VcsRef>> detailsAndRefs) {
+        List<? extends VcsFullCommitDetails> firstBlockDetails = detailsAndRefs.first;
+        storeTopCommitsDetailsInCache(firstBlockDetails);
+        storeUsers(firstBlockDetails);
+        indexDetails(firstBlockDetails);
+        List<TimedVcsCommit> firstBlockCommits = getCommitsFromDetails(firstBlockDetails);
+        infoByRoot.put(root, new RecentCommitsInfo(firstBlockCommits, detailsAndRefs.second));
+      }
+    }, partialResultCallback);
+    LOG.debug("Recent commits of " + infoByRoot.size() + " roots loaded in " + (System.currentTimeMillis() - start) + " ms");
     return infoByRoot.entrySet();
   }
 
+  /**
+   * Runs the computation with the given indicator as the current one, so that VCS processes started by it are stopped when it is cancelled.
+   */
+  private static <T> T computeUnderProgress(@NotNull final ThrowableComputable<T, VcsException> computable,
+                                            @NotNull ProgressIndicator indicator) throws VcsException {
+    final Ref<VcsException> exception = Ref.create();
+    T result = ProgressManager.getInstance().runProcess(new Computable<T>() {
+      @Override
+      public T compute() {
+        try {
+          return computable.compute();
+        }
+        catch (VcsException e) {
+          exception.set(e);
+          return null;
+        }
+      }
+    }, indicator);
+    if (!exception.isNull()) {
+      throw exception.get();
+    }
+    return result;
+  }
+
   private void storeUsers(@NotNull List<? extends VcsFullCommitDetails> details) {
     for (VcsFullCommitDetails detail : details) {
       myUserRegistry.addUser(detail.getAuthor());
@@ -635,7 +937,7 @@ public class VcsLogDataHolder implements Disposable {
           smartRefresh(indicator, success);
         }
         else {
-          loadFromVcs(mySettings.getRecentCommitsCount(), indicator, success);
+          loadFromVcs(mySettings.getRecentCommitsCount(), indicator, success, null);
         }
       }
     }, "Refreshing history...");
@@ -704,6 +1006,11 @@ public class VcsLogDataHolder implements Disposable {
   @Override
   public void dispose() {
     myDataLoaderQueue.clear();
+    myIndexingQueue.clear();
+    if (myIndex != null) {
+      myIndex.close();
+    }
+    saveChangedLogStructures();
     myLogData = null;
     resetState();
   }
@@ -804,6 +1111,19 @@ public class VcsLogDataHolder implements Disposable {
     private final int[] myOtherParents;
     private final long myTime;
 
+    public CompactCommit(int hashIndex, int[] parents, int parentsStart, int parentsEnd, long time) {
+      myHashIndex = hashIndex;
+      myTime = time;
+      myParent = parentsStart < parentsEnd ? parents[parentsStart] : -1;
+      if (parentsEnd - parentsStart > 1) {
+        myOtherParents = new int[parentsEnd - parentsStart - 1];
+        System.arraycopy(parents, parentsStart + 1, myOtherParents, 0, myOtherParents.length);
+      }
+      else {
+        myOtherParents = null;
+      }
+    }
+
     public CompactCommit(TimedVcsCommit commit) {
       this(commit.getHash(), commit.getParents(), commit.getTime());
     }
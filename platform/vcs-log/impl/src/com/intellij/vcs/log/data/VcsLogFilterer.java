@@ -2,8 +2,11 @@ package com.intellij.vcs.log.data;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.Ref;
 import com.intellij.util.Consumer;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Function;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.ui.UIUtil;
@@ -12,14 +15,18 @@ import com.intellij.vcs.log.VcsLogFilter;
 import com.intellij.vcs.log.graph.elements.Node;
 import com.intellij.vcs.log.graphmodel.GraphModel;
 import com.intellij.vcs.log.ui.VcsLogUI;
+import com.intellij.vcs.log.ui.filter.VcsLogTextFilter;
 import com.intellij.vcs.log.ui.tables.AbstractVcsLogTableModel;
 import com.intellij.vcs.log.ui.tables.GraphTableModel;
 import com.intellij.vcs.log.ui.tables.NoGraphTableModel;
+import gnu.trove.TIntHashSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class VcsLogFilterer {
 
@@ -65,8 +72,10 @@ public class VcsLogFilterer {
     // apply details filters, and use simple table without graph (we can't filter by details and keep the graph yet).
     final AbstractVcsLogTableModel model;
     if (!detailsFilters.isEmpty()) {
-      List<VcsFullCommitDetails> filteredCommits = filterByDetails(graphModel, detailsFilters);
-      model = new NoGraphTableModel(myUI, filteredCommits, myLogDataHolder.getDataPack().getRefsModel(), true);
+      Pair<List<VcsFullCommitDetails>, Boolean> filteredCommits = filterByDetails(graphModel, detailsFilters);
+      // if all matching commits of the whole log were found, there is no need to ask the VCS for more
+      boolean allowLoadingMore = !filteredCommits.second || !myLogDataHolder.isFullLogShowing();
+      model = new NoGraphTableModel(myUI, filteredCommits.first, myLogDataHolder.getDataPack().getRefsModel(), allowLoadingMore);
     }
     else {
       model = new GraphTableModel(myLogDataHolder, myUI);
@@ -119,38 +128,103 @@ public class VcsLogFilterer {
     });
   }
 
-  private List<VcsFullCommitDetails> filterByDetails(final GraphModel graphModel, final List<VcsLogDetailsFilter> detailsFilters) {
-    List<VcsFullCommitDetails> result = ContainerUtil.newArrayList();
+  /**
+   * Returns the details of commits matching the filters, in the order of rows, and true if all rows of the graph have been checked.
+   * <p/>
+   * Commits which are in the {@link VcsLogIndex} are checked by the index, so all rows of the graph can be checked;
+   * other commits are checked by their details, which are available only for recent commits.
+   */
+  @NotNull
+  private Pair<List<VcsFullCommitDetails>, Boolean> filterByDetails(@NotNull GraphModel graphModel,
+                                                                    @NotNull List<VcsLogDetailsFilter> detailsFilters) {
+    VcsLogIndex index = myLogDataHolder.getIndex();
+    if (index != null) {
+      try {
+        return filter(graphModel, detailsFilters, new IndexedFilters(index, detailsFilters));
+      }
+      catch (IOException e) {
+        LOG.warn("Couldn't filter commits by the index", e);
+      }
+      catch (VcsException e) {
+        LOG.warn("Couldn't read details of filtered commits", e);
+      }
+    }
+    try {
+      return filter(graphModel, detailsFilters, null);
+    }
+    catch (IOException e) {
+      throw new AssertionError(e); // the index is not used
+    }
+    catch (VcsException e) {
+      throw new AssertionError(e); // all details are taken from the cache
+    }
+  }
+
+  @NotNull
+  private Pair<List<VcsFullCommitDetails>, Boolean> filter(@NotNull GraphModel graphModel,
+                                                           @NotNull final List<VcsLogDetailsFilter> detailsFilters,
+                                                           @Nullable IndexedFilters indexedFilters) throws IOException, VcsException {
+    List<Node> matchingNodes = ContainerUtil.newArrayList();
+    Map<Node, VcsFullCommitDetails> cachedDetails = ContainerUtil.newHashMap();
     int topCommits = myLogDataHolder.getSettings().getRecentCommitsCount();
-    for (int i = 0; i < topCommits && i < graphModel.getGraph().getNodeRows().size(); i++) {
+    int rowsCount = graphModel.getGraph().getNodeRows().size();
+    boolean allRowsChecked = true;
+    for (int i = 0; i < rowsCount; i++) {
       Node node = graphModel.getGraph().getCommitNodeInRow(i);
       if (node == null) {
         // there can be nodes which contain no commits (IDEA-115442, branch filter case)
         continue;
       }
-      final VcsFullCommitDetails details = getDetailsFromCache(node);
-      if (details == null) {
-        // Details for recent commits should be available in the cache.
-        // However if they are not there for some reason, we stop filtering.
-        // If we continue, if this commit without details matches filters,
-        // if details of an older commit are found in the cache, and if this older commit matches the filter,
-        // then we will return the list which incorrectly misses some matching commit in the middle.
-        // => Instead we rather will return a smaller list: this is not a problem,
-        // because the VCS will be requested for filtered details if there are not enough of them.
-        LOG.debug("No details found for a recent commit " + myLogDataHolder.getHash(node.getCommitIndex()));
-        break;
+      Boolean indexedMatch = indexedFilters == null ? null : indexedFilters.matches(node);
+      if (indexedMatch != null) {
+        if (indexedMatch) {
+          matchingNodes.add(node);
+        }
       }
-      boolean allFiltersMatch = !ContainerUtil.exists(detailsFilters, new Condition<VcsLogDetailsFilter>() {
-        @Override
-        public boolean value(VcsLogDetailsFilter filter) {
-          return !filter.matches(details);
+      else {
+        if (i >= topCommits) {
+          allRowsChecked = false;
+          break;
         }
-      });
-      if (allFiltersMatch) {
-        result.add(details);
+        final VcsFullCommitDetails details = getDetailsFromCache(node);
+        if (details == null) {
+          // Details for recent commits should be available in the cache.
+          // However if they are not there for some reason, we stop filtering.
+          // If we continue, if this commit without details matches filters,
+          // if details of an older commit are found in the cache, and if this older commit matches the filter,
+          // then we will return the list which incorrectly misses some matching commit in the middle.
+          // => Instead we rather will return a smaller list: this is not a problem,
+          // because the VCS will be requested for filtered details if there are not enough of them.
+          LOG.debug("No details found for a recent commit " + myLogDataHolder.getHash(node.getCommitIndex()));
+          allRowsChecked = false;
+          break;
+        }
+        boolean allFiltersMatch = !ContainerUtil.exists(detailsFilters, new Condition<VcsLogDetailsFilter>() {
+          @Override
+          public boolean value(VcsLogDetailsFilter filter) {
+            return !filter.matches(details);
+          }
+        });
+        if (allFiltersMatch) {
+          matchingNodes.add(node);
+          cachedDetails.put(node, details);
+        }
+      }
+      if (matchingNodes.size() >= topCommits) {
+        // details of the rest matching commits will be requested from the VCS if user scrolls to them
+        allRowsChecked = i == rowsCount - 1;
+        break;
       }
     }
-    return result;
+
+    if (cachedDetails.size() == matchingNodes.size()) {
+      List<VcsFullCommitDetails> result = ContainerUtil.newArrayList();
+      for (Node node : matchingNodes) {
+        result.add(cachedDetails.get(node));
+      }
+      return Pair.create(result, allRowsChecked);
+    }
+    return Pair.create(myLogDataHolder.getCommitDetailsGetter().loadCommitData(matchingNodes), allRowsChecked);
   }
 
   @Nullable
@@ -165,4 +239,60 @@ public class VcsLogFilterer {
     return ref.get();
   }
 
+  /**
+   * Checks commits against the details filters by the {@link VcsLogIndex}.
+   * Commits of each root are requested from the index once per filter, since the "me" filter differs between roots;
+   * the text filter doesn't depend on the root, so its commits are requested once for all roots.
+   */
+  private static class IndexedFilters {
+    @NotNull private final VcsLogIndex myIndex;
+    @NotNull private final List<VcsLogDetailsFilter> myFilters;
+    @NotNull private final Map<VirtualFile, List<TIntHashSet>> myMatchingCommits = ContainerUtil.newHashMap();
+    @NotNull private final Map<VcsLogDetailsFilter, TIntHashSet> myTextMatchingCommits = ContainerUtil.newHashMap();
+
+    IndexedFilters(@NotNull VcsLogIndex index, @NotNull List<VcsLogDetailsFilter> filters) {
+      myIndex = index;
+      myFilters = filters;
+    }
+
+    /**
+     * Returns null if the commit is not indexed, or if some filter can't be answered by the index.
+     */
+    @Nullable
+    Boolean matches(@NotNull Node node) throws IOException {
+      if (!myIndex.isIndexed(node.getCommitIndex())) {
+        return null;
+      }
+      VirtualFile root = node.getBranch().getRepositoryRoot();
+      List<TIntHashSet> matchingCommits = myMatchingCommits.get(root);
+      if (matchingCommits == null) {
+        matchingCommits = ContainerUtil.newArrayList();
+        for (VcsLogDetailsFilter filter : myFilters) {
+          matchingCommits.add(getMatchingCommits(filter, root));
+        }
+        myMatchingCommits.put(root, matchingCommits);
+      }
+      for (TIntHashSet commits : matchingCommits) {
+        if (commits == null) {
+          return null;
+        }
+        if (!commits.contains(node.getCommitIndex())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Nullable
+    private TIntHashSet getMatchingCommits(@NotNull VcsLogDetailsFilter filter, @NotNull VirtualFile root) throws IOException {
+      if (!(filter instanceof VcsLogTextFilter)) {
+        return myIndex.filter(filter, root);
+      }
+      if (!myTextMatchingCommits.containsKey(filter)) {
+        myTextMatchingCommits.put(filter, myIndex.filter(filter, root));
+      }
+      return myTextMatchingCommits.get(filter);
+    }
+  }
+
 }
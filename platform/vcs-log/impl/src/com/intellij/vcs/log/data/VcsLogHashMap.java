@@ -35,7 +35,7 @@ import java.io.IOException;
  */
 class VcsLogHashMap {
 
-  private static final File LOG_CACHE_APP_DIR = new File(PathManager.getSystemPath(), "vcs-log");
+  static final File LOG_CACHE_APP_DIR = new File(PathManager.getSystemPath(), "vcs-log");
 
   private final PersistentEnumerator<Hash> myPersistentEnumerator;
 
@@ -53,6 +53,10 @@ class VcsLogHashMap {
     return myPersistentEnumerator.enumerate(hash);
   }
 
+  void flush() {
+    myPersistentEnumerator.force();
+  }
+
   private static class MyHashKeyDescriptor implements KeyDescriptor<Hash> {
     @Override
     public void save(DataOutput out, Hash value) throws IOException {
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.Processor;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import com.intellij.vcs.log.VcsFullCommitDetails;
+import com.intellij.vcs.log.VcsLogFilter;
+import com.intellij.vcs.log.VcsUser;
+import com.intellij.vcs.log.ui.filter.VcsLogTextFilter;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntIterator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * <p>Persistent index of commit messages, authors and changed paths, which lets details filters be answered
+ *    for the whole history without querying the VCS.</p>
+ * <p>Commits are identified by their {@link VcsLogHashMap} indices. For each commit the lower-cased message is stored,
+ *    and the commit is appended to the lists of commits of each trigram of the message, of the author and of each changed path.
+ *    Lists are only appended to, since details of a commit never change.</p>
+ * <p>A text query is answered by intersecting the lists of its trigrams and checking the messages of the remaining commits;
+ *    user and path queries look through the (relatively few) indexed users and paths and join their lists.</p>
+ */
+class VcsLogIndex {
+
+  private static final Logger LOG = Logger.getInstance(VcsLogIndex.class);
+
+  private static final int VERSION = 1;
+  private static final int TRIGRAM_LENGTH = 3;
+
+  @NotNull private final PersistentHashMap<Integer, String> myMessages;
+  @NotNull private final PersistentHashMap<Integer, TIntHashSet> myTrigrams;
+  @NotNull private final PersistentHashMap<String, TIntHashSet> myUsers;
+  @NotNull private final PersistentHashMap<String, TIntHashSet> myPaths;
+
+  /**
+   * Indices of commits which are already in the index; loaded on startup, since the check is made for each row of the log.
+   */
+  @NotNull private final TIntHashSet myIndexedCommits = new TIntHashSet();
+  private boolean myClosed;
+
+  VcsLogIndex(@NotNull File storageDir) throws IOException {
+    File versionFile = new File(storageDir, "version");
+    if (!versionFile.exists() || !String.valueOf(VERSION).equals(FileUtil.loadFile(versionFile).trim())) {
+      FileUtil.delete(storageDir);
+      FileUtil.writeToFile(versionFile, String.valueOf(VERSION));
+    }
+    myMessages = new PersistentHashMap<Integer, String>(new File(storageDir, "messages"), EnumeratorIntegerDescriptor.INSTANCE,
+                                                        new EnumeratorStringDescriptor());
+    myTrigrams = new PersistentHashMap<Integer, TIntHashSet>(new File(storageDir, "trigrams"), EnumeratorIntegerDescriptor.INSTANCE,
+                                                             new CommitsExternalizer());
+    myUsers = new PersistentHashMap<String, TIntHashSet>(new File(storageDir, "users"), new EnumeratorStringDescriptor(),
+                                                         new CommitsExternalizer());
+    myPaths = new PersistentHashMap<String, TIntHashSet>(new File(storageDir, "paths"), new EnumeratorStringDescriptor(),
+                                                         new CommitsExternalizer());
+    myMessages.processKeysWithExistingMapping(new Processor<Integer>() {
+      @Override
+      public boolean process(Integer commit) {
+        myIndexedCommits.add(commit);
+        return true;
+      }
+    });
+  }
+
+  /**
+   * Opens the index stored in the given directory; if the storage is corrupted, it is recreated.
+   * Returns null if the index can't be created at all: in that case filters are applied without it.
+   */
+  @Nullable
+  static VcsLogIndex open(@NotNull File storageDir) {
+    try {
+      return new VcsLogIndex(storageDir);
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't open the log index, rebuilding it", e);
+      FileUtil.delete(storageDir);
+      try {
+        return new VcsLogIndex(storageDir);
+      }
+      catch (IOException e1) {
+        LOG.error("Couldn't create the log index", e1);
+        return null;
+      }
+    }
+  }
+
+  synchronized boolean isIndexed(int commit) {
+    return myIndexedCommits.contains(commit);
+  }
+
+  synchronized int getIndexedCommitsCount() {
+    return myIndexedCommits.size();
+  }
+
+  /**
+   * Adds the commit to the index, unless it is already there.
+   */
+  void index(int commit, @NotNull VcsFullCommitDetails details) throws IOException {
+    if (details instanceof LoadingDetails) {
+      return;
+    }
+    index(commit, details.getFullMessage(), details.getAuthor(), getChangedPaths(details));
+  }
+
+  synchronized void index(int commit, @NotNull String message, @NotNull VcsUser author, @NotNull Collection<String> paths)
+    throws IOException {
+    if (myClosed || myIndexedCommits.contains(commit)) {
+      return;
+    }
+    String lowerCaseMessage = message.toLowerCase();
+    TIntHashSet trigrams = getTrigrams(lowerCaseMessage);
+    for (TIntIterator it = trigrams.iterator(); it.hasNext(); ) {
+      append(myTrigrams, it.next(), commit);
+    }
+    append(myUsers, getUserKey(author), commit);
+    for (String path : paths) {
+      append(myPaths, path, commit);
+    }
+    // the message is written last: its presence marks that the commit is indexed completely
+    myMessages.put(commit, lowerCaseMessage);
+    myIndexedCommits.add(commit);
+  }
+
+  /**
+   * Returns indexed commits of the given root which match the filter,
+   * or null if the filter can't be answered by the index: then it should be checked against commit details.
+   */
+  @Nullable
+  TIntHashSet filter(@NotNull VcsLogFilter filter, @NotNull VirtualFile root) throws IOException {
+    if (filter instanceof VcsLogTextFilter) {
+      return filterByText(((VcsLogTextFilter)filter).getText());
+    }
+    if (filter instanceof VcsLogUserFilter.ByName) {
+      final String name = ((VcsLogUserFilter.ByName)filter).getUserName(root).toLowerCase();
+      return filterByUser(new Condition<String>() {
+        @Override
+        public boolean value(String userKey) {
+          return userKey.toLowerCase().contains(name);
+        }
+      });
+    }
+    if (filter instanceof VcsLogUserFilter.Me) {
+      VcsUser me = ((VcsLogUserFilter.Me)filter).getUser(root);
+      if (me == null) {
+        return new TIntHashSet();
+      }
+      final String name = me.getName();
+      return filterByUser(new Condition<String>() {
+        @Override
+        public boolean value(String userKey) {
+          return userKey.startsWith(name + "\n"); // users are equal if their names are equal, see VcsUserImpl
+        }
+      });
+    }
+    if (filter instanceof VcsLogStructureFilter) {
+      final Collection<VirtualFile> files = ((VcsLogStructureFilter)filter).getFiles(root);
+      return filterByPath(new Condition<String>() {
+        @Override
+        public boolean value(String path) {
+          for (VirtualFile file : files) {
+            if (FileUtil.isAncestor(file.getPath(), path, false)) {
+              return true;
+            }
+          }
+          return false;
+        }
+      });
+    }
+    return null;
+  }
+
+  /**
+   * Returns indexed commits which message contains the given text ignoring case,
+   * or null if the text is too short to be looked up by trigrams or if the index is closed.
+   */
+  @Nullable
+  synchronized TIntHashSet filterByText(@NotNull String text) throws IOException {
+    final String lowerCaseText = text.toLowerCase();
+    if (myClosed || lowerCaseText.length() < TRIGRAM_LENGTH) {
+      return null;
+    }
+    TIntHashSet candidates = null;
+    for (TIntIterator it = getTrigrams(lowerCaseText).iterator(); it.hasNext(); ) {
+      TIntHashSet commits = myTrigrams.get(it.next());
+      if (commits == null) {
+        return new TIntHashSet();
+      }
+      if (candidates == null) {
+        candidates = commits;
+      }
+      else {
+        candidates.retainAll(commits.toArray());
+      }
+      if (candidates.isEmpty()) {
+        return candidates;
+      }
+    }
+
+    // trigrams may come in a different order or be hashed to the same value => check the message itself
+    TIntHashSet result = new TIntHashSet();
+    for (TIntIterator it = candidates.iterator(); it.hasNext(); ) {
+      int commit = it.next();
+      String message = myMessages.get(commit);
+      if (message != null && message.contains(lowerCaseText)) {
+        result.add(commit);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns indexed commits which author matches the condition, or null if the index is closed.
+   * The condition receives the author name and e-mail separated by a new line.
+   */
+  @Nullable
+  synchronized TIntHashSet filterByUser(@NotNull Condition<String> userCondition) throws IOException {
+    return myClosed ? null : collectCommits(myUsers, userCondition);
+  }
+
+  /**
+   * Returns indexed commits which change a path matching the condition, or null if the index is closed.
+   */
+  @Nullable
+  synchronized TIntHashSet filterByPath(@NotNull Condition<String> pathCondition) throws IOException {
+    return myClosed ? null : collectCommits(myPaths, pathCondition);
+  }
+
+  synchronized void flush() {
+    if (!myClosed) {
+      myMessages.force();
+      myTrigrams.force();
+      myUsers.force();
+      myPaths.force();
+    }
+  }
+
+  synchronized void close() {
+    if (myClosed) {
+      return;
+    }
+    myClosed = true;
+    try {
+      myMessages.close();
+      myTrigrams.close();
+      myUsers.close();
+      myPaths.close();
+    }
+    catch (IOException e) {
+      LOG.warn(e);
+    }
+  }
+
+  @NotNull
+  private static TIntHashSet collectCommits(@NotNull PersistentHashMap<String, TIntHashSet> map,
+                                            @NotNull Condition<String> keyCondition) throws IOException {
+    TIntHashSet result = new TIntHashSet();
+    for (String key : map.getAllKeysWithExistingMapping()) {
+      if (keyCondition.value(key)) {
+        TIntHashSet commits = map.get(key);
+        if (commits != null) {
+          result.addAll(commits.toArray());
+        }
+      }
+    }
+    return result;
+  }
+
+  private static <K> void append(@NotNull PersistentHashMap<K, TIntHashSet> map, @NotNull K key, final int commit) throws IOException {
+    map.appendData(key, new PersistentHashMap.ValueDataAppender() {
+      @Override
+      public void append(DataOutput out) throws IOException {
+        DataInputOutputUtil.writeINT(out, commit);
+      }
+    });
+  }
+
+  @NotNull
+  private static String getUserKey(@NotNull VcsUser user) {
+    return user.getName() + "\n" + user.getEmail();
+  }
+
+  @NotNull
+  private static TIntHashSet getTrigrams(@NotNull String text) {
+    TIntHashSet trigrams = new TIntHashSet();
+    for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+      trigrams.add((text.charAt(i) * 31 + text.charAt(i + 1)) * 31 + text.charAt(i + 2));
+    }
+    return trigrams;
+  }
+
+  @NotNull
+  private static Collection<String> getChangedPaths(@NotNull VcsFullCommitDetails details) {
+    Collection<String> paths = new HashSet<String>();
+    for (Change change : details.getChanges()) {
+      ContentRevision before = change.getBeforeRevision();
+      if (before != null) {
+        paths.add(before.getFile().getPath());
+      }
+      ContentRevision after = change.getAfterRevision();
+      if (after != null) {
+        paths.add(after.getFile().getPath());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Reads the list of commits written by successive appends: the value is a sequence of ints until the end of the record.
+   */
+  private static class CommitsExternalizer implements DataExternalizer<TIntHashSet> {
+    @Override
+    public void save(DataOutput out, TIntHashSet value) throws IOException {
+      for (TIntIterator it = value.iterator(); it.hasNext(); ) {
+        DataInputOutputUtil.writeINT(out, it.next());
+      }
+    }
+
+    @Override
+    public TIntHashSet read(DataInput in) throws IOException {
+      TIntHashSet commits = new TIntHashSet();
+      DataInputStream stream = (DataInputStream)in;
+      while (stream.available() > 0) {
+        commits.add(DataInputOutputUtil.readINT(in));
+      }
+      return commits;
+    }
+  }
+}
@@ -48,7 +48,17 @@ public class VcsLogJoiner {
                                                            @NotNull Collection<VcsRef> previousRefs,
                                                            @NotNull List<? extends TimedVcsCommit> firstBlock,
                                                            @NotNull Collection<VcsRef> newRefs) {
-    Set<Hash> previousRefsHashes = toHashes(previousRefs);
+    return addCommits(savedLog, toHashes(previousRefs), firstBlock, newRefs);
+  }
+
+  /**
+   * Same as {@link #addCommits(List, Collection, List, Collection)}, but takes only the hashes of commits referenced by previous refs.
+   */
+  @NotNull
+  public Pair<List<TimedVcsCommit>, Integer> addCommits(@NotNull List<? extends TimedVcsCommit> savedLog,
+                                                           @NotNull Set<Hash> previousRefsHashes,
+                                                           @NotNull List<? extends TimedVcsCommit> firstBlock,
+                                                           @NotNull Collection<VcsRef> newRefs) {
     Set<Hash> newRefsHashes = toHashes(newRefs);
     Pair<Integer, Set<Hash>> redCommitsAndSavedRedIndex =
       getRedCommitsAndSavedRedIndex(savedLog, previousRefsHashes, firstBlock, newRefsHashes);
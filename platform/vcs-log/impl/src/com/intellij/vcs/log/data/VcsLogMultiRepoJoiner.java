@@ -1,12 +1,16 @@
 package com.intellij.vcs.log.data;
 
-import com.intellij.util.containers.ContainerUtil;
 import com.intellij.vcs.log.TimedVcsCommit;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 
 /**
+ * Joins logs of several repositories into a single log ordered by commit time.
+ * <p/>
+ * Logs are merged at once: the next commit of each log is kept in a priority queue, so joining takes O(N log k)
+ * for N commits in k repositories. Commits with the same time are taken in the order of the logs.
+ *
  * @author Kirill Likhodedov
  */
 class VcsLogMultiRepoJoiner {
@@ -19,40 +23,59 @@ class VcsLogMultiRepoJoiner {
     }
     List<TimedVcsCommit> result = new ArrayList<TimedVcsCommit>(size);
 
-    Map<TimedVcsCommit, Iterator<? extends TimedVcsCommit>> nextCommits = ContainerUtil.newHashMap();
+    PriorityQueue<LogCursor> nextCommits = new PriorityQueue<LogCursor>(Math.max(logsFromRepos.size(), 1));
+    int logNumber = 0;
     for (List<? extends TimedVcsCommit> log : logsFromRepos) {
-      Iterator<? extends TimedVcsCommit> iterator = log.iterator();
-      if (iterator.hasNext()) {
-        nextCommits.put(iterator.next(), iterator);
+      if (!log.isEmpty()) {
+        nextCommits.add(new LogCursor(log, logNumber));
       }
+      logNumber++;
     }
 
     while (!nextCommits.isEmpty()) {
-      TimedVcsCommit lastCommit = findLatestCommit(nextCommits.keySet());
-      Iterator<? extends TimedVcsCommit> iterator = nextCommits.get(lastCommit);
-      result.add(lastCommit);
-      nextCommits.remove(lastCommit);
-
-      if (iterator.hasNext()) {
-        nextCommits.put(iterator.next(), iterator);
+      LogCursor cursor = nextCommits.poll();
+      result.add(cursor.getCommit());
+      if (cursor.next()) {
+        nextCommits.add(cursor);
       }
     }
 
     return result;
   }
 
-  @NotNull
-  private static TimedVcsCommit findLatestCommit(@NotNull Set<TimedVcsCommit> commits) {
-    long maxTimeStamp = 0;
-    TimedVcsCommit lastCommit = null;
-    for (TimedVcsCommit commit : commits) {
-      if (commit.getTime() > maxTimeStamp) {
-        maxTimeStamp = commit.getTime();
-        lastCommit = commit;
+  private static class LogCursor implements Comparable<LogCursor> {
+    @NotNull private final Iterator<? extends TimedVcsCommit> myIterator;
+    private final int myLogNumber;
+    @NotNull private TimedVcsCommit myCommit;
+
+    LogCursor(@NotNull List<? extends TimedVcsCommit> log, int logNumber) {
+      myIterator = log.iterator();
+      myLogNumber = logNumber;
+      myCommit = myIterator.next();
+    }
+
+    @NotNull
+    TimedVcsCommit getCommit() {
+      return myCommit;
+    }
+
+    boolean next() {
+      if (!myIterator.hasNext()) {
+        return false;
+      }
+      myCommit = myIterator.next();
+      return true;
+    }
+
+    @Override
+    public int compareTo(@NotNull LogCursor cursor) {
+      long time = myCommit.getTime();
+      long otherTime = cursor.myCommit.getTime();
+      if (time != otherTime) {
+        return time > otherTime ? -1 : 1; // the latest commit goes first
       }
+      return myLogNumber - cursor.myLogNumber;
     }
-    assert lastCommit != null;
-    return lastCommit;
   }
 
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.PairConsumer;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Executes a task for each root of the log in parallel and passes results to the consumer in the calling thread,
+ * in the order in which roots are loaded.
+ */
+class VcsLogRootsLoader {
+
+  private static final Logger LOG = Logger.getInstance(VcsLogRootsLoader.class);
+  private static final long POLL_TIMEOUT = 100;
+
+  interface Task<T> {
+    /**
+     * @param indicator is cancelled when the loading is cancelled or loading of another root fails; long operations should check it.
+     */
+    T load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) throws VcsException;
+  }
+
+  @NotNull private final Executor myExecutor;
+  private final long myPartialResultDelay;
+
+  /**
+   * @param partialResultDelay time (in ms) since the first root is loaded after which the partial result callback is invoked
+   *                           if some roots are still loading
+   */
+  VcsLogRootsLoader(@NotNull Executor executor, long partialResultDelay) {
+    myExecutor = executor;
+    myPartialResultDelay = partialResultDelay;
+  }
+
+  /**
+   * @param partialResultCallback is invoked in the calling thread if some roots are loaded but others are still loading
+   *                              after the partial result delay, and then again each time the delay passes and new roots are loaded.
+   */
+  <T> void load(@NotNull Collection<VirtualFile> roots, @NotNull final Task<T> task, @NotNull ProgressIndicator indicator,
+                @NotNull PairConsumer<VirtualFile, T> resultConsumer, @Nullable Runnable partialResultCallback) throws VcsException {
+    final ProgressIndicator rootsIndicator = new RootsIndicator(indicator);
+    CompletionService<Pair<VirtualFile, T>> completionService = new ExecutorCompletionService<Pair<VirtualFile, T>>(myExecutor);
+    List<Future<Pair<VirtualFile, T>>> futures = ContainerUtil.newArrayList();
+    for (final VirtualFile root : roots) {
+      futures.add(completionService.submit(new Callable<Pair<VirtualFile, T>>() {
+        @Override
+        public Pair<VirtualFile, T> call() throws VcsException {
+          rootsIndicator.checkCanceled();
+          long start = System.currentTimeMillis();
+          T result = task.load(root, rootsIndicator);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Root " + root.getPresentableUrl() + " loaded in " + (System.currentTimeMillis() - start) + " ms");
+          }
+          return Pair.create(root, result);
+        }
+      }));
+    }
+
+    try {
+      int loaded = 0;
+      int reported = 0;
+      long lastResultTime = 0; // time when the first root was loaded or the last partial result was reported
+      while (loaded < futures.size()) {
+        Future<Pair<VirtualFile, T>> future = completionService.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+        indicator.checkCanceled();
+        if (future != null) {
+          Pair<VirtualFile, T> result = future.get();
+          resultConsumer.consume(result.first, result.second);
+          if (loaded++ == 0) {
+            lastResultTime = System.currentTimeMillis();
+          }
+        }
+        long time = System.currentTimeMillis();
+        if (partialResultCallback != null && reported < loaded && loaded < futures.size() && time - lastResultTime >= myPartialResultDelay) {
+          reported = loaded;
+          lastResultTime = time;
+          partialResultCallback.run();
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof VcsException) {
+        throw (VcsException)cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    finally {
+      // if loading of some root fails or is cancelled, the rest roots are not needed:
+      // tasks which haven't started are removed, running ones are stopped via the indicator
+      rootsIndicator.cancel();
+      for (Future<Pair<VirtualFile, T>> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Is cancelled together with the indicator of the whole loading, or separately when the rest roots are not needed anymore.
+   */
+  private static class RootsIndicator extends EmptyProgressIndicator {
+    @NotNull private final ProgressIndicator myParent;
+
+    RootsIndicator(@NotNull ProgressIndicator parent) {
+      myParent = parent;
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return super.isCanceled() || myParent.isCanceled();
+    }
+
+    @Override
+    public void checkCanceled() {
+      if (isCanceled()) {
+        throw new ProcessCanceledException();
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ArrayUtil;
+import com.intellij.vcs.log.GraphCommit;
+import com.intellij.vcs.log.TimedVcsCommit;
+import com.intellij.vcs.log.VcsUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>Persists the structure of the log of a single root between IDE sessions:
+ *    hash indices of commits in the log order, their parents and timestamps, hash indices of commits pointed by references,
+ *    and authors & committers of the repository.</p>
+ * <p>Hash indices are the ones of {@link VcsLogHashMap}, so the storage is valid only together with it;
+ *    to detect the case when the hash map was recreated, the first and the last hashes of the log are saved as strings.</p>
+ * <p>The whole file is read at once and is parsed from memory.</p>
+ */
+class VcsLogStructureStorage {
+
+  private static final Logger LOG = Logger.getInstance(VcsLogStructureStorage.class);
+  private static final int VERSION = 1;
+
+  @NotNull private final File myFile;
+
+  VcsLogStructureStorage(@NotNull Project project, @NotNull VirtualFile root) {
+    this(new File(new File(VcsLogHashMap.LOG_CACHE_APP_DIR, "structure"),
+                  project.getName() + "." + project.getLocationHash() + "." + Integer.toHexString(root.getPath().hashCode())));
+  }
+
+  VcsLogStructureStorage(@NotNull File file) {
+    myFile = file;
+  }
+
+  /**
+   * Returns the saved log structure, or null if nothing was saved or the data is unreadable.
+   * Counts read from the file are checked against the number of remaining bytes, so a corrupted file can't cause a huge allocation.
+   */
+  @Nullable
+  LogStructure load() {
+    if (!myFile.exists()) {
+      return null;
+    }
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(FileUtil.loadFileBytes(myFile)));
+      if (in.readInt() != VERSION) {
+        return null;
+      }
+      // hash index, timestamp and the number of parents
+      int commitsCount = readCount(in, 4 + 8 + 1);
+      LogStructure structure = new LogStructure(commitsCount, in.readUTF(), in.readUTF());
+      int parentsCount = 0;
+      for (int i = 0; i < commitsCount; i++) {
+        structure.hashes[i] = in.readInt();
+        structure.times[i] = in.readLong();
+        int commitParents = in.readByte() & 0xFF;
+        if (commitParents * 4 > in.available()) {
+          throw new IOException("Unexpected number of parents: " + commitParents);
+        }
+        if (parentsCount + commitParents > structure.parents.length) {
+          int[] parents = new int[Math.max(structure.parents.length * 3 / 2, parentsCount + commitParents)];
+          System.arraycopy(structure.parents, 0, parents, 0, parentsCount);
+          structure.parents = parents;
+        }
+        for (int j = 0; j < commitParents; j++) {
+          structure.parents[parentsCount++] = in.readInt();
+        }
+        structure.parentsEnds[i] = parentsCount;
+      }
+      structure.refHeads = new int[readCount(in, 4)];
+      for (int i = 0; i < structure.refHeads.length; i++) {
+        structure.refHeads[i] = in.readInt();
+      }
+      // name and email, each is at least the two bytes of the length
+      structure.users = new String[readCount(in, 2 + 2) * 2];
+      for (int i = 0; i < structure.users.length; i++) {
+        structure.users[i] = in.readUTF();
+      }
+      if (in.available() != 0) {
+        throw new IOException(in.available() + " unexpected bytes at the end of file");
+      }
+      return structure;
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't read the saved log structure from " + myFile, e);
+      return null;
+    }
+    catch (RuntimeException e) {
+      LOG.info("Couldn't read the saved log structure from " + myFile, e);
+      return null;
+    }
+  }
+
+  private static int readCount(@NotNull DataInputStream in, int minBytesPerElement) throws IOException {
+    int count = in.readInt();
+    if (count < 0 || (long)count * minBytesPerElement > in.available()) {
+      throw new IOException("Unexpected number of elements: " + count);
+    }
+    return count;
+  }
+
+  <C extends TimedVcsCommit & GraphCommit> void save(@NotNull List<C> log, @NotNull int[] refHeads, @NotNull Collection<VcsUser> users,
+                                                      @NotNull String firstHash, @NotNull String lastHash) {
+    File tempFile = new File(myFile.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(tempFile);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      try {
+        out.writeInt(VERSION);
+        out.writeInt(log.size());
+        out.writeUTF(firstHash);
+        out.writeUTF(lastHash);
+        for (C commit : log) {
+          int[] parents = commit.getParentIndices();
+          out.writeInt(commit.getIndex());
+          out.writeLong(commit.getTime());
+          out.writeByte(parents.length);
+          for (int parent : parents) {
+            out.writeInt(parent);
+          }
+        }
+        out.writeInt(refHeads.length);
+        for (int head : refHeads) {
+          out.writeInt(head);
+        }
+        out.writeInt(users.size());
+        for (VcsUser user : users) {
+          out.writeUTF(user.getName());
+          out.writeUTF(user.getEmail());
+        }
+      }
+      finally {
+        out.close();
+      }
+      FileUtil.rename(tempFile, myFile);
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't save the log structure to " + myFile, e);
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  void clear() {
+    FileUtil.delete(myFile);
+  }
+
+  /**
+   * Parents of the i-th commit are stored in {@link #parents} from {@code parentsEnds[i - 1]} (0 for the first commit)
+   * to {@code parentsEnds[i]} exclusive.
+   */
+  static class LogStructure {
+    @NotNull final String firstHash;
+    @NotNull final String lastHash;
+    @NotNull final int[] hashes;
+    @NotNull final long[] times;
+    @NotNull final int[] parentsEnds;
+    @NotNull int[] parents;
+    @NotNull int[] refHeads = ArrayUtil.EMPTY_INT_ARRAY;
+    @NotNull String[] users = ArrayUtil.EMPTY_STRING_ARRAY;
+
+    private LogStructure(int commitsCount, @NotNull String firstHash, @NotNull String lastHash) {
+      this.firstHash = firstHash;
+      this.lastHash = lastHash;
+      hashes = new int[commitsCount];
+      times = new long[commitsCount];
+      parentsEnds = new int[commitsCount];
+      parents = new int[commitsCount];
+    }
+
+    int getParentsStart(int commit) {
+      return commit == 0 ? 0 : parentsEnds[commit - 1];
+    }
+  }
+}
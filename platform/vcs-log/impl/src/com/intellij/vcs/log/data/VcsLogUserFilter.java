@@ -4,6 +4,7 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.vcs.log.VcsFullCommitDetails;
 import com.intellij.vcs.log.VcsUser;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 
@@ -59,6 +60,11 @@ public abstract class VcsLogUserFilter implements VcsLogDetailsFilter {
     public String getUserName(@NotNull VirtualFile root) {
       return myMeData.get(root).getName();
     }
+
+    @Nullable
+    public VcsUser getUser(@NotNull VirtualFile root) {
+      return myMeData.get(root);
+    }
   }
 
   /**
@@ -60,6 +60,13 @@ public class VcsFullCommitDetailsImpl extends VcsShortCommitDetailsImpl implemen
     });
   }
 
+  /**
+   * Returns the number of changes without creating {@link Change} objects.
+   */
+  public int getChangesCount() {
+    return myChanges.size();
+  }
+
   @NotNull
   @Override
   public VcsUser getCommitter() {
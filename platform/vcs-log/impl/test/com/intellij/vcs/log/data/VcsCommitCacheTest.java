@@ -0,0 +1,177 @@
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vcs.changes.SimpleContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.impl.StubVirtualFile;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.vcs.log.ContentRevisionFactory;
+import com.intellij.vcs.log.Hash;
+import com.intellij.vcs.log.VcsFullCommitDetails;
+import com.intellij.vcs.log.VcsShortCommitDetails;
+import com.intellij.vcs.log.impl.HashImpl;
+import com.intellij.vcs.log.impl.VcsFullCommitDetailsImpl;
+import com.intellij.vcs.log.impl.VcsShortCommitDetailsImpl;
+import com.intellij.vcs.log.impl.VcsUserImpl;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VcsCommitCacheTest {
+
+  private static final VirtualFile ROOT = new StubVirtualFile();
+  private static final VcsUserImpl USER = new VcsUserImpl("John Smith", "john@example.com");
+
+  @Test
+  public void miniDetailsAreBoundedBySize() throws Throwable {
+    invokeOnEdt(new Runnable() {
+      @Override
+      public void run() {
+        VcsCommitCache<VcsShortCommitDetails> cache = new VcsCommitCache<VcsShortCommitDetails>(MiniDetailsGetter.CACHE_SIZE);
+        int count = 20000; // about twice as many as fit into the cache
+        for (int i = 0; i < count; i++) {
+          cache.put(hash(i), shortDetails(i));
+          assertTrue(cache.getSize() <= MiniDetailsGetter.CACHE_SIZE);
+        }
+        assertTrue(cache.getSize() > MiniDetailsGetter.CACHE_SIZE / 2);
+        assertFalse(cache.isKeyCached(hash(0)));
+        assertTrue(cache.isKeyCached(hash(count - 1)));
+      }
+    });
+  }
+
+  @Test
+  public void fullDetailsAreBoundedBySize() throws Throwable {
+    invokeOnEdt(new Runnable() {
+      @Override
+      public void run() {
+        VcsCommitCache<VcsFullCommitDetails> cache = new VcsCommitCache<VcsFullCommitDetails>(CommitDetailsGetter.CACHE_SIZE);
+        int count = 6000; // about twice as many as fit into the cache
+        for (int i = 0; i < count; i++) {
+          cache.put(hash(i), fullDetails(i, 20));
+          assertTrue(cache.getSize() <= CommitDetailsGetter.CACHE_SIZE);
+        }
+        assertTrue(cache.getSize() > CommitDetailsGetter.CACHE_SIZE / 2);
+        assertFalse(cache.isKeyCached(hash(0)));
+        assertTrue(cache.isKeyCached(hash(count - 1)));
+      }
+    });
+  }
+
+  @Test
+  public void detailsWithManyChangesTakeMoreSpace() throws Throwable {
+    invokeOnEdt(new Runnable() {
+      @Override
+      public void run() {
+        VcsCommitCache<VcsFullCommitDetails> cache = new VcsCommitCache<VcsFullCommitDetails>(CommitDetailsGetter.CACHE_SIZE);
+        cache.put(hash(0), fullDetails(0, 0));
+        long sizeWithoutChanges = cache.getSize();
+        cache.put(hash(0), fullDetails(0, 100));
+        assertTrue(cache.getSize() > sizeWithoutChanges + 100 * 100);
+        cache.remove(hash(0));
+        assertEquals(0, cache.getSize());
+      }
+    });
+  }
+
+  @Test
+  public void recentlyUsedDetailsAreKept() throws Throwable {
+    invokeOnEdt(new Runnable() {
+      @Override
+      public void run() {
+        VcsCommitCache<VcsShortCommitDetails> cache = new VcsCommitCache<VcsShortCommitDetails>(MiniDetailsGetter.CACHE_SIZE);
+        for (int i = 0; i < 20000; i++) {
+          cache.put(hash(i), shortDetails(i));
+          assertNotNull(cache.get(hash(0)));
+        }
+        assertTrue(cache.isKeyCached(hash(0)));
+        assertFalse(cache.isKeyCached(hash(1)));
+      }
+    });
+  }
+
+  @Test
+  public void pendingNodesAreBatched() {
+    DataGetter.PendingNodes<Integer> nodes = new DataGetter.PendingNodes<Integer>(5);
+    nodes.add(Arrays.asList(1, 2, 3));
+    nodes.add(Arrays.asList(2, 4));
+    assertEquals(Arrays.asList(1, 3, 2, 4), nodes.take());
+    assertEquals(Collections.<Integer>emptyList(), nodes.take());
+  }
+
+  @Test
+  public void oldestPendingNodesAreForgotten() {
+    DataGetter.PendingNodes<Integer> nodes = new DataGetter.PendingNodes<Integer>(5);
+    nodes.add(Arrays.asList(1, 2, 3, 4));
+    nodes.add(Arrays.asList(5, 6, 1));
+    assertEquals(Arrays.asList(3, 4, 5, 6, 1), nodes.take());
+  }
+
+  private static void invokeOnEdt(@NotNull Runnable runnable) throws Throwable {
+    try {
+      SwingUtilities.invokeAndWait(runnable);
+    }
+    catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @NotNull
+  private static Hash hash(int i) {
+    return HashImpl.build(String.format("%08x", i));
+  }
+
+  @NotNull
+  private static VcsShortCommitDetails shortDetails(int i) {
+    return new VcsShortCommitDetailsImpl(hash(i), Collections.<Hash>emptyList(), i, ROOT, "Commit number " + i, USER);
+  }
+
+  @NotNull
+  private static VcsFullCommitDetails fullDetails(int i, int changesCount) {
+    List<Change> changes = new ArrayList<Change>();
+    for (int j = 0; j < changesCount; j++) {
+      FilePathImpl path = new FilePathImpl(new MyFile("file" + j + ".txt"));
+      changes.add(new Change(null, new SimpleContentRevision("", path, "")));
+    }
+    String message = "Commit number " + i + "\n\n" + StringUtil.repeat("Description. ", 50);
+    return new VcsFullCommitDetailsImpl(hash(i), Collections.<Hash>emptyList(), i, ROOT, "Commit number " + i, USER, message, USER, i,
+                                        changes, new ContentRevisionFactory() {
+      @NotNull
+      @Override
+      public ContentRevision createRevision(@NotNull VirtualFile file, @NotNull Hash hash) {
+        throw new UnsupportedOperationException();
+      }
+
+      @NotNull
+      @Override
+      public ContentRevision createRevision(@NotNull VirtualFile root, @NotNull String path, @NotNull Hash hash) {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  private static class MyFile extends LightVirtualFile {
+    private MyFile(@NotNull String name) {
+      super(name);
+    }
+
+    @NotNull
+    @Override
+    public FileType getFileType() {
+      return PlainTextFileType.INSTANCE;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.vcs.log.impl.VcsUserImpl;
+import gnu.trove.TIntHashSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VcsLogIndexTest {
+
+  private File myDir;
+  private VcsLogIndex myIndex;
+
+  @Before
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("vcs-log-index", null);
+    myIndex = new VcsLogIndex(myDir);
+    myIndex.index(1, "Fix NPE in the log", new VcsUserImpl("John Smith", "john@example.com"), Arrays.asList("/r/a.txt", "/r/dir/b.txt"));
+    myIndex.index(2, "Add a new log filter", new VcsUserImpl("Jane Doe", "jane@example.com"), Arrays.asList("/r/dir/c.txt"));
+    myIndex.index(3, "Refactoring", new VcsUserImpl("John Smith", "john@example.com"), Collections.<String>emptyList());
+  }
+
+  @After
+  public void tearDown() {
+    myIndex.close();
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void text() throws IOException {
+    assertEquals(set(1, 2), myIndex.filterByText("LOG"));
+    assertEquals(set(2), myIndex.filterByText("new log"));
+    assertEquals(set(), myIndex.filterByText("log new"));
+    assertEquals(set(), myIndex.filterByText("missing"));
+    assertNull(myIndex.filterByText("lo"));
+  }
+
+  @Test
+  public void user() throws IOException {
+    assertEquals(set(1, 3), myIndex.filterByUser(contains("john")));
+    assertEquals(set(2), myIndex.filterByUser(contains("jane@")));
+  }
+
+  @Test
+  public void path() throws IOException {
+    assertEquals(set(1, 2), myIndex.filterByPath(new Condition<String>() {
+      @Override
+      public boolean value(String path) {
+        return FileUtil.isAncestor("/r/dir", path, false);
+      }
+    }));
+  }
+
+  @Test
+  public void indexIsPersistent() throws IOException {
+    myIndex.close();
+    myIndex = new VcsLogIndex(myDir);
+    assertEquals(true, myIndex.isIndexed(2));
+    assertEquals(false, myIndex.isIndexed(4));
+    assertEquals(3, myIndex.getIndexedCommitsCount());
+    assertEquals(set(1, 2), myIndex.filterByText("log"));
+
+    myIndex.index(4, "Log once more", new VcsUserImpl("Jane Doe", "jane@example.com"), Collections.<String>emptyList());
+    assertEquals(set(1, 2, 4), myIndex.filterByText("log"));
+    assertEquals(set(2, 4), myIndex.filterByUser(contains("jane")));
+  }
+
+  @Test
+  public void closedIndex() throws IOException {
+    myIndex.close();
+    assertNull(myIndex.filterByText("log"));
+    assertNull(myIndex.filterByUser(contains("john")));
+    assertNull(myIndex.filterByPath(contains("/r")));
+  }
+
+  private static Condition<String> contains(final String text) {
+    return new Condition<String>() {
+      @Override
+      public boolean value(String user) {
+        return user.toLowerCase().contains(text);
+      }
+    };
+  }
+
+  private static TIntHashSet set(int... commits) {
+    return new TIntHashSet(commits);
+  }
+}
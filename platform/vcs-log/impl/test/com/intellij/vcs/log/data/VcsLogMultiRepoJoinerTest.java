@@ -27,4 +27,17 @@ public class VcsLogMultiRepoJoinerTest {
     assertEquals(expected, joined);
   }
 
+  @Test
+  public void emptyLogsAndEqualTimes() {
+    List<? extends TimedVcsCommit> first = log("5|-a1|-a0", "3|-a0|-");
+    List<? extends TimedVcsCommit> second = log();
+    List<? extends TimedVcsCommit> third = log("5|-c1|-c0", "3|-c0|-");
+
+    List<TimedVcsCommit> expected = log("5|-a1|-a0", "5|-c1|-c0", "3|-a0|-", "3|-c0|-");
+
+    List<TimedVcsCommit> joined = new VcsLogMultiRepoJoiner().join(Arrays.asList(first, second, third));
+
+    assertEquals(expected, joined);
+  }
+
 }
@@ -0,0 +1,203 @@
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.impl.StubVirtualFile;
+import com.intellij.util.PairConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class VcsLogRootsLoaderTest {
+
+  private static final long PARTIAL_RESULT_DELAY = 200;
+
+  private final VirtualFile myFastRoot = new StubVirtualFile();
+  private final VirtualFile mySlowRoot = new StubVirtualFile();
+  private final List<VirtualFile> myRoots = Arrays.asList(myFastRoot, mySlowRoot);
+  private final ProgressIndicator myIndicator = new EmptyProgressIndicator();
+  private final Map<VirtualFile, String> myResults = Collections.synchronizedMap(new LinkedHashMap<VirtualFile, String>());
+
+  private ExecutorService myExecutor;
+  private VcsLogRootsLoader myLoader;
+
+  @Before
+  public void setUp() {
+    myExecutor = Executors.newFixedThreadPool(2);
+    myLoader = new VcsLogRootsLoader(myExecutor, PARTIAL_RESULT_DELAY);
+  }
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void rootsAreLoadedInParallel() throws VcsException {
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    myLoader.load(myRoots, new VcsLogRootsLoader.Task<String>() {
+      @Override
+      public String load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) {
+        bothStarted.countDown();
+        await(bothStarted);
+        return name(root);
+      }
+    }, myIndicator, resultConsumer(), null);
+    assertEquals(2, myResults.size());
+    assertEquals("fast", myResults.get(myFastRoot));
+    assertEquals("slow", myResults.get(mySlowRoot));
+  }
+
+  @Test
+  public void partialResultAfterDelay() throws VcsException {
+    final CountDownLatch partialResultReported = new CountDownLatch(1);
+    final long[] firstResultTime = {0};
+    final List<Set<VirtualFile>> partialResults = new ArrayList<Set<VirtualFile>>();
+    myLoader.load(myRoots, new VcsLogRootsLoader.Task<String>() {
+      @Override
+      public String load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) {
+        if (root == mySlowRoot) {
+          await(partialResultReported);
+        }
+        return name(root);
+      }
+    }, myIndicator, new PairConsumer<VirtualFile, String>() {
+      @Override
+      public void consume(VirtualFile root, String result) {
+        if (firstResultTime[0] == 0) {
+          firstResultTime[0] = System.currentTimeMillis();
+        }
+        myResults.put(root, result);
+      }
+    }, new Runnable() {
+      @Override
+      public void run() {
+        assertTrue(System.currentTimeMillis() - firstResultTime[0] >= PARTIAL_RESULT_DELAY);
+        partialResults.add(new HashSet<VirtualFile>(myResults.keySet()));
+        partialResultReported.countDown();
+      }
+    });
+    assertEquals(Collections.singletonList(Collections.singleton(myFastRoot)), partialResults);
+    assertEquals(2, myResults.size());
+  }
+
+  @Test
+  public void noPartialResultIfAllRootsLoadedWithinDelay() throws VcsException {
+    myLoader.load(myRoots, new VcsLogRootsLoader.Task<String>() {
+      @Override
+      public String load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) {
+        return name(root);
+      }
+    }, myIndicator, resultConsumer(), new Runnable() {
+      @Override
+      public void run() {
+        fail("Partial result reported though all roots are loaded");
+      }
+    });
+    assertEquals(2, myResults.size());
+  }
+
+  @Test
+  public void failureCancelsOtherRoots() throws InterruptedException {
+    final CountDownLatch slowRootStarted = new CountDownLatch(1);
+    final CountDownLatch slowRootCancelled = new CountDownLatch(1);
+    try {
+      myLoader.load(myRoots, new VcsLogRootsLoader.Task<String>() {
+        @Override
+        public String load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) throws VcsException {
+          if (root == myFastRoot) {
+            await(slowRootStarted);
+            throw new VcsException("fast root failed");
+          }
+          slowRootStarted.countDown();
+          waitForCancellation(indicator);
+          slowRootCancelled.countDown();
+          return name(root);
+        }
+      }, myIndicator, resultConsumer(), null);
+      fail("VcsException expected");
+    }
+    catch (VcsException e) {
+      assertEquals("fast root failed", e.getMessage());
+    }
+    assertTrue("Loading of the slow root wasn't cancelled", slowRootCancelled.await(5, TimeUnit.SECONDS));
+    assertFalse(myIndicator.isCanceled());
+  }
+
+  @Test
+  public void cancellationIsPassedToRunningTasks() throws VcsException, InterruptedException {
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch cancelled = new CountDownLatch(2);
+    try {
+      myLoader.load(myRoots, new VcsLogRootsLoader.Task<String>() {
+        @Override
+        public String load(@NotNull VirtualFile root, @NotNull ProgressIndicator indicator) {
+          started.countDown();
+          if (root == myFastRoot) {
+            await(started);
+            myIndicator.cancel();
+          }
+          waitForCancellation(indicator);
+          cancelled.countDown();
+          return name(root);
+        }
+      }, myIndicator, resultConsumer(), null);
+      fail("ProcessCanceledException expected");
+    }
+    catch (ProcessCanceledException ignored) {
+    }
+    assertTrue("Running tasks weren't cancelled", cancelled.await(5, TimeUnit.SECONDS));
+    assertTrue(myResults.isEmpty());
+  }
+
+  private PairConsumer<VirtualFile, String> resultConsumer() {
+    return new PairConsumer<VirtualFile, String>() {
+      @Override
+      public void consume(VirtualFile root, String result) {
+        myResults.put(root, result);
+      }
+    };
+  }
+
+  private String name(VirtualFile root) {
+    return root == myFastRoot ? "fast" : "slow";
+  }
+
+  private static void waitForCancellation(ProgressIndicator indicator) {
+    long start = System.currentTimeMillis();
+    while (!indicator.isCanceled()) {
+      assertTrue("Task wasn't cancelled", System.currentTimeMillis() - start < 5000);
+      sleep(10);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
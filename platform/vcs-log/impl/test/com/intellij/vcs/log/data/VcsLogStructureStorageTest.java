@@ -0,0 +1,170 @@
+package com.intellij.vcs.log.data;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.vcs.log.GraphCommit;
+import com.intellij.vcs.log.Hash;
+import com.intellij.vcs.log.SimpleHash;
+import com.intellij.vcs.log.TimedVcsCommit;
+import com.intellij.vcs.log.VcsUser;
+import com.intellij.vcs.log.impl.VcsUserImpl;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VcsLogStructureStorageTest {
+
+  private File myDir;
+  private File myFile;
+  private VcsLogStructureStorage myStorage;
+
+  @Before
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("vcs-log-structure", null);
+    myFile = new File(myDir, "structure");
+    myStorage = new VcsLogStructureStorage(myFile);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void roundTrip() {
+    save();
+    VcsLogStructureStorage.LogStructure structure = myStorage.load();
+    assertNotNull(structure);
+    assertEquals("c", structure.firstHash);
+    assertEquals("a", structure.lastHash);
+    assertArrayEquals(new int[]{3, 2, 1}, structure.hashes);
+    assertArrayEquals(new long[]{30, 20, 10}, structure.times);
+    assertArrayEquals(new int[]{2, 1}, parents(structure, 0));
+    assertArrayEquals(new int[]{1}, parents(structure, 1));
+    assertArrayEquals(new int[0], parents(structure, 2));
+    assertArrayEquals(new int[]{3}, structure.refHeads);
+    assertArrayEquals(new String[]{"John Smith", "john@example.com"}, structure.users);
+  }
+
+  @Test
+  public void noFile() {
+    assertNull(myStorage.load());
+    save();
+    myStorage.clear();
+    assertNull(myStorage.load());
+  }
+
+  @Test
+  public void versionMismatch() throws IOException {
+    save();
+    byte[] bytes = FileUtil.loadFileBytes(myFile);
+    bytes[3]++;
+    FileUtil.writeToFile(myFile, bytes);
+    assertNull(myStorage.load());
+  }
+
+  @Test
+  public void truncatedFile() throws IOException {
+    save();
+    byte[] bytes = FileUtil.loadFileBytes(myFile);
+    for (int length = 0; length < bytes.length; length++) {
+      FileUtil.writeToFile(myFile, Arrays.copyOf(bytes, length));
+      assertNull("Loaded structure truncated to " + length + " bytes", myStorage.load());
+    }
+  }
+
+  @Test
+  public void extraBytes() throws IOException {
+    save();
+    FileUtil.writeToFile(myFile, new byte[]{0}, true);
+    assertNull(myStorage.load());
+  }
+
+  @Test
+  public void hugeCommitsCount() throws IOException {
+    save();
+    RandomAccessFile file = new RandomAccessFile(myFile, "rw");
+    try {
+      file.seek(4);
+      file.writeInt(Integer.MAX_VALUE);
+    }
+    finally {
+      file.close();
+    }
+    assertNull(myStorage.load());
+  }
+
+  @Test
+  public void negativeRefsCount() throws IOException {
+    save();
+    byte[] bytes = FileUtil.loadFileBytes(myFile);
+    // refs count is followed by a single ref and the users part: count, "John Smith", "john@example.com"
+    int refsCountOffset = bytes.length - (4 + 4 + (2 + 10) + (2 + 16)) - 4;
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(myFile));
+    try {
+      out.write(bytes, 0, refsCountOffset);
+      out.writeInt(-1);
+      out.write(bytes, refsCountOffset + 4, bytes.length - refsCountOffset - 4);
+    }
+    finally {
+      out.close();
+    }
+    assertNull(myStorage.load());
+  }
+
+  private void save() {
+    List<TestCommit> log = Arrays.asList(new TestCommit(3, 30, 2, 1), new TestCommit(2, 20, 1), new TestCommit(1, 10));
+    myStorage.save(log, new int[]{3}, Collections.<VcsUser>singleton(new VcsUserImpl("John Smith", "john@example.com")), "c", "a");
+    assertTrue(myFile.exists());
+  }
+
+  private static int[] parents(VcsLogStructureStorage.LogStructure structure, int commit) {
+    return Arrays.copyOfRange(structure.parents, structure.getParentsStart(commit), structure.parentsEnds[commit]);
+  }
+
+  private static class TestCommit implements TimedVcsCommit, GraphCommit {
+    private final int myIndex;
+    private final long myTime;
+    private final int[] myParents;
+
+    TestCommit(int index, long time, int... parents) {
+      myIndex = index;
+      myTime = time;
+      myParents = parents;
+    }
+
+    @Override
+    public int getIndex() {
+      return myIndex;
+    }
+
+    @Override
+    public int[] getParentIndices() {
+      return myParents;
+    }
+
+    @Override
+    public long getTime() {
+      return myTime;
+    }
+
+    @NotNull
+    @Override
+    public Hash getHash() {
+      return new SimpleHash(String.valueOf(myIndex));
+    }
+
+    @NotNull
+    @Override
+    public List<Hash> getParents() {
+      return Collections.emptyList();
+    }
+  }
+}
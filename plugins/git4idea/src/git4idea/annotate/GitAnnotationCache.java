@@ -0,0 +1,401 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.annotate;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.changes.LineNumberConvertor;
+import com.intellij.util.diff.Diff;
+import com.intellij.util.diff.FilesTooBigForDiffException;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.PersistentHashMap;
+import git4idea.GitRevisionNumber;
+import git4idea.repo.GitObjectReader;
+import git4idea.repo.GitRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * <p>Persistent cache of annotations (i.e. {@code git blame} results) of files, reused across sessions.</p>
+ * <p>The last annotation of each file is stored together with the commit it was made for and the hash of the file content
+ *    in that commit. When the file is annotated at a later commit, which is reachable from the cached one through commits
+ *    having a single parent, the annotation is replayed along these commits instead of calling {@code git blame}:
+ *    lines which are not changed by a commit keep their annotation, and changed lines are attributed to the commit.
+ *    Lines are compared ignoring whitespace, as {@code git blame -w} does.</p>
+ * <p>All objects are read by the {@link GitObjectReader}; if something can't be read, the annotation is not taken from the cache.</p>
+ */
+public class GitAnnotationCache implements Disposable {
+
+  private static final Logger LOG = Logger.getInstance(GitAnnotationCache.class);
+
+  private static final int VERSION = 1;
+  private static final int MAX_COMMITS_TO_REPLAY = 100;
+
+  @NotNull private final File myStorageDir;
+  @Nullable private PersistentHashMap<String, CachedAnnotation> myStorage;
+  private boolean myDisposed;
+
+  public GitAnnotationCache(@NotNull Project project) {
+    myStorageDir = new File(new File(new File(PathManager.getSystemPath(), "vcs"), "git_annotations"), project.getLocationHash());
+  }
+
+  public static GitAnnotationCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, GitAnnotationCache.class);
+  }
+
+  /**
+   * Returns annotations of the lines of the file at the given commit, or null if the annotation can't be made without {@code git blame}.
+   */
+  @Nullable
+  synchronized List<GitFileAnnotation.LineInfo> get(@NotNull GitRepository repository, @NotNull String relativePath,
+                                                     @NotNull String commit, @NotNull Charset charset) {
+    PersistentHashMap<String, CachedAnnotation> storage = getStorage();
+    if (storage == null || !GitObjectReader.isFullHash(commit)) {
+      return null;
+    }
+    String key = getKey(repository, relativePath);
+    try {
+      CachedAnnotation cached = storage.get(key);
+      if (cached == null) {
+        return null;
+      }
+      if (cached.myCommit.equals(commit)) {
+        return cached.myLines;
+      }
+      CachedAnnotation replayed = replay(repository.getObjectReader(), relativePath, cached, commit, charset);
+      if (replayed == null) {
+        return null;
+      }
+      storage.put(key, replayed);
+      return replayed.myLines;
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't read the cached annotation of " + relativePath, e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the annotation of the file made by {@code git blame} at the given commit.
+   */
+  synchronized void put(@NotNull GitRepository repository, @NotNull String relativePath, @NotNull String commit,
+                        @NotNull List<GitFileAnnotation.LineInfo> lines) {
+    PersistentHashMap<String, CachedAnnotation> storage = getStorage();
+    if (storage == null || !GitObjectReader.isFullHash(commit)) {
+      return;
+    }
+    for (GitFileAnnotation.LineInfo line : lines) {
+      if (line.getRevision() == null) {
+        return; // not committed lines are not cached
+      }
+    }
+    try {
+      String blob = readBlobHash(repository.getObjectReader(), commit, relativePath);
+      if (blob != null) {
+        storage.put(getKey(repository, relativePath), new CachedAnnotation(commit, blob, lines));
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't cache the annotation of " + relativePath, e);
+    }
+  }
+
+  @Override
+  public synchronized void dispose() {
+    myDisposed = true;
+    if (myStorage != null) {
+      try {
+        myStorage.close();
+      }
+      catch (IOException e) {
+        LOG.info(e);
+      }
+      myStorage = null;
+    }
+  }
+
+  @Nullable
+  private PersistentHashMap<String, CachedAnnotation> getStorage() {
+    if (myStorage == null && !myDisposed) {
+      try {
+        myStorage = openStorage();
+      }
+      catch (IOException e) {
+        LOG.info("Couldn't open the annotation cache, recreating it", e);
+        FileUtil.delete(myStorageDir);
+        try {
+          myStorage = openStorage();
+        }
+        catch (IOException e1) {
+          LOG.warn("Couldn't create the annotation cache", e1);
+          myDisposed = true;
+        }
+      }
+    }
+    return myStorage;
+  }
+
+  @NotNull
+  private PersistentHashMap<String, CachedAnnotation> openStorage() throws IOException {
+    File versionFile = new File(myStorageDir, "version");
+    if (!versionFile.exists() || !String.valueOf(VERSION).equals(FileUtil.loadFile(versionFile).trim())) {
+      FileUtil.delete(myStorageDir);
+      FileUtil.writeToFile(versionFile, String.valueOf(VERSION));
+    }
+    return new PersistentHashMap<String, CachedAnnotation>(new File(myStorageDir, "annotations"), new EnumeratorStringDescriptor(),
+                                                           new AnnotationExternalizer());
+  }
+
+  @NotNull
+  private static String getKey(@NotNull GitRepository repository, @NotNull String relativePath) {
+    return repository.getRoot().getPath() + ":" + relativePath;
+  }
+
+  /**
+   * Replays the cached annotation along the commits leading from the cached commit to the given one.
+   */
+  @Nullable
+  static CachedAnnotation replay(@NotNull GitObjectReader reader, @NotNull String relativePath, @NotNull CachedAnnotation cached,
+                                 @NotNull String commit, @NotNull Charset charset) throws IOException {
+    List<String> commits = new ArrayList<String>();
+    String current = commit;
+    while (!current.equals(cached.myCommit)) {
+      if (commits.size() == MAX_COMMITS_TO_REPLAY) {
+        return null;
+      }
+      commits.add(current);
+      List<String> parents = reader.readParents(current);
+      if (parents == null || parents.size() != 1) {
+        return null; // merges are left to git blame
+      }
+      current = parents.get(0);
+    }
+    Collections.reverse(commits);
+
+    String blob = cached.myBlob;
+    List<GitFileAnnotation.LineInfo> lines = cached.myLines;
+    String content = null;
+    for (String step : commits) {
+      String stepBlob = readBlobHash(reader, step, relativePath);
+      if (stepBlob == null) {
+        return null;
+      }
+      if (stepBlob.equals(blob)) {
+        continue;
+      }
+      if (content == null) {
+        content = readContent(reader, cached.myCommit, relativePath, charset);
+      }
+      String stepContent = readContent(reader, step, relativePath, charset);
+      GitFileAnnotation.LineInfo stepInfo = readLineInfo(reader, step);
+      if (content == null || stepContent == null || stepInfo == null) {
+        return null;
+      }
+      lines = replayStep(lines, content, stepContent, stepInfo);
+      if (lines == null) {
+        return null;
+      }
+      blob = stepBlob;
+      content = stepContent;
+    }
+    return new CachedAnnotation(commit, blob, lines);
+  }
+
+  /**
+   * Annotates lines of the new content: lines matching lines of the old content keep their annotation, others get the given one.
+   */
+  @Nullable
+  private static List<GitFileAnnotation.LineInfo> replayStep(@NotNull List<GitFileAnnotation.LineInfo> lines, @NotNull String content,
+                                                             @NotNull String newContent, @NotNull GitFileAnnotation.LineInfo newInfo) {
+    String[] oldLines = splitIgnoringWhitespaces(content);
+    String[] newLines = splitIgnoringWhitespaces(newContent);
+    if (oldLines.length != lines.size()) {
+      return null;
+    }
+    Diff.Change change;
+    try {
+      change = Diff.buildChanges(oldLines, newLines);
+    }
+    catch (FilesTooBigForDiffException e) {
+      return null;
+    }
+    LineNumberConvertor convertor = new LineNumberConvertor();
+    for (; change != null; change = change.link) {
+      for (int i = 0; i < change.inserted; i++) {
+        convertor.emptyLine(change.line1 + i);
+      }
+      convertor.put(change.line1 + change.inserted, change.line0 + change.deleted);
+    }
+
+    List<GitFileAnnotation.LineInfo> result = new ArrayList<GitFileAnnotation.LineInfo>(newLines.length);
+    for (int i = 0; i < newLines.length; i++) {
+      int oldLine = convertor.convert(i);
+      result.add(oldLine < 0 ? newInfo : lines.get(oldLine));
+    }
+    return result;
+  }
+
+  /**
+   * Splits the content as {@code git blame} does, removing whitespaces from the lines.
+   */
+  @NotNull
+  private static String[] splitIgnoringWhitespaces(@NotNull String content) {
+    List<String> lines = new ArrayList<String>();
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c == '\n') {
+        lines.add(line.toString());
+        line.setLength(0);
+      }
+      else if (!Character.isWhitespace(c)) {
+        line.append(c);
+      }
+    }
+    if (!content.isEmpty() && content.charAt(content.length() - 1) != '\n') {
+      lines.add(line.toString());
+    }
+    return lines.toArray(new String[lines.size()]);
+  }
+
+  @Nullable
+  private static String readBlobHash(@NotNull GitObjectReader reader, @NotNull String commit, @NotNull String relativePath)
+    throws IOException {
+    GitObjectReader.TreeEntry entry = reader.readTreeEntries(commit, Collections.singletonList(relativePath)).get(relativePath);
+    return entry == null || entry.isTree() ? null : entry.getHash();
+  }
+
+  @Nullable
+  private static String readContent(@NotNull GitObjectReader reader, @NotNull String commit, @NotNull String relativePath,
+                                    @NotNull Charset charset) throws IOException {
+    byte[] content = reader.readFileContent(commit, relativePath);
+    return content == null ? null : new String(content, charset);
+  }
+
+  /**
+   * Reads the author name and the committer time of the commit, as {@code git blame} reports them.
+   */
+  @Nullable
+  private static GitFileAnnotation.LineInfo readLineInfo(@NotNull GitObjectReader reader, @NotNull String commit) throws IOException {
+    String author = reader.readCommitHeader(commit, "author");
+    String committer = reader.readCommitHeader(commit, "committer");
+    if (author == null || committer == null) {
+      return null;
+    }
+    // the header is "name <email> timestamp timezone"
+    int emailStart = author.lastIndexOf(" <");
+    String[] committerParts = committer.split(" ");
+    if (emailStart < 0 || committerParts.length < 2) {
+      return null;
+    }
+    try {
+      Date date = new Date(Long.parseLong(committerParts[committerParts.length - 2]) * 1000);
+      return new GitFileAnnotation.LineInfo(date, new GitRevisionNumber(commit, date), author.substring(0, emailStart));
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  static class CachedAnnotation {
+    @NotNull private final String myCommit;
+    @NotNull private final String myBlob;
+    @NotNull private final List<GitFileAnnotation.LineInfo> myLines;
+
+    CachedAnnotation(@NotNull String commit, @NotNull String blob, @NotNull List<GitFileAnnotation.LineInfo> lines) {
+      myCommit = commit;
+      myBlob = blob;
+      myLines = lines;
+    }
+
+    @NotNull
+    List<GitFileAnnotation.LineInfo> getLines() {
+      return myLines;
+    }
+  }
+
+  /**
+   * Commits of the annotation are stored once, and lines refer to them by index.
+   */
+  private static class AnnotationExternalizer implements DataExternalizer<CachedAnnotation> {
+    @Override
+    public void save(DataOutput out, CachedAnnotation annotation) throws IOException {
+      out.writeUTF(annotation.myCommit);
+      out.writeUTF(annotation.myBlob);
+      Map<GitRevisionNumber, Integer> indices = new HashMap<GitRevisionNumber, Integer>();
+      List<GitFileAnnotation.LineInfo> commits = new ArrayList<GitFileAnnotation.LineInfo>();
+      int[] lineCommits = new int[annotation.myLines.size()];
+      for (int i = 0; i < lineCommits.length; i++) {
+        GitFileAnnotation.LineInfo line = annotation.myLines.get(i);
+        Integer index = indices.get(line.getRevision());
+        if (index == null) {
+          index = commits.size();
+          indices.put(line.getRevision(), index);
+          commits.add(line);
+        }
+        lineCommits[i] = index;
+      }
+
+      DataInputOutputUtil.writeINT(out, commits.size());
+      for (GitFileAnnotation.LineInfo commit : commits) {
+        out.writeUTF(commit.getRevision().getRev());
+        out.writeUTF(commit.getAuthor() == null ? "" : commit.getAuthor());
+        out.writeLong(commit.getDate() == null ? 0 : commit.getDate().getTime());
+      }
+      DataInputOutputUtil.writeINT(out, lineCommits.length);
+      for (int commit : lineCommits) {
+        DataInputOutputUtil.writeINT(out, commit);
+      }
+    }
+
+    @Override
+    public CachedAnnotation read(DataInput in) throws IOException {
+      String commit = in.readUTF();
+      String blob = in.readUTF();
+      int commitsCount = DataInputOutputUtil.readINT(in);
+      GitFileAnnotation.LineInfo[] commits = new GitFileAnnotation.LineInfo[commitsCount];
+      for (int i = 0; i < commitsCount; i++) {
+        String hash = in.readUTF();
+        String author = in.readUTF();
+        Date date = new Date(in.readLong());
+        commits[i] = new GitFileAnnotation.LineInfo(date, new GitRevisionNumber(hash, date), author);
+      }
+      int linesCount = DataInputOutputUtil.readINT(in);
+      List<GitFileAnnotation.LineInfo> lines = new ArrayList<GitFileAnnotation.LineInfo>(linesCount);
+      for (int i = 0; i < linesCount; i++) {
+        int index = DataInputOutputUtil.readINT(in);
+        if (index < 0 || index >= commitsCount) {
+          throw new IOException("Invalid commit index: " + index);
+        }
+        lines.add(commits[index]);
+      }
+      return new CachedAnnotation(commit, blob, lines);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import com.intellij.openapi.vcs.history.VcsAbstractHistorySession;
 import com.intellij.openapi.vcs.history.VcsFileRevision;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsFileUtil;
 import com.intellij.vcsUtil.VcsUtil;
 import git4idea.GitFileRevision;
 import git4idea.GitRevisionNumber;
@@ -38,9 +39,12 @@ import git4idea.commands.GitSimpleHandler;
 import git4idea.util.StringScanner;
 import git4idea.history.GitHistoryUtils;
 import git4idea.i18n.GitBundle;
+import git4idea.repo.GitRepository;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -146,11 +150,27 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
                                      final VcsFileRevision revision,
                                      final List<VcsFileRevision> revisions,
                                      final VirtualFile file) throws VcsException {
-    GitSimpleHandler h = new GitSimpleHandler(myProject, GitUtil.getGitRoot(repositoryFilePath), GitCommand.BLAME);
+    VirtualFile root = GitUtil.getGitRoot(repositoryFilePath);
+    GitFileAnnotation annotation = new GitFileAnnotation(myProject, file, revision == null, revision == null ? null : revision.getRevisionNumber());
+    GitRepository repository = GitUtil.getRepositoryManager(myProject).getRepositoryForRoot(root);
+    String commit = null;
+    String relativePath = VcsFileUtil.relativePath(root, repositoryFilePath);
+    if (repository != null) {
+      commit = revision == null ? repository.getCurrentRevision() : revision.getRevisionNumber().asString();
+      if (commit != null && annotateFromCache(annotation, repository, relativePath, commit, file.getCharset())) {
+        annotation.addLogEntries(revisions);
+        return annotation;
+      }
+    }
+
+    GitSimpleHandler h = new GitSimpleHandler(myProject, root, GitCommand.BLAME);
     h.setStdoutSuppressed(true);
     h.setCharset(file.getCharset());
     h.addParameters("-p", "-l", "-t", "-w");
-    if (revision == null) {
+    if (commit != null) {
+      h.addParameters(commit);
+    }
+    else if (revision == null) {
       h.addParameters("HEAD");
     }
     else {
@@ -159,7 +179,6 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
     h.endOptions();
     h.addRelativePaths(repositoryFilePath);
     String output = h.run();
-    GitFileAnnotation annotation = new GitFileAnnotation(myProject, file, revision == null, revision == null ? null : revision.getRevisionNumber());
     class CommitInfo {
       Date date;
       String author;
@@ -177,26 +196,26 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
       int lineNum = Integer.parseInt(s1);
       s.nextLine();
       // parse commit information
-      CommitInfo commit = commits.get(commitHash);
-      if (commit != null) {
+      CommitInfo commitInfo = commits.get(commitHash);
+      if (commitInfo != null) {
         while (s.hasMoreData() && !s.startsWith('\t')) {
           s.nextLine();
         }
       }
       else {
-        commit = new CommitInfo();
+        commitInfo = new CommitInfo();
         while (s.hasMoreData() && !s.startsWith('\t')) {
           String key = s.spaceToken();
           String value = s.line();
           if (commitHash != null && AUTHOR_KEY.equals(key)) {
-            commit.author = value;
+            commitInfo.author = value;
           }
           if (commitHash != null && COMMITTER_TIME_KEY.equals(key)) {
-            commit.date = GitUtil.parseTimestampWithNFEReport(value, h, output);
-            commit.revision = new GitRevisionNumber(commitHash, commit.date);
+            commitInfo.date = GitUtil.parseTimestampWithNFEReport(value, h, output);
+            commitInfo.revision = new GitRevisionNumber(commitHash, commitInfo.date);
           }
         }
-        commits.put(commitHash, commit);
+        commits.put(commitHash, commitInfo);
       }
       // parse line
       if (!s.hasMoreData()) {
@@ -206,12 +225,47 @@ public class GitAnnotationProvider implements AnnotationProvider, VcsCacheableAn
       }
       s.skipChars(1);
       String line = s.line(true);
-      annotation.appendLineInfo(commit.date, commit.revision, commit.author, line, lineNum);
+      annotation.appendLineInfo(commitInfo.date, commitInfo.revision, commitInfo.author, line, lineNum);
+    }
+    if (commit != null) {
+      GitAnnotationCache.getInstance(myProject).put(repository, relativePath, commit, annotation.getLineInfos());
     }
     annotation.addLogEntries(revisions);
     return annotation;
   }
 
+  /**
+   * Fills the annotation from the {@link GitAnnotationCache}, reading the file content from Git objects.
+   * Returns false if the annotation is not cached and git blame should be called.
+   */
+  private boolean annotateFromCache(@NotNull GitFileAnnotation annotation, @NotNull GitRepository repository,
+                                    @NotNull String relativePath, @NotNull String commit, @NotNull Charset charset) throws VcsException {
+    List<GitFileAnnotation.LineInfo> lines = GitAnnotationCache.getInstance(myProject).get(repository, relativePath, commit, charset);
+    if (lines == null) {
+      return false;
+    }
+    byte[] bytes;
+    try {
+      bytes = repository.getObjectReader().readFileContent(commit, relativePath);
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't read " + relativePath + " at " + commit, e);
+      return false;
+    }
+    if (bytes == null) {
+      return false;
+    }
+    List<String> content = StringUtil.split(new String(bytes, charset), "\n", false, true);
+    if (content.size() != lines.size()) {
+      return false;
+    }
+    for (int i = 0; i < lines.size(); i++) {
+      GitFileAnnotation.LineInfo line = lines.get(i);
+      annotation.appendLineInfo(line.getDate(), line.getRevision(), line.getAuthor(), content.get(i), i + 1);
+    }
+    return true;
+  }
+
   @Override
   public VcsAnnotation createCacheable(FileAnnotation fileAnnotation) {
     final GitFileAnnotation gitFileAnnotation = (GitFileAnnotation) fileAnnotation;
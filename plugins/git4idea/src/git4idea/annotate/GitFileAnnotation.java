@@ -240,6 +240,11 @@ public class GitFileAnnotation extends FileAnnotation {
     return myLines.size();
   }
 
+  @NotNull
+  List<LineInfo> getLineInfos() {
+    return new ArrayList<LineInfo>(myLines);
+  }
+
   /**
    * Revision annotation aspect implementation
    */
@@ -29,6 +29,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
@@ -49,6 +50,14 @@ public class GitBinaryHandler extends GitHandler {
    * Stderr stream
    */
   private final ByteArrayOutputStream myStderr = new ByteArrayOutputStream();
+  /**
+   * The stream which receives stdout instead of {@link #myStdout}, if set
+   */
+  private OutputStream myStdoutStream;
+  /**
+   * True if the process was destroyed, because the stdout stream failed
+   */
+  private volatile boolean myDestroyedOnStreamFailure;
   /**
    * The semaphore that waits for stream processing
    */
@@ -84,6 +93,14 @@ public class GitBinaryHandler extends GitHandler {
     super(project, vcsRoot, command);
   }
 
+  /**
+   * Makes stdout be written to the given stream as it is read from the process, instead of being returned from {@link #run()}.
+   * If writing to the stream fails, the process is destroyed.
+   */
+  public void setStdoutStream(@NotNull OutputStream stream) {
+    myStdoutStream = stream;
+  }
+
   @Override
   protected Process startProcess() throws ExecutionException {
     return myCommandLine.createProcess();
@@ -95,7 +112,7 @@ public class GitBinaryHandler extends GitHandler {
   @Override
   protected void startHandlingStreams() {
     handleStream(myProcess.getErrorStream(), myStderr);
-    handleStream(myProcess.getInputStream(), myStdout);
+    handleStream(myProcess.getInputStream(), myStdoutStream != null ? myStdoutStream : myStdout);
   }
 
   /**
@@ -104,7 +121,7 @@ public class GitBinaryHandler extends GitHandler {
    * @param in  the standard input
    * @param out the standard output
    */
-  private void handleStream(final InputStream in, final ByteArrayOutputStream out) {
+  private void handleStream(final InputStream in, final OutputStream out) {
     Thread t = new Thread(new Runnable() {
       @Override
       public void run() {
@@ -116,7 +133,15 @@ public class GitBinaryHandler extends GitHandler {
             if (rc == -1) {
               break;
             }
-            out.write(buffer, 0, rc);
+            try {
+              out.write(buffer, 0, rc);
+            }
+            catch (IOException e) {
+              // nobody will read the rest of the output
+              myDestroyedOnStreamFailure = true;
+              myProcess.destroy();
+              throw e;
+            }
           }
         }
         catch (IOException e) {
@@ -172,7 +197,7 @@ public class GitBinaryHandler extends GitHandler {
     addListener(new GitHandlerListener() {
       @Override
       public void processTerminated(int exitCode) {
-        if (exitCode != 0 && !isIgnoredErrorCode(exitCode)) {
+        if (exitCode != 0 && !isIgnoredErrorCode(exitCode) && !myDestroyedOnStreamFailure) {
           Charset cs = getCharset();
           cs = cs == null ? GitUtil.UTF8_CHARSET : cs;
           String message = new String(myStderr.toByteArray(), cs);
@@ -19,6 +19,7 @@ import com.intellij.execution.process.ProcessOutputTypes;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
@@ -290,6 +291,8 @@ public class GitHistoryUtils {
 
   /**
    * Retrieves the history of the file, including renames.
+   * Revisions are reported while the output of git log is being read. If the progress indicator of the current thread is cancelled,
+   * or the consumer throws {@link ProcessCanceledException}, git is stopped and the exception is rethrown.
    * @param project
    * @param path              FilePath which history is queried.
    * @param root              Git root - optional: if this is null, then git root will be detected automatically.
@@ -316,7 +319,7 @@ public class GitHistoryUtils {
     final AtomicReference<String> firstCommit = new AtomicReference<String>("HEAD");
     final AtomicReference<String> firstCommitParent = new AtomicReference<String>("HEAD");
     final AtomicReference<FilePath> currentPath = new AtomicReference<FilePath>(filePath);
-    final AtomicReference<GitLineHandler> logHandler = new AtomicReference<GitLineHandler>();
+    final AtomicReference<GitHandler> logHandler = new AtomicReference<GitHandler>();
     final AtomicBoolean skipFurtherOutput = new AtomicBoolean();
 
     final Consumer<GitLogRecord> resultAdapter = new Consumer<GitLogRecord>() {
@@ -372,58 +375,32 @@ public class GitHistoryUtils {
       }
     };
 
-    final AtomicBoolean criticalFailure = new AtomicBoolean();
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
     while (currentPath.get() != null && firstCommitParent.get() != null) {
-      logHandler.set(getLogHandler(project, finalRoot, logParser, currentPath.get(), firstCommitParent.get(), parameters));
-      final MyTokenAccumulator accumulator = new MyTokenAccumulator(logParser);
-      final Semaphore semaphore = new Semaphore();
-
-      logHandler.get().addLineListener(new GitLineHandlerAdapter() {
-        @Override
-        public void onLineAvailable(String line, Key outputType) {
-          final GitLogRecord record = accumulator.acceptLine(line);
-          if (record != null) {
-            resultAdapter.consume(record);
-          }
-        }
-
-        @Override
-        public void startFailed(Throwable exception) {
-          //noinspection ThrowableInstanceNeverThrown
-          try {
-            exceptionConsumer.consume(new VcsException(exception));
-          } finally {
-            criticalFailure.set(true);
-            semaphore.up();
-          }
+      GitBinaryHandler handler = getLogHandler(project, finalRoot, logParser, currentPath.get(), firstCommitParent.get(), parameters);
+      logHandler.set(handler);
+      // revisions are parsed and reported while git log is running
+      GitLogRecordStream recordStream = new GitLogRecordStream(logParser, resultAdapter, GitUtil.UTF8_CHARSET, indicator);
+      handler.setStdoutStream(recordStream);
+      try {
+        handler.run();
+        recordStream.finish();
+      }
+      catch (VcsException e) {
+        try {
+          recordStream.checkFailure();
         }
-
-        @Override
-        public void processTerminated(int exitCode) {
-          try {
-            super.processTerminated(exitCode);
-            final GitLogRecord record = accumulator.processLast();
-            if (record != null) {
-              resultAdapter.consume(record);
-            }
-          } 
-          catch (Throwable t) {
-            LOG.error(t);
-            exceptionConsumer.consume(new VcsException("Internal error " + t.getMessage(), t));
-            criticalFailure.set(true);
-          }
-          finally {
-            semaphore.up();
-          }
+        catch (VcsException failure) {
+          e = failure;
         }
-      });
-      semaphore.down();
-      logHandler.get().start();
-      semaphore.waitFor();
-      if (criticalFailure.get()) {
+        exceptionConsumer.consume(e);
         return;
       }
 
+      if (filePath.isDirectory()) {
+        // renames are followed only for files
+        return;
+      }
       try {
         FilePath firstCommitRenamePath;
         firstCommitRenamePath = getFirstCommitRenamePath(project, finalRoot, firstCommit.get(), currentPath.get());
@@ -439,8 +416,8 @@ public class GitHistoryUtils {
 
   }
 
-  private static GitLineHandler getLogHandler(Project project, VirtualFile root, GitLogParser parser, FilePath path, String lastCommit, String... parameters) {
-    final GitLineHandler h = new GitLineHandler(project, root, GitCommand.LOG);
+  private static GitBinaryHandler getLogHandler(Project project, VirtualFile root, GitLogParser parser, FilePath path, String lastCommit, String... parameters) {
+    final GitBinaryHandler h = new GitBinaryHandler(project, root, GitCommand.LOG);
     h.setStdoutSuppressed(true);
     h.addParameters("--name-status", parser.getPretty(), "--encoding=UTF-8", lastCommit);
     if (parameters != null && parameters.length > 0) {
@@ -638,45 +615,6 @@ public class GitHistoryUtils {
     return ServiceManager.getService(project, VcsLogObjectsFactory.class);
   }
 
-  private static class MyTokenAccumulator {
-    private final StringBuilder myBuffer = new StringBuilder();
-
-    private boolean myNotStarted = true;
-    private GitLogParser myParser;
-
-    public MyTokenAccumulator(GitLogParser parser) {
-      myParser = parser;
-    }
-
-    @Nullable
-    public GitLogRecord acceptLine(String s) {
-      final boolean lineEnd = s.startsWith(GitLogParser.RECORD_START);
-      if (lineEnd && (!myNotStarted)) {
-        final String line = myBuffer.toString();
-        myBuffer.setLength(0);
-        myBuffer.append(s.substring(GitLogParser.RECORD_START.length()));
-
-        return processResult(line);
-      }
-      else {
-        myBuffer.append(lineEnd ? s.substring(GitLogParser.RECORD_START.length()) : s);
-        myBuffer.append("\n");
-      }
-      myNotStarted = false;
-
-      return null;
-    }
-
-    public GitLogRecord processLast() {
-      return processResult(myBuffer.toString());
-    }
-
-    private GitLogRecord processResult(final String line) {
-      return myParser.parseOneRecord(line);
-    }
-
-  }
-
   /**
    * Get history for the file
    *
@@ -24,6 +24,7 @@ import git4idea.config.GitVersionSpecialty;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -40,7 +41,8 @@ import java.util.regex.Pattern;
  * 1. Pass options you want to have in the output to the constructor using the {@link GitLogOption} enum constants.
  * 2. Get the custom format pattern for 'git log' by calling {@link #getPretty()}
  * 3. Call the command and retrieve the output.
- * 4. Parse the output via {@link #parse(String)} or {@link #parseOneRecord(String)} (if you want the output to be parsed line by line).</p>
+ * 4. Parse the output via {@link #parse(String)} or {@link #parseOneRecord(String)} (if you want the output to be parsed line by line),
+ *    or stream it to the {@link GitLogRecordStream} which parses records as they are read.</p>
  *
  * <p>The class is package visible, since it's used only in GitHistoryUtils - the class which retrieve various pieced of history information
  * in different formats from 'git log'</p>
@@ -63,6 +65,9 @@ public class GitLogParser {
   public static final String ITEMS_SEPARATOR = "\u0002";
   public static final String RECORD_END = "\u0003";
   public static final String RECORD_START_GIT = "%x01";
+  static final byte RECORD_START_BYTE = 1;
+  private static final byte ITEMS_SEPARATOR_BYTE = 2;
+  private static final byte RECORD_END_BYTE = 3;
   private static final String ITEMS_SEPARATOR_GIT = "%x02";
   private static final String RECORD_END_GIT = "%x03";
 
@@ -131,11 +136,19 @@ public class GitLogParser {
    * Only these options will be parsed out and thus will be available from the GitLogRecord.
    */
   GitLogParser(Project project, NameStatus nameStatusOption, GitLogOption... options) {
+    this(supportsRawBody(project), nameStatusOption, options);
+  }
+
+  GitLogParser(boolean supportsRawBody, NameStatus nameStatusOption, GitLogOption... options) {
     myFormat = makeFormatFromOptions(options);
     myOptions = options;
     myNameStatusOption = nameStatusOption;
+    mySupportsRawBody = supportsRawBody;
+  }
+
+  private static boolean supportsRawBody(Project project) {
     GitVcs vcs = GitVcs.getInstance(project);
-    mySupportsRawBody = vcs != null && GitVersionSpecialty.STARTED_USING_RAW_BODY_IN_FORMAT.existsIn(vcs.getVersion());
+    return vcs != null && GitVersionSpecialty.STARTED_USING_RAW_BODY_IN_FORMAT.existsIn(vcs.getVersion());
   }
 
   private static String makeFormatFromOptions(GitLogOption[] options) {
@@ -240,6 +253,94 @@ public class GitLogParser {
     return new GitLogRecord(res, paths, statuses, mySupportsRawBody);
   }
 
+  /**
+   * Parses a single record from the bytes of 'git log' output, as {@link #parseOneRecord(String)} does,
+   * but without making strings of the whole record and of its lines: only values of the options and paths are decoded.
+   * @param data    the buffer containing the record.
+   * @param start   the offset of the record in the buffer.
+   * @param end     the offset of the end of the record.
+   * @param charset the charset of the output.
+   * @return GitLogRecord with information about the revision or {@code null} if the given record is empty.
+   * @throws GitFormatException if the record is given in unexpected format.
+   */
+  @Nullable
+  GitLogRecord parseOneRecord(@NotNull byte[] data, int start, int end, @NotNull Charset charset) {
+    if (start < end && data[start] == RECORD_START_BYTE) {
+      start++;
+    }
+    if (start == end) {
+      return null;
+    }
+    int infoEnd = end - 1;
+    while (infoEnd >= start && data[infoEnd] != RECORD_END_BYTE) {
+      infoEnd--;
+    }
+    if (infoEnd < start) {
+      throwGFE("No record end in", new String(data, start, end - start, charset));
+    }
+
+    final Map<GitLogOption, String> res = new HashMap<GitLogOption, String>(myOptions.length);
+    int optionStart = start;
+    for (int i = 0; i < myOptions.length; i++) {
+      if (optionStart > infoEnd) {  // options which were not returned are set to blank string
+        res.put(myOptions[i], "");
+        continue;
+      }
+      int optionEnd = indexOf(data, ITEMS_SEPARATOR_BYTE, optionStart, infoEnd);
+      res.put(myOptions[i], new String(data, optionStart, optionEnd - optionStart, charset));
+      optionStart = optionEnd + 1;
+    }
+
+    final List<String> paths = new ArrayList<String>(1);
+    final List<GitLogStatusInfo> statuses = new ArrayList<GitLogStatusInfo>();
+    if (myNameStatusOption != NameStatus.NONE) {
+      int lineStart = infoEnd + 1;
+      while (lineStart < end) {
+        int lineEnd = indexOf(data, (byte)'\n', lineStart, end);
+        int contentEnd = lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        if (contentEnd > lineStart) {
+          parsePaths(data, lineStart, contentEnd, charset, paths, statuses);
+        }
+        lineStart = lineEnd + 1;
+      }
+    }
+    return new GitLogRecord(res, paths, statuses, mySupportsRawBody);
+  }
+
+  /**
+   * Parses a line of paths: {@code path1[\tpath2]} for --name-only, {@code status\tpath1[\tpath2]} for --name-status.
+   */
+  private void parsePaths(@NotNull byte[] data, int start, int end, @NotNull Charset charset,
+                          @NotNull List<String> paths, @NotNull List<GitLogStatusInfo> statuses) {
+    String status = null;
+    if (myNameStatusOption == NameStatus.STATUS) {
+      int statusEnd = indexOf(data, (byte)'\t', start, end);
+      if (statusEnd == end) {
+        throwGFE("No path in", new String(data, start, end - start, charset));
+      }
+      status = new String(data, start, statusEnd - start, charset);
+      start = statusEnd + 1;
+    }
+    int path1End = indexOf(data, (byte)'\t', start, end);
+    String path1 = new String(data, start, path1End - start, charset);
+    String path2 = path1End < end ? new String(data, path1End + 1, end - path1End - 1, charset) : null;
+    paths.add(path1);
+    if (path2 != null) {
+      paths.add(path2);
+    }
+    if (status != null) {
+      statuses.add(new GitLogStatusInfo(GitChangeType.fromString(status), path1, path2));
+    }
+  }
+
+  private static int indexOf(@NotNull byte[] data, byte b, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (data[i] == b) {
+        return i;
+      }
+    }
+    return end;
+  }
 
   @NotNull
   private Map<GitLogOption, String> parseCommitInfo(@NotNull String commitInfo) {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.history;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.Consumer;
+import git4idea.GitFormatException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * <p>Receives the output of 'git log' as it is read from the process, splits it into records and passes the records
+ *    parsed by the {@link GitLogParser} to the consumer, so that revisions are delivered while the history is still being read.</p>
+ * <p>Bytes of the current record are accumulated in a single buffer which is reused for all records.</p>
+ * <p>If the progress indicator is cancelled, or the consumer or the parser throws an exception, writing fails with an IOException,
+ *    which makes the handler destroy the process; the failure is rethrown by {@link #checkFailure()}.</p>
+ */
+class GitLogRecordStream extends OutputStream {
+
+  @NotNull private final GitLogParser myParser;
+  @NotNull private final Consumer<GitLogRecord> myConsumer;
+  @NotNull private final Charset myCharset;
+  @Nullable private final ProgressIndicator myIndicator;
+
+  @NotNull private byte[] myBuffer = new byte[8 * 1024];
+  private int myLength;
+  @Nullable private volatile RuntimeException myFailure;
+
+  GitLogRecordStream(@NotNull GitLogParser parser, @NotNull Consumer<GitLogRecord> consumer, @NotNull Charset charset,
+                     @Nullable ProgressIndicator indicator) {
+    myParser = parser;
+    myConsumer = consumer;
+    myCharset = charset;
+    myIndicator = indicator;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[]{(byte)b}, 0, 1);
+  }
+
+  @Override
+  public void write(@NotNull byte[] b, int off, int len) throws IOException {
+    int end = off + len;
+    int start = off;
+    for (int i = off; i < end; i++) {
+      if (b[i] == GitLogParser.RECORD_START_BYTE) {
+        append(b, start, i - start);
+        start = i;
+        if (myLength > 0) {
+          processRecord();
+        }
+      }
+    }
+    append(b, start, end - start);
+  }
+
+  /**
+   * Processes the last record; should be called when the output has been read completely.
+   */
+  void finish() throws VcsException {
+    checkFailure();
+    try {
+      processRecord();
+    }
+    catch (IOException e) {
+      checkFailure();
+    }
+  }
+
+  /**
+   * Rethrows the failure which interrupted reading the output, if any:
+   * {@link ProcessCanceledException} is rethrown as is, format errors are reported as {@link VcsException}.
+   */
+  void checkFailure() throws VcsException {
+    RuntimeException failure = myFailure;
+    if (failure instanceof GitFormatException) {
+      throw new VcsException(failure);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void append(@NotNull byte[] b, int off, int len) {
+    if (myLength + len > myBuffer.length) {
+      myBuffer = ArrayUtil.realloc(myBuffer, Math.max(myBuffer.length * 2, myLength + len));
+    }
+    System.arraycopy(b, off, myBuffer, myLength, len);
+    myLength += len;
+  }
+
+  private void processRecord() throws IOException {
+    try {
+      if (myIndicator != null) {
+        myIndicator.checkCanceled();
+      }
+      GitLogRecord record = myParser.parseOneRecord(myBuffer, 0, myLength, myCharset);
+      myLength = 0;
+      if (record != null) {
+        myConsumer.consume(record);
+      }
+    }
+    catch (RuntimeException e) {
+      myFailure = e;
+      throw new IOException("Couldn't process the output of git log", e);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.repo;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads entries of the given paths from {@code .git/index}, versions 2 to 4.
+ * The index is read sequentially, and entries of other paths are skipped, so a few paths can be checked without calling Git
+ * even in a large working tree.
+ */
+public class GitIndexReader {
+
+  private static final int SIGNATURE = 0x44495243; // "DIRC"
+  private static final int ENTRY_FIXED_LENGTH = 62;
+
+  private static final int FLAG_ASSUME_VALID = 0x8000;
+  private static final int FLAG_EXTENDED = 0x4000;
+  private static final int FLAG_STAGE_MASK = 0x3000;
+  private static final int EXTENDED_FLAG_SKIP_WORKTREE = 0x4000;
+  private static final int EXTENDED_FLAG_INTENT_TO_ADD = 0x2000;
+
+  public static final int MODE_TYPE_MASK = 0170000;
+  public static final int MODE_REGULAR_FILE = 0100000;
+
+  /**
+   * An entry of the index. Entries of conflicting files (i.e. having a non-zero stage) and entries having flags which change the usual
+   * comparison with the working tree (assume-unchanged, skip-worktree, intent-to-add) are marked as {@link #isSpecial() special}.
+   */
+  public static class Entry {
+    private final int myMtime;
+    private final int mySize;
+    private final int myMode;
+    @NotNull private final String myHash;
+    private final boolean mySpecial;
+
+    Entry(int mtime, int size, int mode, @NotNull String hash, boolean special) {
+      myMtime = mtime;
+      mySize = size;
+      myMode = mode;
+      myHash = hash;
+      mySpecial = special;
+    }
+
+    /**
+     * Modification time of the file in seconds, as it was when the file was added to the index.
+     */
+    public int getMtime() {
+      return myMtime;
+    }
+
+    /**
+     * Size of the file truncated to 32 bits.
+     */
+    public int getSize() {
+      return mySize;
+    }
+
+    public int getMode() {
+      return myMode;
+    }
+
+    @NotNull
+    public String getHash() {
+      return myHash;
+    }
+
+    public boolean isSpecial() {
+      return mySpecial;
+    }
+  }
+
+  /**
+   * Returns entries of the given root-relative paths which are present in the index.
+   * @throws IOException if the index can't be read or has an unsupported format.
+   */
+  @NotNull
+  public static Map<String, Entry> readEntries(@NotNull File indexFile, @NotNull Set<String> paths) throws IOException {
+    Map<String, Entry> entries = new HashMap<String, Entry>();
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+    try {
+      if (in.readInt() != SIGNATURE) {
+        throw new IOException("Not a Git index: " + indexFile);
+      }
+      int version = in.readInt();
+      if (version < 2 || version > 4) {
+        throw new IOException("Unsupported Git index version: " + version);
+      }
+      int count = in.readInt();
+
+      byte[] fixed = new byte[ENTRY_FIXED_LENGTH];
+      byte[] name = new byte[256];
+      byte[] padding = new byte[8];
+      int nameLength = 0;
+      for (int i = 0; i < count; i++) {
+        in.readFully(fixed);
+        int flags = readShort(fixed, 60);
+        int extendedFlags = 0;
+        int entryLength = ENTRY_FIXED_LENGTH;
+        if (version >= 3 && (flags & FLAG_EXTENDED) != 0) {
+          extendedFlags = in.readUnsignedShort();
+          entryLength += 2;
+        }
+
+        if (version == 4) {
+          // the name is stored as the number of bytes to remove from the end of the previous name and the suffix to append
+          nameLength -= readOffset(in);
+          if (nameLength < 0) {
+            throw new IOException("Invalid entry name in " + indexFile);
+          }
+        }
+        else {
+          nameLength = 0;
+        }
+        int c;
+        while ((c = in.read()) > 0) {
+          if (nameLength == name.length) {
+            name = Arrays.copyOf(name, name.length * 2);
+          }
+          name[nameLength++] = (byte)c;
+        }
+        if (c < 0) {
+          throw new EOFException("Unexpected end of " + indexFile);
+        }
+        if (version < 4) {
+          // entries are padded with 1 to 8 NUL bytes, one of which has been read above
+          in.readFully(padding, 0, 7 - (entryLength + nameLength) % 8);
+        }
+
+        String path = new String(name, 0, nameLength, "UTF-8");
+        if (paths.contains(path)) {
+          boolean special = (flags & (FLAG_ASSUME_VALID | FLAG_STAGE_MASK)) != 0 ||
+                            (extendedFlags & (EXTENDED_FLAG_SKIP_WORKTREE | EXTENDED_FLAG_INTENT_TO_ADD)) != 0;
+          Entry previous = entries.get(path);
+          if (previous == null || !previous.isSpecial()) {
+            entries.put(path, new Entry(readInt(fixed, 8), readInt(fixed, 36), readInt(fixed, 24), toHex(fixed, 40), special));
+          }
+        }
+      }
+      return entries;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  private static int readOffset(@NotNull DataInputStream in) throws IOException {
+    int c = in.readUnsignedByte();
+    int value = c & 0x7f;
+    while ((c & 0x80) != 0) {
+      c = in.readUnsignedByte();
+      value = ((value + 1) << 7) | (c & 0x7f);
+    }
+    return value;
+  }
+
+  private static int readInt(@NotNull byte[] data, int offset) {
+    return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+  }
+
+  private static int readShort(@NotNull byte[] data, int offset) {
+    return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+  }
+
+  @NotNull
+  private static String toHex(@NotNull byte[] data, int offset) {
+    StringBuilder hash = new StringBuilder(40);
+    for (int i = offset; i < offset + 20; i++) {
+      hash.append(Character.forDigit((data[i] >> 4) & 0x0f, 16)).append(Character.forDigit(data[i] & 0x0f, 16));
+    }
+    return hash.toString();
+  }
+
+}
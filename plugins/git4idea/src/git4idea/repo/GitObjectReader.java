@@ -0,0 +1,810 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.repo;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.UnsyncByteArrayInputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads Git objects right from the {@code .git/objects} folder: loose objects and objects stored in packs, including deltified ones.
+ * It is used for read-only operations instead of spawning a Git process.
+ * <p/>
+ * Methods return null if an object can't be found (e.g. it is located in an alternate object storage) or is in an unsupported format
+ * (only version 2 pack indexes are supported, which Git writes since 1.5.2); callers should fall back to the Git command line then.
+ * <p/>
+ * Pack files are opened only for the time of a single read operation, so that Git is able to delete them during gc on Windows.
+ */
+public class GitObjectReader {
+
+  private static final Logger LOG = Logger.getInstance(GitObjectReader.class);
+
+  static final int OBJ_COMMIT = 1;
+  static final int OBJ_TREE = 2;
+  static final int OBJ_BLOB = 3;
+  static final int OBJ_TAG = 4;
+  private static final int OBJ_OFS_DELTA = 6;
+  private static final int OBJ_REF_DELTA = 7;
+
+  private static final long BASE_CACHE_SIZE = 16 * 1024 * 1024;
+  private static final int MAX_CACHED_BASE_SIZE = 1024 * 1024;
+  private static final int HASH_LENGTH = 20;
+  private static final int IDX_HEADER_LENGTH = 8;
+  private static final int FANOUT_LENGTH = 256 * 4;
+  private static final int IDX_SIGNATURE = 0xff744f63; // "\377tOc"
+
+  @NotNull private final File myObjectsDir;
+  @NotNull private final BaseCache myBaseCache = new BaseCache(BASE_CACHE_SIZE);
+  @Nullable private volatile List<PackFile> myPacks;
+
+  public GitObjectReader(@NotNull File gitDir) {
+    myObjectsDir = new File(gitDir, "objects");
+  }
+
+  public static boolean isFullHash(@NotNull String revision) {
+    return revision.length() == HASH_LENGTH * 2 && parseHash(revision) != null;
+  }
+
+  /**
+   * Returns the content of the file at the given path in the given commit,
+   * or null if the file is not there or the content couldn't be read without calling Git.
+   */
+  @Nullable
+  public byte[] readFileContent(@NotNull String commitHash, @NotNull String relativePath) throws IOException {
+    ReadContext context = new ReadContext();
+    try {
+      TreeEntry entry = findEntry(context, commitHash, relativePath);
+      if (entry == null) {
+        return null;
+      }
+      GitObject blob = readObject(context, entry.myHash);
+      return blob != null && blob.myType == OBJ_BLOB ? blob.myData : null;
+    }
+    catch (MissingObjectException e) {
+      return null;
+    }
+    finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Returns entries of the given paths in the tree of the given commit; paths which are not there are absent from the result.
+   * @throws IOException if the objects couldn't be read without calling Git.
+   */
+  @NotNull
+  public Map<String, TreeEntry> readTreeEntries(@NotNull String commitHash, @NotNull Collection<String> relativePaths) throws IOException {
+    ReadContext context = new ReadContext();
+    try {
+      Map<String, TreeEntry> entries = new HashMap<String, TreeEntry>();
+      for (String path : relativePaths) {
+        TreeEntry entry = findEntry(context, commitHash, path);
+        if (entry != null) {
+          entries.put(path, entry);
+        }
+      }
+      return entries;
+    }
+    finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Returns hashes of parents of the given commit, or null if the commit couldn't be read without calling Git.
+   */
+  @Nullable
+  public List<String> readParents(@NotNull String commitHash) throws IOException {
+    ReadContext context = new ReadContext();
+    try {
+      GitObject commit = readObject(context, commitHash);
+      return commit != null && commit.myType == OBJ_COMMIT ? getCommitHeaders(commit, "parent ") : null;
+    }
+    finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Returns the value of the given header of the commit (e.g. "author" or "committer"),
+   * or null if there is no such header or the commit couldn't be read without calling Git.
+   */
+  @Nullable
+  public String readCommitHeader(@NotNull String commitHash, @NotNull String header) throws IOException {
+    ReadContext context = new ReadContext();
+    try {
+      GitObject commit = readObject(context, commitHash);
+      if (commit == null || commit.myType != OBJ_COMMIT) {
+        return null;
+      }
+      List<String> values = getCommitHeaders(commit, header + " ");
+      return values.isEmpty() ? null : values.get(0);
+    }
+    finally {
+      context.close();
+    }
+  }
+
+  /**
+   * Returns null if there is no such path in the commit.
+   * @throws MissingObjectException if the commit or one of the trees couldn't be read.
+   */
+  @Nullable
+  private TreeEntry findEntry(@NotNull ReadContext context, @NotNull String commitHash, @NotNull String relativePath) throws IOException {
+    GitObject commit = readExistingObject(context, commitHash, OBJ_COMMIT);
+    TreeEntry entry = new TreeEntry(TreeEntry.TREE_MODE, getCommitHeaders(commit, "tree ").get(0));
+    for (String name : StringUtil.split(relativePath, "/")) {
+      if (!entry.isTree()) {
+        return null;
+      }
+      GitObject tree = context.getTree(entry.myHash);
+      if (tree == null) {
+        tree = readExistingObject(context, entry.myHash, OBJ_TREE);
+        context.putTree(entry.myHash, tree);
+      }
+      entry = findTreeEntry(tree.myData, name);
+      if (entry == null) {
+        return null;
+      }
+    }
+    return entry;
+  }
+
+  @NotNull
+  private GitObject readExistingObject(@NotNull ReadContext context, @NotNull String hash, int type) throws IOException {
+    GitObject object = readObject(context, hash);
+    if (object == null || object.myType != type) {
+      throw new MissingObjectException("Couldn't read the object " + hash + " of type " + type + " from " + myObjectsDir);
+    }
+    return object;
+  }
+
+  @Nullable
+  private GitObject readObject(@NotNull ReadContext context, @NotNull String hash) throws IOException {
+    byte[] id = parseHash(hash);
+    if (id == null) {
+      return null;
+    }
+    GitObject object = readLooseObject(hash);
+    if (object == null) {
+      object = readPackedObject(context, id);
+    }
+    if (object == null) {
+      LOG.debug("Object " + hash + " was not found in " + myObjectsDir);
+    }
+    return object;
+  }
+
+  @Nullable
+  private GitObject readLooseObject(@NotNull String hash) throws IOException {
+    File file = new File(new File(myObjectsDir, hash.substring(0, 2)), hash.substring(2));
+    if (!file.isFile()) {
+      return null;
+    }
+    DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(new FileInputStream(file))));
+    try {
+      StringBuilder header = new StringBuilder();
+      int c;
+      while ((c = in.read()) > 0) {
+        header.append((char)c);
+      }
+      int space = header.indexOf(" ");
+      if (c < 0 || space < 0) {
+        throw new IOException("Invalid header of the object " + hash + ": " + header);
+      }
+      int type = parseType(header.substring(0, space));
+      byte[] data = new byte[Integer.parseInt(header.substring(space + 1))];
+      in.readFully(data);
+      return new GitObject(type, data);
+    }
+    catch (NumberFormatException e) {
+      throw new IOException("Invalid size of the object " + hash, e);
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  private static int parseType(@NotNull String type) throws IOException {
+    if (type.equals("commit")) return OBJ_COMMIT;
+    if (type.equals("tree")) return OBJ_TREE;
+    if (type.equals("blob")) return OBJ_BLOB;
+    if (type.equals("tag")) return OBJ_TAG;
+    throw new IOException("Unknown object type: " + type);
+  }
+
+  /**
+   * Rescans packs once if the object is not found in the known ones or if one of them has been deleted by gc or repack.
+   */
+  @Nullable
+  private GitObject readPackedObject(@NotNull ReadContext context, @NotNull byte[] id) throws IOException {
+    List<PackFile> packs = myPacks;
+    if (packs != null) {
+      try {
+        GitObject object = readPackedObject(context, packs, id);
+        if (object != null) {
+          return object;
+        }
+      }
+      catch (FileNotFoundException e) {
+        LOG.debug("Pack was deleted, rescanning " + myObjectsDir, e);
+      }
+    }
+    List<PackFile> rescanned = scanPacks();
+    if (rescanned.equals(packs)) {
+      return null;
+    }
+    return readPackedObject(context, rescanned, id);
+  }
+
+  @Nullable
+  private GitObject readPackedObject(@NotNull ReadContext context, @NotNull List<PackFile> packs, @NotNull byte[] id) throws IOException {
+    for (PackFile pack : packs) {
+      long offset = pack.findOffset(context, id);
+      if (offset >= 0) {
+        return readPackedObject(context, pack, offset);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Walks the delta chain down to the first non-deltified or cached object, and then applies deltas up from it.
+   */
+  @Nullable
+  private GitObject readPackedObject(@NotNull ReadContext context, @NotNull PackFile pack, long offset) throws IOException {
+    RandomAccessFile file = context.open(pack.myPack);
+    List<EntryHeader> deltas = new ArrayList<EntryHeader>();
+    GitObject base;
+    long baseOffset = offset;
+    while (true) {
+      base = myBaseCache.get(pack, baseOffset);
+      if (base != null) {
+        break;
+      }
+      EntryHeader header = readEntryHeader(file, baseOffset);
+      if (header.myType == OBJ_OFS_DELTA || header.myType == OBJ_REF_DELTA) {
+        deltas.add(header);
+        long nextOffset = header.myBaseId == null ? header.myBaseOffset : pack.findOffset(context, header.myBaseId);
+        if (nextOffset >= 0) {
+          baseOffset = nextOffset;
+          continue;
+        }
+        // the base of a REF_DELTA is not in this pack: it can't be cached by the offset then
+        base = header.myBaseId == null ? null : readObject(context, toHex(header.myBaseId, 0));
+        if (base == null) {
+          return null;
+        }
+        baseOffset = -1;
+        break;
+      }
+      base = new GitObject(header.myType, inflate(file, header.myDataOffset, header.mySize));
+      break;
+    }
+
+    for (int i = deltas.size() - 1; i >= 0; i--) {
+      if (baseOffset >= 0 && base.myData.length <= MAX_CACHED_BASE_SIZE) {
+        myBaseCache.put(pack, baseOffset, base);
+      }
+      EntryHeader delta = deltas.get(i);
+      base = new GitObject(base.myType, applyDelta(base.myData, inflate(file, delta.myDataOffset, delta.mySize)));
+      baseOffset = delta.myOffset;
+    }
+    return base;
+  }
+
+  @NotNull
+  private static EntryHeader readEntryHeader(@NotNull RandomAccessFile file, long offset) throws IOException {
+    byte[] buffer = new byte[HASH_LENGTH + 20];
+    file.seek(offset);
+    int length = file.read(buffer);
+    if (length <= 0) {
+      throw new EOFException("No object at offset " + offset + " in " + file);
+    }
+
+    int pos = 0;
+    int c = buffer[pos++] & 0xff;
+    int type = (c >> 4) & 7;
+    long size = c & 0x0f;
+    int shift = 4;
+    while ((c & 0x80) != 0) {
+      c = buffer[pos++] & 0xff;
+      size |= (long)(c & 0x7f) << shift;
+      shift += 7;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Object at offset " + offset + " is too large: " + size);
+    }
+
+    long baseOffset = -1;
+    byte[] baseId = null;
+    if (type == OBJ_OFS_DELTA) {
+      c = buffer[pos++] & 0xff;
+      long distance = c & 0x7f;
+      while ((c & 0x80) != 0) {
+        c = buffer[pos++] & 0xff;
+        distance = ((distance + 1) << 7) | (c & 0x7f);
+      }
+      baseOffset = offset - distance;
+    }
+    else if (type == OBJ_REF_DELTA) {
+      baseId = Arrays.copyOfRange(buffer, pos, pos + HASH_LENGTH);
+      pos += HASH_LENGTH;
+    }
+    return new EntryHeader(offset, type, (int)size, offset + pos, baseOffset, baseId);
+  }
+
+  @NotNull
+  private static byte[] inflate(@NotNull RandomAccessFile file, long offset, int size) throws IOException {
+    byte[] result = new byte[size];
+    byte[] buffer = new byte[Math.min(8192, size + 64)];
+    Inflater inflater = new Inflater();
+    try {
+      file.seek(offset);
+      int produced = 0;
+      while (produced < size) {
+        if (inflater.needsInput()) {
+          int read = file.read(buffer);
+          if (read <= 0) {
+            throw new EOFException("Unexpected end of the object at offset " + offset);
+          }
+          inflater.setInput(buffer, 0, read);
+        }
+        else if (inflater.finished() || inflater.needsDictionary()) {
+          throw new IOException("Object at offset " + offset + " is shorter than declared");
+        }
+        produced += inflater.inflate(result, produced, size - produced);
+      }
+      return result;
+    }
+    catch (DataFormatException e) {
+      throw new IOException("Couldn't inflate the object at offset " + offset, e);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Applies a delta in the Git format: sizes of the base and of the result followed by "copy from base" and "insert" instructions.
+   */
+  @NotNull
+  static byte[] applyDelta(@NotNull byte[] base, @NotNull byte[] delta) throws IOException {
+    DataInput in = new DataInputStream(new UnsyncByteArrayInputStream(delta));
+    if (readVarInt(in) != base.length) {
+      throw new IOException("Delta base size doesn't match");
+    }
+    byte[] result = new byte[(int)readVarInt(in)];
+    int pos = 0;
+    try {
+      while (pos < result.length) {
+        int op = in.readUnsignedByte();
+        if ((op & 0x80) != 0) {
+          int copyOffset = 0;
+          for (int i = 0; i < 4; i++) {
+            if ((op & (1 << i)) != 0) {
+              copyOffset |= in.readUnsignedByte() << (8 * i);
+            }
+          }
+          int copySize = 0;
+          for (int i = 0; i < 3; i++) {
+            if ((op & (0x10 << i)) != 0) {
+              copySize |= in.readUnsignedByte() << (8 * i);
+            }
+          }
+          if (copySize == 0) {
+            copySize = 0x10000;
+          }
+          if (copyOffset < 0 || copyOffset + copySize > base.length || pos + copySize > result.length) {
+            throw new IOException("Delta copies outside of the base or of the result");
+          }
+          System.arraycopy(base, copyOffset, result, pos, copySize);
+          pos += copySize;
+        }
+        else if (op != 0) {
+          if (pos + op > result.length) {
+            throw new IOException("Delta inserts outside of the result");
+          }
+          in.readFully(result, pos, op);
+          pos += op;
+        }
+        else {
+          throw new IOException("Unexpected delta instruction 0");
+        }
+      }
+    }
+    catch (EOFException e) {
+      throw new IOException("Delta is truncated", e);
+    }
+    return result;
+  }
+
+  private static long readVarInt(@NotNull DataInput in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    int c;
+    do {
+      c = in.readUnsignedByte();
+      value |= (long)(c & 0x7f) << shift;
+      shift += 7;
+    }
+    while ((c & 0x80) != 0);
+    return value;
+  }
+
+  @NotNull
+  private static List<String> getCommitHeaders(@NotNull GitObject commit, @NotNull String prefix) throws IOException {
+    List<String> values = new ArrayList<String>();
+    int start = 0;
+    byte[] data = commit.myData;
+    while (start < data.length && data[start] != '\n') {
+      int end = start;
+      while (end < data.length && data[end] != '\n') {
+        end++;
+      }
+      String line = new String(data, start, end - start, "UTF-8");
+      if (line.startsWith(prefix)) {
+        values.add(line.substring(prefix.length()));
+      }
+      start = end + 1;
+    }
+    if (prefix.equals("tree ") && values.isEmpty()) {
+      throw new IOException("Commit without a tree");
+    }
+    return values;
+  }
+
+  /**
+   * Tree entries are stored as {@code <mode> <name>\0<20 bytes of hash>}.
+   */
+  @Nullable
+  private static TreeEntry findTreeEntry(@NotNull byte[] tree, @NotNull String name) throws IOException {
+    byte[] nameBytes = name.getBytes("UTF-8");
+    int pos = 0;
+    while (pos < tree.length) {
+      int mode = 0;
+      int nameStart = pos;
+      while (tree[nameStart] != ' ') {
+        mode = (mode << 3) | (tree[nameStart] - '0');
+        nameStart++;
+      }
+      nameStart++;
+      int nameEnd = nameStart;
+      while (tree[nameEnd] != 0) {
+        nameEnd++;
+      }
+      if (nameEnd - nameStart == nameBytes.length && regionMatches(tree, nameStart, nameBytes)) {
+        return new TreeEntry(mode, toHex(tree, nameEnd + 1));
+      }
+      pos = nameEnd + 1 + HASH_LENGTH;
+    }
+    return null;
+  }
+
+  private static boolean regionMatches(@NotNull byte[] data, int offset, @NotNull byte[] region) {
+    for (int i = 0; i < region.length; i++) {
+      if (data[offset + i] != region[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private synchronized List<PackFile> scanPacks() {
+    Map<String, PackFile> known = new HashMap<String, PackFile>();
+    List<PackFile> oldPacks = myPacks;
+    if (oldPacks != null) {
+      for (PackFile pack : oldPacks) {
+        known.put(pack.myIndex.getName(), pack);
+      }
+    }
+    List<PackFile> packs = new ArrayList<PackFile>();
+    File[] files = new File(myObjectsDir, "pack").listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!name.endsWith(".idx")) {
+          continue;
+        }
+        File pack = new File(file.getParentFile(), StringUtil.trimEnd(name, ".idx") + ".pack");
+        if (!pack.isFile()) {
+          continue;
+        }
+        PackFile packFile = known.get(name);
+        if (packFile != null && packFile.isUpToDate()) {
+          known.remove(name);
+        }
+        else {
+          packFile = new PackFile(file, pack);
+        }
+        packs.add(packFile);
+      }
+    }
+    // packs deleted or rewritten under the same name: their offsets are not valid anymore
+    for (PackFile pack : known.values()) {
+      myBaseCache.remove(pack);
+    }
+    myPacks = packs;
+    return packs;
+  }
+
+  @Nullable
+  private static byte[] parseHash(@NotNull String hash) {
+    if (hash.length() != HASH_LENGTH * 2) {
+      return null;
+    }
+    byte[] id = new byte[HASH_LENGTH];
+    for (int i = 0; i < HASH_LENGTH; i++) {
+      int high = Character.digit(hash.charAt(2 * i), 16);
+      int low = Character.digit(hash.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      id[i] = (byte)((high << 4) | low);
+    }
+    return id;
+  }
+
+  @NotNull
+  private static String toHex(@NotNull byte[] data, int offset) {
+    StringBuilder hash = new StringBuilder(HASH_LENGTH * 2);
+    for (int i = offset; i < offset + HASH_LENGTH; i++) {
+      hash.append(Character.forDigit((data[i] >> 4) & 0x0f, 16)).append(Character.forDigit(data[i] & 0x0f, 16));
+    }
+    return hash.toString();
+  }
+
+  public static class TreeEntry {
+    private static final int TREE_MODE = 040000;
+
+    private final int myMode;
+    @NotNull private final String myHash;
+
+    TreeEntry(int mode, @NotNull String hash) {
+      myMode = mode;
+      myHash = hash;
+    }
+
+    public int getMode() {
+      return myMode;
+    }
+
+    @NotNull
+    public String getHash() {
+      return myHash;
+    }
+
+    public boolean isTree() {
+      return myMode == TREE_MODE;
+    }
+  }
+
+  private static class MissingObjectException extends IOException {
+    MissingObjectException(@NotNull String message) {
+      super(message);
+    }
+  }
+
+  static class GitObject {
+    final int myType;
+    @NotNull final byte[] myData;
+
+    GitObject(int type, @NotNull byte[] data) {
+      myType = type;
+      myData = data;
+    }
+  }
+
+  private static class EntryHeader {
+    private final long myOffset;
+    private final int myType;
+    private final int mySize;
+    private final long myDataOffset;
+    private final long myBaseOffset;
+    @Nullable private final byte[] myBaseId;
+
+    EntryHeader(long offset, int type, int size, long dataOffset, long baseOffset, @Nullable byte[] baseId) {
+      myOffset = offset;
+      myType = type;
+      mySize = size;
+      myDataOffset = dataOffset;
+      myBaseOffset = baseOffset;
+      myBaseId = baseId;
+    }
+  }
+
+  /**
+   * A pack and its version 2 index: the fan-out table is kept in memory, object names are binary searched right in the index file.
+   */
+  private static class PackFile {
+    @NotNull private final File myIndex;
+    @NotNull private final File myPack;
+    private final long myIndexTimestamp;
+    private final long myIndexLength;
+    @Nullable private volatile int[] myFanout;
+    private volatile boolean myUnsupported;
+
+    PackFile(@NotNull File index, @NotNull File pack) {
+      myIndex = index;
+      myPack = pack;
+      myIndexTimestamp = index.lastModified();
+      myIndexLength = index.length();
+    }
+
+    boolean isUpToDate() {
+      return myIndex.lastModified() == myIndexTimestamp && myIndex.length() == myIndexLength;
+    }
+
+    long findOffset(@NotNull ReadContext context, @NotNull byte[] id) throws IOException {
+      int[] fanout = getFanout(context);
+      if (fanout == null) {
+        return -1;
+      }
+      RandomAccessFile file = context.open(myIndex);
+      int first = id[0] & 0xff;
+      int low = first == 0 ? 0 : fanout[first - 1];
+      int high = fanout[first] - 1;
+      int count = fanout[255];
+      byte[] candidate = new byte[HASH_LENGTH];
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        file.seek(IDX_HEADER_LENGTH + FANOUT_LENGTH + (long)mid * HASH_LENGTH);
+        file.readFully(candidate);
+        int cmp = compare(candidate, id);
+        if (cmp < 0) {
+          low = mid + 1;
+        }
+        else if (cmp > 0) {
+          high = mid - 1;
+        }
+        else {
+          long offsetsStart = IDX_HEADER_LENGTH + FANOUT_LENGTH + (long)count * (HASH_LENGTH + 4);
+          file.seek(offsetsStart + (long)mid * 4);
+          int offset = file.readInt();
+          if (offset >= 0) {
+            return offset;
+          }
+          file.seek(offsetsStart + (long)count * 4 + (long)(offset & 0x7fffffff) * 8);
+          return file.readLong();
+        }
+      }
+      return -1;
+    }
+
+    @Nullable
+    private int[] getFanout(@NotNull ReadContext context) throws IOException {
+      int[] fanout = myFanout;
+      if (fanout != null || myUnsupported) {
+        return fanout;
+      }
+      RandomAccessFile file = context.open(myIndex);
+      file.seek(0);
+      if (file.readInt() != IDX_SIGNATURE || file.readInt() != 2) {
+        LOG.info("Unsupported pack index format: " + myIndex);
+        myUnsupported = true;
+        return null;
+      }
+      fanout = new int[256];
+      for (int i = 0; i < fanout.length; i++) {
+        fanout[i] = file.readInt();
+      }
+      myFanout = fanout;
+      return fanout;
+    }
+
+    private static int compare(@NotNull byte[] id1, @NotNull byte[] id2) {
+      for (int i = 0; i < HASH_LENGTH; i++) {
+        int diff = (id1[i] & 0xff) - (id2[i] & 0xff);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Files opened and trees read during a single read operation.
+   */
+  private static class ReadContext {
+    @NotNull private final Map<File, RandomAccessFile> myOpenFiles = new HashMap<File, RandomAccessFile>();
+    @NotNull private final Map<String, GitObject> myTrees = new HashMap<String, GitObject>();
+
+    @Nullable
+    GitObject getTree(@NotNull String hash) {
+      return myTrees.get(hash);
+    }
+
+    void putTree(@NotNull String hash, @NotNull GitObject tree) {
+      myTrees.put(hash, tree);
+    }
+
+    @NotNull
+    RandomAccessFile open(@NotNull File file) throws IOException {
+      RandomAccessFile opened = myOpenFiles.get(file);
+      if (opened == null) {
+        opened = new RandomAccessFile(file, "r");
+        myOpenFiles.put(file, opened);
+      }
+      return opened;
+    }
+
+    void close() {
+      for (RandomAccessFile file : myOpenFiles.values()) {
+        try {
+          file.close();
+        }
+        catch (IOException e) {
+          LOG.info("Couldn't close " + file, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Bases of deltas resolved recently: neighbouring revisions of a file usually share the same delta chain.
+   */
+  private static class BaseCache {
+    private final long myMaxSize;
+    private long mySize;
+    @NotNull private final LinkedHashMap<Pair<PackFile, Long>, GitObject> myObjects =
+      new LinkedHashMap<Pair<PackFile, Long>, GitObject>(16, 0.75f, true);
+
+    BaseCache(long maxSize) {
+      myMaxSize = maxSize;
+    }
+
+    @Nullable
+    synchronized GitObject get(@NotNull PackFile pack, long offset) {
+      return myObjects.get(Pair.create(pack, offset));
+    }
+
+    synchronized void put(@NotNull PackFile pack, long offset, @NotNull GitObject object) {
+      GitObject previous = myObjects.put(Pair.create(pack, offset), object);
+      if (previous != null) {
+        mySize -= previous.myData.length;
+      }
+      mySize += object.myData.length;
+      Iterator<GitObject> iterator = myObjects.values().iterator();
+      while (mySize > myMaxSize && iterator.hasNext()) {
+        mySize -= iterator.next().myData.length;
+        iterator.remove();
+      }
+    }
+
+    synchronized void remove(@NotNull PackFile pack) {
+      Iterator<Map.Entry<Pair<PackFile, Long>, GitObject>> iterator = myObjects.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<Pair<PackFile, Long>, GitObject> entry = iterator.next();
+        if (entry.getKey().first == pack) {
+          mySize -= entry.getValue().myData.length;
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+}
@@ -68,6 +68,12 @@ public interface GitRepository extends Repository {
   @NotNull
   GitUntrackedFilesHolder getUntrackedFilesHolder();
 
+  /**
+   * Returns the reader of objects from {@code .git/objects}, which may be used instead of calling Git for read-only operations.
+   */
+  @NotNull
+  GitObjectReader getObjectReader();
+
 
   @NotNull
   GitRepoInfo getInfo();
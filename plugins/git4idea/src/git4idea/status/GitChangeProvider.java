@@ -80,7 +80,11 @@ public class GitChangeProvider implements ChangeProvider {
       final MyNonChangedHolder holder = new MyNonChangedHolder(myProject, dirtyScope.getDirtyFilesNoExpand(), addGate,
                                                                myFileDocumentManager, myVcsManager);
       for (VirtualFile root : roots) {
+        if (progress != null) {
+          progress.checkCanceled();
+        }
         debug("checking root: " + root.getPath());
+        long start = System.currentTimeMillis();
         GitChangesCollector collector = isNewGitChangeProviderAvailable()
                                         ? GitNewChangesCollector.collect(myProject, myGit, myChangeListManager, myVcsManager,
                                                                          vcs, dirtyScope, root)
@@ -97,6 +101,7 @@ public class GitChangeProvider implements ChangeProvider {
           holder.unversioned(f);
         }
         holder.feedBuilder(builder);
+        debug("collected changes in " + root.getPath() + " in " + (System.currentTimeMillis() - start) + " ms");
       }
     }
     catch (VcsException e) {
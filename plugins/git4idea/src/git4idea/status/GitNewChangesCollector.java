@@ -17,6 +17,8 @@ package git4idea.status;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vcs.*;
 import com.intellij.openapi.vcs.changes.Change;
@@ -24,7 +26,9 @@ import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vcs.changes.ContentRevision;
 import com.intellij.openapi.vcs.changes.VcsDirtyScope;
 import com.intellij.openapi.vcs.history.VcsRevisionNumber;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.vcsUtil.VcsFileUtil;
 import git4idea.GitContentRevision;
 import git4idea.GitFormatException;
 import git4idea.GitRevisionNumber;
@@ -34,13 +38,15 @@ import git4idea.commands.Git;
 import git4idea.commands.GitCommand;
 import git4idea.commands.GitHandler;
 import git4idea.commands.GitSimpleHandler;
+import git4idea.repo.GitIndexReader;
+import git4idea.repo.GitObjectReader;
 import git4idea.repo.GitRepository;
 import git4idea.repo.GitUntrackedFilesHolder;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
 
 /**
  * <p>
@@ -49,6 +55,9 @@ import java.util.Set;
  *   Works only on Git 1.7.0 and later.
  * </p>
  * <p>
+ *   If only files are dirty, they are compared with {@code .git/index} first, and Git is called only for files which are not up-to-date.
+ * </p>
+ * <p>
  *   The class is immutable: collect changes and get the instance from where they can be retrieved by {@link #collect}.
  * </p>
  *
@@ -57,6 +66,8 @@ import java.util.Set;
 class GitNewChangesCollector extends GitChangesCollector {
 
   private static final Logger LOG = Logger.getInstance(GitNewChangesCollector.class);
+  private static final String CHECK_BY_INDEX_REGISTRY_KEY = "git.status.check.by.index";
+
   private final GitRepository myRepository;
   private final Collection<Change> myChanges = new HashSet<Change>();
   private final Set<VirtualFile> myUnversionedFiles = new HashSet<VirtualFile>();
@@ -95,16 +106,95 @@ class GitNewChangesCollector extends GitChangesCollector {
 
     Collection<FilePath> dirtyPaths = dirtyPaths(true);
     if (!dirtyPaths.isEmpty()) {
-      collectChanges(dirtyPaths);
+      VcsRevisionNumber head = getHead();
+      Collection<FilePath> pathsToCheck = Registry.is(CHECK_BY_INDEX_REGISTRY_KEY) ? checkByIndex(dirtyPaths, head) : dirtyPaths;
+      if (!pathsToCheck.isEmpty()) {
+        collectChanges(pathsToCheck, head);
+      }
       collectUnversionedFiles();
     }
   }
 
   // calls 'git status' and parses the output, feeding myChanges.
-  private void collectChanges(Collection<FilePath> dirtyPaths) throws VcsException {
+  private void collectChanges(Collection<FilePath> dirtyPaths, VcsRevisionNumber head) throws VcsException {
     GitSimpleHandler handler = statusHandler(dirtyPaths);
     String output = handler.run();
-    parseOutput(output, handler);
+    parseOutput(output, handler, head);
+  }
+
+  /**
+   * Checks dirty files by comparing their stat data with {@code .git/index} and the index with HEAD, without calling Git.
+   * Files which are staged and not modified in the working tree are reported right away.
+   * Returns paths which still have to be checked by {@code git status}: files modified or deleted in the working tree (which need
+   * a content check), not tracked, added or conflicting files; or all dirty paths if there are directories among them.
+   */
+  @NotNull
+  private Collection<FilePath> checkByIndex(@NotNull Collection<FilePath> dirtyPaths, @NotNull VcsRevisionNumber head)
+    throws VcsException {
+    if (myRepository == null || head == VcsRevisionNumber.NULL) {
+      return dirtyPaths;
+    }
+    Map<String, FilePath> relativePaths = new HashMap<String, FilePath>();
+    for (FilePath path : dirtyPaths) {
+      if (path.isDirectory()) {
+        return dirtyPaths;
+      }
+      relativePaths.put(VcsFileUtil.relativePath(myVcsRoot, path), path);
+    }
+
+    File indexFile = new File(VfsUtilCore.virtualToIoFile(myRepository.getGitDir()), "index");
+    Map<String, GitIndexReader.Entry> upToDateEntries = new HashMap<String, GitIndexReader.Entry>();
+    Map<String, GitObjectReader.TreeEntry> headEntries;
+    try {
+      long indexTimestamp = indexFile.lastModified();
+      Map<String, GitIndexReader.Entry> entries = GitIndexReader.readEntries(indexFile, relativePaths.keySet());
+      if (indexFile.lastModified() != indexTimestamp) {
+        LOG.debug("The index has changed while being read");
+        return dirtyPaths;
+      }
+      for (Map.Entry<String, GitIndexReader.Entry> entry : entries.entrySet()) {
+        if (isUpToDate(entry.getValue(), relativePaths.get(entry.getKey()).getIOFile(), indexTimestamp)) {
+          upToDateEntries.put(entry.getKey(), entry.getValue());
+        }
+      }
+      headEntries = myRepository.getObjectReader().readTreeEntries(head.asString(), upToDateEntries.keySet());
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't check changes by the index in " + myVcsRoot.getPresentableUrl(), e);
+      return dirtyPaths;
+    }
+
+    List<FilePath> pathsToCheck = new ArrayList<FilePath>();
+    for (Map.Entry<String, FilePath> entry : relativePaths.entrySet()) {
+      String path = entry.getKey();
+      GitIndexReader.Entry indexEntry = upToDateEntries.get(path);
+      GitObjectReader.TreeEntry headEntry = headEntries.get(path);
+      if (indexEntry == null || headEntry == null || indexEntry.getMode() != headEntry.getMode()) {
+        pathsToCheck.add(entry.getValue());
+      }
+      else if (!indexEntry.getHash().equals(headEntry.getHash())) {
+        reportModified(path, head);
+      }
+    }
+    GitChangeProvider.debug((relativePaths.size() - pathsToCheck.size()) + " of " + relativePaths.size() +
+                            " dirty files were checked by the index in " + myVcsRoot.getPath());
+    return pathsToCheck;
+  }
+
+  /**
+   * Checks that the file in the working tree hasn't changed since it was added to the index, like Git does before reading the content.
+   * Files modified in the same second when the index was written are considered changed, because their stat data may be the same
+   * while the content is different.
+   */
+  private static boolean isUpToDate(@NotNull GitIndexReader.Entry entry, @NotNull File file, long indexTimestamp) {
+    if (entry.isSpecial() || (entry.getMode() & GitIndexReader.MODE_TYPE_MASK) != GitIndexReader.MODE_REGULAR_FILE || !file.isFile()) {
+      return false;
+    }
+    long seconds = file.lastModified() / 1000;
+    if (seconds >= indexTimestamp / 1000 || seconds != (entry.getMtime() & 0xffffffffL) || (int)file.length() != entry.getSize()) {
+      return false;
+    }
+    return SystemInfo.isWindows || file.canExecute() == ((entry.getMode() & 0111) != 0);
   }
 
   private void collectUnversionedFiles() throws VcsException {
@@ -141,9 +231,7 @@ class GitNewChangesCollector extends GitChangesCollector {
    * See <a href=http://www.kernel.org/pub/software/scm/git/docs/git-status.html#_output">Git man</a> for details.
    */
   // handler is here for debugging purposes in the case of parse error
-  private void parseOutput(@NotNull String output, @NotNull GitHandler handler) throws VcsException {
-    VcsRevisionNumber head = getHead();
-
+  private void parseOutput(@NotNull String output, @NotNull GitHandler handler, @NotNull VcsRevisionNumber head) throws VcsException {
     final String[] split = output.split("\u0000");
 
     for (int pos = 0; pos < split.length; pos++) {
@@ -27,10 +27,13 @@ import git4idea.GitUtil;
 import git4idea.commands.GitBinaryHandler;
 import git4idea.commands.GitCommand;
 import git4idea.commands.GitSimpleHandler;
+import git4idea.repo.GitObjectReader;
 import git4idea.repo.GitRepository;
 import git4idea.repo.GitRepositoryManager;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -219,12 +222,39 @@ public class GitFileUtils {
    * @throws VcsException if there is a problem with running git
    */
   public static byte[] getFileContent(Project project, VirtualFile root, String revisionOrBranch, String relativePath) throws VcsException {
+    byte[] content = readFileContentFromObjects(project, root, revisionOrBranch, relativePath);
+    if (content != null) {
+      return content;
+    }
     GitBinaryHandler h = new GitBinaryHandler(project, root, GitCommand.SHOW);
     h.setSilent(true);
     h.addParameters(revisionOrBranch + ":" + relativePath);
     return h.run();
   }
 
+  /**
+   * Reads the file content right from {@code .git/objects} if the revision is a full hash, to avoid spawning a Git process.
+   * Returns null if the content couldn't be read this way: then it should be requested from Git which also reports errors properly.
+   */
+  @Nullable
+  private static byte[] readFileContentFromObjects(@NotNull Project project, @NotNull VirtualFile root, @NotNull String revision,
+                                                   @NotNull String relativePath) {
+    if (!GitObjectReader.isFullHash(revision)) {
+      return null;
+    }
+    GitRepository repository = GitUtil.getRepositoryManager(project).getRepositoryForRoot(root);
+    if (repository == null) {
+      return null;
+    }
+    try {
+      return repository.getObjectReader().readFileContent(revision, relativePath);
+    }
+    catch (IOException e) {
+      LOG.info("Couldn't read " + relativePath + " at " + revision + " from objects of " + root.getPresentableUrl(), e);
+      return null;
+    }
+  }
+
   public static String stripFileProtocolPrefix(String path) {
     final String FILE_PROTOCOL = "file://";
     if (path.startsWith(FILE_PROTOCOL)) {
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.annotate;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import git4idea.GitRevisionNumber;
+import git4idea.repo.GitObjectReader;
+import git4idea.test.GitTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.intellij.openapi.vcs.Executor.*;
+import static git4idea.test.GitExecutor.git;
+import static org.junit.Assert.*;
+
+public class GitAnnotationCacheTest {
+
+  private File myRepoDir;
+  private GitObjectReader myReader;
+
+  @Before
+  public void setUp() throws IOException {
+    myRepoDir = FileUtil.createTempDirectory("git-annotation-cache", null);
+    GitTestUtil.initRepo(myRepoDir.getPath());
+    myReader = new GitObjectReader(new File(myRepoDir, ".git"));
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myRepoDir);
+  }
+
+  @Test
+  public void replayedAnnotationMatchesBlame() throws IOException {
+    commit("a\nb\nc\nd\ne\n");
+    GitAnnotationCache.CachedAnnotation cached = blame();
+
+    commit("a\nB\nc\nd\ne\nf\n");
+    git("commit --allow-empty -m empty");
+    commit("new\na\nB\nd\n  e\nf");
+    commit("new\na\nB\nd\n  e\nf\ng\n");
+
+    assertReplayed(cached);
+  }
+
+  @Test
+  public void mergesAreNotReplayed() throws IOException {
+    commit("a\nb\n");
+    GitAnnotationCache.CachedAnnotation cached = blame();
+
+    git("checkout -b feature");
+    commit("a\nb\nc\n");
+    git("checkout master");
+    echo("other.txt", "other");
+    git("add other.txt");
+    git("commit -m other");
+    git("merge feature -m merge");
+
+    assertNull(GitAnnotationCache.replay(myReader, "file.txt", cached, git("rev-parse HEAD"), CharsetToolkit.UTF8_CHARSET));
+  }
+
+  private void commit(String content) throws IOException {
+    FileUtil.writeToFile(new File(myRepoDir, "file.txt"), content);
+    git("add file.txt");
+    git("commit -m change");
+  }
+
+  private void assertReplayed(GitAnnotationCache.CachedAnnotation cached) throws IOException {
+    GitAnnotationCache.CachedAnnotation replayed =
+      GitAnnotationCache.replay(myReader, "file.txt", cached, git("rev-parse HEAD"), CharsetToolkit.UTF8_CHARSET);
+    assertNotNull(replayed);
+    assertEquals(getRevisions(blame().getLines()), getRevisions(replayed.getLines()));
+  }
+
+  /**
+   * Annotates the file at HEAD by git blame, keeping only revisions of lines.
+   */
+  private static GitAnnotationCache.CachedAnnotation blame() {
+    String head = git("rev-parse HEAD");
+    List<GitFileAnnotation.LineInfo> lines = new ArrayList<GitFileAnnotation.LineInfo>();
+    for (String line : StringUtil.splitByLines(git("blame -l -s -w " + head + " -- file.txt"))) {
+      lines.add(new GitFileAnnotation.LineInfo(new Date(), new GitRevisionNumber(line.substring(0, 40)), ""));
+    }
+    return new GitAnnotationCache.CachedAnnotation(head, git("rev-parse " + head + ":file.txt"), lines);
+  }
+
+  private static List<String> getRevisions(List<GitFileAnnotation.LineInfo> lines) {
+    List<String> revisions = new ArrayList<String>();
+    for (GitFileAnnotation.LineInfo line : lines) {
+      revisions.add(line.getRevision().getRev());
+    }
+    return revisions;
+  }
+}
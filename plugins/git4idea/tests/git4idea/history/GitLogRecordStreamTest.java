@@ -0,0 +1,124 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.history;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.util.Consumer;
+import git4idea.GitUtil;
+import git4idea.test.GitTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.intellij.openapi.vcs.Executor.*;
+import static git4idea.history.GitLogParser.GitLogOption.*;
+import static git4idea.test.GitExecutor.git;
+import static org.junit.Assert.*;
+
+public class GitLogRecordStreamTest {
+
+  private File myRepoDir;
+  private GitLogParser myParser;
+
+  @Before
+  public void setUp() throws IOException {
+    myRepoDir = FileUtil.createTempDirectory("git-log-record-stream", null);
+    GitTestUtil.initRepo(myRepoDir.getPath());
+    myParser = new GitLogParser(true, GitLogParser.NameStatus.STATUS,
+                                HASH, COMMIT_TIME, AUTHOR_NAME, AUTHOR_EMAIL, PARENTS, SUBJECT, BODY, RAW_BODY);
+
+    touch("a.txt", "a");
+    touch("dir/b.txt", "b");
+    git("add .");
+    git("commit -m first_line\n\nbody\nwith\nlines");
+    git("mv a.txt c.txt");
+    echo("dir/b.txt", "more");
+    git("add .");
+    git("commit -m rename");
+    git("rm dir/b.txt");
+    git("commit -m ümläut");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myRepoDir);
+  }
+
+  @Test
+  public void streamedRecordsMatchParsedOutput() throws Exception {
+    String output = git("log -M --name-status " + myParser.getPretty() + " --encoding=UTF-8");
+    List<String> expected = describe(myParser.parse(output));
+    assertEquals(4, expected.size());
+
+    byte[] bytes = output.getBytes(GitUtil.UTF8_CHARSET);
+    for (int chunkSize : new int[]{1, 7, bytes.length}) {
+      final List<GitLogRecord> records = new ArrayList<GitLogRecord>();
+      GitLogRecordStream stream = new GitLogRecordStream(myParser, new Consumer<GitLogRecord>() {
+        @Override
+        public void consume(GitLogRecord record) {
+          records.add(record);
+        }
+      }, GitUtil.UTF8_CHARSET, null);
+      for (int i = 0; i < bytes.length; i += chunkSize) {
+        stream.write(bytes, i, Math.min(chunkSize, bytes.length - i));
+      }
+      stream.finish();
+      assertEquals("Chunk size " + chunkSize, expected, describe(records));
+    }
+  }
+
+  @Test
+  public void cancelledByConsumer() throws Exception {
+    byte[] bytes = git("log --name-status " + myParser.getPretty()).getBytes(GitUtil.UTF8_CHARSET);
+    GitLogRecordStream stream = new GitLogRecordStream(myParser, new Consumer<GitLogRecord>() {
+      @Override
+      public void consume(GitLogRecord record) {
+        throw new ProcessCanceledException();
+      }
+    }, GitUtil.UTF8_CHARSET, null);
+    try {
+      stream.write(bytes, 0, bytes.length);
+      fail("Writing should fail after the first record");
+    }
+    catch (IOException e) {
+      // expected
+    }
+    try {
+      stream.checkFailure();
+      fail("The cancellation should be rethrown");
+    }
+    catch (ProcessCanceledException e) {
+      // expected
+    }
+  }
+
+  private static List<String> describe(List<GitLogRecord> records) throws VcsException {
+    List<String> descriptions = new ArrayList<String>();
+    for (GitLogRecord record : records) {
+      descriptions.add(record.getHash() + " " + record.getCommitTime() + " " + record.getAuthorName() + " " + record.getAuthorEmail() +
+                       " " + Arrays.toString(record.getParentsHashes()) + " " + record.getFullMessage() + " " + record.getStatusInfos());
+    }
+    return descriptions;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.repo;
+
+import com.intellij.openapi.util.io.FileUtil;
+import git4idea.test.GitTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static com.intellij.openapi.vcs.Executor.*;
+import static git4idea.test.GitExecutor.git;
+import static org.junit.Assert.*;
+
+public class GitIndexReaderTest {
+
+  private File myRepoDir;
+
+  @Before
+  public void setUp() throws IOException {
+    myRepoDir = FileUtil.createTempDirectory("git-index-reader", null);
+    GitTestUtil.initRepo(myRepoDir.getPath());
+    touch("a.txt", "content of a");
+    touch("dir/with/a/rather/long/name/b.txt", "b");
+    touch("dir/with/a/rather/long/name/c.txt", "content of c");
+    git("add .");
+    git("commit -m files");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myRepoDir);
+  }
+
+  @Test
+  public void version2() throws IOException {
+    assertEntries();
+  }
+
+  @Test
+  public void version3() throws IOException {
+    git("update-index --index-version 3");
+    git("update-index --skip-worktree a.txt");
+    Map<String, GitIndexReader.Entry> entries = readEntries("a.txt", "dir/with/a/rather/long/name/b.txt");
+    assertTrue(entries.get("a.txt").isSpecial());
+    assertFalse(entries.get("dir/with/a/rather/long/name/b.txt").isSpecial());
+  }
+
+  @Test
+  public void version4() throws IOException {
+    git("update-index --index-version 4");
+    assertEntries();
+  }
+
+  @Test
+  public void assumeUnchanged() throws IOException {
+    git("update-index --assume-unchanged a.txt");
+    assertTrue(readEntries("a.txt").get("a.txt").isSpecial());
+  }
+
+  private void assertEntries() throws IOException {
+    Map<String, GitIndexReader.Entry> entries = readEntries("a.txt", "dir/with/a/rather/long/name/c.txt", "missing.txt");
+    assertEquals(new HashSet<String>(Arrays.asList("a.txt", "dir/with/a/rather/long/name/c.txt")), entries.keySet());
+
+    GitIndexReader.Entry entry = entries.get("dir/with/a/rather/long/name/c.txt");
+    File file = new File(myRepoDir, "dir/with/a/rather/long/name/c.txt");
+    assertEquals(git("rev-parse HEAD:dir/with/a/rather/long/name/c.txt"), entry.getHash());
+    assertEquals(file.length(), entry.getSize());
+    assertEquals(file.lastModified() / 1000, entry.getMtime());
+    assertEquals(GitIndexReader.MODE_REGULAR_FILE, entry.getMode() & GitIndexReader.MODE_TYPE_MASK);
+    assertFalse(entry.isSpecial());
+  }
+
+  private Map<String, GitIndexReader.Entry> readEntries(String... paths) throws IOException {
+    return GitIndexReader.readEntries(new File(myRepoDir, ".git/index"), new HashSet<String>(Arrays.asList(paths)));
+  }
+}
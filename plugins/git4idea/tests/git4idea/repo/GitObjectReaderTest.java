@@ -0,0 +1,147 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.repo;
+
+import com.intellij.openapi.util.io.FileUtil;
+import git4idea.test.GitTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static com.intellij.openapi.vcs.Executor.*;
+import static git4idea.test.GitExecutor.git;
+import static org.junit.Assert.*;
+
+public class GitObjectReaderTest {
+
+  private static final int COMMITS_COUNT = 30;
+
+  private File myRepoDir;
+  private List<String> myCommits;
+  private List<String> myContents;
+
+  @Before
+  public void setUp() throws IOException {
+    myRepoDir = FileUtil.createTempDirectory("git-object-reader", null);
+    GitTestUtil.initRepo(myRepoDir.getPath());
+    mkdir("dir");
+    touch("dir/file.txt");
+    myCommits = new ArrayList<String>();
+    myContents = new ArrayList<String>();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < COMMITS_COUNT; i++) {
+      // appending to a large file makes Git store the previous versions as deltas
+      String line = "line " + i + " of the file which is long enough to be worth deltifying\n";
+      content.append(line);
+      echo("dir/file.txt", line);
+      git("add dir/file.txt");
+      git("commit -m commit_" + i);
+      myCommits.add(git("rev-parse HEAD"));
+      myContents.add(content.toString());
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myRepoDir);
+  }
+
+  @Test
+  public void looseObjects() throws IOException {
+    assertAllContents(new GitObjectReader(new File(myRepoDir, ".git")));
+  }
+
+  @Test
+  public void packedObjects() throws IOException {
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    assertAllContents(reader);
+    git("gc --aggressive");
+    assertAllContents(reader);
+  }
+
+  @Test
+  public void packsReplacedByRepackAndGc() throws IOException {
+    git("gc");
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    assertAllContents(reader);
+    for (String command : Arrays.asList("repack -a -d -f", "gc")) {
+      echo("dir/file.txt", command + "\n");
+      git("commit -am " + command.replace(' ', '_'));
+      git(command);
+      assertAllContents(reader);
+      assertEquals(git("show HEAD:dir/file.txt"), new String(reader.readFileContent(git("rev-parse HEAD"), "dir/file.txt")).trim());
+    }
+  }
+
+  @Test
+  public void missingFile() throws IOException {
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    assertNull(reader.readFileContent(myCommits.get(0), "dir/missing.txt"));
+    assertNull(reader.readFileContent(myCommits.get(0), "initial.txt/file.txt"));
+    assertNull(reader.readFileContent("0123456789012345678901234567890123456789", "dir/file.txt"));
+  }
+
+  @Test
+  public void parents() throws IOException {
+    git("gc");
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    for (int i = 1; i < COMMITS_COUNT; i++) {
+      assertEquals(Collections.singletonList(myCommits.get(i - 1)), reader.readParents(myCommits.get(i)));
+    }
+  }
+
+  @Test
+  public void treeEntries() throws IOException {
+    git("gc");
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    String head = myCommits.get(COMMITS_COUNT - 1);
+    Map<String, GitObjectReader.TreeEntry> entries = reader.readTreeEntries(head, Arrays.asList("dir/file.txt", "dir", "dir/missing.txt"));
+    assertEquals(git("rev-parse " + head + ":dir/file.txt"), entries.get("dir/file.txt").getHash());
+    assertEquals(0100644, entries.get("dir/file.txt").getMode());
+    assertEquals(040000, entries.get("dir").getMode());
+    assertFalse(entries.containsKey("dir/missing.txt"));
+  }
+
+  @Test(expected = IOException.class)
+  public void treeEntriesOfMissingCommit() throws IOException {
+    new GitObjectReader(new File(myRepoDir, ".git")).readTreeEntries("0123456789012345678901234567890123456789",
+                                                                      Collections.singletonList("dir/file.txt"));
+  }
+
+  @Test
+  public void sameContentAsGitShow() throws IOException {
+    git("gc");
+    GitObjectReader reader = new GitObjectReader(new File(myRepoDir, ".git"));
+    for (String commit : myCommits) {
+      byte[] content = reader.readFileContent(commit, "dir/file.txt");
+      assertNotNull(commit, content);
+      // output of the git command is trimmed
+      assertEquals(commit, git("show " + commit + ":dir/file.txt"), new String(content).trim());
+    }
+  }
+
+  private void assertAllContents(GitObjectReader reader) throws IOException {
+    for (int i = 0; i < COMMITS_COUNT; i++) {
+      byte[] content = reader.readFileContent(myCommits.get(i), "dir/file.txt");
+      assertEquals(myContents.get(i), content == null ? null : new String(content));
+    }
+    assertEquals("", new String(reader.readFileContent(myCommits.get(0), "initial.txt")));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package git4idea.tests;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vcs.FilePathImpl;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static com.intellij.openapi.vcs.FileStatus.MODIFIED;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Dirty files are compared with {@code .git/index} before calling {@code git status}: checks that the result is the same as Git's.
+ * Files are edited right on disk to control their modification time.
+ */
+public class GitChangeProviderIndexTest extends GitChangeProviderTest {
+
+  @Test
+  public void testModifiedFile() throws Exception {
+    write(afile, "new content", System.currentTimeMillis());
+    assertSameAsGitStatus(afile, MODIFIED);
+  }
+
+  @Test
+  public void testStagedFile() throws Exception {
+    stage(afile, "new content");
+    assertSameAsGitStatus(afile, MODIFIED);
+  }
+
+  @Test
+  public void testUnchangedFile() throws Exception {
+    setOlder(afile);
+    myRepo.run("update-index", "--refresh");
+    dirty(afile);
+    assertSameAsGitStatus(afile, null);
+  }
+
+  @Test
+  public void testRacilyCleanFile() throws Exception {
+    File file = ioFile(afile);
+    File index = new File(new File(myRepo.getRootDir(), ".git"), "index");
+    String content = FileUtil.loadFile(file);
+    long timestamp = (file.lastModified() / 1000 + 1) * 1000;
+    // the file is modified in the second when the index was written, and its size and modification time are the same as in the index
+    file.setLastModified(timestamp);
+    myRepo.run("update-index", "--refresh");
+    write(afile, content.toUpperCase(), timestamp);
+    index.setLastModified(timestamp);
+    assertSameAsGitStatus(afile, MODIFIED);
+  }
+
+  @Test
+  public void testFilesAfterGc() throws Exception {
+    VirtualFile bfile = myFiles.get("b.txt");
+    for (int i = 0; i < 2; i++) {
+      // the second gc deletes the pack read by the first check
+      myRepo.run("gc");
+      stage(afile, "new content " + i);
+      setOlder(bfile);
+      myRepo.run("update-index", "--refresh");
+      dirty(bfile);
+      assertSameAsGitStatus(afile, MODIFIED);
+      assertSameAsGitStatus(bfile, null);
+      myRepo.commit();
+    }
+  }
+
+  private void assertSameAsGitStatus(VirtualFile file, FileStatus status) throws Exception {
+    assertChanges(file, status);
+    String gitStatus = myRepo.run("status", "--porcelain", "--untracked-files=no", "--", VfsUtilCore.getRelativePath(file, myRootDir, '/'));
+    assertEquals(gitStatus.trim().isEmpty(), status == null, "git status: " + gitStatus);
+  }
+
+  /**
+   * Changes the file and stages it, so that it is up-to-date in the index, but differs from HEAD.
+   */
+  private void stage(VirtualFile file, String content) throws Exception {
+    write(file, content, System.currentTimeMillis() - 10000);
+    myRepo.add(VfsUtilCore.getRelativePath(file, myRootDir, '/'));
+  }
+
+  private void write(VirtualFile file, String content, long timestamp) throws Exception {
+    File ioFile = ioFile(file);
+    FileUtil.writeToFile(ioFile, content);
+    ioFile.setLastModified(timestamp);
+    dirty(file);
+  }
+
+  private static void setOlder(VirtualFile file) {
+    ioFile(file).setLastModified(System.currentTimeMillis() - 10000);
+  }
+
+  private static File ioFile(VirtualFile file) {
+    return new File(file.getPath());
+  }
+
+  private void dirty(VirtualFile file) {
+    myDirtyScope.addDirtyFile(new FilePathImpl(file));
+  }
+}